@@ -2,7 +2,17 @@ package magdysyuk.backuper.source.cli;
 
 import java.io.File;
 
+import magdysyuk.backuper.source.compress.CompressCodec;
+import magdysyuk.backuper.source.compress.DataCompress;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
+import magdysyuk.backuper.source.filesystem.Workspace;
 import magdysyuk.backuper.source.logic.MainProcessor;
+import magdysyuk.backuper.source.logic.PipelineOrder;
+import magdysyuk.backuper.source.logic.ProcessingOptions;
+import magdysyuk.backuper.source.steganography.CoverAssignmentOrder;
+import magdysyuk.backuper.source.steganography.PngRowEncoder;
+import magdysyuk.backuper.source.steganography.SteganographyImageLSB;
+import magdysyuk.backuper.source.steganography.SteganographyRasterLSB;
 
 import org.kohsuke.args4j.Option;
 
@@ -25,12 +35,63 @@ public class CLIRunner {
 	private File reportFile;
 	@Option(name="-dir-images-with-data", aliases={"-dir-img-data"}, required=true, metaVar="<directory>", usage="Path to directory with images contains data into them.")
 	private File directoryForImagesWithData;
+	@Option(name="-threads", metaVar="<number>", usage="How many images (and files of input directory for en/de-crypt) will be processed at the same time (by default 1). Usually it is number of processor cores.")
+	private int numberThreads = 1;
 	
 	// For "hide" direction
 	@Option(name="-input-data", metaVar="<file or directory>", usage="Path to your secret file or directory for processing. Only for \"hide\" action.")
 	private File inputDataFile;
-	@Option(name="-image-source", aliases={"-image-original"}, metaVar="<file>", usage="Path to image file. This image will be used for hiding data by LSB method. Only for \"hide\" action.")
+	@Option(name="-image-source", aliases={"-image-original"}, metaVar="<file | directory>", usage="Path to image file. This image will be used for hiding data by LSB method. It could be also directory with images: they will be used one after another (see -cover-order), each of them is resized with keeping of proportions. Only for \"hide\" action.")
 	private File imageForSteganography;
+	@Option(name="-bits-per-channel", metaVar="<1 - 4>", usage="How many low bits of each color in images will be replaced by data (by default 2). More bits - less images, but changes in images are more visible. Only for \"hide\" action (for \"extract\" it is taken from report).")
+	private int numberBitsPerChannel = SteganographyRasterLSB.DEFAULT_BITS_PER_CHANNEL;
+	@Option(name="-alpha-channel", usage="Store data also in alpha channel of images (images with data will have transparency). Only for \"hide\" action.")
+	private boolean isAlphaChannelUsed = false;
+	@Option(name="-image-width", metaVar="<number>", usage="Width of images with data (by default 640). Original image will be resized to this size. Only for \"hide\" action.")
+	private int imageWidth = SteganographyImageLSB.DEFAULT_RESIZED_IMAGE_WIDTH;
+	@Option(name="-image-height", metaVar="<number>", usage="Height of images with data (by default 480). Only for \"hide\" action.")
+	private int imageHeight = SteganographyImageLSB.DEFAULT_RESIZED_IMAGE_HEIGHT;
+	@Option(name="-max-image-file-size", metaVar="<bytes>", usage="Max size of one image file. If it is set, size of images will be chosen automatically (minimal number of images, proportions from -image-width and -image-height). Only for \"hide\" action.")
+	private long maxImageFileBytes = 0;
+	
+	@Option(name="-png-compression", metaVar="<0-9>", usage="Level of compression of png files with data: 0 - fastest, 9 - smallest files (by default - level of ImageIO). Only for \"hide\" action.")
+	private int pngCompressionLevel = PngRowEncoder.DEFAULT_COMPRESSION_LEVEL;
+	
+	@Option(name="-cover-order", metaVar="<\"round-robin\" | \"best-fit\">", usage="Order of images, when -image-source is directory: one after another, or from the largest to the smallest (and the last part of data - into the smallest image, which can contain it). By default - round-robin. Only for \"hide\" action.")
+	private String coverAssignmentOrderName = CoverAssignmentOrder.ROUND_ROBIN.getOrderName();
+	
+	@Option(name="-pipeline-order", metaVar="<\"encrypt-compress\" | \"compress-encrypt\">", usage="Order of processing: each file is encrypted and next - compressed, or all data are compressed and next - encrypted as one archive (less images for text data). By default - encrypt-compress. Only for \"hide\" action (for \"extract\" it is taken from report).")
+	private String pipelineOrderName = PipelineOrder.ENCRYPT_THEN_COMPRESS.getOrderName();
+	@Option(name="-cipher-mode", metaVar="<\"CBC\" | \"GCM\">", usage="Mode of encryption: CBC, or GCM (data are encrypted by segments with authentication, large files are encrypted by -threads at the same time). By default - CBC. Only for \"hide\" action (for \"extract\" it is taken from report).")
+	private String cipherModeName = CipherMode.CBC.getCipherMode();
+	@Option(name="-compress-codec", metaVar="<\"zip\" | \"tar\" | \"tar-bzip2\">", usage="Format of archive with data: zip, tar (without compression), or tar compressed by bzip2 (smaller archive of text data, but slower). By default - zip. Only for \"hide\" action (for \"extract\" it is taken from report).")
+	private String compressCodecName = CompressCodec.ZIP.getCodecName();
+	@Option(name="-compress-level", metaVar="<0-9>", usage="Level of compression of archive with data: 0 - fastest (zip files are stored without compression), 9 - smallest archive (by default - level of codec). Only for \"hide\" action.")
+	private int compressionLevel = DataCompress.DEFAULT_COMPRESSION_LEVEL;
+	
+	@Option(name="-streaming", usage="Process data in one pass, without temporary files in home directory: for \"hide\" action encrypted files are archived and putted into images on the fly, for \"extract\" action archive from images is decrypted directly into output directory.")
+	private boolean isStreamingUsed = false;
+	@Option(name="-threads-encrypt", metaVar="<number>", usage="How many files will be encrypted at the same time in streaming mode (by default 1).")
+	private int numberEncryptThreads = 1;
+	@Option(name="-threads-hash", metaVar="<number>", usage="How many images will be hashed for report at the same time in streaming mode (by default 1).")
+	private int numberHashThreads = 1;
+	@Option(name="-stage-queue", metaVar="<number>", usage="How many items (encrypted files, images) could wait between stages in streaming mode (by default 4). More items - more memory is used.")
+	private int stageQueueCapacity = 4;
+	
+	@Option(name="-workspace", metaVar="<directory>", usage="Directory for temporary files (by default - home directory), e.g. local disk or \"/dev/shm\". Temporary files are removed at the end, also after errors.")
+	private File workspaceDirectory;
+	@Option(name="-in-memory", usage="Keep intermediate data in memory, without temporary files (for data up to " + Workspace.MAX_IN_MEMORY_BYTES / (1024 * 1024) + " MB, larger data use -workspace directory).")
+	private boolean isWorkspaceInMemory = false;
+	
+	@Option(name="-incremental", usage="Incremental backup: manifest of input data is saved near report (file \"<report>.manifest\"), and with -previous-report only new and changed files are putted into images. For \"extract\" action it is taken from report (files are extracted also from images of previous backups).")
+	private boolean isIncrementalBackup = false;
+	@Option(name="-previous-report", metaVar="<file>", usage="Report of previous incremental backup (sets -incremental). Report of new backup should be other file. Only for \"hide\" action.")
+	private File previousReportFile;
+	@Option(name="-dedup", usage="Deduplication for incremental backup (sets -incremental): files are splitted into chunks by content, and only chunks, which are not in images of this or previous backups, are putted into images. Only for \"hide\" action.")
+	private boolean isDeduplicationUsed = false;
+	
+	@Option(name="-resume", usage="Resume interrupted operation from its journal (near report for \"hide\" action, near output directory for \"extract\" action): finished stages, written images and extracted files are not made again. Journal and intermediate data are kept after error only with this option. Journal of other operation is not overwritten: it is discarded after successful operation without this option.")
+	private boolean isResumeUsed = false;
 	
 	// For "extract" direction
 	@Option(name="-dir-output-data", metaVar="<directory>", usage="Path to directory with extracted from images data. Only for \"extract\" action.")
@@ -47,12 +108,56 @@ public class CLIRunner {
 		if (	(this.action == null)	||	( this.action.equals("hide") == false && this.action.equals("extract") == false )	) {
 			System.out.println("Option \"-action\" is required and it should be equals one of these string values: \"hide\", \"extract\"");
 		} else {
-			MainProcessor mainProcessor = new MainProcessor();
+			ProcessingOptions processingOptions = new ProcessingOptions();
+			processingOptions.setNumberThreads(this.numberThreads);
+			processingOptions.setNumberBitsPerChannel(this.numberBitsPerChannel);
+			processingOptions.setAlphaChannelUsed(this.isAlphaChannelUsed);
+			processingOptions.setImageSize(this.imageWidth, this.imageHeight);
+			processingOptions.setMaxImageFileBytes(this.maxImageFileBytes);
+			processingOptions.setPngCompressionLevel(this.pngCompressionLevel);
+			processingOptions.setStreamingUsed(this.isStreamingUsed);
+			processingOptions.setNumberEncryptThreads(this.numberEncryptThreads);
+			processingOptions.setNumberHashThreads(this.numberHashThreads);
+			processingOptions.setStageQueueCapacity(this.stageQueueCapacity);
+			processingOptions.setCoverAssignmentOrder(CoverAssignmentOrder.getCoverAssignmentOrder(this.coverAssignmentOrderName));
+			processingOptions.setPipelineOrder(PipelineOrder.getPipelineOrder(this.pipelineOrderName));
+			processingOptions.setCipherMode(CipherMode.getCipherModeByName(this.cipherModeName));
+			processingOptions.setCompressCodec(CompressCodec.getCompressCodecByName(this.compressCodecName));
+			processingOptions.setCompressionLevel(this.compressionLevel);
+			processingOptions.setWorkspace(new Workspace(this.workspaceDirectory, this.isWorkspaceInMemory));
+			processingOptions.setIncrementalBackup(	(this.isIncrementalBackup == true) || (this.previousReportFile != null) || (this.isDeduplicationUsed == true)	);
+			processingOptions.setDeduplicationUsed(this.isDeduplicationUsed);
+			processingOptions.setPreviousReportFile(this.previousReportFile);
+			processingOptions.setResumeUsed(this.isResumeUsed);
+			MainProcessor mainProcessor = new MainProcessor(processingOptions);
 			if(this.action.equals("hide") == true) {
 				if (	(this.inputDataFile == null) || (this.inputDataFile.exists() == false)	) {
 					System.out.println("You should specify path to real data file (or directory) for processing");
 				} else if (	(this.imageForSteganography == null) || (this.imageForSteganography.exists() == false) ) {
-					System.out.println("You should specify path to real image file");
+					System.out.println("You should specify path to real image file (or directory with images)");
+				} else if (	(this.numberBitsPerChannel < SteganographyRasterLSB.MIN_BITS_PER_CHANNEL) || (this.numberBitsPerChannel > SteganographyRasterLSB.MAX_BITS_PER_CHANNEL)	) {
+					System.out.println("Option \"-bits-per-channel\" should be from " + SteganographyRasterLSB.MIN_BITS_PER_CHANNEL + " to " + SteganographyRasterLSB.MAX_BITS_PER_CHANNEL);
+				} else if (SteganographyImageLSB.isImageSizeAcceptable(this.imageWidth, this.imageHeight) == false) {
+					System.out.println("Options \"-image-width\" and \"-image-height\" should be less than " + SteganographyImageLSB.MAX_IMAGE_SIDE + 
+							", and image should have at least 3 and less than " + SteganographyImageLSB.MAX_IMAGE_PIXELS + " pixels");
+				} else if (this.maxImageFileBytes < 0) {
+					System.out.println("Option \"-max-image-file-size\" should not be negative");
+				} else if (	(this.pngCompressionLevel != PngRowEncoder.DEFAULT_COMPRESSION_LEVEL) &&
+						((this.pngCompressionLevel < PngRowEncoder.MIN_COMPRESSION_LEVEL) || (this.pngCompressionLevel > PngRowEncoder.MAX_COMPRESSION_LEVEL))	) {
+					System.out.println("Option \"-png-compression\" should be from " + PngRowEncoder.MIN_COMPRESSION_LEVEL + " to " + PngRowEncoder.MAX_COMPRESSION_LEVEL);
+				} else if (CoverAssignmentOrder.getCoverAssignmentOrder(this.coverAssignmentOrderName) == null) {
+					System.out.println("Option \"-cover-order\" should be equals one of these string values: \"" + CoverAssignmentOrder.ROUND_ROBIN.getOrderName() + "\", \"" + CoverAssignmentOrder.BEST_FIT.getOrderName() + "\"");
+				} else if (	(this.previousReportFile != null) && (this.previousReportFile.exists() == false)	) {
+					System.out.println("Option \"-previous-report\" should be path to report of previous backup");
+				} else if (PipelineOrder.getPipelineOrder(this.pipelineOrderName) == null) {
+					System.out.println("Option \"-pipeline-order\" should be equals one of these string values: \"" + PipelineOrder.ENCRYPT_THEN_COMPRESS.getOrderName() + "\", \"" + PipelineOrder.COMPRESS_THEN_ENCRYPT.getOrderName() + "\"");
+				} else if (	(CipherMode.getCipherModeByName(this.cipherModeName) == null) || (CipherMode.getCipherModeByName(this.cipherModeName) == CipherMode.ECB)	) {
+					System.out.println("Option \"-cipher-mode\" should be equals one of these string values: \"" + CipherMode.CBC.getCipherMode() + "\", \"" + CipherMode.GCM.getCipherMode() + "\"");
+				} else if (CompressCodec.getCompressCodecByName(this.compressCodecName) == null) {
+					System.out.println("Option \"-compress-codec\" should be equals one of these string values: \"" + CompressCodec.ZIP.getCodecName() + "\", \"" + CompressCodec.TAR.getCodecName() + "\", \"" + CompressCodec.TAR_BZIP2.getCodecName() + "\"");
+				} else if (	(this.compressionLevel != DataCompress.DEFAULT_COMPRESSION_LEVEL) &&
+						((this.compressionLevel < DataCompress.MIN_COMPRESSION_LEVEL) || (this.compressionLevel > DataCompress.MAX_COMPRESSION_LEVEL))	) {
+					System.out.println("Option \"-compress-level\" should be from " + DataCompress.MIN_COMPRESSION_LEVEL + " to " + DataCompress.MAX_COMPRESSION_LEVEL);
 				} else {
 					isOperationFinishedSuccessful = mainProcessor.encryptCompressHideFiles(
 							this.inputDataFile, this.password.toCharArray(), this.imageForSteganography, this.directoryForImagesWithData, this.reportFile);
@@ -0,0 +1,49 @@
+package magdysyuk.backuper.source.compress;
+
+
+/**
+ * Format of archive, in which data are compressed before putting them into images.
+ * Codec is saved in report, so data are uncompressed by the same codec.
+ * Level of compression is selected separately (see DataCompress).
+ */
+public enum CompressCodec {
+	/**
+	 * Zip archive: level 0 - files are stored without compression (the fastest way),
+	 * levels 1-9 - files are compressed by deflate (from the fastest to the best compression)
+	 */
+	ZIP ("zip"),
+	/**
+	 * Tar archive without compression: data are written as stream, there is no table of files at the end
+	 * (level of compression is not used)
+	 */
+	TAR ("tar"),
+	/**
+	 * Tar archive compressed by bzip2: better compression of text data than zip, but much slower.
+	 * Levels 1-9 are sizes of blocks of bzip2 (from 100 KB to 900 KB)
+	 */
+	TAR_BZIP2 ("tar-bzip2");
+
+	private String codecName;
+	private CompressCodec(String codecName) {
+		this.codecName = codecName;
+	}
+
+	public String getCodecName() {
+		return this.codecName;
+	}
+
+	/**
+	 * @param codecName Name of codec (e.g. "tar-bzip2")
+	 * @return Codec with this name, or <code>null</code> if there is no such codec
+	 */
+	public static CompressCodec getCompressCodecByName(String codecName) {
+		CompressCodec compressCodec = null;
+		for (CompressCodec codec : CompressCodec.values()) {
+			if (codec.getCodecName().equals(codecName) == true) {
+				compressCodec = codec;
+			}
+		}
+		return compressCodec;
+	}
+
+}
@@ -0,0 +1,56 @@
+package magdysyuk.backuper.source.compress;
+
+import magdysyuk.backuper.source.compress.tar.CompressTar;
+import magdysyuk.backuper.source.compress.zip.CompressZip;
+
+
+/**
+ * Choice of compression by codec and level: speed of backup (level 0 or 1) or size of data in images (level 9).
+ */
+public class DataCompress {
+
+	/**
+	 * Default level of codec (deflate level of zip library, the largest block of bzip2)
+	 */
+	public static final int DEFAULT_COMPRESSION_LEVEL = -1;
+	public static final int MIN_COMPRESSION_LEVEL = 0;
+	public static final int MAX_COMPRESSION_LEVEL = 9;
+
+	private IDataCompress iDataCompress;
+	public IDataCompress getIDataCompress() {
+		return this.iDataCompress;
+	}
+	
+	public DataCompress(CompressCodec compressCodec) {
+		this(compressCodec, DEFAULT_COMPRESSION_LEVEL);
+	}
+	
+	/**
+	 * @param compressCodec Format of archive (<code>null</code> - zip)
+	 * @param compressionLevel From MIN_COMPRESSION_LEVEL (fastest) to MAX_COMPRESSION_LEVEL (smallest archive),
+	 * or DEFAULT_COMPRESSION_LEVEL (other values are replaced by default level)
+	 */
+	public DataCompress(CompressCodec compressCodec, int compressionLevel) {
+		if (	(compressionLevel < MIN_COMPRESSION_LEVEL) || (compressionLevel > MAX_COMPRESSION_LEVEL)	) {
+			compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+		}
+		if (compressCodec == null) {
+			compressCodec = CompressCodec.ZIP;
+		}
+		switch (compressCodec) {
+			case ZIP:
+				this.iDataCompress = new CompressZip(compressionLevel);
+				break;
+			case TAR:
+				this.iDataCompress = new CompressTar(false, compressionLevel);
+				break;
+			case TAR_BZIP2:
+				this.iDataCompress = new CompressTar(true, compressionLevel);
+				break;
+			default:
+				this.iDataCompress = new CompressZip(compressionLevel);
+				break;
+		}
+	}
+
+}
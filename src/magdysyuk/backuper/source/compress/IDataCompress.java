@@ -2,8 +2,26 @@ package magdysyuk.backuper.source.compress;
 
 
 import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 public interface IDataCompress {
 	public boolean compress(File inputData, File archiveFile);
 	public boolean uncompress(File archiveFile, File uncompressDestinationDirectory);
+	
+	/**
+	 * Compress data into stream (e.g. into memory, without archive file)
+	 * @param inputData File or directory (it will be compressed recursively)
+	 * @param archiveOutputStream Stream for archive (will be closed at the end)
+	 * @return <code>true</code> if data are compressed successful
+	 */
+	public boolean compress(File inputData, OutputStream archiveOutputStream);
+	
+	/**
+	 * Uncompress archive from stream (e.g. from memory, without archive file)
+	 * @param archiveInputStream Stream with archive (will be closed at the end)
+	 * @param uncompressDestinationDirectory Directory for uncompressed data
+	 * @return <code>true</code> if archive is uncompressed successful
+	 */
+	public boolean uncompress(InputStream archiveInputStream, File uncompressDestinationDirectory);
 }
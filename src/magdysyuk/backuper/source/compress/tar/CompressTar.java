@@ -0,0 +1,224 @@
+package magdysyuk.backuper.source.compress.tar;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import magdysyuk.backuper.source.compress.DataCompress;
+import magdysyuk.backuper.source.compress.IDataCompress;
+import magdysyuk.backuper.source.filesystem.DirectoryUtils;
+import magdysyuk.backuper.source.filesystem.FileIO;
+import magdysyuk.backuper.source.logger.Loggers;
+import magdysyuk.backuper.source.logger.TextMessage;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+
+
+/**
+ * Tar archive (optionally compressed by bzip2). Unlike zip, tar is only a stream of entries (there is no table of files
+ * at the end), so archive is read at once up to the last entry.
+ * <p/>Names of entries are written in UTF-8 (see CompressZip about non-ascii filenames),
+ * long names - as GNU extension, files larger than 8 GB - as POSIX extension.
+ */
+public class CompressTar implements IDataCompress {
+
+	private static final String ENTRY_NAMES_ENCODING = "UTF-8";
+
+	public CompressTar() {
+		this(false, DataCompress.DEFAULT_COMPRESSION_LEVEL);
+	}
+
+	/**
+	 * @param isBzip2Used Is tar archive compressed by bzip2 (otherwise data are not compressed)
+	 * @param compressionLevel For bzip2: size of block from 1 (100 KB, fastest) to 9 (900 KB, smallest archive),
+	 * DataCompress.DEFAULT_COMPRESSION_LEVEL (and 0) - the largest block. Without bzip2 level is not used.
+	 */
+	public CompressTar(boolean isBzip2Used, int compressionLevel) {
+		this.fileIO = new FileIO();
+		this.directoryUtils = new DirectoryUtils();
+		this.isBzip2Used = isBzip2Used;
+		if (	(compressionLevel < BZip2CompressorOutputStream.MIN_BLOCKSIZE) || (compressionLevel > BZip2CompressorOutputStream.MAX_BLOCKSIZE)	) {
+			compressionLevel = BZip2CompressorOutputStream.MAX_BLOCKSIZE;
+		}
+		this.bzip2BlockSize = compressionLevel;
+	}
+
+	private FileIO fileIO;
+	private FileIO getFileIO() {
+		return this.fileIO;
+	}
+
+	private DirectoryUtils directoryUtils;
+	private DirectoryUtils getDirectoryUtils() {
+		return this.directoryUtils;
+	}
+
+	private boolean isBzip2Used;
+	private boolean isBzip2Used() {
+		return this.isBzip2Used;
+	}
+
+	private int bzip2BlockSize;
+	private int getBzip2BlockSize() {
+		return this.bzip2BlockSize;
+	}
+
+	/**
+	 * If input data is directory - it will be archived recursively
+	 */
+	@Override
+	public boolean compress(File inputData, File archiveFile) {
+		OutputStream outputStream = this.getFileIO().getFileOutputStream(archiveFile);
+		return this.compress(inputData, outputStream, archiveFile.getPath());
+	}
+
+	@Override
+	public boolean compress(File inputData, OutputStream archiveOutputStream) {
+		return this.compress(inputData, archiveOutputStream, "stream");
+	}
+
+	private boolean compress(File inputData, OutputStream outputStream, String archiveName) {
+		Loggers.debug(this, TextMessage.TAR_START_COMPRESS, new Object[]{inputData.getPath(), archiveName, this.isBzip2Used()});
+		boolean isCompressedSuccessful = false;
+		try {
+			OutputStream tarDataOutputStream = outputStream;
+			if (this.isBzip2Used() == true) {
+				tarDataOutputStream = new BZip2CompressorOutputStream(outputStream, this.getBzip2BlockSize());
+			}
+			TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(tarDataOutputStream, ENTRY_NAMES_ENCODING);
+			tarOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+			tarOutputStream.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+
+			this.compressData(inputData, inputData, tarOutputStream);
+
+			tarOutputStream.finish();
+			tarOutputStream.close();
+			outputStream.close();
+			isCompressedSuccessful = true;
+			Loggers.debug(this, TextMessage.TAR_COMPRESS_SUCCESSFUL, new Object[]{archiveName});
+		} catch (Exception ex) {
+			Loggers.fatal(this, TextMessage.TAR_COMPRESS_IMPOSSIBLE, new Object[]{archiveName}, ex);
+			try {
+				outputStream.close();
+			} catch (Exception e) {
+				Loggers.fatal(this, TextMessage.TAR_COMPRESS_IMPOSSIBLE, new Object[]{archiveName}, e);
+			}
+		}
+		Loggers.debug(this, TextMessage.TAR_END_COMPRESS);
+		return isCompressedSuccessful;
+	}
+
+	/**
+	 * Compress file or folder (include all inner files/folders)
+	 * @param sourceData Input data
+	 * @param rootFolder Need to calculate relative path in archive (as in CompressZip: "file.txt" for single file,
+	 * "dir1/dir2/" for empty nested folder, "dir1/dir2/file" for nested file)
+	 * @param tarOutputStream
+	 * @throws IOException
+	 */
+	private void compressData(File sourceData, File rootFolder, TarArchiveOutputStream tarOutputStream) throws IOException {
+		if (sourceData.isDirectory() == true) {
+			File[] innerFiles = sourceData.listFiles();
+			for (File innerFile : innerFiles) {
+				String relativeFilePath = this.getDirectoryUtils().getRelativeFilePathWithRoot(rootFolder, innerFile);
+				if (innerFile.isDirectory() == true) {
+					TarArchiveEntry tarEntry = new TarArchiveEntry(innerFile, relativeFilePath);
+					tarOutputStream.putArchiveEntry(tarEntry);
+					tarOutputStream.closeArchiveEntry();
+					// Recursive call for going through filesystem directories tree
+					compressData(innerFile, rootFolder, tarOutputStream);
+				} else {
+					this.compressNormalFile(innerFile, relativeFilePath, tarOutputStream);
+				}
+			}
+		} else {
+			this.compressNormalFile(sourceData, sourceData.getName(), tarOutputStream);
+		}
+	}
+
+	// Compress file, not directory (size of entry is taken from file, it is written before data)
+	private void compressNormalFile(File sourceFile, String relativeFilePath, TarArchiveOutputStream tarOutputStream) throws IOException {
+		TarArchiveEntry tarEntry = new TarArchiveEntry(sourceFile, relativeFilePath);
+		tarOutputStream.putArchiveEntry(tarEntry);
+		this.getFileIO().writeProcessingData(sourceFile, tarOutputStream);
+		tarOutputStream.closeArchiveEntry();
+	}
+
+	@Override
+	public boolean uncompress(File archiveFile, File uncompressDestinationDirectory) {
+		InputStream archiveInputStream = this.getFileIO().getFileInputStream(archiveFile);
+		return this.uncompress(archiveInputStream, uncompressDestinationDirectory, archiveFile.getPath());
+	}
+
+	@Override
+	public boolean uncompress(InputStream archiveInputStream, File uncompressDestinationDirectory) {
+		return this.uncompress(archiveInputStream, uncompressDestinationDirectory, "stream");
+	}
+
+	private boolean uncompress(InputStream archiveInputStream, File uncompressDestinationDirectory, String archiveName) {
+		Loggers.debug(this, TextMessage.TAR_START_UNCOMPRESS, new Object[]{archiveName, uncompressDestinationDirectory.getPath(), this.isBzip2Used()});
+		boolean isUncompressSuccessful = false;
+		TarArchiveInputStream tarInputStream = null;
+		try {
+			InputStream tarDataInputStream = archiveInputStream;
+			if (this.isBzip2Used() == true) {
+				tarDataInputStream = new BZip2CompressorInputStream(archiveInputStream);
+			}
+			tarInputStream = new TarArchiveInputStream(tarDataInputStream, ENTRY_NAMES_ENCODING);
+			// Entries with names like "../file" should not be written outside of destination directory
+			String destinationDirectoryPath = uncompressDestinationDirectory.getCanonicalPath() + File.separator;
+			TarArchiveEntry tarEntry = null;
+			while ((tarEntry = tarInputStream.getNextTarEntry()) != null) {
+				String entryName = tarEntry.getName();
+				String outFilePath = uncompressDestinationDirectory.getPath() + File.separator + entryName;
+				File outFile = new File(outFilePath);
+				if ((outFile.getCanonicalPath() + File.separator).startsWith(destinationDirectoryPath) == false) {
+					Loggers.fatal(this, TextMessage.TAR_UNCOMPRESS_ENTITY_OUTSIDE_DIRECTORY, new Object[]{entryName, uncompressDestinationDirectory.getPath()});
+					throw new IOException("Entry of archive is outside of destination directory: " + entryName);
+				}
+				if (tarEntry.isDirectory() == true) {
+					if(outFile.exists() || outFile.mkdirs()) {
+						Loggers.debug(this, TextMessage.TAR_UNCOMPRESS_ENTITY, new Object[]{outFilePath, "Directory"});
+					} else {
+						Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{outFilePath});
+						throw new IOException("Impossible create directory: " + outFilePath);
+					}
+				} else {
+					// Create directory and uncompress file
+					if (outFile.getParentFile().exists() || outFile.getParentFile().mkdirs()) {
+						OutputStream outputStream = this.getFileIO().getFileOutputStream(outFile);
+						this.getFileIO().writeProcessingData(tarInputStream, outputStream);
+						outputStream.flush();
+						outputStream.close();
+						Loggers.debug(this, TextMessage.TAR_UNCOMPRESS_ENTITY, new Object[]{outFilePath, "File"});
+					} else {
+						Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{outFile.getParent()});
+						throw new IOException("Impossible create directory: " + outFile.getParent());
+					}
+				}
+			}
+			tarInputStream.close();
+			archiveInputStream.close();
+			isUncompressSuccessful = true;
+			Loggers.debug(this, TextMessage.TAR_UNCOMPRESS_SUCCESSFUL, new Object[]{archiveName, uncompressDestinationDirectory.getPath()});
+		} catch (Exception ex) {
+			Loggers.fatal(this, TextMessage.TAR_UNCOMPRESS_IMPOSSIBLE, ex);
+			try {
+				if (tarInputStream != null) {
+					tarInputStream.close();
+				}
+				archiveInputStream.close();
+			} catch (Exception e) {
+				Loggers.fatal(this, TextMessage.TAR_UNCOMPRESS_IMPOSSIBLE, e);
+			}
+		}
+
+		Loggers.debug(this, TextMessage.TAR_END_UNCOMPRESS, new Object[]{isUncompressSuccessful});
+		return isUncompressSuccessful;
+	}
+}
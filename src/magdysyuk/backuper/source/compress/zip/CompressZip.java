@@ -4,7 +4,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
 
+import magdysyuk.backuper.source.compress.DataCompress;
 import magdysyuk.backuper.source.compress.IDataCompress;
 import magdysyuk.backuper.source.filesystem.DirectoryUtils;
 import magdysyuk.backuper.source.filesystem.FileIO;
@@ -14,6 +18,7 @@ import magdysyuk.backuper.source.logger.TextMessage;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
 
 
 public class CompressZip implements IDataCompress {
@@ -26,9 +31,33 @@ public class CompressZip implements IDataCompress {
 	 * Also see article <a href="https://blogs.oracle.com/xuemingshen/entry/non_utf_8_encoding_in">Non-UTF-8 encoding in ZIP file</a>
 	 */
 	
+	/**
+	 * Max size of file, which is read into memory for STORED entry in archive stream
+	 * (see compressNormalFile())
+	 */
+	private static final int MAX_BUFFERED_STORED_FILE_SIZE = 4 * 1024 * 1024;
+	
 	public CompressZip() {
+		this(DataCompress.DEFAULT_COMPRESSION_LEVEL);
+	}
+	
+	/**
+	 * @param compressionLevel 0 - files are stored without compression (method STORED),
+	 * 1-9 - level of deflate compression, DataCompress.DEFAULT_COMPRESSION_LEVEL - default level of deflate
+	 */
+	public CompressZip(int compressionLevel) {
 		this.fileIO = new FileIO();
 		this.directoryUtils = new DirectoryUtils();
+		this.compressionLevel = compressionLevel;
+	}
+	
+	private int compressionLevel;
+	private int getCompressionLevel() {
+		return this.compressionLevel;
+	}
+	
+	private boolean isStoredMethodUsed() {
+		return (this.getCompressionLevel() == DataCompress.MIN_COMPRESSION_LEVEL);
 	}
 	
 	private FileIO fileIO;
@@ -46,22 +75,65 @@ public class CompressZip implements IDataCompress {
 	 */
 	@Override
 	public boolean compress(File inputData, File archiveFile) {
-		Loggers.debug(this, TextMessage.ZIP_START_COMPRESS, new Object[]{inputData.getPath(), archiveFile.getPath()});
+		return this.compress(inputData, archiveFile, null, archiveFile.getPath());
+	}
+	
+	/**
+	 * Compress data into stream (e.g. into memory, without archive file)
+	 * @param inputData File or directory (it will be zipped recursively)
+	 * @param archiveOutputStream Stream for archive (will be closed at the end)
+	 * @return <code>true</code> if data are compressed successful
+	 */
+	@Override
+	public boolean compress(File inputData, OutputStream archiveOutputStream) {
+		return this.compress(inputData, null, archiveOutputStream, "stream");
+	}
+	
+	/**
+	 * @param inputData File or directory
+	 * @param archiveFile Archive file (<code>null</code>, if archive is written into stream)
+	 * @param outputStream Stream for archive (used only if archive file is <code>null</code>)
+	 * @param archiveName Name of archive for logging
+	 * @return <code>true</code> if data are compressed successful
+	 */
+	private boolean compress(File inputData, File archiveFile, OutputStream outputStream, String archiveName) {
+		Loggers.debug(this, TextMessage.ZIP_START_COMPRESS, new Object[]{inputData.getPath(), archiveName});
 		boolean isCompressedSuccessful = false;
 		try {
-			OutputStream outputStream = this.getFileIO().getFileOutputStream(archiveFile);
-			ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(outputStream);
+			ZipArchiveOutputStream zipOutputStream = null;
+			if (	(archiveFile != null) && (this.isStoredMethodUsed() == true)	) {
+				/*
+				 * Archive file is written through RandomAccessFile: size and checksum 
+				 * of stored file are calculated while its data are written,
+				 * and after that they are written into header of entry.
+				 */
+				FileUtils.forceMkdir(archiveFile.getAbsoluteFile().getParentFile());
+				zipOutputStream = new ZipArchiveOutputStream(archiveFile);
+			} else {
+				if (archiveFile != null) {
+					outputStream = this.getFileIO().getFileOutputStream(archiveFile);
+				}
+				zipOutputStream = new ZipArchiveOutputStream(outputStream);
+			}
+			if (this.isStoredMethodUsed() == true) {
+				// Only large files in archive stream are deflated (without compression), see compressNormalFile()
+				zipOutputStream.setLevel(Deflater.NO_COMPRESSION);
+			} else if (this.getCompressionLevel() != DataCompress.DEFAULT_COMPRESSION_LEVEL) {
+				zipOutputStream.setLevel(this.getCompressionLevel());
+			}
 			
 			this.compressData(inputData, inputData, zipOutputStream);
 	
 			zipOutputStream.flush();
 			zipOutputStream.close();
-			outputStream.flush();
-			outputStream.close();
+			if (outputStream != null) {
+				outputStream.flush();
+				outputStream.close();
+			}
 			isCompressedSuccessful = true;
-			Loggers.debug(this, TextMessage.ZIP_COMPRESS_SUCCESSFUL, new Object[]{archiveFile.getPath()});
+			Loggers.debug(this, TextMessage.ZIP_COMPRESS_SUCCESSFUL, new Object[]{archiveName});
 		} catch (Exception ex) {
-			Loggers.fatal(this, TextMessage.ZIP_COMPRESS_IMPOSSIBLE, new Object[]{archiveFile.getPath()}, ex);
+			Loggers.fatal(this, TextMessage.ZIP_COMPRESS_IMPOSSIBLE, new Object[]{archiveName}, ex);
 		}
 		Loggers.debug(this, TextMessage.ZIP_END_COMPRESS);
 		return isCompressedSuccessful;
@@ -83,6 +155,11 @@ public class CompressZip implements IDataCompress {
 				String relativeFilePath = this.getDirectoryUtils().getRelativeFilePathWithRoot(rootFolder, innerFile);
 				if (innerFile.isDirectory() == true) {
 					ZipArchiveEntry zipEntry = new ZipArchiveEntry(relativeFilePath);
+					if (this.isStoredMethodUsed() == true) {
+						zipEntry.setMethod(ZipEntry.STORED);
+						zipEntry.setSize(0);
+						zipEntry.setCrc(0);
+					}
 					zipOutputStream.putArchiveEntry(zipEntry);
 					zipOutputStream.closeArchiveEntry();
 					zipOutputStream.flush();
@@ -97,20 +174,60 @@ public class CompressZip implements IDataCompress {
 		}
 	}
 	
-	// Compress file, not directory
+	/**
+	 * Compress file, not directory.
+	 * <p/>Without compression file is stored, and each file is read only once.
+	 * Archive file is seekable, so size and checksum are written after data of file.
+	 * In archive stream size and checksum of stored file should be known before its data,
+	 * so small file is read into memory, and they are calculated from the same bytes, which are written.
+	 * Large file in archive stream is deflated without compression (size and checksum are written after data,
+	 * as for any deflated entry).
+	 */
 	private void compressNormalFile(File sourceFile, String relativeFilePath, ZipArchiveOutputStream zipOutputStream) throws IOException {
 		ZipArchiveEntry zipEntry = new ZipArchiveEntry(relativeFilePath);
+		byte[] storedFileData = null;
+		if (this.isStoredMethodUsed() == true) {
+			if (zipOutputStream.isSeekable() == true) {
+				zipEntry.setMethod(ZipEntry.STORED);
+			} else if (sourceFile.length() <= MAX_BUFFERED_STORED_FILE_SIZE) {
+				storedFileData = FileUtils.readFileToByteArray(sourceFile);
+				CRC32 crc = new CRC32();
+				crc.update(storedFileData);
+				zipEntry.setMethod(ZipEntry.STORED);
+				zipEntry.setSize(storedFileData.length);
+				zipEntry.setCrc(crc.getValue());
+			}
+		}
 		zipOutputStream.putArchiveEntry(zipEntry);
-		this.getFileIO().writeProcessingData(sourceFile, zipOutputStream);
+		if (storedFileData != null) {
+			zipOutputStream.write(storedFileData);
+		} else {
+			this.getFileIO().writeProcessingData(sourceFile, zipOutputStream);
+		}
 		zipOutputStream.closeArchiveEntry();
 		zipOutputStream.flush();
 	}
 	
 	@Override
 	public boolean uncompress(File archiveFile, File uncompressDestinationDirectory) {
-		Loggers.debug(this, TextMessage.ZIP_START_UNCOMPRESS, new Object[]{archiveFile.getPath(), uncompressDestinationDirectory.getPath()});
-		boolean isUncompressSuccessful = false;
 		InputStream archiveInputStream = this.getFileIO().getFileInputStream(archiveFile);
+		return this.uncompress(archiveInputStream, uncompressDestinationDirectory, archiveFile.getPath());
+	}
+	
+	/**
+	 * Uncompress archive from stream (e.g. from memory, without archive file)
+	 * @param archiveInputStream Stream with archive (will be closed at the end)
+	 * @param uncompressDestinationDirectory Directory for uncompressed data
+	 * @return <code>true</code> if archive is uncompressed successful
+	 */
+	@Override
+	public boolean uncompress(InputStream archiveInputStream, File uncompressDestinationDirectory) {
+		return this.uncompress(archiveInputStream, uncompressDestinationDirectory, "stream");
+	}
+	
+	private boolean uncompress(InputStream archiveInputStream, File uncompressDestinationDirectory, String archiveName) {
+		Loggers.debug(this, TextMessage.ZIP_START_UNCOMPRESS, new Object[]{archiveName, uncompressDestinationDirectory.getPath()});
+		boolean isUncompressSuccessful = false;
 		ZipArchiveInputStream zipInputStream = new ZipArchiveInputStream(archiveInputStream);
 		ZipArchiveEntry zipEntry = null;
 		try {
@@ -140,7 +257,7 @@ public class CompressZip implements IDataCompress {
 			zipInputStream.close();
 			archiveInputStream.close();
 			isUncompressSuccessful = true;
-			Loggers.debug(this, TextMessage.ZIP_UNCOMPRESS_SUCCESSFUL, new Object[]{archiveFile.getPath(), uncompressDestinationDirectory.getPath()});
+			Loggers.debug(this, TextMessage.ZIP_UNCOMPRESS_SUCCESSFUL, new Object[]{archiveName, uncompressDestinationDirectory.getPath()});
 		} catch (Exception ex) {
 			Loggers.fatal(this, TextMessage.ZIP_UNCOMPRESS_IMPOSSIBLE, ex);
 			try {
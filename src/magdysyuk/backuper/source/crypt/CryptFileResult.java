@@ -0,0 +1,60 @@
+package magdysyuk.backuper.source.crypt;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Result of en/de-crypt of file or directory tree (see DataCrypt.cryptFiles()):
+ * how many files and directories were processed, and which files were failed (with reason).
+ */
+public class CryptFileResult {
+
+	private int numberCryptedFiles = 0;
+	private int numberCreatedDirectories = 0;
+	private Map<File, String> failedFiles = new LinkedHashMap<File, String>();
+
+	/**
+	 * @return <code>true</code> if at least one file or directory was processed, and there are no failed files
+	 */
+	public boolean isSuccessful() {
+		return (this.failedFiles.isEmpty() == true) && (this.numberCryptedFiles + this.numberCreatedDirectories > 0);
+	}
+
+	/**
+	 * @return Number of files, which were en/de-crypted successful (including empty files)
+	 */
+	public int getNumberCryptedFiles() {
+		return this.numberCryptedFiles;
+	}
+
+	/**
+	 * @return Number of directories, which were created in output directory
+	 */
+	public int getNumberCreatedDirectories() {
+		return this.numberCreatedDirectories;
+	}
+
+	/**
+	 * @return Input files (or directories), which were not processed, and reason of error for each of them
+	 * (in order of processing)
+	 */
+	public Map<File, String> getFailedFiles() {
+		return Collections.unmodifiableMap(this.failedFiles);
+	}
+
+	void addCryptedFile() {
+		this.numberCryptedFiles += 1;
+	}
+
+	void addCreatedDirectory() {
+		this.numberCreatedDirectories += 1;
+	}
+
+	void addFailedFile(File inputFile, String errorDescription) {
+		this.failedFiles.put(inputFile, errorDescription);
+	}
+
+}
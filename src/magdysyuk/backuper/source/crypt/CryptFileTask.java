@@ -0,0 +1,84 @@
+package magdysyuk.backuper.source.crypt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherKeyMaterial;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherPadding;
+import magdysyuk.backuper.source.filesystem.FileIO;
+
+
+/**
+ * En/de-crypt of one file from directory tree (files are processed by worker threads at the same time).
+ * Result of task is <code>true</code> if file was processed successful.
+ */
+class CryptFileTask implements Callable<Boolean> {
+
+	private IStreamCrypt streamCrypt;
+	private int cipherFlag;
+	private File inputFile;
+	private File outputFile;
+	private CipherKeyMaterial cipherKeyMaterial;
+	private CipherMode modeId;
+	private CipherPadding paddingId;
+	private Future<Boolean> result;
+
+	/**
+	 * @param streamCrypt Implementation of algorithm (it doesn't keep state between calls, so it is shared by all tasks)
+	 * @param cipherFlag Encrypt or decrypt
+	 * @param inputFile Input file (not directory)
+	 * @param outputFile Output file (its directory will be created, if it doesn't exist)
+	 * @param cipherKeyMaterial Key, derived from password (it is shared by all tasks)
+	 * @param modeId Mode of cipher
+	 * @param paddingId Padding of cipher
+	 */
+	CryptFileTask(IStreamCrypt streamCrypt, int cipherFlag, File inputFile, File outputFile, CipherKeyMaterial cipherKeyMaterial,
+			CipherMode modeId, CipherPadding paddingId) {
+		this.streamCrypt = streamCrypt;
+		this.cipherFlag = cipherFlag;
+		this.inputFile = inputFile;
+		this.outputFile = outputFile;
+		this.cipherKeyMaterial = cipherKeyMaterial;
+		this.modeId = modeId;
+		this.paddingId = paddingId;
+	}
+
+	File getInputFile() {
+		return this.inputFile;
+	}
+
+	Future<Boolean> getResult() {
+		return this.result;
+	}
+
+	void setResult(Future<Boolean> result) {
+		this.result = result;
+	}
+
+	@Override
+	public Boolean call() throws Exception {
+		boolean isCryptProcessingSuccessful = false;
+		if (	(DataCrypt.createDirectory(this.outputFile.getParentFile()) == false) || 
+				((this.outputFile.exists() || this.outputFile.createNewFile()) == false)	) {
+			throw new IOException("Impossible create file: " + this.outputFile.getPath());
+		}
+		if (this.inputFile.length() > 0) {
+			FileIO fileIO = new FileIO();
+			// Streams without buffers: en/de-crypt reads and writes them by large blocks through their channels
+			InputStream inputStream = fileIO.getFileChannelInputStream(this.inputFile);
+			OutputStream outputStream = fileIO.getFileChannelOutputStream(this.outputFile);
+			// Streams are closed by en/de-crypt
+			isCryptProcessingSuccessful = this.streamCrypt.cryptStream(this.cipherFlag, inputStream, outputStream, this.cipherKeyMaterial, this.modeId, this.paddingId);
+		} else {
+			// If length of file equals 0 - just enough that file was already created, don't need crypt that
+			isCryptProcessingSuccessful = true;
+		}
+		return isCryptProcessingSuccessful;
+	}
+
+}
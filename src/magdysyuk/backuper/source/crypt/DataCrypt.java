@@ -1,14 +1,26 @@
 package magdysyuk.backuper.source.crypt;
 
 import java.io.File;
-import java.io.InputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
 import javax.crypto.Cipher;
 
+import magdysyuk.backuper.source.compress.IDataCompress;
+import magdysyuk.backuper.source.compress.zip.CompressZip;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherAlgorithmName;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherKeyMaterial;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherPadding;
 import magdysyuk.backuper.source.crypt.algorithms.implementation.DataCryptoAES;
@@ -18,6 +30,10 @@ import magdysyuk.backuper.source.filesystem.FileIO;
 import magdysyuk.backuper.source.logger.Loggers;
 import magdysyuk.backuper.source.logger.TextMessage;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
 
 /**
  * <p/>Limits on maximum key size: <a href="http://download.oracle.com/javase/7/docs/technotes/guides/security/SunProviders.html#importlimits">Import Limits on Cryptographic Algorithms</a>
@@ -30,6 +46,16 @@ public class DataCrypt implements IDataCrypt {
 	public IStreamCrypt getIStreamCrypt() {
 		return this.iStreamCrypt;
 	}
+	/**
+	 * @return Decryption of ranges of encrypted files, or <code>null</code> if algorithm doesn't support it
+	 */
+	public IRandomAccessCrypt getIRandomAccessCrypt() {
+		IRandomAccessCrypt iRandomAccessCrypt = null;
+		if (this.iStreamCrypt instanceof IRandomAccessCrypt) {
+			iRandomAccessCrypt = (IRandomAccessCrypt) this.iStreamCrypt;
+		}
+		return iRandomAccessCrypt;
+	}
 	private CipherAlgorithmName algorithmNameId;
 	
 	public DataCrypt (CipherAlgorithmName algorithmNameId) {
@@ -45,9 +71,37 @@ public class DataCrypt implements IDataCrypt {
 				this.iStreamCrypt = new DataCryptoAES();
 				break;
 		}
+		this.parallelFilesStreamCrypt = this.iStreamCrypt;
 	}
 	
 	
+	/**
+	 * How many threads are used: for files of directory tree, or for segments of one stream
+	 */
+	private int numberThreads = 1;
+	
+	/**
+	 * En/de-crypt of each file, when several files are en/de-crypted at the same time 
+	 * (each of them is processed by one thread)
+	 */
+	private IStreamCrypt parallelFilesStreamCrypt;
+	
+	/**
+	 * @param algorithmNameId Algorithm of en/de-crypt
+	 * @param numberThreads How many threads are used (values less than 1 are replaced by 1, 1 means processing in the current thread).
+	 * If there are several files, each of them is processed by one thread, and so many files are en/de-crypted at the same time.
+	 * Single file or stream (getIStreamCrypt()) in GCM mode is en/de-crypted by so many segments at the same time.
+	 * Thus number of busy threads is not over than numberThreads.
+	 */
+	public DataCrypt (CipherAlgorithmName algorithmNameId, int numberThreads) {
+		this(algorithmNameId);
+		this.numberThreads = Math.max(1, numberThreads);
+		if (this.algorithmNameId == CipherAlgorithmName.AES) {
+			// Large file is en/de-crypted by segments at the same time in GCM mode
+			this.iStreamCrypt = new DataCryptoAES(this.numberThreads);
+		}
+	}
+	
 	/**
 	 * If chosen directory, she will be en/de-crypted recursively 
 	 * (tree of directories will be same with original directory, but all files will be separately en/de-crypted)
@@ -57,19 +111,59 @@ public class DataCrypt implements IDataCrypt {
 	 * @param outputDirectory Place where will be putted result of operation
 	 * @param modeId Will it "ECB", "CBC" or something such as from available
 	 * @param paddingId Will it "PKCS5Padding" or something such as from available
-	 * @return <code>true</code> if en/de-crypt is successful, <code>false</code> otherwise
+	 * @return <code>true</code> if all files are en/de-crypted successful, <code>false</code> otherwise
+	 * (details are in result of cryptFiles())
 	 */
 	@Override
 	public boolean cryptFile(int cipherFlag, File inputFile, File outputDirectory, char[] password, 
 			CipherMode modeId, CipherPadding paddingId) {
+		return this.cryptFiles(cipherFlag, inputFile, outputDirectory, password, modeId, paddingId).isSuccessful();
+	}
+	
+	/**
+	 * The same as cryptFile(), but result contains number of processed files, and reason of error for each failed file.
+	 * <p/>Directories are created by current thread, and files are en/de-crypted by worker threads 
+	 * (if number of threads and number of files are over than 1, otherwise threads are used for segments of the single file).
+	 * Error in one file doesn't stop processing of other files.
+	 * @param cipherFlag Choose want you want - encrypt or decrypt information
+	 * @param inputFile File (or directory) for en/de-crypt
+	 * @param outputDirectory Place where will be putted result of operation
+	 * @param password Password should not be empty
+	 * @param modeId Mode of cipher
+	 * @param paddingId Padding of cipher
+	 * @return Result of en/de-crypt of all files
+	 */
+	@Override
+	public CryptFileResult cryptFiles(int cipherFlag, File inputFile, File outputDirectory, char[] password, 
+			CipherMode modeId, CipherPadding paddingId) {
 		Loggers.debug(this, TextMessage.CRYPT_FILE_START, new Object[]{cipherFlag, inputFile.getPath(), outputDirectory.getPath(), modeId.getCipherMode(), paddingId.getPadding()});
-		boolean isFileCryptedSuccessful = false;
+		CryptFileResult cryptFileResult = new CryptFileResult();
 		if ((cipherFlag == Cipher.ENCRYPT_MODE || cipherFlag == Cipher.DECRYPT_MODE) && (password != null) && (password.length > 0)) {
-			FileIO fileIO = new FileIO();
-			DirectoryUtils dirUtils = new DirectoryUtils();
-			if ((outputDirectory.exists() && outputDirectory.isDirectory()) || (outputDirectory.mkdirs())) {
+			// Key is derived once, and is used for all files
+			CipherKeyMaterial cipherKeyMaterial = this.getIStreamCrypt().getCipherKeyMaterial(password);
+			if (cipherKeyMaterial == null) {
+				cryptFileResult.addFailedFile(inputFile, "Impossible derive key from password");
+			} else if (createDirectory(outputDirectory) == true) {
+				DirectoryUtils dirUtils = new DirectoryUtils();
+				int numberThreads = this.numberThreads;
+				ExecutorService executorService = null;
+				IStreamCrypt fileStreamCrypt = this.getIStreamCrypt();
+				// Number of files in progress is limited, so results of large trees are not kept in memory
+				int maxNumberTasksInProgress = numberThreads * 2;
+				Deque<CryptFileTask> tasksInProgress = new ArrayDeque<CryptFileTask>();
 				try {
 					Set<File> setFiles = dirUtils.getSetFilesRecursively(inputFile);
+					int numberFiles = 0;
+					for (File file : setFiles) {
+						if (file.isDirectory() == false) {
+							numberFiles += 1;
+						}
+					}
+					if (	(numberThreads > 1) && (numberFiles > 1)	) {
+						// Threads are used for files, so each file is en/de-crypted by one thread (not by segments)
+						executorService = Executors.newFixedThreadPool(numberThreads);
+						fileStreamCrypt = this.parallelFilesStreamCrypt;
+					}
 					Iterator<File> filesIterator = setFiles.iterator();
 					while (filesIterator.hasNext()) {
 						File currentFile = filesIterator.next();
@@ -77,49 +171,210 @@ public class DataCrypt implements IDataCrypt {
 								dirUtils.getRelativeFilePathWithRoot(inputFile, currentFile);
 						File outFile = new File(outFilePath);
 						if (currentFile.isDirectory()) {
-							 if ((outFile.exists() && outFile.isDirectory()) || outFile.mkdirs()) {
-								 // All was good. Directory was created successful - that is all what we need
-								 isFileCryptedSuccessful = true;
-							 } else {
+							if (createDirectory(outFile) == true) {
+								cryptFileResult.addCreatedDirectory();
+							} else {
 								Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{outFilePath});
-							 }
+								cryptFileResult.addFailedFile(currentFile, "Impossible create directory: " + outFilePath);
+							}
 						} else {
-							if ((outFile.getParentFile().exists() || outFile.getParentFile().mkdirs()) && 
-									(outFile.exists() || outFile.createNewFile())) {
-								boolean isCryptProcessingSuccessful = false;
-								if (currentFile.length() > 0) {
-									InputStream inputStream = fileIO.getFileInputStream(currentFile);
-									OutputStream outputStream = fileIO.getFileOutputStream(outFile);
-									isCryptProcessingSuccessful = this.getIStreamCrypt().cryptStream(cipherFlag, inputStream, outputStream, password, modeId, paddingId);
-									outputStream.flush();
-									inputStream.close();
-									outputStream.close();
-								} else {
-									// If length of file equals 0 - just enough that file was already created, don't need crypt that
-									isCryptProcessingSuccessful = true;
-								}
-								// Check if stream processing was successful and files are different
-								if (isCryptProcessingSuccessful) {
-									isFileCryptedSuccessful = true;
-									Loggers.debug(this, TextMessage.CRYPT_DATA_SUCCESSFUL);
-								} else {
-									Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE);
-								}
+							CryptFileTask task = new CryptFileTask(fileStreamCrypt, cipherFlag, currentFile, outFile, cipherKeyMaterial, modeId, paddingId);
+							if (executorService != null) {
+								task.setResult(executorService.submit(task));
 							} else {
-								Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{outFile.getPath()});
+								FutureTask<Boolean> result = new FutureTask<Boolean>(task);
+								result.run();
+								task.setResult(result);
+							}
+							tasksInProgress.addLast(task);
+							while (	(tasksInProgress.isEmpty() == false) &&
+									((tasksInProgress.size() >= maxNumberTasksInProgress) || (tasksInProgress.peekFirst().getResult().isDone() == true))	) {
+								this.addCryptedFile(tasksInProgress.pollFirst(), cryptFileResult);
 							}
 						}
 					}
+					while (tasksInProgress.isEmpty() == false) {
+						this.addCryptedFile(tasksInProgress.pollFirst(), cryptFileResult);
+					}
 				} catch (Exception ex) {
 					Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE, ex);
+					cryptFileResult.addFailedFile(inputFile, ex.toString());
+				} finally {
+					if (executorService != null) {
+						executorService.shutdownNow();
+					}
 				}
 			} else {
 				Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{outputDirectory.getPath()});
+				cryptFileResult.addFailedFile(inputFile, "Impossible create directory: " + outputDirectory.getPath());
 			}
 		} else {
 			Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE);
+			cryptFileResult.addFailedFile(inputFile, "Unknown cipher flag or empty password");
 		}
-		Loggers.debug(this, TextMessage.CRYPT_FILE_END, new Object[]{isFileCryptedSuccessful});
-		return isFileCryptedSuccessful;
+		Loggers.debug(this, TextMessage.CRYPT_FILE_RESULT, new Object[]{cryptFileResult.getNumberCryptedFiles(), cryptFileResult.getNumberCreatedDirectories(), cryptFileResult.getFailedFiles().size()});
+		Loggers.debug(this, TextMessage.CRYPT_FILE_END, new Object[]{cryptFileResult.isSuccessful()});
+		return cryptFileResult;
+	}
+	
+	/**
+	 * Size of buffer of pipe between archive and en/de-crypt
+	 */
+	private static final int ARCHIVE_PIPE_BUFFER_BYTES = 1024 * 1024;
+	
+	/**
+	 * Archive for cryptArchive() (by default - zip)
+	 */
+	private IDataCompress archiveCompress = new CompressZip();
+	private IDataCompress getArchiveCompress() {
+		return this.archiveCompress;
+	}
+	
+	/**
+	 * @param archiveCompress Codec of archive for cryptArchive() (e.g. from DataCompress), 
+	 * <code>null</code> means default codec (zip). Decryption should use the same codec, as encryption.
+	 */
+	public void setArchiveCompress(IDataCompress archiveCompress) {
+		if (archiveCompress == null) {
+			archiveCompress = new CompressZip();
+		}
+		this.archiveCompress = archiveCompress;
+	}
+	
+	/**
+	 * En/de-crypt file or directory tree as one archive: tree is archived into stream (see setArchiveCompress()), and this stream is encrypted at once
+	 * into one output file (zip and encryption work at the same time in different threads, archive is not written anywhere).
+	 * For trees with many small files it is much smaller and faster than cryptFile(), which makes separate output file,
+	 * initialization of cipher and padding for each file.
+	 * <p/>Decryption restores the same tree, as cryptFile() does it: output directory will contain input file (or directory)
+	 * with all inner directories (also empty) and files.
+	 * @param cipherFlag Encrypt or decrypt
+	 * @param inputFile For encryption - file or directory, for decryption - encrypted archive
+	 * @param outputFile For encryption - file for encrypted archive, for decryption - directory for restored tree
+	 * @param password Password should not be empty
+	 * @param modeId Mode of cipher
+	 * @param paddingId Padding of cipher
+	 * @return <code>true</code> if all data were archived and en/de-crypted successful
+	 */
+	@Override
+	public boolean cryptArchive(int cipherFlag, final File inputFile, final File outputFile, char[] password, 
+			CipherMode modeId, CipherPadding paddingId) {
+		Loggers.debug(this, TextMessage.CRYPT_ARCHIVE_START, new Object[]{cipherFlag, inputFile.getPath(), outputFile.getPath(), modeId.getCipherMode(), paddingId.getPadding()});
+		boolean isCryptSuccessful = false;
+		if ((cipherFlag == Cipher.ENCRYPT_MODE || cipherFlag == Cipher.DECRYPT_MODE) && (password != null) && (password.length > 0)) {
+			CipherKeyMaterial cipherKeyMaterial = this.getIStreamCrypt().getCipherKeyMaterial(password);
+			FileIO fileIO = new FileIO();
+			try {
+				if (cipherKeyMaterial == null) {
+					Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE);
+				} else if (cipherFlag == Cipher.ENCRYPT_MODE) {
+					if (	(inputFile.exists() == true) && (createDirectory(outputFile.getAbsoluteFile().getParentFile()) == true)	) {
+						final PipedInputStream archiveInputStream = new PipedInputStream(ARCHIVE_PIPE_BUFFER_BYTES);
+						final PipedOutputStream archiveOutputStream = new PipedOutputStream(archiveInputStream);
+						FutureTask<Boolean> archiveResult = this.startArchiveThread("archive-writer", new Callable<Boolean>() {
+							@Override
+							public Boolean call() {
+								try {
+									return DataCrypt.this.getArchiveCompress().compress(inputFile, archiveOutputStream);
+								} finally {
+									// Encryption gets end of stream also after error (result of archive is checked)
+									IOUtils.closeQuietly(archiveOutputStream);
+								}
+							}
+						});
+						boolean isEncryptSuccessful = false;
+						try {
+							isEncryptSuccessful = this.getIStreamCrypt().cryptStream(cipherFlag, archiveInputStream, fileIO.getFileChannelOutputStream(outputFile), 
+									cipherKeyMaterial, modeId, paddingId);
+						} finally {
+							// After error of encryption archive writer gets error on the next write, and stops
+							IOUtils.closeQuietly(archiveInputStream);
+						}
+						isCryptSuccessful = (archiveResult.get() == true) && (isEncryptSuccessful == true);
+					} else {
+						Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{outputFile.getPath()});
+					}
+				} else {
+					if (	(inputFile.isFile() == true) && (createDirectory(outputFile) == true)	) {
+						final PipedInputStream archiveInputStream = new PipedInputStream(ARCHIVE_PIPE_BUFFER_BYTES);
+						OutputStream archiveOutputStream = new PipedOutputStream(archiveInputStream);
+						FutureTask<Boolean> archiveResult = this.startArchiveThread("archive-reader", new Callable<Boolean>() {
+							@Override
+							public Boolean call() throws IOException {
+								try {
+									// End of archive (e.g. central directory of zip) is not needed, but decryption waits until it is read
+									boolean isUncompressSuccessful = DataCrypt.this.getArchiveCompress().uncompress(new CloseShieldInputStream(archiveInputStream), outputFile);
+									if (isUncompressSuccessful == true) {
+										IOUtils.copy(archiveInputStream, new NullOutputStream());
+									}
+									return isUncompressSuccessful;
+								} finally {
+									IOUtils.closeQuietly(archiveInputStream);
+								}
+							}
+						});
+						boolean isDecryptSuccessful = this.getIStreamCrypt().cryptStream(cipherFlag, fileIO.getFileChannelInputStream(inputFile), archiveOutputStream, 
+								cipherKeyMaterial, modeId, paddingId);
+						// Output stream is closed by decryption, so archive reader gets end of stream
+						isCryptSuccessful = (archiveResult.get() == true) && (isDecryptSuccessful == true);
+					} else {
+						Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{outputFile.getPath()});
+					}
+				}
+			} catch (Exception ex) {
+				Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE, ex);
+			}
+		} else {
+			Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE);
+		}
+		Loggers.debug(this, TextMessage.CRYPT_ARCHIVE_END, new Object[]{isCryptSuccessful});
+		return isCryptSuccessful;
+	}
+	
+	/**
+	 * Start writing (or reading) of archive in its own thread, so it works at the same time with en/de-crypt in current thread
+	 * @param threadName Name of thread
+	 * @param archiveTask Writing (or reading) of archive
+	 * @return Result of archive task (after the end of thread)
+	 */
+	private FutureTask<Boolean> startArchiveThread(String threadName, Callable<Boolean> archiveTask) {
+		FutureTask<Boolean> archiveResult = new FutureTask<Boolean>(archiveTask);
+		Thread archiveThread = new Thread(archiveResult, threadName);
+		archiveThread.setDaemon(true);
+		archiveThread.start();
+		return archiveResult;
+	}
+	
+	/**
+	 * Wait for finished en/de-crypt of file, and add it into result
+	 * @param task En/de-crypt of file
+	 * @param cryptFileResult Result of en/de-crypt of all files
+	 * @throws InterruptedException
+	 */
+	private void addCryptedFile(CryptFileTask task, CryptFileResult cryptFileResult) throws InterruptedException {
+		String errorDescription = null;
+		try {
+			if (task.getResult().get() == true) {
+				cryptFileResult.addCryptedFile();
+			} else {
+				errorDescription = TextMessage.CRYPT_DATA_IMPOSSIBLE.getDescription();
+			}
+		} catch (ExecutionException ex) {
+			errorDescription = ex.getCause().toString();
+		}
+		if (errorDescription != null) {
+			Loggers.fatal(this, TextMessage.CRYPT_FILE_FAILED, new Object[]{task.getInputFile().getPath(), errorDescription});
+			cryptFileResult.addFailedFile(task.getInputFile(), errorDescription);
+		}
+	}
+	
+	/**
+	 * Create directory, if it doesn't exist. Directory could be created at the same time by other thread
+	 * (as parent of file), it is not error.
+	 * @param directory Directory
+	 * @return <code>true</code> if directory exists
+	 */
+	static boolean createDirectory(File directory) {
+		return (directory.isDirectory() == true) || (directory.mkdirs() == true) || (directory.isDirectory() == true);
 	}
 }
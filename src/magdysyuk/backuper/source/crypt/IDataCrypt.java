@@ -11,5 +11,16 @@ public interface IDataCrypt {
 	public boolean cryptFile(int cipherFlag, File inputFile, 
 			File outputDirectory, char[] password, 
 			CipherMode modeId, CipherPadding paddingId);
+	
+	public CryptFileResult cryptFiles(int cipherFlag, File inputFile, 
+			File outputDirectory, char[] password, 
+			CipherMode modeId, CipherPadding paddingId);
+	
+	/**
+	 * En/de-crypt directory tree as one archive (see DataCrypt.cryptArchive())
+	 */
+	public boolean cryptArchive(int cipherFlag, File inputFile, 
+			File outputFile, char[] password, 
+			CipherMode modeId, CipherPadding paddingId);
 
 }
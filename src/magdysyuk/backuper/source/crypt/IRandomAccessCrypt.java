@@ -0,0 +1,21 @@
+package magdysyuk.backuper.source.crypt;
+
+import java.io.File;
+
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherKeyMaterial;
+
+
+/**
+ * Decryption of any range of encrypted file without decryption of all data before it
+ * (e.g. restore of part of file, or checking of some samples of large backup)
+ */
+public interface IRandomAccessCrypt {
+	/**
+	 * @param encryptedFile Encrypted file (it should be encrypted in mode, which supports ranges - GCM)
+	 * @param plainOffset Position of range in original data
+	 * @param numberBytes Size of range
+	 * @param cipherKeyMaterial Key material (see IStreamCrypt.getCipherKeyMaterial())
+	 * @return Decrypted range, or <code>null</code> if it could not be decrypted
+	 */
+	public byte[] decryptRange(File encryptedFile, long plainOffset, int numberBytes, CipherKeyMaterial cipherKeyMaterial);
+}
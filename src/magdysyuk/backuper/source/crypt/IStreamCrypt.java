@@ -3,6 +3,7 @@ package magdysyuk.backuper.source.crypt;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherKeyMaterial;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherPadding;
 
@@ -11,4 +12,19 @@ public interface IStreamCrypt {
 	public boolean cryptStream(int cipherFlag, InputStream inputStream, 
 			OutputStream outputStream, char[] password, 
 			CipherMode modeId, CipherPadding paddingId);
+	
+	/**
+	 * The same as cryptStream() with password, but key is already derived from password
+	 * (by getCipherKeyMaterial()), so it could be used for many streams
+	 */
+	public boolean cryptStream(int cipherFlag, InputStream inputStream, 
+			OutputStream outputStream, CipherKeyMaterial cipherKeyMaterial, 
+			CipherMode modeId, CipherPadding paddingId);
+	
+	/**
+	 * Derive key from password once per operation (it is thread-safe, and could be shared by many threads)
+	 * @param password Password should not be empty
+	 * @return Key material, or <code>null</code> if key could not be derived
+	 */
+	public CipherKeyMaterial getCipherKeyMaterial(char[] password);
 }
@@ -0,0 +1,64 @@
+package magdysyuk.backuper.source.crypt.algorithms.commons;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+
+
+/**
+ * Secret key and IV, derived from password once per operation (derivation of key from password
+ * is much longer than en/de-crypt of small file). Object is shared by all en/de-crypt calls of operation,
+ * and is got by IStreamCrypt.getCipherKeyMaterial().
+ * <p/>Each thread keeps its own Cipher objects (one per transformation), they are reused by re-init for each stream.
+ */
+public class CipherKeyMaterial {
+
+	private CipherAlgorithmName algorithmNameId;
+	private SecretKey secretKey;
+	private IvParameterSpec ivParameterSpec;
+	private ThreadLocal<Map<String, Cipher>> threadCiphers = new ThreadLocal<Map<String, Cipher>>() {
+		@Override
+		protected Map<String, Cipher> initialValue() {
+			return new HashMap<String, Cipher>();
+		}
+	};
+
+	/**
+	 * @param algorithmNameId Algorithm of en/de-crypt
+	 * @param secretKey Secret key for this algorithm
+	 * @param ivParameterSpec Initialization vector (for modes, which use it)
+	 */
+	CipherKeyMaterial(CipherAlgorithmName algorithmNameId, SecretKey secretKey, IvParameterSpec ivParameterSpec) {
+		this.algorithmNameId = algorithmNameId;
+		this.secretKey = secretKey;
+		this.ivParameterSpec = ivParameterSpec;
+	}
+
+	public CipherAlgorithmName getAlgorithmNameId() {
+		return this.algorithmNameId;
+	}
+
+	SecretKey getSecretKey() {
+		return this.secretKey;
+	}
+
+	IvParameterSpec getIvParameterSpec() {
+		return this.ivParameterSpec;
+	}
+
+	/**
+	 * @param transformation Transformation string (e.g. "AES/CBC/PKCS5Padding")
+	 * @return Cipher of current thread for this transformation (not initialized, if it is new), or <code>null</code> if there is no such cipher yet
+	 */
+	Cipher getThreadCipher(String transformation) {
+		return this.threadCiphers.get().get(transformation);
+	}
+
+	void putThreadCipher(String transformation, Cipher cipher) {
+		this.threadCiphers.get().put(transformation, cipher);
+	}
+
+}
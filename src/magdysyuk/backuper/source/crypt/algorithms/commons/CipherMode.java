@@ -19,7 +19,16 @@ public enum CipherMode {
 	 * IV (initialization vector) has same length that
 	 * algorithm cipher block size.
 	 */
-	CBC ("CBC");
+	CBC ("CBC"),
+	
+	/**
+	 * GCM - Galois/Counter mode, blocks are encrypted independently by counter,
+	 * and each message has authentication tag (changed or truncated data are not decrypted).
+	 * Data are splitted into segments, each segment has its own nonce and tag,
+	 * so segments are en/de-crypted by many threads at the same time (see SegmentedCryptoTool).
+	 * Only for AES (padding is not used).
+	 */
+	GCM ("GCM");
 	private String mode;
 	private CipherMode(String mode) {
 		this.mode = mode;
@@ -27,4 +36,18 @@ public enum CipherMode {
 	public String getCipherMode() {
 		return this.mode;
 	}
+	
+	/**
+	 * @param mode Name of mode (e.g. "CBC")
+	 * @return Mode with this name, or <code>null</code> if there is no such mode
+	 */
+	public static CipherMode getCipherModeByName(String mode) {
+		CipherMode cipherMode = null;
+		for (CipherMode currentMode : CipherMode.values()) {
+			if (currentMode.getCipherMode().equalsIgnoreCase(mode) == true) {
+				cipherMode = currentMode;
+			}
+		}
+		return cipherMode;
+	}
 }
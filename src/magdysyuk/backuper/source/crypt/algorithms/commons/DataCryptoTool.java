@@ -1,9 +1,14 @@
 package magdysyuk.backuper.source.crypt.algorithms.commons;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -28,11 +33,139 @@ import magdysyuk.backuper.source.logger.Loggers;
 import magdysyuk.backuper.source.logger.TextMessage;
 
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
 
 
 public class DataCryptoTool {
 	
+	/**
+	 * Size of data, which are read from input channel and en/de-crypted at once
+	 */
+	private static final int CHANNEL_BUFFER_BYTES = 256 * 1024;
+	/**
+	 * Encrypted data of so many reads are written at once (by one gathering write)
+	 */
+	private static final int NUMBER_OUTPUT_BUFFERS = 4;
+	/**
+	 * Output of cipher could be larger than input: block, kept by cipher from previous update, and padding
+	 */
+	private static final int OUTPUT_BUFFER_RESERVE_BYTES = 64;
+	
+	/**
+	 * Direct buffers are allocated once for each thread (allocation of direct memory is slow), and are reused for all files.
+	 * The first buffer is for input, others - for output.
+	 */
+	private static ThreadLocal<ByteBuffer[]> threadChannelBuffers = new ThreadLocal<ByteBuffer[]>() {
+		@Override
+		protected ByteBuffer[] initialValue() {
+			ByteBuffer[] channelBuffers = new ByteBuffer[NUMBER_OUTPUT_BUFFERS + 1];
+			channelBuffers[0] = ByteBuffer.allocateDirect(CHANNEL_BUFFER_BYTES);
+			for (int i = 1; i < channelBuffers.length; i++) {
+				channelBuffers[i] = ByteBuffer.allocateDirect(CHANNEL_BUFFER_BYTES + OUTPUT_BUFFER_RESERVE_BYTES);
+			}
+			return channelBuffers;
+		}
+	};
+	
+	/**
+	 * En/de-crypt data through channels of streams (see crypt() with channels). Streams of files without buffer
+	 * (FileInputStream, FileOutputStream) are processed by their FileChannel, other streams - by channels around them.
+	 * Both streams are closed at the end (also if one of them is <code>null</code>, e.g. file could not be opened).
+	 */
 	public boolean crypt(InputStream inputStream, OutputStream outputStream, Cipher cipher) {
+		boolean isCryptSuccessful = false;
+		if (	(inputStream != null) && (outputStream != null)	) {
+			isCryptSuccessful = this.crypt(Channels.newChannel(inputStream), Channels.newChannel(outputStream), cipher);
+		} else {
+			Loggers.fatal(this, TextMessage.CRYPT_DATA_PROCESSING_IMPOSSIBLE);
+			IOUtils.closeQuietly(inputStream);
+			IOUtils.closeQuietly(outputStream);
+		}
+		return isCryptSuccessful;
+	}
+	
+	/**
+	 * En/de-crypt data by blocks: data are read into direct buffer, en/de-crypted by Cipher.update() into
+	 * other direct buffers, and encrypted data of some reads are written at once (gathering write, if channel supports it).
+	 * Output is not flushed after each block, as it was made by CipherOutputStream (see cryptByCipherStream()).
+	 * Both channels are closed at the end.
+	 * @param inputChannel Input data
+	 * @param outputChannel Output data
+	 * @param cipher Initialized cipher
+	 * @return <code>true</code> if all data were en/de-crypted and written
+	 */
+	public boolean crypt(ReadableByteChannel inputChannel, WritableByteChannel outputChannel, Cipher cipher) {
+		Loggers.debug(this, TextMessage.CRYPT_DATA_PROCESSING_START);
+		boolean isCryptSuccessful = false;
+		try {
+			ByteBuffer[] channelBuffers = threadChannelBuffers.get();
+			ByteBuffer inputBuffer = channelBuffers[0];
+			ByteBuffer[] outputBuffers = Arrays.copyOfRange(channelBuffers, 1, channelBuffers.length);
+			boolean isEndOfInput = false;
+			while (isEndOfInput == false) {
+				int numberFilledBuffers = 0;
+				while (	(numberFilledBuffers < outputBuffers.length) && (isEndOfInput == false)	) {
+					inputBuffer.clear();
+					isEndOfInput = this.readBuffer(inputChannel, inputBuffer);
+					inputBuffer.flip();
+					ByteBuffer outputBuffer = outputBuffers[numberFilledBuffers];
+					outputBuffer.clear();
+					cipher.update(inputBuffer, outputBuffer);
+					if (isEndOfInput == true) {
+						cipher.doFinal(inputBuffer, outputBuffer);
+					}
+					outputBuffer.flip();
+					numberFilledBuffers++;
+				}
+				this.writeBuffers(outputChannel, outputBuffers, numberFilledBuffers);
+			}
+			isCryptSuccessful = true;
+		} catch (Exception ex) {
+			Loggers.fatal(this, TextMessage.CRYPT_DATA_PROCESSING_IMPOSSIBLE, ex);
+		} finally {
+			IOUtils.closeQuietly(inputChannel);
+			IOUtils.closeQuietly(outputChannel);
+		}
+		Loggers.debug(this, TextMessage.CRYPT_DATA_PROCESSING_END, new Object[]{isCryptSuccessful});
+		return isCryptSuccessful;
+	}
+	
+	/**
+	 * Read data until buffer is full, or up to the end of channel
+	 * @return <code>true</code> if the end of channel is reached
+	 */
+	private boolean readBuffer(ReadableByteChannel inputChannel, ByteBuffer inputBuffer) throws IOException {
+		boolean isEndOfInput = false;
+		while (	(inputBuffer.hasRemaining() == true) && (isEndOfInput == false)	) {
+			isEndOfInput = (inputChannel.read(inputBuffer) == -1);
+		}
+		return isEndOfInput;
+	}
+	
+	private void writeBuffers(WritableByteChannel outputChannel, ByteBuffer[] outputBuffers, int numberBuffers) throws IOException {
+		if (outputChannel instanceof GatheringByteChannel) {
+			GatheringByteChannel gatheringChannel = (GatheringByteChannel) outputChannel;
+			long numberRemainingBytes = 0;
+			for (int i = 0; i < numberBuffers; i++) {
+				numberRemainingBytes += outputBuffers[i].remaining();
+			}
+			while (numberRemainingBytes > 0) {
+				numberRemainingBytes -= gatheringChannel.write(outputBuffers, 0, numberBuffers);
+			}
+		} else {
+			for (int i = 0; i < numberBuffers; i++) {
+				while (outputBuffers[i].hasRemaining() == true) {
+					outputChannel.write(outputBuffers[i]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * En/de-crypt through CipherOutputStream, output is flushed after each block of data.
+	 * It was used before crypt() by channels, and it is kept for comparison with it (see DataCryptoBenchmark).
+	 */
+	public boolean cryptByCipherStream(InputStream inputStream, OutputStream outputStream, Cipher cipher) {
 		Loggers.debug(this, TextMessage.CRYPT_DATA_PROCESSING_START);
 		boolean isCryptSuccessful = false;
 		FileIO fileIO = new FileIO();
@@ -66,19 +199,47 @@ public class DataCryptoTool {
 							CipherPadding paddingId) 
 							throws NoSuchAlgorithmException, NoSuchPaddingException, 
 									InvalidKeyException, InvalidAlgorithmParameterException {
-		String transformationString = this.getTransformationString(algorithmNameId, modeId, paddingId);
-		Cipher cipher = Cipher.getInstance(transformationString);
+		return this.getCipher(cipherMode, this.getCipherKeyMaterial(secretKey, algorithmNameId), modeId, paddingId);
+	}
+	
+	/**
+	 * Cipher, initialized by key material, which was derived beforehand.
+	 * Cipher object is created only once for each thread and transformation, next times it is only re-initialized.
+	 * @param cipherMode Encrypt or decrypt
+	 * @param cipherKeyMaterial Secret key and IV
+	 * @param modeId Mode of cipher
+	 * @param paddingId Padding of cipher
+	 * @return Initialized cipher of current thread
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws InvalidKeyException
+	 * @throws InvalidAlgorithmParameterException
+	 */
+	public Cipher getCipher(int cipherMode, CipherKeyMaterial cipherKeyMaterial, CipherMode modeId, 
+							CipherPadding paddingId) 
+							throws NoSuchAlgorithmException, NoSuchPaddingException, 
+									InvalidKeyException, InvalidAlgorithmParameterException {
+		String transformationString = this.getTransformationString(cipherKeyMaterial.getAlgorithmNameId(), modeId, paddingId);
+		Cipher cipher = cipherKeyMaterial.getThreadCipher(transformationString);
+		if (cipher == null) {
+			cipher = Cipher.getInstance(transformationString);
+			cipherKeyMaterial.putThreadCipher(transformationString, cipher);
+		}
+		SecretKey secretKey = cipherKeyMaterial.getSecretKey();
 		switch (modeId) {
 		case ECB:
 			cipher.init(cipherMode, secretKey);
 			Loggers.debug(this, TextMessage.CIPHER_INIT_ECB);
 			break;
 		case CBC:
-			byte[] secretKeyEncoded = secretKey.getEncoded();
-			IvParameterSpec ivParameterSpec = this.getIvParameterSpec(secretKeyEncoded, algorithmNameId);
+			IvParameterSpec ivParameterSpec = cipherKeyMaterial.getIvParameterSpec();
 			cipher.init(cipherMode, secretKey, ivParameterSpec);
-			Loggers.debug(this, TextMessage.CIPHER_INIT_CBC, new Object[]{secretKeyEncoded.length, this.convertBytesToHexString(secretKeyEncoded), this.convertBytesToHexString(ivParameterSpec.getIV())});
+			Loggers.debug(this, TextMessage.CIPHER_INIT_CBC, new Object[]{secretKey.getEncoded().length, this.convertBytesToHexString(secretKey.getEncoded()), this.convertBytesToHexString(ivParameterSpec.getIV())});
 			break;
+		case GCM:
+			// Each segment has its own nonce, so cipher for whole stream could not be initialized here
+			Loggers.fatal(this, TextMessage.CIPHER_INIT_GCM_BY_SEGMENTS);
+			throw new InvalidAlgorithmParameterException(TextMessage.CIPHER_INIT_GCM_BY_SEGMENTS.getDescription());
 		default:
 			cipher.init(cipherMode, secretKey);
 			Loggers.fatal(this, TextMessage.CIPHER_INIT_UNKNOWN);
@@ -88,6 +249,17 @@ public class DataCryptoTool {
 		return cipher;
 	}
 	
+	/**
+	 * Key material for all en/de-crypt calls of operation: secret key and IV, derived from it
+	 * @param secretKey Secret key (derived from password)
+	 * @param algorithmNameId Algorithm of en/de-crypt
+	 * @return Key material, which will be shared by all calls
+	 */
+	public CipherKeyMaterial getCipherKeyMaterial(SecretKey secretKey, CipherAlgorithmName algorithmNameId) {
+		IvParameterSpec ivParameterSpec = this.getIvParameterSpec(secretKey.getEncoded(), algorithmNameId);
+		return new CipherKeyMaterial(algorithmNameId, secretKey, ivParameterSpec);
+	}
+	
 	public byte[] getSecretPBEKeyEncoded(char[] password, CipherAlgorithmName algorithmNameId) {
 		Loggers.debug(this, TextMessage.PBE_KEY_SECRET_ENCODED_START_GETTING);
 		SecretKeyFactory skf = null;
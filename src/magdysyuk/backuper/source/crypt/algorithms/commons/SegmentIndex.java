@@ -0,0 +1,115 @@
+package magdysyuk.backuper.source.crypt.algorithms.commons;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Index of segments of data, encrypted by SegmentedCryptoTool: for each segment - its place in encrypted data,
+ * and place of its data in original (decrypted) data. It is written after the last segment,
+ * so any range of original data could be found, and only segments with this range are decrypted.
+ */
+public class SegmentIndex {
+
+	private List<Long> encryptedOffsets = new ArrayList<Long>();
+	private List<Long> plainOffsets = new ArrayList<Long>();
+	private List<Integer> plainLengths = new ArrayList<Integer>();
+
+	/**
+	 * @param encryptedOffset Position of segment in encrypted data
+	 * @param plainLength Size of original data of segment (they are placed after data of previous segment)
+	 */
+	void addSegment(long encryptedOffset, int plainLength) {
+		this.plainOffsets.add(this.getPlainLength());
+		this.encryptedOffsets.add(encryptedOffset);
+		this.plainLengths.add(plainLength);
+	}
+
+	public int getNumberSegments() {
+		return this.encryptedOffsets.size();
+	}
+
+	/**
+	 * @return Size of all original data
+	 */
+	public long getPlainLength() {
+		long plainLength = 0;
+		int numberSegments = this.getNumberSegments();
+		if (numberSegments > 0) {
+			plainLength = this.plainOffsets.get(numberSegments - 1) + this.plainLengths.get(numberSegments - 1);
+		}
+		return plainLength;
+	}
+
+	public long getEncryptedOffset(int segmentNumber) {
+		return this.encryptedOffsets.get(segmentNumber);
+	}
+
+	public long getPlainOffset(int segmentNumber) {
+		return this.plainOffsets.get(segmentNumber);
+	}
+
+	public int getPlainLength(int segmentNumber) {
+		return this.plainLengths.get(segmentNumber);
+	}
+
+	/**
+	 * @param plainOffset Position in original data
+	 * @return Number of segment, which contains this position (segments are found by binary search),
+	 * or -1 if position is out of data
+	 */
+	public int getSegmentNumber(long plainOffset) {
+		int segmentNumber = -1;
+		if (	(plainOffset >= 0) && (plainOffset < this.getPlainLength())	) {
+			int low = 0;
+			int high = this.getNumberSegments() - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				if (plainOffset < this.getPlainOffset(middle)) {
+					high = middle - 1;
+				} else if (plainOffset >= this.getPlainOffset(middle) + this.getPlainLength(middle)) {
+					low = middle + 1;
+				} else {
+					segmentNumber = middle;
+					break;
+				}
+			}
+		}
+		return segmentNumber;
+	}
+
+	void write(DataOutput output) throws IOException {
+		output.writeInt(this.getNumberSegments());
+		for (int i = 0; i < this.getNumberSegments(); i++) {
+			output.writeLong(this.getEncryptedOffset(i));
+			output.writeInt(this.getPlainLength(i));
+		}
+	}
+
+	/**
+	 * @param input Input, placed at the beginning of index
+	 * @param maxNumberSegments Max number of segments (index with more segments is damaged)
+	 * @return Read index
+	 * @throws IOException If index is damaged
+	 */
+	static SegmentIndex read(DataInput input, long maxNumberSegments) throws IOException {
+		SegmentIndex segmentIndex = new SegmentIndex();
+		int numberSegments = input.readInt();
+		if (	(numberSegments < 1) || (numberSegments > maxNumberSegments)	) {
+			throw new IOException("Invalid number of segments in index: " + numberSegments);
+		}
+		for (int i = 0; i < numberSegments; i++) {
+			long encryptedOffset = input.readLong();
+			int plainLength = input.readInt();
+			if (plainLength < 0) {
+				throw new IOException("Invalid size of segment in index: " + plainLength);
+			}
+			segmentIndex.addSegment(encryptedOffset, plainLength);
+		}
+		return segmentIndex;
+	}
+
+}
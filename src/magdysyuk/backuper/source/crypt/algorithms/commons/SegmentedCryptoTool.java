@@ -0,0 +1,501 @@
+package magdysyuk.backuper.source.crypt.algorithms.commons;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+
+import magdysyuk.backuper.source.logger.Loggers;
+import magdysyuk.backuper.source.logger.TextMessage;
+import magdysyuk.backuper.source.pipeline.IStageProcessor;
+import magdysyuk.backuper.source.pipeline.PipelineStage;
+
+import org.apache.commons.io.IOUtils;
+
+
+/**
+ * En/de-crypt of data by segments in GCM mode: data are splitted into segments of fixed size,
+ * each segment is encrypted with its own nonce and has its own authentication tag, so segments
+ * are en/de-crypted by many threads at the same time, and are written in order.
+ * <p/>Format of encrypted data:
+ * <ul>
+ * <li>header: magic bytes "SBSG", version of format (1 byte), size of segment (int), base nonce (12 random bytes);</li>
+ * <li>segments: size of encrypted segment (int), encrypted segment and its tag (16 bytes). All segments, except the last one,
+ * contain SEGMENT_BYTES of data; the last segment could be shorter (also empty, if there are no data).
+ * After the last segment - size 0;</li>
+ * <li>index of segments (see SegmentIndex): number of segments (int), and for each segment - its position
+ * in encrypted data (long) and size of its data (int);</li>
+ * <li>footer: position of index (long), magic bytes "SBSI".</li>
+ * </ul>
+ * Nonce of segment is base nonce, XORed with number of segment. Number of segment and flag of the last segment
+ * are authenticated (as additional data of GCM), so segments could not be reordered, and truncated data are not decrypted.
+ * Index is not authenticated: it is used only for finding of segments (segment from wrong place is not decrypted).
+ * <p/>Version 1 of format doesn't have sizes of segments, index and footer (segments are up to the end of data),
+ * it is still decrypted, but not by ranges.
+ * <p/>Base nonce is random for each stream, because the same key is used for all files of operation.
+ */
+public class SegmentedCryptoTool {
+
+	/**
+	 * Size of data in one segment
+	 */
+	public static final int SEGMENT_BYTES = 1024 * 1024;
+
+	private static final byte[] MAGIC_BYTES = new byte[]{'S', 'B', 'S', 'G'};
+	private static final byte[] INDEX_MAGIC_BYTES = new byte[]{'S', 'B', 'S', 'I'};
+	private static final int FORMAT_VERSION = 2;
+	private static final int FORMAT_VERSION_WITHOUT_INDEX = 1;
+	private static final int NONCE_BYTES = 12;
+	private static final int TAG_BYTES = 16;
+	private static final int HEADER_BYTES = MAGIC_BYTES.length + 1 + 4 + NONCE_BYTES;
+	private static final int FOOTER_BYTES = 8 + INDEX_MAGIC_BYTES.length;
+	/**
+	 * GCM doesn't pad blocks (encrypted segment has the same length as segment and its tag), so it is not in CipherPadding
+	 */
+	private static final String GCM_PADDING = "NoPadding";
+	/**
+	 * Segments larger than this size are not accepted from header of encrypted data (damaged data)
+	 */
+	private static final int MAX_SEGMENT_BYTES = 64 * 1024 * 1024;
+
+	private static SecureRandom secureRandom = new SecureRandom();
+
+	private int numberThreads = 1;
+	private int segmentBytes = SEGMENT_BYTES;
+
+	/**
+	 * @param numberThreads How many segments are en/de-crypted at the same time
+	 * (values less than 1 are replaced by 1). Threads are started only for data with more than one segment.
+	 */
+	public SegmentedCryptoTool(int numberThreads) {
+		this(numberThreads, SEGMENT_BYTES);
+	}
+
+	/**
+	 * @param numberThreads How many segments are en/de-crypted at the same time
+	 * @param segmentBytes Size of data in one segment (for encryption; for decryption it is taken from header)
+	 */
+	public SegmentedCryptoTool(int numberThreads, int segmentBytes) {
+		this.numberThreads = Math.max(numberThreads, 1);
+		this.segmentBytes = Math.max(Math.min(segmentBytes, MAX_SEGMENT_BYTES), 1);
+	}
+
+	/**
+	 * En/de-crypt data from input stream into output stream. Both streams are closed at the end.
+	 * @param cipherMode Encrypt or decrypt
+	 * @param inputStream Input data
+	 * @param outputStream Output data
+	 * @param cipherKeyMaterial Secret key (IV of key material is not used, nonces are in header of encrypted data)
+	 * @return <code>true</code> if all segments were en/de-crypted successful
+	 */
+	public boolean crypt(int cipherMode, InputStream inputStream, OutputStream outputStream, CipherKeyMaterial cipherKeyMaterial) {
+		Loggers.debug(this, TextMessage.CRYPT_DATA_PROCESSING_START);
+		boolean isCryptSuccessful = false;
+		try {
+			if (cipherMode == Cipher.ENCRYPT_MODE) {
+				isCryptSuccessful = this.encrypt(inputStream, outputStream, cipherKeyMaterial);
+			} else if (cipherMode == Cipher.DECRYPT_MODE) {
+				isCryptSuccessful = this.decrypt(inputStream, outputStream, cipherKeyMaterial);
+			}
+			outputStream.flush();
+		} catch (ExecutionException ex) {
+			Loggers.fatal(this, TextMessage.CRYPT_DATA_PROCESSING_IMPOSSIBLE, ex.getCause());
+		} catch (InterruptedException ex) {
+			Loggers.fatal(this, TextMessage.CRYPT_DATA_PROCESSING_IMPOSSIBLE, ex);
+			Thread.currentThread().interrupt();
+		} catch (Exception ex) {
+			Loggers.fatal(this, TextMessage.CRYPT_DATA_PROCESSING_IMPOSSIBLE, ex);
+		} finally {
+			IOUtils.closeQuietly(inputStream);
+			IOUtils.closeQuietly(outputStream);
+		}
+		Loggers.debug(this, TextMessage.CRYPT_DATA_PROCESSING_END, new Object[]{isCryptSuccessful});
+		return isCryptSuccessful;
+	}
+
+	/**
+	 * Decrypt range of original data from encrypted file: only segments with this range are read (by index of segments)
+	 * and decrypted, so range of large file is decrypted without decryption of all data before it.
+	 * @param encryptedFile File, encrypted by crypt()
+	 * @param plainOffset Position of range in original data
+	 * @param numberBytes Size of range (range after the end of data is shortened)
+	 * @param cipherKeyMaterial Secret key
+	 * @return Decrypted range, or <code>null</code> if range is out of data, or it could not be decrypted
+	 * (file is damaged, other password, or file doesn't have index of segments)
+	 */
+	public byte[] decryptRange(File encryptedFile, long plainOffset, int numberBytes, CipherKeyMaterial cipherKeyMaterial) {
+		byte[] decryptedRange = null;
+		RandomAccessFile randomAccessFile = null;
+		try {
+			randomAccessFile = new RandomAccessFile(encryptedFile, "r");
+			byte[] baseNonce = this.readHeader(randomAccessFile, FORMAT_VERSION);
+			SegmentIndex segmentIndex = this.readSegmentIndex(randomAccessFile);
+			int segmentNumber = segmentIndex.getSegmentNumber(plainOffset);
+			if (	(baseNonce != null) && (numberBytes >= 0) &&
+					((segmentNumber >= 0) || ((plainOffset == segmentIndex.getPlainLength()) && (numberBytes == 0)))	) {
+				numberBytes = (int) Math.min(numberBytes, segmentIndex.getPlainLength() - plainOffset);
+				ByteArrayOutputStream rangeOutputStream = new ByteArrayOutputStream(numberBytes);
+				while (rangeOutputStream.size() < numberBytes) {
+					randomAccessFile.seek(segmentIndex.getEncryptedOffset(segmentNumber));
+					Segment segment = new Segment(segmentNumber, this.readEncryptedSegment(randomAccessFile));
+					segment.setLast(segmentNumber == segmentIndex.getNumberSegments() - 1);
+					byte[] decryptedSegment = this.cryptSegment(Cipher.DECRYPT_MODE, segment, cipherKeyMaterial, baseNonce);
+					if (decryptedSegment.length != segmentIndex.getPlainLength(segmentNumber)) {
+						throw new IOException("Size of segment " + segmentNumber + " is not equal to index");
+					}
+					int rangeStart = (int) (Math.max(plainOffset, segmentIndex.getPlainOffset(segmentNumber)) - segmentIndex.getPlainOffset(segmentNumber));
+					int rangeLength = Math.min(decryptedSegment.length - rangeStart, numberBytes - rangeOutputStream.size());
+					rangeOutputStream.write(decryptedSegment, rangeStart, rangeLength);
+					segmentNumber++;
+				}
+				decryptedRange = rangeOutputStream.toByteArray();
+			} else {
+				Loggers.fatal(this, TextMessage.CRYPT_SEGMENTS_RANGE_INVALID, new Object[]{encryptedFile.getPath(), plainOffset, numberBytes, segmentIndex.getPlainLength()});
+			}
+		} catch (Exception ex) {
+			Loggers.fatal(this, TextMessage.CRYPT_DATA_PROCESSING_IMPOSSIBLE, ex);
+		} finally {
+			IOUtils.closeQuietly(randomAccessFile);
+		}
+		return decryptedRange;
+	}
+
+	/**
+	 * @param encryptedFile File, encrypted by crypt()
+	 * @return Index of segments of file (e.g. for choosing of segments for checking), or <code>null</code>
+	 * if file doesn't have index
+	 */
+	public SegmentIndex getSegmentIndex(File encryptedFile) {
+		SegmentIndex segmentIndex = null;
+		RandomAccessFile randomAccessFile = null;
+		try {
+			randomAccessFile = new RandomAccessFile(encryptedFile, "r");
+			if (this.readHeader(randomAccessFile, FORMAT_VERSION) != null) {
+				segmentIndex = this.readSegmentIndex(randomAccessFile);
+			}
+		} catch (IOException ex) {
+			Loggers.fatal(this, TextMessage.CRYPT_DATA_PROCESSING_IMPOSSIBLE, ex);
+		} finally {
+			IOUtils.closeQuietly(randomAccessFile);
+		}
+		return segmentIndex;
+	}
+
+	private boolean encrypt(InputStream inputStream, OutputStream outputStream, CipherKeyMaterial cipherKeyMaterial)
+			throws IOException, InterruptedException, ExecutionException, GeneralSecurityException {
+		byte[] baseNonce = new byte[NONCE_BYTES];
+		secureRandom.nextBytes(baseNonce);
+		// Sizes of segments and index are written by small parts, so output is buffered (segments are written directly)
+		DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(outputStream));
+		dataOutputStream.write(MAGIC_BYTES);
+		dataOutputStream.writeByte(FORMAT_VERSION);
+		dataOutputStream.writeInt(this.segmentBytes);
+		dataOutputStream.write(baseNonce);
+		SegmentOutput segmentOutput = new SegmentOutput(dataOutputStream, new SegmentIndex(), HEADER_BYTES);
+		boolean isEncryptSuccessful = this.cryptSegments(Cipher.ENCRYPT_MODE, inputStream, FORMAT_VERSION_WITHOUT_INDEX, this.segmentBytes, segmentOutput, cipherKeyMaterial, baseNonce);
+		segmentOutput.finish();
+		return isEncryptSuccessful;
+	}
+
+	private boolean decrypt(InputStream inputStream, OutputStream outputStream, CipherKeyMaterial cipherKeyMaterial)
+			throws IOException, InterruptedException, ExecutionException, GeneralSecurityException {
+		boolean isDecryptSuccessful = false;
+		// Sizes of segments are read by small parts
+		InputStream bufferedInputStream = new BufferedInputStream(inputStream);
+		DataInputStream headerInputStream = new DataInputStream(bufferedInputStream);
+		byte[] magicBytes = new byte[MAGIC_BYTES.length];
+		headerInputStream.readFully(magicBytes);
+		int formatVersion = headerInputStream.readUnsignedByte();
+		int segmentBytes = headerInputStream.readInt();
+		byte[] baseNonce = new byte[NONCE_BYTES];
+		headerInputStream.readFully(baseNonce);
+		if (	(Arrays.equals(magicBytes, MAGIC_BYTES) == false) ||
+				((formatVersion != FORMAT_VERSION) && (formatVersion != FORMAT_VERSION_WITHOUT_INDEX)) ||
+				(segmentBytes < 1) || (segmentBytes > MAX_SEGMENT_BYTES)	) {
+			Loggers.fatal(this, TextMessage.CRYPT_SEGMENTS_HEADER_INVALID, new Object[]{formatVersion, segmentBytes});
+		} else {
+			// Index after segments is not needed for decryption of all data
+			isDecryptSuccessful = this.cryptSegments(Cipher.DECRYPT_MODE, bufferedInputStream, formatVersion, segmentBytes + TAG_BYTES,
+					new SegmentOutput(new DataOutputStream(outputStream), null, 0), cipherKeyMaterial, baseNonce);
+		}
+		return isDecryptSuccessful;
+	}
+
+	/**
+	 * En/de-crypt all segments and write them in order. When data have only one segment, it is processed
+	 * in current thread, otherwise segments are processed by stage of worker threads, and current thread
+	 * reads next segments and writes results.
+	 * <p/>Segment is the last one, when there are no data after it, so the next segment is always read before.
+	 * @param cipherMode Encrypt or decrypt
+	 * @param inputStream Input stream with segments
+	 * @param inputFormatVersion Format of segments in input stream (see readNextSegment())
+	 * @param inputSegmentBytes Size of full segment in input stream
+	 * @param segmentOutput Output of en/de-crypted segments
+	 * @param cipherKeyMaterial Secret key
+	 * @param baseNonce Base nonce of stream
+	 * @return <code>true</code> if all segments were written
+	 */
+	private boolean cryptSegments(final int cipherMode, InputStream inputStream, int inputFormatVersion, int inputSegmentBytes,
+			SegmentOutput segmentOutput, final CipherKeyMaterial cipherKeyMaterial, final byte[] baseNonce)
+			throws IOException, InterruptedException, ExecutionException, GeneralSecurityException {
+		Segment currentSegment = new Segment(0, this.readNextSegment(inputStream, inputFormatVersion, inputSegmentBytes, true));
+		Segment nextSegment = this.getNextSegment(currentSegment, inputStream, inputFormatVersion, inputSegmentBytes);
+		if (nextSegment == null) {
+			currentSegment.setLast(true);
+			segmentOutput.write(this.cryptSegment(cipherMode, currentSegment, cipherKeyMaterial, baseNonce));
+		} else {
+			int queueCapacity = this.numberThreads * 2;
+			PipelineStage<Segment, byte[]> cryptStage = new PipelineStage<Segment, byte[]>("crypt-segment", this.numberThreads, queueCapacity,
+					new IStageProcessor<Segment, byte[]>() {
+						@Override
+						public byte[] process(Segment segment) throws GeneralSecurityException {
+							return SegmentedCryptoTool.this.cryptSegment(cipherMode, segment, cipherKeyMaterial, baseNonce);
+						}
+					});
+			try {
+				int numberSegmentsInStage = 0;
+				while (currentSegment != null) {
+					currentSegment.setLast(nextSegment == null);
+					// Results are written, when stage is full, so reading of segments waits for writing
+					if (numberSegmentsInStage == queueCapacity) {
+						segmentOutput.write(cryptStage.take());
+						numberSegmentsInStage--;
+					}
+					cryptStage.put(currentSegment);
+					numberSegmentsInStage++;
+					currentSegment = nextSegment;
+					nextSegment = this.getNextSegment(currentSegment, inputStream, inputFormatVersion, inputSegmentBytes);
+				}
+				while (numberSegmentsInStage > 0) {
+					segmentOutput.write(cryptStage.take());
+					numberSegmentsInStage--;
+				}
+			} finally {
+				cryptStage.stop();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Segment after current segment, or <code>null</code> if current segment is the last one (or it is <code>null</code>)
+	 */
+	private Segment getNextSegment(Segment currentSegment, InputStream inputStream, int inputFormatVersion, int inputSegmentBytes) throws IOException {
+		Segment nextSegment = null;
+		if (currentSegment != null) {
+			byte[] nextSegmentData = this.readNextSegment(inputStream, inputFormatVersion, inputSegmentBytes, false);
+			if (nextSegmentData != null) {
+				nextSegment = new Segment(currentSegment.getIndex() + 1, nextSegmentData);
+			}
+		}
+		return nextSegment;
+	}
+
+	/**
+	 * @param inputStream Input stream
+	 * @param inputFormatVersion FORMAT_VERSION - each segment has its size (and size 0 after the last segment),
+	 * FORMAT_VERSION_WITHOUT_INDEX - all segments are full (except the last one) up to the end of stream
+	 * (original data are read in this way too)
+	 * @param inputSegmentBytes Size of full segment
+	 * @param isFirstSegment The first segment exists always (it could be empty)
+	 * @return Data of segment, or <code>null</code> if there are no more segments
+	 * @throws IOException
+	 */
+	private byte[] readNextSegment(InputStream inputStream, int inputFormatVersion, int inputSegmentBytes, boolean isFirstSegment) throws IOException {
+		byte[] segment = null;
+		if (inputFormatVersion == FORMAT_VERSION) {
+			DataInputStream dataInputStream = new DataInputStream(inputStream);
+			int segmentLength = dataInputStream.readInt();
+			if (	(segmentLength < 0) || (segmentLength > inputSegmentBytes)	) {
+				throw new IOException("Invalid size of encrypted segment: " + segmentLength);
+			} else if (segmentLength > 0) {
+				segment = new byte[segmentLength];
+				dataInputStream.readFully(segment);
+			}
+		} else {
+			segment = new byte[inputSegmentBytes];
+			int numberReadBytes = IOUtils.read(inputStream, segment);
+			if (	(numberReadBytes == 0) && (isFirstSegment == false)	) {
+				segment = null;
+			} else if (numberReadBytes < inputSegmentBytes) {
+				segment = Arrays.copyOf(segment, numberReadBytes);
+			}
+		}
+		return segment;
+	}
+
+	/**
+	 * @param cipherMode Encrypt or decrypt
+	 * @param segment Segment of input data
+	 * @param cipherKeyMaterial Secret key
+	 * @param baseNonce Base nonce of stream
+	 * @return En/de-crypted segment
+	 * @throws GeneralSecurityException If segment is damaged (or password is wrong), tag of segment is not equal
+	 */
+	private byte[] cryptSegment(int cipherMode, Segment segment, CipherKeyMaterial cipherKeyMaterial, byte[] baseNonce) throws GeneralSecurityException {
+		String transformation = cipherKeyMaterial.getAlgorithmNameId().getAlgorithmName() + "/" + CipherMode.GCM.getCipherMode() + "/" + GCM_PADDING;
+		Cipher cipher = cipherKeyMaterial.getThreadCipher(transformation);
+		if (cipher == null) {
+			cipher = Cipher.getInstance(transformation);
+			cipherKeyMaterial.putThreadCipher(transformation, cipher);
+		}
+		byte[] nonce = Arrays.copyOf(baseNonce, NONCE_BYTES);
+		long index = segment.getIndex();
+		for (int i = 0; i < 8; i++) {
+			nonce[NONCE_BYTES - 1 - i] ^= (byte) (index >>> (8 * i));
+		}
+		cipher.init(cipherMode, cipherKeyMaterial.getSecretKey(), new GCMParameterSpec(TAG_BYTES * 8, nonce));
+		ByteBuffer additionalData = ByteBuffer.allocate(9);
+		additionalData.putLong(index);
+		additionalData.put((byte) (segment.isLast() == true ? 1 : 0));
+		cipher.updateAAD(additionalData.array());
+		return cipher.doFinal(segment.getData());
+	}
+
+	/**
+	 * @param randomAccessFile Encrypted file (it is read from the beginning)
+	 * @param expectedFormatVersion Version of format, which is required
+	 * @return Base nonce of file, or <code>null</code> if header is invalid
+	 * @throws IOException
+	 */
+	private byte[] readHeader(RandomAccessFile randomAccessFile, int expectedFormatVersion) throws IOException {
+		byte[] baseNonce = null;
+		randomAccessFile.seek(0);
+		byte[] magicBytes = new byte[MAGIC_BYTES.length];
+		randomAccessFile.readFully(magicBytes);
+		int formatVersion = randomAccessFile.readUnsignedByte();
+		int segmentBytes = randomAccessFile.readInt();
+		if (	(Arrays.equals(magicBytes, MAGIC_BYTES) == true) && (formatVersion == expectedFormatVersion)	) {
+			baseNonce = new byte[NONCE_BYTES];
+			randomAccessFile.readFully(baseNonce);
+		} else {
+			Loggers.fatal(this, TextMessage.CRYPT_SEGMENTS_HEADER_INVALID, new Object[]{formatVersion, segmentBytes});
+		}
+		return baseNonce;
+	}
+
+	/**
+	 * @param randomAccessFile Encrypted file with index of segments (position is changed)
+	 * @return Index of segments
+	 * @throws IOException If index is damaged
+	 */
+	private SegmentIndex readSegmentIndex(RandomAccessFile randomAccessFile) throws IOException {
+		long fileLength = randomAccessFile.length();
+		randomAccessFile.seek(fileLength - FOOTER_BYTES);
+		long indexOffset = randomAccessFile.readLong();
+		byte[] magicBytes = new byte[INDEX_MAGIC_BYTES.length];
+		randomAccessFile.readFully(magicBytes);
+		if (	(Arrays.equals(magicBytes, INDEX_MAGIC_BYTES) == false) || (indexOffset < HEADER_BYTES) || (indexOffset > fileLength - FOOTER_BYTES)	) {
+			throw new IOException("Invalid footer of index of segments");
+		}
+		randomAccessFile.seek(indexOffset);
+		// Each segment has at least its size and tag
+		return SegmentIndex.read(randomAccessFile, (indexOffset - HEADER_BYTES) / (4 + TAG_BYTES));
+	}
+
+	/**
+	 * @param randomAccessFile Encrypted file, placed at the beginning of segment
+	 * @return Encrypted segment with its tag
+	 * @throws IOException
+	 */
+	private byte[] readEncryptedSegment(RandomAccessFile randomAccessFile) throws IOException {
+		int segmentLength = randomAccessFile.readInt();
+		if (	(segmentLength < TAG_BYTES) || (segmentLength > MAX_SEGMENT_BYTES + TAG_BYTES)	) {
+			throw new IOException("Invalid size of encrypted segment: " + segmentLength);
+		}
+		byte[] segment = new byte[segmentLength];
+		randomAccessFile.readFully(segment);
+		return segment;
+	}
+
+
+	/**
+	 * Data of segment with its number
+	 */
+	private static class Segment {
+		private long index;
+		private byte[] data;
+		private boolean isLast = false;
+
+		Segment(long index, byte[] data) {
+			this.index = index;
+			this.data = data;
+		}
+
+		long getIndex() {
+			return this.index;
+		}
+
+		byte[] getData() {
+			return this.data;
+		}
+
+		boolean isLast() {
+			return this.isLast;
+		}
+
+		void setLast(boolean isLast) {
+			this.isLast = isLast;
+		}
+	}
+
+	/**
+	 * Output of segments in order: decrypted segments are written as they are, encrypted segments - with their sizes,
+	 * and they are added into index of segments
+	 */
+	private static class SegmentOutput {
+		private DataOutputStream outputStream;
+		private SegmentIndex segmentIndex;
+		private long position;
+
+		/**
+		 * @param outputStream Output stream
+		 * @param segmentIndex Index of written segments, or <code>null</code> for decrypted segments
+		 * @param position Position of output stream (number of already written bytes)
+		 */
+		SegmentOutput(DataOutputStream outputStream, SegmentIndex segmentIndex, long position) {
+			this.outputStream = outputStream;
+			this.segmentIndex = segmentIndex;
+			this.position = position;
+		}
+
+		void write(byte[] segment) throws IOException {
+			if (this.segmentIndex != null) {
+				this.segmentIndex.addSegment(this.position, segment.length - TAG_BYTES);
+				this.outputStream.writeInt(segment.length);
+				this.position += 4;
+			}
+			this.outputStream.write(segment);
+			this.position += segment.length;
+		}
+
+		/**
+		 * Write the end of segments, index and footer (only for encrypted segments)
+		 */
+		void finish() throws IOException {
+			if (this.segmentIndex != null) {
+				this.outputStream.writeInt(0);
+				long indexOffset = this.position + 4;
+				this.segmentIndex.write(this.outputStream);
+				this.outputStream.writeLong(indexOffset);
+				this.outputStream.write(INDEX_MAGIC_BYTES);
+			}
+			this.outputStream.flush();
+		}
+	}
+
+}
@@ -1,5 +1,6 @@
 package magdysyuk.backuper.source.crypt.algorithms.implementation;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 
@@ -7,30 +8,60 @@ import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
+import magdysyuk.backuper.source.crypt.IRandomAccessCrypt;
 import magdysyuk.backuper.source.crypt.IStreamCrypt;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherAlgorithmName;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherKeyMaterial;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherPadding;
 import magdysyuk.backuper.source.crypt.algorithms.commons.DataCryptoTool;
+import magdysyuk.backuper.source.crypt.algorithms.commons.SegmentedCryptoTool;
 import magdysyuk.backuper.source.logger.Loggers;
 import magdysyuk.backuper.source.logger.TextMessage;
 
 
-public class DataCryptoAES implements IStreamCrypt {
+public class DataCryptoAES implements IStreamCrypt, IRandomAccessCrypt {
 
 	private CipherAlgorithmName algorithmNameId = CipherAlgorithmName.AES;
 	
+	/**
+	 * How many segments of one stream are en/de-crypted at the same time in GCM mode
+	 */
+	private int numberSegmentThreads = 1;
+	
+	public DataCryptoAES() {
+	}
+	
+	/**
+	 * @param numberSegmentThreads How many segments of one stream are en/de-crypted at the same time in GCM mode
+	 * (CBC mode is always processed by one thread)
+	 */
+	public DataCryptoAES(int numberSegmentThreads) {
+		this.numberSegmentThreads = Math.max(1, numberSegmentThreads);
+	}
+	
 	@Override
 	public boolean cryptStream(int cipherMode, InputStream inputStream, OutputStream outputStream, char[] password,
 				CipherMode modeId, CipherPadding paddingId) {
 		Loggers.debug(this, TextMessage.CRYPT_DATA_START, new Object[]{cipherMode});
 		boolean isCryptSuccessful = false;
-		DataCryptoTool dct = new DataCryptoTool();
 		try {
-			SecretKeySpec secretKeySpec = this.getSecretKeySpec(password, this.algorithmNameId);
-			SecretKey secretKey = new SecretKeySpec(secretKeySpec.getEncoded(), "AES");
-			Cipher cipher = dct.getCipher(cipherMode, secretKey, this.algorithmNameId, modeId, paddingId);
-			isCryptSuccessful = dct.crypt(inputStream, outputStream, cipher);
+			CipherKeyMaterial cipherKeyMaterial = this.getCipherKeyMaterial(password);
+			isCryptSuccessful = this.crypt(cipherMode, inputStream, outputStream, cipherKeyMaterial, modeId, paddingId);
+		} catch (Exception encryptEx) {
+			Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE, encryptEx);
+		}
+		Loggers.debug(this, TextMessage.CRYPT_DATA_END, new Object[]{isCryptSuccessful});
+		return isCryptSuccessful;
+	}
+	
+	@Override
+	public boolean cryptStream(int cipherMode, InputStream inputStream, OutputStream outputStream, CipherKeyMaterial cipherKeyMaterial,
+				CipherMode modeId, CipherPadding paddingId) {
+		Loggers.debug(this, TextMessage.CRYPT_DATA_START, new Object[]{cipherMode});
+		boolean isCryptSuccessful = false;
+		try {
+			isCryptSuccessful = this.crypt(cipherMode, inputStream, outputStream, cipherKeyMaterial, modeId, paddingId);
 		} catch (Exception encryptEx) {
 			Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE, encryptEx);
 		}
@@ -38,6 +69,41 @@ public class DataCryptoAES implements IStreamCrypt {
 		return isCryptSuccessful;
 	}
 	
+	/**
+	 * Only files, encrypted in GCM mode, are decrypted by ranges (see SegmentedCryptoTool)
+	 */
+	@Override
+	public byte[] decryptRange(File encryptedFile, long plainOffset, int numberBytes, CipherKeyMaterial cipherKeyMaterial) {
+		return new SegmentedCryptoTool(this.numberSegmentThreads).decryptRange(encryptedFile, plainOffset, numberBytes, cipherKeyMaterial);
+	}
+	
+	@Override
+	public CipherKeyMaterial getCipherKeyMaterial(char[] password) {
+		CipherKeyMaterial cipherKeyMaterial = null;
+		SecretKeySpec secretKeySpec = this.getSecretKeySpec(password, this.algorithmNameId);
+		if (secretKeySpec != null) {
+			SecretKey secretKey = new SecretKeySpec(secretKeySpec.getEncoded(), "AES");
+			cipherKeyMaterial = new DataCryptoTool().getCipherKeyMaterial(secretKey, this.algorithmNameId);
+		}
+		return cipherKeyMaterial;
+	}
+	
+	
+	/**
+	 * In GCM mode data are en/de-crypted by segments (padding is not used), other modes - as one stream
+	 */
+	private boolean crypt(int cipherMode, InputStream inputStream, OutputStream outputStream, CipherKeyMaterial cipherKeyMaterial,
+				CipherMode modeId, CipherPadding paddingId) throws Exception {
+		boolean isCryptSuccessful = false;
+		if (modeId == CipherMode.GCM) {
+			isCryptSuccessful = new SegmentedCryptoTool(this.numberSegmentThreads).crypt(cipherMode, inputStream, outputStream, cipherKeyMaterial);
+		} else {
+			DataCryptoTool dct = new DataCryptoTool();
+			Cipher cipher = dct.getCipher(cipherMode, cipherKeyMaterial, modeId, paddingId);
+			isCryptSuccessful = dct.crypt(inputStream, outputStream, cipher);
+		}
+		return isCryptSuccessful;
+	}
 	
 	private SecretKeySpec getSecretKeySpec(char[] password, CipherAlgorithmName algorithmNameId) {
 		Loggers.debug(this, TextMessage.SECRET_KEY_SPEC_START_GETTING);
@@ -11,6 +11,7 @@ import javax.crypto.spec.SecretKeySpec;
 
 import magdysyuk.backuper.source.crypt.IStreamCrypt;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherAlgorithmName;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherKeyMaterial;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherPadding;
 import magdysyuk.backuper.source.crypt.algorithms.commons.DataCryptoTool;
@@ -30,9 +31,8 @@ public class DataCryptoDESede implements IStreamCrypt {
 		boolean isCryptSuccessful = false;
 		DataCryptoTool dct = new DataCryptoTool();
 		try {
-			DESedeKeySpec desedeKeySpec = this.getDESedeKeySpec(password, this.algorithmNameId);
-			SecretKey secretKey = new SecretKeySpec(desedeKeySpec.getKey(), "DESede");
-			Cipher cipher = dct.getCipher(cipherMode, secretKey, this.algorithmNameId, modeId, paddingId);
+			CipherKeyMaterial cipherKeyMaterial = this.getCipherKeyMaterial(password);
+			Cipher cipher = dct.getCipher(cipherMode, cipherKeyMaterial, modeId, paddingId);
 			isCryptSuccessful = dct.crypt(inputStream, outputStream, cipher);
 		} catch (Exception encryptEx) {
 			Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE, encryptEx);
@@ -41,6 +41,37 @@ public class DataCryptoDESede implements IStreamCrypt {
 		return isCryptSuccessful;
 	}
 	
+	@Override
+	public boolean cryptStream(int cipherMode, InputStream inputStream, OutputStream outputStream, CipherKeyMaterial cipherKeyMaterial,
+				CipherMode modeId, CipherPadding paddingId) {
+		Loggers.debug(this, TextMessage.CRYPT_DATA_START, new Object[]{cipherMode});
+		boolean isCryptSuccessful = false;
+		DataCryptoTool dct = new DataCryptoTool();
+		try {
+			Cipher cipher = dct.getCipher(cipherMode, cipherKeyMaterial, modeId, paddingId);
+			isCryptSuccessful = dct.crypt(inputStream, outputStream, cipher);
+		} catch (Exception encryptEx) {
+			Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE, encryptEx);
+		}
+		Loggers.debug(this, TextMessage.CRYPT_DATA_END, new Object[]{isCryptSuccessful});
+		return isCryptSuccessful;
+	}
+	
+	@Override
+	public CipherKeyMaterial getCipherKeyMaterial(char[] password) {
+		CipherKeyMaterial cipherKeyMaterial = null;
+		try {
+			DESedeKeySpec desedeKeySpec = this.getDESedeKeySpec(password, this.algorithmNameId);
+			if (desedeKeySpec != null) {
+				SecretKey secretKey = new SecretKeySpec(desedeKeySpec.getKey(), "DESede");
+				cipherKeyMaterial = new DataCryptoTool().getCipherKeyMaterial(secretKey, this.algorithmNameId);
+			}
+		} catch (InvalidKeyException ex) {
+			Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE, ex);
+		}
+		return cipherKeyMaterial;
+	}
+	
 	
 	private DESedeKeySpec getDESedeKeySpec(char[] password, CipherAlgorithmName algorithmNameId) throws InvalidKeyException {
 		Loggers.debug(this, TextMessage.DESEDE_KEY_SPEC_START_GETTING);
@@ -0,0 +1,121 @@
+package magdysyuk.backuper.source.dedup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+
+/**
+ * Index of chunks of data (see ContentDefinedChunker) for deduplication: digest (sha256) of each chunk
+ * with index of image set, where this chunk is hidden.
+ * <p/>Data are splitted into chunks, and only chunks, which are not in index yet, are written
+ * into directory for new chunks (file name is digest of chunk), so the same and near-duplicate files
+ * (also from previous backups) are stored only once.
+ */
+public class ChunkStore {
+
+	private static final String CHUNK_DIGEST_ALGORITHM = "SHA-256";
+
+	private Map<String, Integer> chunkImageSets = new LinkedHashMap<String, Integer>();
+	private int numberNewChunks = 0;
+	private long numberNewChunkBytes = 0;
+
+	/**
+	 * @param chunkDigest Digest of chunk (sha256, hex)
+	 * @param imageSetIndex Index of image set, where chunk is hidden
+	 */
+	public void addChunk(String chunkDigest, int imageSetIndex) {
+		this.chunkImageSets.put(chunkDigest, imageSetIndex);
+	}
+
+	/**
+	 * Add all chunks of other index (e.g. of previous backup)
+	 */
+	public void addChunks(ChunkStore chunkStore) {
+		this.chunkImageSets.putAll(chunkStore.chunkImageSets);
+	}
+
+	/**
+	 * @param chunkDigest Digest of chunk (sha256, hex)
+	 * @return Index of image set with chunk, or -1 if chunk is not in index
+	 */
+	public int getImageSetIndex(String chunkDigest) {
+		Integer imageSetIndex = this.chunkImageSets.get(chunkDigest);
+		return (imageSetIndex == null) ? -1 : imageSetIndex.intValue();
+	}
+
+	/**
+	 * @return Digests of all chunks in index
+	 */
+	public List<String> getChunkDigests() {
+		return new ArrayList<String>(this.chunkImageSets.keySet());
+	}
+
+	/**
+	 * @return Number of chunks, which were written by putData()
+	 */
+	public int getNumberNewChunks() {
+		return this.numberNewChunks;
+	}
+
+	/**
+	 * @return Size of chunks, which were written by putData()
+	 */
+	public long getNumberNewChunkBytes() {
+		return this.numberNewChunkBytes;
+	}
+
+	/**
+	 * Split data into chunks, write new chunks into directory and add them into index
+	 * @param dataInputStream Data (stream is not closed)
+	 * @param newChunksDirectory Directory for new chunks (file name is digest of chunk)
+	 * @param imageSetIndex Index of image set, where new chunks will be hidden
+	 * @return Digests of all chunks of data in their order (data are restored by concatenation of these chunks)
+	 * @throws IOException
+	 */
+	public List<String> putData(InputStream dataInputStream, File newChunksDirectory, int imageSetIndex) throws IOException {
+		List<String> chunkDigests = new ArrayList<String>();
+		MessageDigest messageDigest = this.getMessageDigest();
+		ContentDefinedChunker chunker = new ContentDefinedChunker(dataInputStream);
+		byte[] chunkBuffer = new byte[chunker.getMaxChunkBytes()];
+		int chunkLength = 0;
+		while ((chunkLength = chunker.readChunk(chunkBuffer)) > 0) {
+			messageDigest.update(chunkBuffer, 0, chunkLength);
+			String chunkDigest = Hex.encodeHexString(messageDigest.digest());
+			if (this.chunkImageSets.containsKey(chunkDigest) == false) {
+				OutputStream chunkOutputStream = FileUtils.openOutputStream(new File(newChunksDirectory, chunkDigest));
+				try {
+					chunkOutputStream.write(chunkBuffer, 0, chunkLength);
+					chunkOutputStream.close();
+				} finally {
+					IOUtils.closeQuietly(chunkOutputStream);
+				}
+				this.addChunk(chunkDigest, imageSetIndex);
+				this.numberNewChunks += 1;
+				this.numberNewChunkBytes += chunkLength;
+			}
+			chunkDigests.add(chunkDigest);
+		}
+		return chunkDigests;
+	}
+
+	private MessageDigest getMessageDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance(CHUNK_DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IOException("Digest algorithm is not available: " + CHUNK_DIGEST_ALGORITHM, ex);
+		}
+	}
+
+}
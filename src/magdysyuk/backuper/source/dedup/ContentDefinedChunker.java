@@ -0,0 +1,109 @@
+package magdysyuk.backuper.source.dedup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+
+/**
+ * Splits stream into chunks by its content (content-defined chunking): boundary of chunk is placed,
+ * where rolling hash of the last bytes has special value. So after inserting or removing of some bytes
+ * only neighbouring chunks are changed, and other chunks of near-duplicate data are the same (unlike
+ * chunks of fixed size, which are all shifted).
+ * <p/>Rolling hash is "gear" hash: each byte shifts hash and adds random value for this byte,
+ * so hash depends only on the last 32 bytes. Table of random values is always the same (fixed seed),
+ * so the same data give the same chunks in all runs of application.
+ */
+public class ContentDefinedChunker {
+
+	public static final int DEFAULT_MIN_CHUNK_BYTES = 16 * 1024;
+	public static final int DEFAULT_AVERAGE_CHUNK_BYTES = 64 * 1024;
+	public static final int DEFAULT_MAX_CHUNK_BYTES = 256 * 1024;
+
+	private static final long GEAR_TABLE_SEED = 0x5EC0BAC4L;
+	private static final int[] GEAR_TABLE = createGearTable();
+
+	private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+	private InputStream inputStream;
+	private int minChunkBytes;
+	private int maxChunkBytes;
+	private int boundaryMask;
+
+	private byte[] readBuffer = new byte[READ_BUFFER_BYTES];
+	private int readBufferPosition = 0;
+	private int readBufferLength = 0;
+
+	/**
+	 * Chunker with default sizes of chunks
+	 * @param inputStream Stream for splitting (it is not closed by chunker)
+	 */
+	public ContentDefinedChunker(InputStream inputStream) {
+		this(inputStream, DEFAULT_MIN_CHUNK_BYTES, DEFAULT_AVERAGE_CHUNK_BYTES, DEFAULT_MAX_CHUNK_BYTES);
+	}
+
+	/**
+	 * @param inputStream Stream for splitting (it is not closed by chunker)
+	 * @param minChunkBytes Minimal size of chunk (only the last chunk of stream could be less)
+	 * @param averageChunkBytes Approximate average size of chunk (should be more than minimal size)
+	 * @param maxChunkBytes Maximal size of chunk (chunk is cut, if boundary is not found)
+	 */
+	public ContentDefinedChunker(InputStream inputStream, int minChunkBytes, int averageChunkBytes, int maxChunkBytes) {
+		if (	(minChunkBytes <= 0) || (averageChunkBytes <= minChunkBytes) || (maxChunkBytes < averageChunkBytes)	) {
+			throw new IllegalArgumentException("Wrong sizes of chunks: " + minChunkBytes + ", " + averageChunkBytes + ", " + maxChunkBytes);
+		}
+		this.inputStream = inputStream;
+		this.minChunkBytes = minChunkBytes;
+		this.maxChunkBytes = maxChunkBytes;
+		// Boundary is searched after minimal size, with probability 1/2^n for each byte.
+		// High bits of hash are used, because they depend on more bytes, than low bits.
+		int boundaryBitsRange = Integer.highestOneBit(averageChunkBytes - minChunkBytes);
+		int numberBoundaryBits = Integer.numberOfTrailingZeros(boundaryBitsRange);
+		this.boundaryMask = (numberBoundaryBits == 0) ? 0 : ((-1) << (Integer.SIZE - numberBoundaryBits));
+	}
+
+	/**
+	 * @return Size of buffer, which is enough for any chunk
+	 */
+	public int getMaxChunkBytes() {
+		return this.maxChunkBytes;
+	}
+
+	/**
+	 * Read next chunk of stream
+	 * @param chunkBuffer Buffer for chunk (its size should be not less than getMaxChunkBytes())
+	 * @return Number of bytes of chunk in buffer, or 0 at the end of stream
+	 * @throws IOException
+	 */
+	public int readChunk(byte[] chunkBuffer) throws IOException {
+		int chunkLength = 0;
+		int hash = 0;
+		boolean isBoundaryFound = false;
+		while (	(isBoundaryFound == false) && (chunkLength < this.maxChunkBytes)	) {
+			if (this.readBufferPosition == this.readBufferLength) {
+				this.readBufferPosition = 0;
+				this.readBufferLength = Math.max(this.inputStream.read(this.readBuffer), 0);
+				if (this.readBufferLength == 0) {
+					break;
+				}
+			}
+			byte dataByte = this.readBuffer[this.readBufferPosition];
+			this.readBufferPosition += 1;
+			chunkBuffer[chunkLength] = dataByte;
+			chunkLength += 1;
+			hash = (hash << 1) + GEAR_TABLE[dataByte & 0xFF];
+			isBoundaryFound = (chunkLength >= this.minChunkBytes) && ((hash & this.boundaryMask) == 0);
+		}
+		return chunkLength;
+	}
+
+	private static int[] createGearTable() {
+		Random random = new Random(GEAR_TABLE_SEED);
+		int[] gearTable = new int[256];
+		for (int i = 0; i < gearTable.length; i++) {
+			gearTable[i] = random.nextInt();
+		}
+		return gearTable;
+	}
+
+}
@@ -17,19 +17,33 @@ import magdysyuk.backuper.source.logger.TextMessage;
 public class FileIO {
 	
 	public InputStream getFileInputStream (File inputFile) {
-		return this.getFileInputStream(inputFile.getPath());
+		return this.getFileInputStream(inputFile.getPath(), true);
 	}
 	
-	private InputStream getFileInputStream (String inputFilePath) {
+	/**
+	 * Not buffered stream of file: it is read by large blocks through its channel
+	 * (see Channels.newChannel(), e.g. by NIO en/de-crypt), so buffer of stream is not needed
+	 * @param inputFile Input file
+	 * @return FileInputStream, or <code>null</code> if file could not be read
+	 */
+	public InputStream getFileChannelInputStream (File inputFile) {
+		return this.getFileInputStream(inputFile.getPath(), false);
+	}
+	
+	private InputStream getFileInputStream (String inputFilePath, boolean isBuffered) {
 		Loggers.debug(this, TextMessage.FILE_READ_START, new Object[]{inputFilePath});
-		BufferedInputStream bufferedInputStream = null;
+		InputStream bufferedInputStream = null;
 		File inputFile = new File(inputFilePath);
 		if (inputFile.canRead() == true && inputFile.isDirectory() == false) {
 			Loggers.debug(this, TextMessage.FILE_IS_READABLE, new Object[]{inputFilePath, inputFile.length(), inputFile.isFile()});
 			int bufferSize = FileIOConfig.getBufferInputStreamSize();
 			try {
 				FileInputStream inputStream = new FileInputStream(inputFile);
-				bufferedInputStream = new BufferedInputStream(inputStream, bufferSize);
+				if (isBuffered == true) {
+					bufferedInputStream = new BufferedInputStream(inputStream, bufferSize);
+				} else {
+					bufferedInputStream = inputStream;
+				}
 				Loggers.debug(this, TextMessage.FILE_READ_WILL_BE_SUCCESSFUL, new Object[]{inputFilePath});
 			} catch (Exception ex) {
 				Loggers.fatal(this, TextMessage.FILE_READ_IMPOSSIBLE, new Object[]{inputFilePath, bufferSize}, ex);
@@ -42,16 +56,25 @@ public class FileIO {
 	}
 	
 	public OutputStream getFileOutputStream(File outputFile) {
-		return this.getFileOutputStream(outputFile.getPath(), false);
+		return this.getFileOutputStream(outputFile.getPath(), false, true);
 	}
 	
 	public OutputStream getFileOutputStream(File outputFile, boolean appendMode) {
-		return this.getFileOutputStream(outputFile.getPath(), appendMode);
+		return this.getFileOutputStream(outputFile.getPath(), appendMode, true);
+	}
+	
+	/**
+	 * Not buffered stream of file: it is written by large blocks through its channel (see getFileChannelInputStream())
+	 * @param outputFile Output file (it is created, if it doesn't exist)
+	 * @return FileOutputStream, or <code>null</code> if file could not be written
+	 */
+	public OutputStream getFileChannelOutputStream(File outputFile) {
+		return this.getFileOutputStream(outputFile.getPath(), false, false);
 	}
 	
-	private OutputStream getFileOutputStream(String outputFilePath, boolean appendMode) {
+	private OutputStream getFileOutputStream(String outputFilePath, boolean appendMode, boolean isBuffered) {
 		Loggers.debug(this, TextMessage.FILE_WRITE_START, new Object[]{outputFilePath});
-		BufferedOutputStream bufferedOutputStream = null;
+		OutputStream bufferedOutputStream = null;
 		File outputFile = new File(outputFilePath);
 		if (outputFile.exists() == false) {
 			Loggers.debug(this, TextMessage.FILE_DOES_NOT_EXISTS, new Object[]{outputFilePath});
@@ -62,7 +85,11 @@ public class FileIO {
 			int bufferSize = FileIOConfig.getBufferOutputStreamSize();
 			try {
 				FileOutputStream outputStream = new FileOutputStream(outputFile, appendMode);
-				bufferedOutputStream = new BufferedOutputStream(outputStream, bufferSize);
+				if (isBuffered == true) {
+					bufferedOutputStream = new BufferedOutputStream(outputStream, bufferSize);
+				} else {
+					bufferedOutputStream = outputStream;
+				}
 				Loggers.debug(this, TextMessage.FILE_WRITE_WILL_BE_SUCCESSFUL, new Object[]{outputFilePath});
 			} catch(Exception ex) {
 				Loggers.fatal(this, TextMessage.FILE_WRITE_IMPOSSIBLE, new Object[]{outputFilePath, bufferSize}, ex);
@@ -128,7 +155,7 @@ public class FileIO {
 	}
 	
 	private boolean writeProcessingData(String inputFilePath, OutputStream actionOutputStream) throws IOException {
-		InputStream inputStream = this.getFileInputStream(inputFilePath);
+		InputStream inputStream = this.getFileInputStream(inputFilePath, true);
 		boolean isProcessingWritingSuccessful = this.writeProcessingData(inputStream, actionOutputStream);
 		inputStream.close();
 		return isProcessingWritingSuccessful;
@@ -180,29 +207,12 @@ public class FileIO {
 	}
 	
 	/**
-	 * Create temporary directory with random unique name
+	 * Create temporary directory with random unique name in home directory of user
+	 * (see Workspace for other places of temporary directories)
 	 * @return Created directory, or <code>null</code> when error occurred
 	 */
 	public File createTempDirectory() {
-		File tempDirectory = null;
-		String tempDirectoryPath = "";
-		boolean isTempDirectoryAlreadyExists = true;
-		while (isTempDirectoryAlreadyExists == true) {
-			tempDirectoryPath = System.getProperty("user.home") + File.separator + "temp_" +UUID.randomUUID();
-			tempDirectory = new File(tempDirectoryPath);
-			isTempDirectoryAlreadyExists = tempDirectory.exists();
-		}
-		if (tempDirectory.mkdirs() == false) {
-			tempDirectory = null;
-		}
-		
-		if (tempDirectory.exists()) {
-			Loggers.debug(this, TextMessage.FILE_CREATED_SUCCESSFUL, new Object[]{tempDirectory.getPath()});
-		} else {
-			Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{tempDirectoryPath});
-		}
-
-		return tempDirectory;
+		return new Workspace().createTempDirectory();
 	}
 	
 }
@@ -0,0 +1,171 @@
+package magdysyuk.backuper.source.filesystem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import magdysyuk.backuper.source.logger.Loggers;
+import magdysyuk.backuper.source.logger.TextMessage;
+
+import org.apache.commons.io.FileUtils;
+
+
+/**
+ * Place for intermediate data of processing (temporary directories with encrypted files, archives).
+ * <p/>By default temporary directories are created in home directory of user, but any other directory
+ * could be used: e.g. local SSD, or tmpfs ("/dev/shm"), so intermediate data don't touch home filesystem.
+ * <p/>In memory mode intermediate data are kept in memory, when their size is not over than MAX_IN_MEMORY_BYTES
+ * (larger data are processed through temporary directories, as usual).
+ * <p/>Temporary directories, which were not deleted by processing (after errors, or if application was interrupted),
+ * are deleted at exit of application by shutdown hook.
+ */
+public class Workspace {
+
+	/**
+	 * Max size of data, which could be processed in memory. Intermediate data (e.g. archive and encrypted archive)
+	 * are kept in memory at the same time, so used memory is a few times more than this size.
+	 */
+	public static final long MAX_IN_MEMORY_BYTES = 128L * 1024 * 1024;
+
+	private File baseDirectory;
+	private boolean isInMemory;
+
+	/**
+	 * Temporary directories in home directory of user, as before
+	 */
+	public Workspace() {
+		this(null, false);
+	}
+
+	/**
+	 * @param baseDirectory Directory, where temporary directories will be created
+	 * (will be created, if it doesn't exist). <code>null</code> means home directory of user.
+	 */
+	public Workspace(File baseDirectory) {
+		this(baseDirectory, false);
+	}
+
+	/**
+	 * @param baseDirectory Directory, where temporary directories will be created. <code>null</code> means home directory of user.
+	 * @param isInMemory Keep intermediate data in memory, if they are not larger than MAX_IN_MEMORY_BYTES
+	 * (base directory is used only for larger data)
+	 */
+	public Workspace(File baseDirectory, boolean isInMemory) {
+		if (baseDirectory == null) {
+			baseDirectory = new File(System.getProperty("user.home"));
+		}
+		this.baseDirectory = baseDirectory;
+		this.isInMemory = isInMemory;
+	}
+
+	public File getBaseDirectory() {
+		return this.baseDirectory;
+	}
+
+	public boolean isInMemory() {
+		return this.isInMemory;
+	}
+
+	/**
+	 * @param numberDataBytes Size of data for processing
+	 * @return <code>true</code> if in memory mode is set, and data are not larger than MAX_IN_MEMORY_BYTES
+	 */
+	public boolean isDataFitIntoMemory(long numberDataBytes) {
+		return (this.isInMemory() == true) && (numberDataBytes <= MAX_IN_MEMORY_BYTES);
+	}
+
+	/**
+	 * Create temporary directory with random unique name ("temp_&lt;UUID&gt;") in base directory.
+	 * Directory will be deleted at exit of application, if it is not deleted before by deleteTempDirectory().
+	 * @return Created directory, or <code>null</code> when error occurred
+	 */
+	public File createTempDirectory() {
+		File tempDirectory = null;
+		if (	(this.getBaseDirectory().isDirectory() == true) || (this.getBaseDirectory().mkdirs() == true)	) {
+			tempDirectory = new FileIO().createSpecificFile(this.getBaseDirectory(), "temp", "directory");
+		} else {
+			Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{this.getBaseDirectory().getPath()});
+		}
+		if (	(tempDirectory != null) && (tempDirectory.isDirectory() == true)	) {
+			addUndeletedTempDirectory(tempDirectory);
+		} else {
+			tempDirectory = null;
+		}
+		return tempDirectory;
+	}
+
+	/**
+	 * Create directory of job with random unique name ("job_&lt;UUID&gt;") in base directory.
+	 * Unlike temporary directory, it is kept at exit of application, so interrupted operation could be resumed
+	 * with its intermediate data (see OperationJournal). It is used only when resuming is requested,
+	 * otherwise intermediate data are in temporary directory. It should be deleted by deleteTempDirectory().
+	 * @return Created directory, or <code>null</code> when error occurred
+	 */
+	public File createJobDirectory() {
+		File jobDirectory = null;
+		if (	(this.getBaseDirectory().isDirectory() == true) || (this.getBaseDirectory().mkdirs() == true)	) {
+			jobDirectory = new FileIO().createSpecificFile(this.getBaseDirectory(), "job", "directory");
+		} else {
+			Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{this.getBaseDirectory().getPath()});
+		}
+		if (	(jobDirectory != null) && (jobDirectory.isDirectory() == false)	) {
+			jobDirectory = null;
+		}
+		return jobDirectory;
+	}
+
+	/**
+	 * Delete temporary directory with all its content.
+	 * If it is impossible now, it will be tried again at exit of application.
+	 * @param tempDirectory Directory, created by createTempDirectory() (<code>null</code> is ignored)
+	 */
+	public void deleteTempDirectory(File tempDirectory) {
+		if (tempDirectory != null) {
+			try {
+				FileUtils.deleteDirectory(tempDirectory);
+				removeUndeletedTempDirectory(tempDirectory);
+			} catch (Exception ex) {
+				Loggers.debug(this, TextMessage.FILE_DELETE_IMPOSSIBLE, new Object[]{tempDirectory.getPath(), ex});
+			}
+		}
+	}
+
+
+	/*
+	 * Temporary directories of all workspaces, which are not deleted yet.
+	 * Shutdown hook is added with the first of them.
+	 */
+	private static Set<File> undeletedTempDirectories = new LinkedHashSet<File>();
+	private static Thread cleanupShutdownHook = null;
+
+	private static synchronized void addUndeletedTempDirectory(File tempDirectory) {
+		if (cleanupShutdownHook == null) {
+			cleanupShutdownHook = new Thread("workspace-cleanup") {
+				@Override
+				public void run() {
+					deleteUndeletedTempDirectories();
+				}
+			};
+			Runtime.getRuntime().addShutdownHook(cleanupShutdownHook);
+		}
+		undeletedTempDirectories.add(tempDirectory);
+	}
+
+	private static synchronized void removeUndeletedTempDirectory(File tempDirectory) {
+		undeletedTempDirectories.remove(tempDirectory);
+	}
+
+	/**
+	 * Delete all temporary directories, which were not deleted by processing.
+	 * Is called at exit of application (logger could be already stopped, so nothing is logged here).
+	 */
+	static synchronized void deleteUndeletedTempDirectories() {
+		for (File tempDirectory : new ArrayList<File>(undeletedTempDirectories)) {
+			if (FileUtils.deleteQuietly(tempDirectory) == true) {
+				undeletedTempDirectories.remove(tempDirectory);
+			}
+		}
+	}
+
+}
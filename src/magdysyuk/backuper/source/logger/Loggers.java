@@ -7,6 +7,11 @@ import org.apache.log4j.Logger;
 
 public class Loggers {
 	
+	/**
+	 * Used only for internal errors of this class.
+	 * Public methods get logger into local variable, because they could be called
+	 * from several threads at the same time.
+	 */
 	private static Logger LOG;
 	
 	/**
@@ -87,38 +92,38 @@ public class Loggers {
 	 */
 	
 	public static void fatal(Object callerObject, TextMessage messageID, Throwable appException) {
-		LOG = Logger.getLogger(getCallerString(callerObject));
-		LOG.fatal(getTextLogMessage(messageID, null), appException);
+		Logger log = Logger.getLogger(getCallerString(callerObject));
+		log.fatal(getTextLogMessage(messageID, null), appException);
 	}
 	public static void fatal (Object callerObject, TextMessage messageID, 
 			Object[] messageArguments, Throwable appException) {
-		LOG = Logger.getLogger(getCallerString(callerObject));
-		LOG.fatal(getTextLogMessage(messageID, messageArguments), appException);
+		Logger log = Logger.getLogger(getCallerString(callerObject));
+		log.fatal(getTextLogMessage(messageID, messageArguments), appException);
 	}
 	public static void fatal (Object callerObject, TextMessage messageID, 
 			Object[] messageArguments) {
-		LOG = Logger.getLogger(getCallerString(callerObject));
-		LOG.fatal(getTextLogMessage(messageID, messageArguments));
+		Logger log = Logger.getLogger(getCallerString(callerObject));
+		log.fatal(getTextLogMessage(messageID, messageArguments));
 	}
 	public static void fatal (Object callerObject, TextMessage messageID) {
-		LOG = Logger.getLogger(getCallerString(callerObject));
-		LOG.fatal(messageID.getDescription());
+		Logger log = Logger.getLogger(getCallerString(callerObject));
+		log.fatal(messageID.getDescription());
 	}
 	
 	public static void debug (Object callerObject, TextMessage messageID, 
 								Object[] messageArguments) {
-		LOG = Logger.getLogger(getCallerString(callerObject));
-		LOG.debug(getTextLogMessage(messageID, messageArguments));
+		Logger log = Logger.getLogger(getCallerString(callerObject));
+		log.debug(getTextLogMessage(messageID, messageArguments));
 	}
 	public static void debug (Object callerObject, TextMessage messageID) {
-		LOG = Logger.getLogger(getCallerString(callerObject));
-		LOG.debug(messageID.getDescription());
+		Logger log = Logger.getLogger(getCallerString(callerObject));
+		log.debug(messageID.getDescription());
 	}
 	
 	public static void trace (Object callerObject, TextMessage messageID, 
 			Object[] messageArguments) {
-		LOG = Logger.getLogger(getCallerString(callerObject));
-		LOG.trace(getTextLogMessage(messageID, messageArguments));
+		Logger log = Logger.getLogger(getCallerString(callerObject));
+		log.trace(getTextLogMessage(messageID, messageArguments));
 	}	
 	
 }
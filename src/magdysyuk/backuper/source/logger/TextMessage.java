@@ -43,8 +43,14 @@ public enum TextMessage {
 	CRYPT_DATA_PROCESSING_END ("<<<	End crypt processing data. Result of operation (was de/en-crypt successful?): \"{0}\""),
 	CRYPT_DATA_PROCESSING_IMPOSSIBLE ("Impossible do crypt processing data"),
 	CRYPT_DATA_CLOSE_DESCRIPTORS_IMPOSSIBLE ("Impossible close input / output stream which used in crypt data processsing"),
+	CRYPT_SEGMENTS_HEADER_INVALID ("Invalid header of data, encrypted by segments (data are damaged, or they were encrypted in other mode). Version of format: \"{0}\", size of segment: \"{1,number,integer}\""),
+	CRYPT_SEGMENTS_RANGE_INVALID ("Impossible decrypt range of data, it is out of data. File: \"{0}\", position of range: \"{1,number,integer}\", size of range: \"{2,number,integer}\", size of data: \"{3,number,integer}\""),
 	CRYPT_FILE_START (">>>	Start crypt file operation (encryption or decryption). If chosen Encryption, cipher mode is equal 1; if chosen Decryption, cipher mode is equal 2. Now chosen cipher mode: \"{0,number,integer}\". Input filepath: \"{1}\". Output directory filepath: \"{2}\". Cipher mode: \"{3}\". Padding: \"{4}\""),
 	CRYPT_FILE_END ("<<<	End crypt file operation. Result (true if successful, false otherwise): \"{0}\""),
+	CRYPT_FILE_FAILED ("Impossible en/de-crypt file: \"{0}\". Reason: \"{1}\""),
+	CRYPT_FILE_RESULT ("Result of crypt file operation. Processed files: \"{0}\", created directories: \"{1}\", failed files: \"{2}\""),
+	CRYPT_ARCHIVE_START (">>>	Start crypt of archive (encryption or decryption). If chosen Encryption, cipher mode is equal 1; if chosen Decryption, cipher mode is equal 2. Now chosen cipher mode: \"{0,number,integer}\". Input filepath: \"{1}\". Output filepath: \"{2}\". Cipher mode: \"{3}\". Padding: \"{4}\""),
+	CRYPT_ARCHIVE_END ("<<<	End crypt of archive. Result (true if successful, false otherwise): \"{0}\""),
 	
 	SECRET_KEY_SPEC_START_GETTING (">>>	Start getting secret key spec"),
 	SECRET_KEY_SPEC_END_GETTING ("<<<	End getting secret key spec"),
@@ -93,6 +99,7 @@ public enum TextMessage {
 	CIPHER_INIT_ECB ("Cipher was initialized for ECB mode"),
 	CIPHER_INIT_CBC ("Cipher was initialized for CBC mode. Input data (secretKey in encoded format) for IV: length of byte array: \"{0,number,integer}\", in hex string format: \"{1}\". Output IV in hex string format: \"{2}\""),
 	CIPHER_INIT_UNKNOWN ("Cipher was initialized for unknown mode"),
+	CIPHER_INIT_GCM_BY_SEGMENTS ("GCM mode could be used only by segments (see SegmentedCryptoTool)"),
 	CIPHER_START_GETTING_MAX_KEY_LENGTH (">>>	Start getting max allowed key length for chosen algorithm for cipher"),
 	CIPHER_END_GETTING_MAX_KEY_LENGTH ("<<<	End getting max allowed key length for chosen algorithm for cipher"),
 	CIPHER_CURRENT_KEY_LENGTH ("For algorithm: \"{0}\", max allowed key length: \"{1,number,integer}\", recommended key length: \"{2,number,integer}\". Will be use key length: \"{3,number,integer}\""),
@@ -146,6 +153,16 @@ public enum TextMessage {
 	ZIP_UNCOMPRESS_SUCCESSFUL ("Archive uncompressed successful. Archive file path: \"{0}\", folder for uncompressed data filepath: \"{1}\""),
 	ZIP_UNCOMPRESS_IMPOSSIBLE ("Impossible to uncompress data archive"),
 	ZIP_END_UNCOMPRESS ("<<<	End of uncompress data. Successful uncompression (true) or not (false): \"{0}\""),
+	TAR_START_COMPRESS (">>>	Start to tar-compress data. Input file path: \"{0}\", output file path for archive: \"{1}\", bzip2 is used: \"{2}\""),
+	TAR_END_COMPRESS ("<<<	End compress data"),
+	TAR_COMPRESS_SUCCESSFUL ("Data was compressed successful. Archive file path: \"{0}\""),
+	TAR_COMPRESS_IMPOSSIBLE ("Impossible compress data. Path to archive which is not created: \"{0}\""),
+	TAR_START_UNCOMPRESS (">>>	Start to uncompress tar data. Input archive file path: \"{0}\", output path to folder for uncompressed data: \"{1}\", bzip2 is used: \"{2}\""),
+	TAR_UNCOMPRESS_ENTITY ("Current uncompressed entity file path: \"{0}\", type: \"{1}\""),
+	TAR_UNCOMPRESS_ENTITY_OUTSIDE_DIRECTORY ("Entity of archive is outside of folder for uncompressed data, archive is not uncompressed. Entity name: \"{0}\", folder for uncompressed data filepath: \"{1}\""),
+	TAR_UNCOMPRESS_SUCCESSFUL ("Archive uncompressed successful. Archive file path: \"{0}\", folder for uncompressed data filepath: \"{1}\""),
+	TAR_UNCOMPRESS_IMPOSSIBLE ("Impossible to uncompress data archive"),
+	TAR_END_UNCOMPRESS ("<<<	End of uncompress data. Successful uncompression (true) or not (false): \"{0}\""),
 	
 	REPORT_XML_BEGIN ("Begin to write xml file"),
 	REPORT_XML_END ("End to write xml file"),
@@ -153,21 +170,46 @@ public enum TextMessage {
 	REPORT_XML_IMPOSSIBLE_GET_TRANSFORMERHANDLER ("Impossible get TransformerHandler, used for xml-report"),
 	REPORT_XML_UNKNOWN_ERROR ("Unknown error when try to write into xml-report"),
 	REPORT_XML_NOT_SET_OUT_FILE ("Was received null instead of output xml file"),
+	REPORT_XML_IMAGE_SIZE_IMPOSSIBLE ("Impossible read size of image for xml-report (size will not be saved). File path: \"{0}\""),
+	REPORT_XML_VERSION_UNSUPPORTED ("Report xml file is made by newer version of application. Version of report: \"{0}\", max supported version: \"{1}\""),
+	REPORT_XML_PIPELINE_ORDER_UNKNOWN ("Unknown order of processing in report xml file: \"{0}\""),
+	REPORT_XML_CIPHER_MODE_UNKNOWN ("Unknown mode of cipher in report xml file: \"{0}\""),
+	REPORT_XML_COMPRESS_CODEC_UNKNOWN ("Unknown codec of compression in report xml file: \"{0}\""),
 	PARSER_XML_UNKNOWN_ERROR ("Unknown error when try to parse xml file, Path to xnl file: \"{0}\""),
 
 	
 	STEGANOGRAPHY_IMAGE_LSB_START_PUT_FILE_INTO_IMAGES (">>>	Start of putting data file into images, data file path: \"{0}\", input image file path: \"{1}\", directory for processed files (images with putted data): \"{2}\""),
-	STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_DATA_CHUNK_INTO_IMAGES_SUCCESSFUL ("Successful putting chunk of data file into image. Original input image file path: \"{0}\", length of original image file (bytes): \"{1}\"; resized original image file path: \"{2}\", length of resized image file (bytes): \"{3}\"; input data file path: \"{4}\", length of input data file (bytes): \"{5}\"; size of buffer (max available number data bytes for putting in chosen resized image): \"{6}\"; number bytes, putted in chosen resized image: \"{7}\"; output image file path (image with putted data): \"{8}\", length of image with putted data (bytes): \"{9}\""),
-	STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_DATA_CHUNK_INTO_IMAGES_IMPOSSIBLE ("Imposible put chunk of data file into image. Original input image file path: \"{0}\", length of original image file (bytes): \"{1}\"; resized original image file path: \"{2}\", length of resized image file (bytes): \"{3}\"; input data file path: \"{4}\", length of input data file (bytes): \"{5}\"; size of buffer (max available number data bytes for putting in chosen resized image): \"{6}\"; number bytes we tryed to put in chosen resized image: \"{7}\""),
+	STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_DATA_CHUNK_INTO_IMAGES_SUCCESSFUL ("Successful putting chunk of data file into image. Original input image file path: \"{0}\", length of original image file (bytes): \"{1}\"; width of resized image (in memory): \"{2}\", height of resized image: \"{3}\"; input data file path: \"{4}\", length of input data file (bytes): \"{5}\"; size of buffer (max available number data bytes for putting in chosen resized image): \"{6}\"; number bytes, putted in chosen resized image: \"{7}\"; output image file path (image with putted data): \"{8}\", length of image with putted data (bytes): \"{9}\""),
+	STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_DATA_CHUNK_INTO_IMAGES_IMPOSSIBLE ("Imposible put chunk of data file into image. Original input image file path: \"{0}\", length of original image file (bytes): \"{1}\"; width of resized image (in memory): \"{2}\", height of resized image: \"{3}\"; input data file path: \"{4}\", length of input data file (bytes): \"{5}\"; size of buffer (max available number data bytes for putting in chosen resized image): \"{6}\"; number bytes we tryed to put in chosen resized image: \"{7}\""),
 	STEGANOGRAPHY_IMAGE_LSB_END_PUT_FILE_INTO_IMAGES ("<<<	End of putting data file into images, number created images with data: \"{0}\""),
 	STEGANOGRAPHY_IMAGE_LSB_IMAGE_DOES_NOT_EXISTS ("Image (with hidden data) does not exists, file path: \"{0}\""),
 	STEGANOGRAPHY_IMAGE_LSB_START_EXTRACT_FILE_FROM_IMAGES (">>>	Start to extract data file from images, number images: \"{0}\", output data file path: \"{1}\""),
 	STEGANOGRAPHY_IMAGE_LSB_EXTRACT_FILE_FROM_IMAGES_TOTAL_BYTES_EXPECT ("We need to extract next number bytes: \"{0}\" from next number images: \"{1}\" "),
 	STEGANOGRAPHY_IMAGE_LSB_END_EXTRACT_FILE_FROM_IMAGES ("<<<	End of extracting data file from images, number extracted bytes: \"{0}\", extracted data file path:\"{1}\", length of extracted data file: \"{2}\", is that extracting successful: \"{3}\""),
-	STEGANOGRAPHY_IMAGE_LSB_START_PUT_DATA_CHUNK_INTO_IMAGES ("Putting data chunk into images, input image file: \"{0}\", output image file: \"{1}\", length of data byte array: \"{2}\", length of data binary string: \"{3}\", first chars of data binary string: \"{4}\""),
+	STEGANOGRAPHY_IMAGE_LSB_START_PUT_DATA_CHUNK_INTO_IMAGES ("Putting data chunk into images, input image file: \"{0}\", output image file: \"{1}\", length of data byte array: \"{2}\", number of data bits: \"{3}\", number of pixels required for data: \"{4}\""),
+	STEGANOGRAPHY_IMAGE_LSB_EXTRACT_DATA_CHUNK_IMPOSSIBLE ("Impossible extract data chunk from image, because image does not have enough pixels. Image file path: \"{0}\", width: \"{1}\", height: \"{2}\", number data bytes which should be extracted: \"{3}\""),
 	STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_INTO_IMAGES_UNKNOWN_ERROR ("Impossible put data file with filepath: \"{0}\" into images, image file which will be used as data container: \"{1}\", and store processed images with hidden data into directory: \"{2}\""),
 	STEGANOGRAPHY_IMAGE_LSB_EXTRACT_FILE_FROM_IMAGES_UNKNOWN_ERROR ("Imposiible extract data from images into output data file: \"{0}\""),
+	STEGANOGRAPHY_IMAGE_LSB_COVER_IMAGE_SKIPPED ("File could not be used as cover (it is not an image, or it is too small) and will be skipped, file path: \"{0}\""),
+	STEGANOGRAPHY_IMAGE_LSB_COVER_IMAGE_POOL ("Pool of covers is ready, directory with images: \"{0}\", number of covers: \"{1}\", order of covers: \"{2}\", max number data bytes in one cover: \"{3}\""),
 	
+	MAIN_PROCESSOR_CAPACITY_PLAN ("Plan of putting data into images: size of data (bytes): \"{0}\", size of images: \"{1}\" x \"{2}\", max number data bytes in one image: \"{3}\", number of images: \"{4}\", estimated size of all image files (bytes): \"{5}\", estimated time (ms): \"{6}\""),
+	MAIN_PROCESSOR_IMAGE_SIZE_NOT_EQUALS ("Received and expected sizes of image are not equals. Expected size: \"{0}\" x \"{1}\", received size: \"{2}\". File path: \"{3}\""),
+	MAIN_PROCESSOR_STREAMING_NOT_SUPPORTED ("Streaming is not supported for order of processing \"{0}\", temporary files will be used"),
+	MAIN_PROCESSOR_STREAMING_CODEC_NOT_SUPPORTED ("Streaming is not supported for codec of compression \"{0}\", temporary files will be used"),
+	BACKUP_MANIFEST_SAVE_IMPOSSIBLE ("Impossible save manifest of backup. Filepath: \"{0}\""),
+	BACKUP_MANIFEST_LOAD_IMPOSSIBLE ("Impossible read manifest of backup (file is damaged, or password is wrong). Filepath: \"{0}\""),
+	BACKUP_MANIFEST_CHANGED_FILES ("Incremental backup. Files in input data: \"{0}\", new or changed files: \"{1}\", image sets in manifest: \"{2}\""),
+	BACKUP_MANIFEST_REPORT_ALREADY_USED ("Report is used by previous backup and can not be replaced, choose other file for report. Filepath: \"{0}\""),
+	BACKUP_MANIFEST_NEW_CHUNKS ("Deduplication. New chunks: \"{0}\", size of new chunks (bytes): \"{1}\", chunks in index: \"{2}\""),
+	BACKUP_MANIFEST_FILE_NOT_EQUALS ("Extracted file is not equal to file in manifest of backup. Path in manifest: \"{0}\", extracted file: \"{1}\""),
+	OPERATION_JOURNAL_READ_IMPOSSIBLE ("Impossible read journal of operation, operation will be started from zero. Filepath: \"{0}\""),
+	OPERATION_JOURNAL_WRITE_IMPOSSIBLE ("Impossible write journal of operation. Filepath: \"{0}\""),
+	OPERATION_JOURNAL_RESUMED ("Operation is resumed by journal \"{0}\". Finished stages: \"{1}\", written images: \"{2}\", written files: \"{3}\""),
+	OPERATION_JOURNAL_KEPT ("Operation is not finished, it could be resumed with option -resume. Journal: \"{0}\", intermediate data: \"{1}\""),
+	OPERATION_JOURNAL_NOT_RESUMED ("Journal of operation is for other operation (other settings), or its intermediate data are lost. Journal is kept, operation is not started. Run operation without option -resume to start it from zero (journal is discarded after successful operation). Filepath: \"{0}\""),
+	MAIN_PROCESSOR_IN_MEMORY_NOT_POSSIBLE ("Data are too large for processing in memory. Size of data (bytes): \"{0}\", limit (bytes): \"{1}\", temporary files will be used in directory \"{2}\""),
+	MAIN_PROCESSOR_CAPACITY_PLAN_IMPOSSIBLE ("Impossible make plan of putting data into images. Size of data (bytes): \"{0}\", size of images: \"{1}\" x \"{2}\", max size of image file (bytes, 0 - without limit): \"{3}\""),
 	MAIN_PROCESSOR_OPERATION_ENCRYPT_COMPRESS_HIDE_FILES_BEGIN ("Begin of block: encrypt data, compress, next - hide in images by LSB. Input data: \"{0}\", original image: \"{1}\", output directory for images: \"{2}\", output report file: \"{3}\""),
 	MAIN_PROCESSOR_OPERATION_ENCRYPT_COMPRESS_HIDE_FILES_UNKNOWN_ERROR ("Unknown error in block: encrypt data, compress, next - hide in images by LSB. Input data: \"{0}\", original image: \"{1}\", output directory for images: \"{2}\", output report file: \"{3}\""),
 	MAIN_PROCESSOR_OPERATION_ENCRYPT_COMPRESS_HIDE_FILES_END ("End of block: encrypt data, compress, next - hide in images by LSB. Result of operation: \"{0}\""),
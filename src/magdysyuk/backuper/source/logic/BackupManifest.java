@@ -0,0 +1,271 @@
+package magdysyuk.backuper.source.logic;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+
+import magdysyuk.backuper.source.crypt.DataCrypt;
+import magdysyuk.backuper.source.crypt.IStreamCrypt;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherAlgorithmName;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherPadding;
+import magdysyuk.backuper.source.dedup.ChunkStore;
+import magdysyuk.backuper.source.filesystem.FileIO;
+import magdysyuk.backuper.source.logger.Loggers;
+import magdysyuk.backuper.source.logger.TextMessage;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+
+/**
+ * Manifest of incremental backup: all files of input data (relative path, size, time of modification, hash of content),
+ * and image sets (report with directory of images), where content of each file is hidden.
+ * <p/>Each run of incremental backup puts into new image set only new and changed files, and its manifest
+ * refers to image sets of previous runs for unchanged files. So the latest manifest describes the latest state of input data,
+ * and files are extracted from several image sets.
+ * <p/>With deduplication manifest contains also index of chunks (see ChunkStore), and files refer to their chunks
+ * instead of image set (chunks of one file could be hidden in different image sets).
+ * <p/>Manifest is saved near report of image set (see getManifestFile()). It contains names of files,
+ * so it is encrypted by the same password, as data.
+ */
+public class BackupManifest {
+
+	/**
+	 * First line of manifest (with version of format), is used also for checking of password.
+	 * Version 2 could contain chunks of deduplication, manifest of version 1 is read too.
+	 */
+	private static final String MANIFEST_HEADER = "backuper_manifest\t2";
+	private static final String MANIFEST_HEADER_VERSION_1 = "backuper_manifest\t1";
+	private static final String MANIFEST_ENCODING = "UTF-8";
+
+	private List<File> reportFiles = new ArrayList<File>();
+	private List<File> imageDirectories = new ArrayList<File>();
+	private Map<String, BackupManifestEntry> entries = new LinkedHashMap<String, BackupManifestEntry>();
+	private ChunkStore chunkStore = new ChunkStore();
+
+	/**
+	 * @param reportFile Report file of image set
+	 * @return Manifest file, which is saved near report ("&lt;report file name&gt;.manifest")
+	 */
+	public static File getManifestFile(File reportFile) {
+		return new File(reportFile.getPath() + ".manifest");
+	}
+
+	/**
+	 * @param reportFile Report of image set
+	 * @param imageDirectory Directory with images of image set
+	 * @return Index of added image set
+	 */
+	public int addImageSet(File reportFile, File imageDirectory) {
+		this.reportFiles.add(reportFile);
+		this.imageDirectories.add(imageDirectory);
+		return this.reportFiles.size() - 1;
+	}
+
+	public int getNumberImageSets() {
+		return this.reportFiles.size();
+	}
+
+	public File getReportFile(int imageSetIndex) {
+		return this.reportFiles.get(imageSetIndex);
+	}
+
+	public File getImageDirectory(int imageSetIndex) {
+		return this.imageDirectories.get(imageSetIndex);
+	}
+
+	/**
+	 * @return Index of chunks of deduplication, which are hidden in image sets of manifest
+	 */
+	public ChunkStore getChunkStore() {
+		return this.chunkStore;
+	}
+
+	public void addEntry(BackupManifestEntry entry) {
+		this.entries.put(entry.getPath(), entry);
+	}
+
+	/**
+	 * @param path Relative path with root folder of input data, separated by "/"
+	 * @return Entry, or <code>null</code> if manifest doesn't contain this path
+	 */
+	public BackupManifestEntry getEntry(String path) {
+		return this.entries.get(path);
+	}
+
+	/**
+	 * @return All files and directories, parent directories are before their files
+	 */
+	public List<BackupManifestEntry> getEntries() {
+		return new ArrayList<BackupManifestEntry>(this.entries.values());
+	}
+
+	/**
+	 * @param imageSetIndex Index of image set
+	 * @return Files, which content is hidden in this image set
+	 */
+	public List<BackupManifestEntry> getFileEntries(int imageSetIndex) {
+		List<BackupManifestEntry> fileEntries = new ArrayList<BackupManifestEntry>();
+		for (BackupManifestEntry entry : this.entries.values()) {
+			if (	(entry.isDirectory() == false) && (entry.getImageSetIndex() == imageSetIndex)	) {
+				fileEntries.add(entry);
+			}
+		}
+		return fileEntries;
+	}
+
+	/**
+	 * Encrypt and save manifest. Paths of image sets near manifest are saved as relative,
+	 * so directory with backups could be moved.
+	 * @param manifestFile File for manifest
+	 * @param password Secret phrase for encryption
+	 * @return <code>true</code> if manifest is saved successful
+	 */
+	public boolean save(File manifestFile, char[] password) {
+		boolean isSavingSuccessful = false;
+		try {
+			File manifestDirectory = manifestFile.getAbsoluteFile().getParentFile();
+			ByteArrayOutputStream manifestOutputStream = new ByteArrayOutputStream();
+			Writer writer = new OutputStreamWriter(manifestOutputStream, MANIFEST_ENCODING);
+			writer.write(MANIFEST_HEADER + "\n");
+			for (int i = 0; i < this.getNumberImageSets(); i++) {
+				writer.write("set\t" + this.getRelativePath(manifestDirectory, this.getReportFile(i)) + "\t" +
+						this.getRelativePath(manifestDirectory, this.getImageDirectory(i)) + "\n");
+			}
+			for (String chunkDigest : this.chunkStore.getChunkDigests()) {
+				writer.write("chunk\t" + this.chunkStore.getImageSetIndex(chunkDigest) + "\t" + chunkDigest + "\n");
+			}
+			for (BackupManifestEntry entry : this.entries.values()) {
+				if (entry.isDirectory() == true) {
+					writer.write("dir\t" + entry.getPath() + "\n");
+				} else if (entry.isChunked() == true) {
+					writer.write("chunked_file\t" + entry.getNumberBytes() + "\t" + entry.getLastModified() + "\t" + entry.getHash() + "\t" +
+							StringUtils.join(entry.getChunkDigests(), ",") + "\t" + entry.getPath() + "\n");
+				} else {
+					writer.write("file\t" + entry.getImageSetIndex() + "\t" + entry.getNumberBytes() + "\t" + entry.getLastModified() + "\t" +
+							entry.getHash() + "\t" + entry.getPath() + "\n");
+				}
+			}
+			writer.close();
+			FileIO fileIO = new FileIO();
+			OutputStream fileOutputStream = fileIO.getFileOutputStream(manifestFile);
+			if (fileOutputStream != null) {
+				isSavingSuccessful = this.getStreamCrypt().cryptStream(Cipher.ENCRYPT_MODE, new ByteArrayInputStream(manifestOutputStream.toByteArray()), fileOutputStream,
+						password, CipherMode.CBC, CipherPadding.PKCS5Padding);
+			}
+		} catch (Exception ex) {
+			Loggers.fatal(this, TextMessage.BACKUP_MANIFEST_SAVE_IMPOSSIBLE, new Object[]{manifestFile.getPath()}, ex);
+		}
+		if (isSavingSuccessful == false) {
+			Loggers.fatal(this, TextMessage.BACKUP_MANIFEST_SAVE_IMPOSSIBLE, new Object[]{manifestFile.getPath()});
+		}
+		return isSavingSuccessful;
+	}
+
+	/**
+	 * Read and decrypt manifest (into this empty manifest)
+	 * @param manifestFile File with manifest
+	 * @param password Secret phrase for decryption
+	 * @return <code>true</code> if manifest is read successful, <code>false</code> if file is damaged or password is wrong
+	 */
+	public boolean load(File manifestFile, char[] password) {
+		boolean isLoadingSuccessful = false;
+		InputStream fileInputStream = null;
+		try {
+			File manifestDirectory = manifestFile.getAbsoluteFile().getParentFile();
+			ByteArrayOutputStream manifestOutputStream = new ByteArrayOutputStream();
+			fileInputStream = new FileIO().getFileInputStream(manifestFile);
+			if (	(fileInputStream != null) &&
+					(this.getStreamCrypt().cryptStream(Cipher.DECRYPT_MODE, fileInputStream, manifestOutputStream, password, CipherMode.CBC, CipherPadding.PKCS5Padding) == true)	) {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(manifestOutputStream.toByteArray()), MANIFEST_ENCODING));
+				// Wrong password gives other first line
+				String header = reader.readLine();
+				isLoadingSuccessful = (MANIFEST_HEADER.equals(header) == true) || (MANIFEST_HEADER_VERSION_1.equals(header) == true);
+				String line = null;
+				while (	(isLoadingSuccessful == true) && ((line = reader.readLine()) != null)	) {
+					String[] fields = line.split("\t", 6);
+					if (	(fields[0].equals("set") == true) && (fields.length == 3)	) {
+						this.addImageSet(this.getAbsoluteFile(manifestDirectory, fields[1]), this.getAbsoluteFile(manifestDirectory, fields[2]));
+					} else if (	(fields[0].equals("dir") == true) && (fields.length > 1)	) {
+						this.addEntry(new BackupManifestEntry(line.substring("dir\t".length())));
+					} else if (	(fields[0].equals("file") == true) && (fields.length == 6)	) {
+						int imageSetIndex = this.getImageSetIndex(fields[1]);
+						this.addEntry(new BackupManifestEntry(fields[5], Long.valueOf(fields[2]), Long.valueOf(fields[3]), fields[4], imageSetIndex));
+					} else if (	(fields[0].equals("chunk") == true) && (fields.length == 3)	) {
+						this.chunkStore.addChunk(fields[2], this.getImageSetIndex(fields[1]));
+					} else if (	(fields[0].equals("chunked_file") == true) && (fields.length == 6)	) {
+						List<String> chunkDigests = new ArrayList<String>();
+						for (String chunkDigest : StringUtils.split(fields[4], ',')) {
+							if (this.chunkStore.getImageSetIndex(chunkDigest) == -1) {
+								throw new IOException("Unknown chunk in manifest: " + chunkDigest);
+							}
+							chunkDigests.add(chunkDigest);
+						}
+						this.addEntry(new BackupManifestEntry(fields[5], Long.valueOf(fields[1]), Long.valueOf(fields[2]), fields[3], chunkDigests));
+					} else {
+						throw new IOException("Unknown line of manifest: " + line);
+					}
+				}
+			}
+		} catch (Exception ex) {
+			isLoadingSuccessful = false;
+			Loggers.fatal(this, TextMessage.BACKUP_MANIFEST_LOAD_IMPOSSIBLE, new Object[]{manifestFile.getPath()}, ex);
+		} finally {
+			IOUtils.closeQuietly(fileInputStream);
+		}
+		if (isLoadingSuccessful == false) {
+			Loggers.fatal(this, TextMessage.BACKUP_MANIFEST_LOAD_IMPOSSIBLE, new Object[]{manifestFile.getPath()});
+		}
+		return isLoadingSuccessful;
+	}
+
+	private int getImageSetIndex(String imageSetIndexField) throws IOException {
+		int imageSetIndex = Integer.valueOf(imageSetIndexField);
+		if (	(imageSetIndex < 0) || (imageSetIndex >= this.getNumberImageSets())	) {
+			throw new IOException("Unknown image set in manifest: " + imageSetIndex);
+		}
+		return imageSetIndex;
+	}
+
+	private IStreamCrypt getStreamCrypt() {
+		return new DataCrypt(CipherAlgorithmName.AES).getIStreamCrypt();
+	}
+
+	/**
+	 * @return Path relative to directory of manifest (if file is inside it), or absolute path
+	 * @throws IOException
+	 */
+	private String getRelativePath(File manifestDirectory, File file) throws IOException {
+		String manifestDirectoryPath = manifestDirectory.getCanonicalPath() + File.separator;
+		String filePath = file.getCanonicalPath();
+		if (filePath.equals(manifestDirectory.getCanonicalPath()) == true) {
+			filePath = ".";
+		} else if (filePath.startsWith(manifestDirectoryPath) == true) {
+			filePath = filePath.substring(manifestDirectoryPath.length());
+		}
+		return filePath;
+	}
+
+	private File getAbsoluteFile(File manifestDirectory, String path) {
+		File file = new File(path);
+		if (file.isAbsolute() == false) {
+			file = new File(manifestDirectory, path);
+		}
+		return file;
+	}
+
+}
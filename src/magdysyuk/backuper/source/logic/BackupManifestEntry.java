@@ -0,0 +1,105 @@
+package magdysyuk.backuper.source.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File (or directory) of input data in manifest of incremental backup (see BackupManifest)
+ */
+public class BackupManifestEntry {
+
+	private String path;
+	private boolean isDirectory;
+	private long numberBytes;
+	private long lastModified;
+	private String hash;
+	private int imageSetIndex;
+	private List<String> chunkDigests;
+
+	/**
+	 * Directory (only its path is needed: directory could be empty)
+	 * @param path Relative path with root folder of input data, separated by "/"
+	 */
+	public BackupManifestEntry(String path) {
+		this.path = path;
+		this.isDirectory = true;
+		this.numberBytes = 0;
+		this.lastModified = 0;
+		this.hash = "";
+		this.imageSetIndex = -1;
+		this.chunkDigests = new ArrayList<String>();
+	}
+
+	/**
+	 * File
+	 * @param path Relative path with root folder of input data, separated by "/"
+	 * @param numberBytes Size of file
+	 * @param lastModified Time of last modification of file (milliseconds)
+	 * @param hash Hash of content of file (sha256)
+	 * @param imageSetIndex Index of image set in manifest, where content of file is hidden
+	 */
+	public BackupManifestEntry(String path, long numberBytes, long lastModified, String hash, int imageSetIndex) {
+		this.path = path;
+		this.isDirectory = false;
+		this.numberBytes = numberBytes;
+		this.lastModified = lastModified;
+		this.hash = hash;
+		this.imageSetIndex = imageSetIndex;
+		this.chunkDigests = new ArrayList<String>();
+	}
+
+	/**
+	 * File, which content is stored as chunks of deduplication (see ChunkStore)
+	 * @param path Relative path with root folder of input data, separated by "/"
+	 * @param numberBytes Size of file
+	 * @param lastModified Time of last modification of file (milliseconds)
+	 * @param hash Hash of content of file (sha256)
+	 * @param chunkDigests Digests of chunks of file in their order (could be empty for empty file)
+	 */
+	public BackupManifestEntry(String path, long numberBytes, long lastModified, String hash, List<String> chunkDigests) {
+		this(path, numberBytes, lastModified, hash, -1);
+		this.chunkDigests = new ArrayList<String>(chunkDigests);
+	}
+
+	public String getPath() {
+		return this.path;
+	}
+
+	public boolean isDirectory() {
+		return this.isDirectory;
+	}
+
+	public long getNumberBytes() {
+		return this.numberBytes;
+	}
+
+	public long getLastModified() {
+		return this.lastModified;
+	}
+
+	public String getHash() {
+		return this.hash;
+	}
+
+	/**
+	 * @return Index of image set, or -1 for directory and file, which is stored as chunks
+	 */
+	public int getImageSetIndex() {
+		return this.imageSetIndex;
+	}
+
+	/**
+	 * @return <code>true</code> if content of file is stored as chunks (see getChunkDigests())
+	 */
+	public boolean isChunked() {
+		return (this.isDirectory == false) && (this.imageSetIndex == -1);
+	}
+
+	/**
+	 * @return Digests of chunks of file in their order (empty for directory and for file, which is not chunked)
+	 */
+	public List<String> getChunkDigests() {
+		return new ArrayList<String>(this.chunkDigests);
+	}
+
+}
@@ -0,0 +1,170 @@
+package magdysyuk.backuper.source.logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import magdysyuk.backuper.source.crypt.hash.HashFileAlgorithmName;
+import magdysyuk.backuper.source.crypt.hash.HashFileCalculator;
+import magdysyuk.backuper.source.dedup.ChunkStore;
+import magdysyuk.backuper.source.filesystem.FileIO;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+
+
+/**
+ * Makes manifest of input data for incremental backup, and finds new and changed files
+ * by comparing with manifest of previous backup.
+ * <p/>File with the same size and time of modification, as in previous manifest, is not read at all
+ * (so scanning of not changed data is fast). For other files hash of content is calculated: if only time of
+ * modification was changed, file is still not changed.
+ * <p/>With deduplication new and changed files are splitted into chunks (see ChunkStore) while reading,
+ * and only chunks, which are not in index of manifest yet, are written into directory for new chunks.
+ */
+class BackupManifestScanner {
+
+	private BackupManifest previousManifest;
+	private File newChunksDirectory;
+	private Map<String, File> changedFiles = new LinkedHashMap<String, File>();
+	private int numberFiles = 0;
+
+	/**
+	 * @param previousManifest Manifest of previous backup, or <code>null</code> for full backup (all files are new)
+	 */
+	BackupManifestScanner(BackupManifest previousManifest) {
+		this(previousManifest, null);
+	}
+
+	/**
+	 * @param previousManifest Manifest of previous backup, or <code>null</code> for full backup (all files are new)
+	 * @param newChunksDirectory Directory for new chunks of deduplication, or <code>null</code> without deduplication
+	 */
+	BackupManifestScanner(BackupManifest previousManifest, File newChunksDirectory) {
+		this.previousManifest = previousManifest;
+		this.newChunksDirectory = newChunksDirectory;
+	}
+
+	/**
+	 * @return New and changed files after scan(): relative path (with root folder of input data) and file
+	 */
+	Map<String, File> getChangedFiles() {
+		return this.changedFiles;
+	}
+
+	/**
+	 * @return Number of files in input data after scan()
+	 */
+	int getNumberFiles() {
+		return this.numberFiles;
+	}
+
+	/**
+	 * Add all files and directories of input data into manifest
+	 * @param inputData Input file or directory
+	 * @param manifest Manifest of current backup
+	 * @param imageSetIndex Index of image set of current backup (for new and changed files)
+	 * @throws IOException
+	 */
+	void scan(File inputData, BackupManifest manifest, int imageSetIndex) throws IOException {
+		this.scan(inputData, inputData.getName(), manifest, imageSetIndex);
+	}
+
+	private void scan(File inputData, String path, BackupManifest manifest, int imageSetIndex) throws IOException {
+		if (inputData.isDirectory() == true) {
+			manifest.addEntry(new BackupManifestEntry(path));
+			File[] innerFiles = inputData.listFiles();
+			if (innerFiles == null) {
+				throw new IOException("Impossible read directory: " + inputData.getPath());
+			}
+			Arrays.sort(innerFiles);
+			for (File innerFile : innerFiles) {
+				this.scan(innerFile, path + "/" + innerFile.getName(), manifest, imageSetIndex);
+			}
+		} else {
+			this.numberFiles += 1;
+			long numberBytes = inputData.length();
+			long lastModified = inputData.lastModified();
+			BackupManifestEntry previousEntry = null;
+			if (this.previousManifest != null) {
+				previousEntry = this.previousManifest.getEntry(path);
+			}
+			if (	(previousEntry != null) && (previousEntry.isDirectory() == false) &&
+					(previousEntry.getNumberBytes() == numberBytes) && (previousEntry.getLastModified() == lastModified)	) {
+				manifest.addEntry(this.getEntryWithNewTime(previousEntry, lastModified));
+			} else {
+				String hash = null;
+				// Hash of content is calculated separately only if file could be not changed
+				if (	(previousEntry != null) && (previousEntry.isDirectory() == false) && (previousEntry.getNumberBytes() == numberBytes)	) {
+					hash = this.getHash(inputData);
+				}
+				if (	(hash != null) && (previousEntry.getHash().equals(hash) == true)	) {
+					manifest.addEntry(this.getEntryWithNewTime(previousEntry, lastModified));
+				} else if (this.newChunksDirectory != null) {
+					manifest.addEntry(this.putFileIntoChunks(inputData, path, manifest.getChunkStore(), imageSetIndex));
+					this.changedFiles.put(path, inputData);
+				} else {
+					if (hash == null) {
+						hash = this.getHash(inputData);
+					}
+					manifest.addEntry(new BackupManifestEntry(path, numberBytes, lastModified, hash, imageSetIndex));
+					this.changedFiles.put(path, inputData);
+				}
+			}
+		}
+	}
+
+	private String getHash(File inputData) throws IOException {
+		String hash = new HashFileCalculator(inputData).getHash(HashFileAlgorithmName.SHA256);
+		if (hash == null) {
+			throw new IOException("Impossible calculate hash of file: " + inputData.getPath());
+		}
+		return hash;
+	}
+
+	/**
+	 * @return Entry of not changed file (content is in the same image set or chunks, as in previous manifest)
+	 */
+	private BackupManifestEntry getEntryWithNewTime(BackupManifestEntry previousEntry, long lastModified) {
+		BackupManifestEntry entry = null;
+		if (previousEntry.isChunked() == true) {
+			entry = new BackupManifestEntry(previousEntry.getPath(), previousEntry.getNumberBytes(), lastModified, previousEntry.getHash(), previousEntry.getChunkDigests());
+		} else {
+			entry = new BackupManifestEntry(previousEntry.getPath(), previousEntry.getNumberBytes(), lastModified, previousEntry.getHash(), previousEntry.getImageSetIndex());
+		}
+		return entry;
+	}
+
+	/**
+	 * Read file once: split it into chunks (new chunks are written into directory) and calculate hash of content
+	 */
+	private BackupManifestEntry putFileIntoChunks(File inputData, String path, ChunkStore chunkStore, int imageSetIndex) throws IOException {
+		MessageDigest messageDigest = null;
+		try {
+			messageDigest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IOException("Impossible calculate hash of file: " + inputData.getPath(), ex);
+		}
+		InputStream fileInputStream = new FileIO().getFileInputStream(inputData);
+		if (fileInputStream == null) {
+			throw new IOException("Impossible read file: " + inputData.getPath());
+		}
+		List<String> chunkDigests = null;
+		long numberBytes = inputData.length();
+		long lastModified = inputData.lastModified();
+		try {
+			chunkDigests = chunkStore.putData(new DigestInputStream(fileInputStream, messageDigest), this.newChunksDirectory, imageSetIndex);
+		} finally {
+			IOUtils.closeQuietly(fileInputStream);
+		}
+		return new BackupManifestEntry(path, numberBytes, lastModified, Hex.encodeHexString(messageDigest.digest()), chunkDigests);
+	}
+
+}
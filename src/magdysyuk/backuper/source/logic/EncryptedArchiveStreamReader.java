@@ -0,0 +1,179 @@
+package magdysyuk.backuper.source.logic;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+
+import javax.crypto.Cipher;
+
+import magdysyuk.backuper.source.crypt.DataCrypt;
+import magdysyuk.backuper.source.crypt.IStreamCrypt;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherAlgorithmName;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherKeyMaterial;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherPadding;
+import magdysyuk.backuper.source.filesystem.FileIO;
+import magdysyuk.backuper.source.logger.Loggers;
+import magdysyuk.backuper.source.logger.TextMessage;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+
+/**
+ * Reads zip archive with encrypted files directly from stream (for streaming extract, without temporary files),
+ * it is pair of EncryptedArchiveStreamWriter. Each entry is decrypted on the fly and written once, into its final place.
+ * <p/>Root folder of archive ("encrypted_&lt;UUID&gt;") is skipped, so output directory will contain
+ * the same file (or directory), as it was hidden - as after usual extracting.
+ * <p/>Reader is started in its own thread, stream is read to the end and closed (also after error),
+ * so writer of stream is never blocked.
+ * <p/>With journal of operation each written file is recorded, and files, which were written completely
+ * by interrupted operation, are skipped.
+ */
+class EncryptedArchiveStreamReader implements Runnable {
+
+	private InputStream inputStream;
+	private File outputDirectory;
+	private char[] password;
+	private CipherAlgorithmName cipherAlgorithm;
+	private CipherMode cipherMode;
+	private CipherPadding cipherPadding;
+	/**
+	 * Key is derived from password once, and is used for all files
+	 */
+	private CipherKeyMaterial cipherKeyMaterial;
+	private FileIO fileIO = new FileIO();
+	private OperationJournal journal = null;
+	private volatile boolean isReadingSuccessful = false;
+
+	/**
+	 * @param inputStream Stream with archive (will be closed at the end)
+	 * @param outputDirectory Directory for decrypted files
+	 * @param password Secret phrase for decryption
+	 * @param cipherAlgorithm Algorithm of encryption
+	 * @param cipherMode Mode of encryption
+	 * @param cipherPadding Padding of encryption
+	 */
+	EncryptedArchiveStreamReader(InputStream inputStream, File outputDirectory, char[] password,
+			CipherAlgorithmName cipherAlgorithm, CipherMode cipherMode, CipherPadding cipherPadding) {
+		this.inputStream = inputStream;
+		this.outputDirectory = outputDirectory;
+		this.password = password;
+		this.cipherAlgorithm = cipherAlgorithm;
+		this.cipherMode = cipherMode;
+		this.cipherPadding = cipherPadding;
+	}
+
+	/**
+	 * @param journal Journal of operation for recording of written files, or <code>null</code>
+	 */
+	void setJournal(OperationJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * @return <code>true</code> if archive contained at least one entry, and all files were decrypted successful
+	 */
+	boolean isReadingSuccessful() {
+		return this.isReadingSuccessful;
+	}
+
+	@Override
+	public void run() {
+		Loggers.debug(this, TextMessage.ZIP_START_UNCOMPRESS, new Object[]{"stream", this.outputDirectory.getPath()});
+		ZipArchiveInputStream zipInputStream = new ZipArchiveInputStream(this.inputStream);
+		try {
+			IStreamCrypt streamCrypt = new DataCrypt(this.cipherAlgorithm).getIStreamCrypt();
+			this.cipherKeyMaterial = streamCrypt.getCipherKeyMaterial(this.password);
+			boolean isAllEntriesRead = (this.cipherKeyMaterial != null);
+			int numberEntries = 0;
+			ZipArchiveEntry zipEntry = null;
+			while (	(isAllEntriesRead == true) && ((zipEntry = zipInputStream.getNextZipEntry()) != null)	) {
+				isAllEntriesRead = this.readEntry(zipEntry, zipInputStream, streamCrypt);
+				numberEntries += 1;
+			}
+			if (isAllEntriesRead == true) {
+				// Central directory of archive is not needed, but writer waits until it is read
+				IOUtils.copy(this.inputStream, new NullOutputStream());
+			}
+			this.isReadingSuccessful = (isAllEntriesRead == true) && (numberEntries > 0);
+			if (this.isReadingSuccessful == true) {
+				Loggers.debug(this, TextMessage.ZIP_UNCOMPRESS_SUCCESSFUL, new Object[]{"stream", this.outputDirectory.getPath()});
+			}
+		} catch (Exception ex) {
+			this.isReadingSuccessful = false;
+			Loggers.fatal(this, TextMessage.ZIP_UNCOMPRESS_IMPOSSIBLE, ex);
+		} finally {
+			// After error writer gets error too (instead of waiting for reader)
+			IOUtils.closeQuietly(zipInputStream);
+			IOUtils.closeQuietly(this.inputStream);
+		}
+		Loggers.debug(this, TextMessage.ZIP_END_UNCOMPRESS, new Object[]{this.isReadingSuccessful});
+	}
+
+	/**
+	 * Create directory, or decrypt file from archive
+	 * @param zipEntry Entry of archive
+	 * @param zipInputStream Archive (positioned at data of entry)
+	 * @param streamCrypt Decryption of files
+	 * @return <code>true</code> if entry is read successful
+	 * @throws IOException
+	 */
+	private boolean readEntry(ZipArchiveEntry zipEntry, ZipArchiveInputStream zipInputStream, IStreamCrypt streamCrypt) throws IOException {
+		boolean isEntryReadSuccessful = false;
+		String entryName = zipEntry.getName();
+		// Path without root folder of archive
+		String relativeFilePath = entryName.substring(entryName.indexOf('/') + 1);
+		File outFile = new File(this.outputDirectory.getPath() + File.separator + relativeFilePath);
+		String outputDirectoryPath = this.outputDirectory.getCanonicalPath() + File.separator;
+		if (	(relativeFilePath.isEmpty() == true) || (outFile.getCanonicalPath().startsWith(outputDirectoryPath) == false)	) {
+			// Entry should not be placed out of output directory (e.g. with "../" in path)
+			Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{entryName});
+		} else if (zipEntry.isDirectory() == true) {
+			if (	(outFile.exists() == true) || (outFile.mkdirs() == true)	) {
+				isEntryReadSuccessful = true;
+				Loggers.debug(this, TextMessage.ZIP_UNCOMPRESS_ENTITY, new Object[]{outFile.getPath(), "Directory"});
+			} else {
+				Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{outFile.getPath()});
+			}
+		} else if (	(this.journal != null) && (this.journal.isFileWritten(relativeFilePath, outFile) == true)	) {
+			// File was written by interrupted operation, its data are skipped
+			IOUtils.copy(zipInputStream, new NullOutputStream());
+			isEntryReadSuccessful = true;
+		} else if (	(outFile.getParentFile().exists() == true) || (outFile.getParentFile().mkdirs() == true)	) {
+			OutputStream outputStream = this.fileIO.getFileOutputStream(outFile);
+			/*
+			 * Size of entry is not known before its data are read (archive was written into stream),
+			 * and empty files were not encrypted, so first byte is read before decryption
+			 */
+			int firstByte = zipInputStream.read();
+			if (firstByte == -1) {
+				outputStream.close();
+				isEntryReadSuccessful = true;
+			} else {
+				// Decryption closes streams at the end, but archive should be left open for next entries
+				InputStream entryInputStream = new SequenceInputStream(new ByteArrayInputStream(new byte[]{(byte) firstByte}), new CloseShieldInputStream(zipInputStream));
+				isEntryReadSuccessful = streamCrypt.cryptStream(Cipher.DECRYPT_MODE, entryInputStream, outputStream,
+						this.cipherKeyMaterial, this.cipherMode, this.cipherPadding);
+			}
+			if (	(isEntryReadSuccessful == true) && (this.journal != null)	) {
+				isEntryReadSuccessful = this.journal.addWrittenFile(relativeFilePath, outFile);
+			}
+			if (isEntryReadSuccessful == true) {
+				Loggers.debug(this, TextMessage.ZIP_UNCOMPRESS_ENTITY, new Object[]{outFile.getPath(), "File"});
+			} else {
+				Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE);
+			}
+		} else {
+			Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{outFile.getParent()});
+		}
+		return isEntryReadSuccessful;
+	}
+
+}
@@ -0,0 +1,295 @@
+package magdysyuk.backuper.source.logic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+import javax.crypto.Cipher;
+
+import magdysyuk.backuper.source.compress.DataCompress;
+import magdysyuk.backuper.source.crypt.DataCrypt;
+import magdysyuk.backuper.source.crypt.IStreamCrypt;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherAlgorithmName;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherKeyMaterial;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherPadding;
+import magdysyuk.backuper.source.filesystem.DirectoryUtils;
+import magdysyuk.backuper.source.filesystem.FileIO;
+import magdysyuk.backuper.source.logger.Loggers;
+import magdysyuk.backuper.source.logger.TextMessage;
+import magdysyuk.backuper.source.pipeline.IStageProcessor;
+import magdysyuk.backuper.source.pipeline.PipelineStage;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
+
+/**
+ * Writes zip archive with encrypted files directly into stream (for streaming hide, without temporary files).
+ * Each file is encrypted on the fly into its own entry of archive.
+ * <p/>Archive has the same entries as archive of directory with encrypted files
+ * (see MainProcessor.encryptCompressHideFiles()): root folder "encrypted_&lt;UUID&gt;",
+ * and inside it - input file, or input directory with all nested directories and files.
+ * So images with such archive are extracted by usual way.
+ * <p/>Writer is started in its own thread, stream is closed at the end (also after error),
+ * so reader of stream always gets end of data.
+ * <p/>Files are read and encrypted by stage of encryption (see PipelineStage) at the same time, as writer
+ * compresses previous files into archive: separate thread puts files of input directory (in order of archive)
+ * into stage, and writer takes encrypted files in the same order. Files, which are larger than
+ * MAX_ENCRYPTED_ENTRY_BYTES, are not kept in memory: they are encrypted by writer on the fly.
+ */
+class EncryptedArchiveStreamWriter implements Runnable {
+
+	private File inputData;
+	private OutputStream outputStream;
+	private char[] password;
+	private CipherAlgorithmName cipherAlgorithm;
+	private CipherMode cipherMode;
+	private CipherPadding cipherPadding;
+	/**
+	 * Key is derived from password once, and is used for all files
+	 */
+	private CipherKeyMaterial cipherKeyMaterial;
+	private DirectoryUtils directoryUtils = new DirectoryUtils();
+	private FileIO fileIO = new FileIO();
+	private volatile boolean isWritingSuccessful = false;
+	private int numberEncryptThreads = 1;
+	private int stageQueueCapacity = 1;
+	private int compressionLevel = DataCompress.DEFAULT_COMPRESSION_LEVEL;
+
+	/**
+	 * Max size of file, which is encrypted by stage of encryption into memory
+	 */
+	static final long MAX_ENCRYPTED_ENTRY_BYTES = 4L * 1024 * 1024;
+
+	/**
+	 * @param inputData Input file (or directory)
+	 * @param outputStream Stream for archive (will be closed at the end)
+	 * @param password Secret phrase for encryption
+	 * @param cipherAlgorithm Algorithm of encryption
+	 * @param cipherMode Mode of encryption
+	 * @param cipherPadding Padding of encryption
+	 */
+	EncryptedArchiveStreamWriter(File inputData, OutputStream outputStream, char[] password,
+			CipherAlgorithmName cipherAlgorithm, CipherMode cipherMode, CipherPadding cipherPadding) {
+		this.inputData = inputData;
+		this.outputStream = outputStream;
+		this.password = password;
+		this.cipherAlgorithm = cipherAlgorithm;
+		this.cipherMode = cipherMode;
+		this.cipherPadding = cipherPadding;
+	}
+
+	/**
+	 * @param numberEncryptThreads Number of threads, which read and encrypt files at the same time
+	 * @param stageQueueCapacity Max number of files in stage of encryption (so used memory is not more
+	 * than MAX_ENCRYPTED_ENTRY_BYTES for each of them)
+	 */
+	void setStageSettings(int numberEncryptThreads, int stageQueueCapacity) {
+		this.numberEncryptThreads = numberEncryptThreads;
+		this.stageQueueCapacity = stageQueueCapacity;
+	}
+
+	/**
+	 * @param compressionLevel Level of deflate compression of archive: from 0 (without compression, fastest) to 9,
+	 * or DataCompress.DEFAULT_COMPRESSION_LEVEL (size of entries is not known before their data,
+	 * so level 0 doesn't store entries as in CompressZip, but they are deflated without compression)
+	 */
+	void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * @return <code>true</code> if all files were encrypted and whole archive was written into stream
+	 */
+	boolean isWritingSuccessful() {
+		return this.isWritingSuccessful;
+	}
+
+	@Override
+	public void run() {
+		Loggers.debug(this, TextMessage.ZIP_START_COMPRESS, new Object[]{this.inputData.getPath(), "stream"});
+		ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(this.outputStream);
+		if (this.compressionLevel != DataCompress.DEFAULT_COMPRESSION_LEVEL) {
+			zipOutputStream.setLevel(this.compressionLevel);
+		}
+		PipelineStage<File, EncryptedEntry> encryptStage = null;
+		Thread entriesThread = null;
+		try {
+			final String rootFolderName = "encrypted_" + UUID.randomUUID();
+			final IStreamCrypt streamCrypt = new DataCrypt(this.cipherAlgorithm).getIStreamCrypt();
+			this.cipherKeyMaterial = streamCrypt.getCipherKeyMaterial(this.password);
+			if (this.cipherKeyMaterial != null) {
+				encryptStage = new PipelineStage<File, EncryptedEntry>("encrypt", this.numberEncryptThreads, this.stageQueueCapacity, 
+						new IStageProcessor<File, EncryptedEntry>() {
+							@Override
+							public EncryptedEntry process(File data) throws Exception {
+								return EncryptedArchiveStreamWriter.this.getEncryptedEntry(data, rootFolderName, streamCrypt);
+							}
+						});
+				entriesThread = new Thread(new EntriesReader(encryptStage), "archive-entries");
+				entriesThread.start();
+				this.isWritingSuccessful = this.writeEntries(encryptStage, streamCrypt, zipOutputStream);
+			} else {
+				Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE);
+			}
+			zipOutputStream.finish();
+			zipOutputStream.flush();
+			Loggers.debug(this, TextMessage.ZIP_COMPRESS_SUCCESSFUL, new Object[]{"stream"});
+		} catch (Exception ex) {
+			this.isWritingSuccessful = false;
+			Loggers.fatal(this, TextMessage.ZIP_COMPRESS_IMPOSSIBLE, new Object[]{this.inputData.getPath()}, ex);
+		} finally {
+			if (encryptStage != null) {
+				// After error thread of entries is released, if it waits for free place in stage
+				encryptStage.stop();
+			}
+			if (entriesThread != null) {
+				try {
+					entriesThread.join();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			// Reader should get end of stream in any case
+			IOUtils.closeQuietly(zipOutputStream);
+			IOUtils.closeQuietly(this.outputStream);
+		}
+		Loggers.debug(this, TextMessage.ZIP_END_COMPRESS);
+	}
+
+	/**
+	 * Puts files of input data into stage of encryption in order of archive: directory is followed by its content
+	 */
+	private class EntriesReader implements Runnable {
+		private PipelineStage<File, EncryptedEntry> encryptStage;
+
+		EntriesReader(PipelineStage<File, EncryptedEntry> encryptStage) {
+			this.encryptStage = encryptStage;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (this.putEntry(EncryptedArchiveStreamWriter.this.inputData) == true) {
+					this.encryptStage.finish();
+				}
+			} catch (InterruptedException ex) {
+				// Writer was stopped by error, it is already logged
+			}
+		}
+
+		/**
+		 * @return <code>false</code> if stage was stopped
+		 */
+		private boolean putEntry(File data) throws InterruptedException {
+			boolean isEntryPutted = this.encryptStage.put(data);
+			if (	(isEntryPutted == true) && (data.isDirectory() == true)	) {
+				for (File innerFile : data.listFiles()) {
+					isEntryPutted = this.putEntry(innerFile);
+					if (isEntryPutted == false) {
+						break;
+					}
+				}
+			}
+			return isEntryPutted;
+		}
+	}
+
+	/**
+	 * Entry of archive: directory, or file with encrypted data
+	 */
+	private static class EncryptedEntry {
+		private String entryName;
+		private byte[] encryptedData;
+		private File largeFile;
+
+		/**
+		 * @param entryName Name of entry in archive
+		 * @param encryptedData Encrypted content of file, or <code>null</code> for directory and large file
+		 * @param largeFile File, which should be encrypted by writer, or <code>null</code>
+		 */
+		EncryptedEntry(String entryName, byte[] encryptedData, File largeFile) {
+			this.entryName = entryName;
+			this.encryptedData = encryptedData;
+			this.largeFile = largeFile;
+		}
+	}
+
+	/**
+	 * Read and encrypt file (it is called by threads of encryption stage)
+	 * @param data File or directory
+	 * @param rootFolderName Name of root folder in archive
+	 * @param streamCrypt Encryption of files
+	 * @return Entry of archive
+	 * @throws IOException If file could not be encrypted
+	 */
+	private EncryptedEntry getEncryptedEntry(File data, String rootFolderName, IStreamCrypt streamCrypt) throws IOException {
+		// Path of directory ends by "/" (also for input directory itself), input file is placed directly into root folder
+		String entryName = rootFolderName + "/" + this.inputData.getName();
+		if (this.inputData.isDirectory() == true) {
+			entryName = rootFolderName + "/" + this.directoryUtils.getRelativeFilePathWithRoot(this.inputData, data);
+		}
+		EncryptedEntry encryptedEntry = null;
+		if (data.isDirectory() == true) {
+			encryptedEntry = new EncryptedEntry(entryName, null, null);
+		} else if (data.length() > MAX_ENCRYPTED_ENTRY_BYTES) {
+			encryptedEntry = new EncryptedEntry(entryName, null, data);
+		} else {
+			// Empty files are not encrypted (as in DataCrypt.cryptFile())
+			ByteArrayOutputStream encryptedDataStream = new ByteArrayOutputStream((int) data.length() + 64);
+			if (data.length() > 0) {
+				InputStream inputStream = this.fileIO.getFileInputStream(data);
+				if (streamCrypt.cryptStream(Cipher.ENCRYPT_MODE, inputStream, encryptedDataStream,
+						this.cipherKeyMaterial, this.cipherMode, this.cipherPadding) == false) {
+					throw new IOException("Impossible encrypt file: " + data.getPath());
+				}
+			}
+			encryptedEntry = new EncryptedEntry(entryName, encryptedDataStream.toByteArray(), null);
+		}
+		return encryptedEntry;
+	}
+
+	/**
+	 * Write entries from stage of encryption into archive (in order of input data)
+	 * @param encryptStage Stage of encryption
+	 * @param streamCrypt Encryption of large files
+	 * @param zipOutputStream Archive
+	 * @return <code>true</code> if all files were encrypted successful
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private boolean writeEntries(PipelineStage<File, EncryptedEntry> encryptStage, IStreamCrypt streamCrypt, ZipArchiveOutputStream zipOutputStream) throws IOException, InterruptedException {
+		boolean isAllEntriesWritten = true;
+		EncryptedEntry encryptedEntry = null;
+		try {
+			while (	(isAllEntriesWritten == true) && ((encryptedEntry = encryptStage.take()) != null)	) {
+				ZipArchiveEntry zipEntry = new ZipArchiveEntry(encryptedEntry.entryName);
+				zipOutputStream.putArchiveEntry(zipEntry);
+				if (encryptedEntry.encryptedData != null) {
+					zipOutputStream.write(encryptedEntry.encryptedData);
+				} else if (encryptedEntry.largeFile != null) {
+					InputStream inputStream = this.fileIO.getFileInputStream(encryptedEntry.largeFile);
+					// Encryption closes streams at the end, but archive should be left open for next entries
+					isAllEntriesWritten = streamCrypt.cryptStream(Cipher.ENCRYPT_MODE, inputStream, new CloseShieldOutputStream(zipOutputStream),
+							this.cipherKeyMaterial, this.cipherMode, this.cipherPadding);
+					if (isAllEntriesWritten == false) {
+						Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE);
+					}
+				}
+				zipOutputStream.closeArchiveEntry();
+			}
+		} catch (ExecutionException ex) {
+			isAllEntriesWritten = false;
+			Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE, ex.getCause());
+		}
+		return isAllEntriesWritten;
+	}
+
+}
@@ -0,0 +1,127 @@
+package magdysyuk.backuper.source.logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import magdysyuk.backuper.source.crypt.hash.HashFileAlgorithmName;
+import magdysyuk.backuper.source.crypt.hash.HashFileCalculator;
+import magdysyuk.backuper.source.logger.Loggers;
+import magdysyuk.backuper.source.logger.TextMessage;
+import magdysyuk.backuper.source.pipeline.IStageProcessor;
+import magdysyuk.backuper.source.pipeline.PipelineStage;
+import magdysyuk.backuper.source.steganography.IImageJournal;
+import magdysyuk.backuper.source.xml.report.CreatorFileReportXml;
+
+
+/**
+ * Stage of hashing of images with data (see PipelineStage): checksums for report are calculated for each image
+ * as soon as it is written (while file is still in cache of file system), at the same time as next images are made,
+ * instead of reading all images again at the end of operation.
+ * <p/>Images are received from SteganographyImageLSB (as journal of images), and separate thread gathers checksums.
+ */
+class ImageHashStage implements IImageJournal {
+
+	private PipelineStage<File, Map<File, Map<HashFileAlgorithmName, String>>> hashStage;
+	private Map<File, Map<HashFileAlgorithmName, String>> imageHashes = new HashMap<File, Map<HashFileAlgorithmName, String>>();
+	private Thread resultsThread;
+	private volatile boolean isHashingSuccessful = true;
+
+	/**
+	 * @param numberThreads Number of threads, which calculate checksums at the same time
+	 * @param queueCapacity Max number of images in stage
+	 */
+	ImageHashStage(int numberThreads, int queueCapacity) {
+		this.hashStage = new PipelineStage<File, Map<File, Map<HashFileAlgorithmName, String>>>("hash", numberThreads, queueCapacity,
+				new IStageProcessor<File, Map<File, Map<HashFileAlgorithmName, String>>>() {
+					@Override
+					public Map<File, Map<HashFileAlgorithmName, String>> process(File imageFile) throws IOException {
+						HashFileCalculator hashFileCalculator = new HashFileCalculator(imageFile);
+						Map<HashFileAlgorithmName, String> hashes = new LinkedHashMap<HashFileAlgorithmName, String>();
+						for (HashFileAlgorithmName hashFileAlgorithmName : HashFileAlgorithmName.values()) {
+							if (CreatorFileReportXml.isReportHashAlgorithm(hashFileAlgorithmName) == true) {
+								String hash = hashFileCalculator.getHash(hashFileAlgorithmName);
+								if (hash == null) {
+									throw new IOException("Impossible calculate checksum of image: " + imageFile.getPath());
+								}
+								hashes.put(hashFileAlgorithmName, hash);
+							}
+						}
+						Map<File, Map<HashFileAlgorithmName, String>> imageHashes = new HashMap<File, Map<HashFileAlgorithmName, String>>();
+						imageHashes.put(imageFile, hashes);
+						return imageHashes;
+					}
+				});
+		this.resultsThread = new Thread("hash-results") {
+			@Override
+			public void run() {
+				ImageHashStage.this.gatherImageHashes();
+			}
+		};
+		this.resultsThread.setDaemon(true);
+		this.resultsThread.start();
+	}
+
+	/**
+	 * After error of hashing stage is stopped, and images are not hashed any more
+	 * (putting of data is not stopped, report calculates checksums by itself)
+	 */
+	@Override
+	public boolean addImage(File imageFile, int numberDataBytes) {
+		boolean isImageAdded = false;
+		try {
+			isImageAdded = (this.hashStage.put(imageFile) == true) || (this.isHashingSuccessful == false);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		return isImageAdded;
+	}
+
+	/**
+	 * Wait until all images are hashed, after that stage is stopped
+	 * @return Checksums of images, or <code>null</code> if some of them were not calculated
+	 * (report calculates checksums by itself in this case)
+	 * @throws InterruptedException
+	 */
+	Map<File, Map<HashFileAlgorithmName, String>> getImageHashes() throws InterruptedException {
+		try {
+			this.hashStage.finish();
+			this.resultsThread.join();
+		} finally {
+			this.stop();
+		}
+		Map<File, Map<HashFileAlgorithmName, String>> imageHashes = null;
+		if (this.isHashingSuccessful == true) {
+			imageHashes = this.imageHashes;
+		}
+		return imageHashes;
+	}
+
+	/**
+	 * Stop hashing (e.g. after error of putting data into images)
+	 */
+	void stop() {
+		this.hashStage.stop();
+		this.resultsThread.interrupt();
+	}
+
+	private void gatherImageHashes() {
+		try {
+			Map<File, Map<HashFileAlgorithmName, String>> imageHashes = null;
+			while ((imageHashes = this.hashStage.take()) != null) {
+				this.imageHashes.putAll(imageHashes);
+			}
+		} catch (InterruptedException ex) {
+			this.isHashingSuccessful = false;
+		} catch (ExecutionException ex) {
+			this.isHashingSuccessful = false;
+			Loggers.fatal(this, TextMessage.HASH_CHECKSUM_FILE_IMPOSSIBLE, ex.getCause());
+			// Results are not taken any more, so stage is stopped: put() and finish() don't wait for free place
+			this.hashStage.stop();
+		}
+	}
+
+}
@@ -1,32 +1,51 @@
 package magdysyuk.backuper.source.logic;
 
+import java.awt.Dimension;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.crypto.Cipher;
 
+import magdysyuk.backuper.source.compress.CompressCodec;
+import magdysyuk.backuper.source.compress.DataCompress;
 import magdysyuk.backuper.source.compress.IDataCompress;
-import magdysyuk.backuper.source.compress.zip.CompressZip;
 import magdysyuk.backuper.source.crypt.DataCrypt;
 import magdysyuk.backuper.source.crypt.IDataCrypt;
+import magdysyuk.backuper.source.crypt.IStreamCrypt;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherAlgorithmName;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherPadding;
 import magdysyuk.backuper.source.crypt.hash.HashFileAlgorithmName;
 import magdysyuk.backuper.source.crypt.hash.HashFileCalculator;
 import magdysyuk.backuper.source.filesystem.FileIO;
+import magdysyuk.backuper.source.filesystem.Workspace;
 import magdysyuk.backuper.source.logger.Loggers;
 import magdysyuk.backuper.source.logger.TextMessage;
+import magdysyuk.backuper.source.steganography.CapacityPlan;
+import magdysyuk.backuper.source.steganography.CapacityPlanner;
+import magdysyuk.backuper.source.steganography.CoverImage;
 import magdysyuk.backuper.source.steganography.SteganographyImageLSB;
+import magdysyuk.backuper.source.steganography.SteganographyRasterLSB;
 import magdysyuk.backuper.source.xml.parser.ParserFileReportXml;
 import magdysyuk.backuper.source.xml.report.CreatorFileReportXml;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ArrayUtils;
 
 
@@ -37,6 +56,25 @@ import org.apache.commons.lang3.ArrayUtils;
  */
 public class MainProcessor {
 	
+	private ProcessingOptions processingOptions;
+	private ProcessingOptions getProcessingOptions() {
+		return this.processingOptions;
+	}
+	
+	/**
+	 * Processor with default settings
+	 */
+	public MainProcessor() {
+		this(new ProcessingOptions());
+	}
+	
+	/**
+	 * @param processingOptions Settings of processing (number of threads etc.)
+	 */
+	public MainProcessor(ProcessingOptions processingOptions) {
+		this.processingOptions = processingOptions;
+	}
+	
 	
 	/**
 	 * First will be encrypting, second - compressing to one zip file, and at the end - putting it by LSB method into image.
@@ -44,9 +82,18 @@ public class MainProcessor {
 	 * At the end you will get folder with images (which contains zipped encrypted files), 
 	 * and xml report file (where is saved order of images for unpacking them).
 	 * Do not rename received image files manually.
+	 * <p/>If streaming is set in options, encrypted files are written into archive stream, which is putted into images
+	 * on the fly (see encryptCompressHideFilesByStream()), without temporary files.
+	 * <p/>If order "compress-encrypt" is set in options, input data are compressed first, and whole archive is encrypted
+	 * (see compressEncryptHideFiles()). Order is saved in report, so extracting doesn't need this option.
+	 * <p/>Intermediate data are kept in workspace from options (see Workspace). For in memory workspace
+	 * order "encrypt-compress" is processed by streaming (it doesn't need intermediate data at all).
+	 * <p/>If incremental backup is set in options, manifest of input data is saved near report, and only
+	 * files, which are new or changed after previous backup (its report is set in options), are putted into images
+	 * (see encryptCompressHideFilesIncremental()).
 	 * @param inputDataFile Input file (or directory) for processing
 	 * @param password Secret phrase for encryption
-	 * @param imageForSteganography Image file, will be used as container for data
+	 * @param imageForSteganography Image file, will be used as container for data (or directory with images, see SteganographyImageLSB.putDataFileIntoImages())
 	 * @param outputDirectoryForImages Directory for received image file with data into them
 	 * @param outputReportFile XML file for restoring information in the future
 	 * @return <code>true</code> if all operations are successful 
@@ -54,58 +101,85 @@ public class MainProcessor {
 	 * <br/><code>false</code> otherwise
 	 */
 	public boolean encryptCompressHideFiles(File inputDataFile, char[] password, File imageForSteganography, File outputDirectoryForImages, File outputReportFile) {
+		boolean isOperationSuccessful = false;
+		if (this.getProcessingOptions().isIncrementalBackup() == true) {
+			try {
+				isOperationSuccessful = this.encryptCompressHideFilesIncremental(inputDataFile, password, imageForSteganography, outputDirectoryForImages, outputReportFile);
+			} catch (Exception ex) {
+				Loggers.fatal(this, TextMessage.MAIN_PROCESSOR_OPERATION_ENCRYPT_COMPRESS_HIDE_FILES_UNKNOWN_ERROR, new Object[]{inputDataFile, imageForSteganography, outputDirectoryForImages, outputReportFile}, ex);
+			}
+		} else {
+			isOperationSuccessful = this.encryptCompressHideData(inputDataFile, password, imageForSteganography, outputDirectoryForImages, outputReportFile);
+		}
+		return isOperationSuccessful;
+	}
+	
+	/**
+	 * Put input data into images (without manifest of incremental backup), see encryptCompressHideFiles()
+	 * @param inputDataFile Input file (or directory) for processing
+	 * @param password Secret phrase for encryption
+	 * @param imageForSteganography Image file (or directory with images)
+	 * @param outputDirectoryForImages Directory for received image file with data into them
+	 * @param outputReportFile XML file for restoring information in the future
+	 * @return <code>true</code> if all operations are successful
+	 */
+	private boolean encryptCompressHideData(File inputDataFile, char[] password, File imageForSteganography, File outputDirectoryForImages, File outputReportFile) {
 		boolean isOperationSuccessful = false;
 		try {
 			Loggers.debug(this, TextMessage.MAIN_PROCESSOR_OPERATION_ENCRYPT_COMPRESS_HIDE_FILES_BEGIN, new Object[]{inputDataFile.getPath(), imageForSteganography.getPath(), outputDirectoryForImages.getPath(), outputReportFile.getPath()} );
-			if (	(inputDataFile.exists()) && (password != null) && (password.length > 0) && (ArrayUtils.isEquals(password, "".toCharArray()) == false) )	 {
+			boolean isInputDataValid = (inputDataFile.exists()) && (password != null) && (password.length > 0) && (ArrayUtils.isEquals(password, "".toCharArray()) == false);
+			PipelineOrder pipelineOrder = this.getProcessingOptions().getPipelineOrder();
+			if (	(isInputDataValid == true) && (pipelineOrder == PipelineOrder.COMPRESS_THEN_ENCRYPT)	) {
+				if (this.getProcessingOptions().isStreamingUsed() == true) {
+					Loggers.debug(this, TextMessage.MAIN_PROCESSOR_STREAMING_NOT_SUPPORTED, new Object[]{pipelineOrder.getOrderName()});
+				}
+				isOperationSuccessful = this.compressEncryptHideFiles(inputDataFile, password, imageForSteganography, outputDirectoryForImages, outputReportFile);
+			} else if (	(isInputDataValid == true) && 
+					((this.getProcessingOptions().isStreamingUsed() == true) || (this.getProcessingOptions().getWorkspace().isInMemory() == true)) &&
+					(this.isStreamingCodecSupported(this.getProcessingOptions().getCompressCodec()) == true)	) {
+				isOperationSuccessful = this.encryptCompressHideFilesByStream(inputDataFile, password, imageForSteganography, outputDirectoryForImages, outputReportFile);
+			} else if (isInputDataValid == true) {
 				
 				FileIO fileIO = new FileIO();
-				File tempDirectory = fileIO.createTempDirectory();
+				// Folder with random name in workspace (by default in user's home directory), it is kept until the end of operation for resuming
+				OperationJournal journal = this.getHideJournal(inputDataFile, imageForSteganography, outputDirectoryForImages, outputReportFile, 
+						PipelineOrder.ENCRYPT_THEN_COMPRESS);
+				File jobDirectory = journal.getJobDirectory();
 				
 				CipherAlgorithmName cipherAlgorithm = CipherAlgorithmName.AES;
-				CipherMode cipherMode = CipherMode.CBC;
+				CipherMode cipherMode = this.getProcessingOptions().getCipherMode();
 				CipherPadding cipherPadding = CipherPadding.PKCS5Padding;
 				
-				File directoryForEncryptedFiles = fileIO.createSpecificFile(tempDirectory, "encrypted", "directory");
-				
-				if (directoryForEncryptedFiles.exists() && directoryForEncryptedFiles.isDirectory()) {
-					// Create folder with random name in user's home directory
-					tempDirectory = fileIO.createTempDirectory();
-					
-					IDataCrypt dataCrypt = new DataCrypt(cipherAlgorithm);
-					boolean isEncryptSuccessful = dataCrypt.cryptFile(Cipher.ENCRYPT_MODE, inputDataFile,
-							directoryForEncryptedFiles, password, cipherMode, cipherPadding);
-					File archiveFile = fileIO.createSpecificFile(tempDirectory, "archive", "file");
-					
-					if (isEncryptSuccessful) {
-						IDataCompress compressZip = new CompressZip();
-						boolean isCompressionSuccessful = compressZip.compress(directoryForEncryptedFiles, archiveFile);
-						if (isCompressionSuccessful) {
-							SteganographyImageLSB steganographyImageLSB = new SteganographyImageLSB();
-							if (	(outputDirectoryForImages.exists() == false) || (outputDirectoryForImages.isDirectory() == false)	) {
-								outputDirectoryForImages.mkdirs();
-							}
-							List<Map<File, Integer>> receivedImagesWithHiddenData = steganographyImageLSB.putDataFileIntoImages(archiveFile, imageForSteganography, outputDirectoryForImages);
-							if (receivedImagesWithHiddenData != null) {
-								// All operations are done successful. Now need to save information in report file (for correct restoring information in the future)
-								isOperationSuccessful = makeAndSaveReport(receivedImagesWithHiddenData, outputReportFile);
-							} else {
-								Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_INTO_IMAGES_UNKNOWN_ERROR, new Object[]{archiveFile, imageForSteganography, outputDirectoryForImages});
-							}
+				try {
+					if (journal.isStageDone("encrypted") == false) {
+						File directoryForEncryptedFiles = fileIO.createSpecificFile(jobDirectory, "encrypted", "directory");
+						IDataCrypt dataCrypt = new DataCrypt(cipherAlgorithm, this.getProcessingOptions().getNumberThreads());
+						if (	(directoryForEncryptedFiles != null) && (directoryForEncryptedFiles.isDirectory() == true) &&
+								(dataCrypt.cryptFile(Cipher.ENCRYPT_MODE, inputDataFile, directoryForEncryptedFiles, password, cipherMode, cipherPadding) == true)	) {
+							journal.addStage("encrypted", directoryForEncryptedFiles.getName());
+						} else {
+							Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE);
+						}
+					}
+					if (	(journal.isStageDone("encrypted") == true) && (journal.isStageDone("archived") == false)	) {
+						File directoryForEncryptedFiles = new File(jobDirectory, journal.getStageValue("encrypted"));
+						File archiveFile = fileIO.createSpecificFile(jobDirectory, "archive", "file");
+						IDataCompress dataCompress = this.getDataCompress();
+						if (dataCompress.compress(directoryForEncryptedFiles, archiveFile) == true) {
+							journal.addStage("archived", archiveFile.getName());
+							// Encrypted files are not needed anymore
+							FileUtils.deleteQuietly(directoryForEncryptedFiles);
 						} else {
 							Loggers.fatal(this, TextMessage.ZIP_COMPRESS_IMPOSSIBLE, new Object[]{archiveFile.getPath()});
 						}
-						
-					} else {
-						Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE);
 					}
-					
-					// Removing temporary files. Sometimes it doesn't works (impossible remove archive file). TODO: check where is blocked that file
-					try {
-						FileUtils.deleteDirectory(tempDirectory);
-					} catch (Exception ex) {
-						Loggers.debug(this, TextMessage.FILE_DELETE_IMPOSSIBLE, new Object[]{directoryForEncryptedFiles.getPath(), ex});
+					if (journal.isStageDone("archived") == true) {
+						File archiveFile = new File(jobDirectory, journal.getStageValue("archived"));
+						isOperationSuccessful = this.hideDataFile(archiveFile, PipelineOrder.ENCRYPT_THEN_COMPRESS, imageForSteganography, outputDirectoryForImages, outputReportFile, journal);
 					}
+				} finally {
+					// Intermediate data are removed after successful operation, otherwise they are kept for resuming
+					this.finishOperationJournal(journal, isOperationSuccessful);
 				}
 			}
 		} catch (Exception ex) {
@@ -115,6 +189,439 @@ public class MainProcessor {
 		return isOperationSuccessful;
 	}
 	
+	/**
+	 * Incremental backup: manifest of input data is made and saved near report (see BackupManifest).
+	 * If report of previous backup is set in options, only new and changed files (they are copied into temporary
+	 * directory of workspace with the same structure of directories) are putted into images, and manifest refers to
+	 * image sets of previous backups for other files. Without previous report all input data are putted into images.
+	 * If nothing was changed, images are not made, and report contains only settings of processing.
+	 * <p/>With deduplication files are splitted into chunks (see ChunkStore), and only chunks, which are not hidden
+	 * in this or previous image sets, are putted into images (as files in directory "chunks"). Manifest lists chunks of each file.
+	 * @param inputDataFile Input file (or directory) for processing
+	 * @param password Secret phrase for encryption (also for manifests)
+	 * @param imageForSteganography Image file (or directory with images)
+	 * @param outputDirectoryForImages Directory for received image file with data into them
+	 * @param outputReportFile XML file for restoring information in the future (should be other than reports of previous backups)
+	 * @return <code>true</code> if images (if they are needed), report and manifest are made successful
+	 * @throws IOException
+	 */
+	private boolean encryptCompressHideFilesIncremental(File inputDataFile, char[] password, File imageForSteganography, File outputDirectoryForImages, File outputReportFile) throws IOException {
+		boolean isOperationSuccessful = false;
+		File previousReportFile = this.getProcessingOptions().getPreviousReportFile();
+		BackupManifest previousManifest = null;
+		BackupManifest manifest = new BackupManifest();
+		boolean isPreviousManifestValid = true;
+		if (previousReportFile != null) {
+			previousManifest = new BackupManifest();
+			isPreviousManifestValid = previousManifest.load(BackupManifest.getManifestFile(previousReportFile), password);
+			for (int i = 0; i < previousManifest.getNumberImageSets(); i++) {
+				// Report of previous backup should not be replaced by new report
+				if (previousManifest.getReportFile(i).getCanonicalPath().equals(outputReportFile.getCanonicalPath()) == true) {
+					isPreviousManifestValid = false;
+					Loggers.fatal(this, TextMessage.BACKUP_MANIFEST_REPORT_ALREADY_USED, new Object[]{outputReportFile.getPath()});
+				}
+				manifest.addImageSet(previousManifest.getReportFile(i), previousManifest.getImageDirectory(i));
+			}
+			manifest.getChunkStore().addChunks(previousManifest.getChunkStore());
+		}
+		if (	(isPreviousManifestValid == true) && (inputDataFile.exists() == true)	) {
+			boolean isDeduplicationUsed = this.getProcessingOptions().isDeduplicationUsed();
+			Workspace workspace = this.getProcessingOptions().getWorkspace();
+			File tempDirectory = null;
+			if (	(previousManifest != null) || (isDeduplicationUsed == true)	) {
+				tempDirectory = workspace.createTempDirectory();
+				if (tempDirectory == null) {
+					throw new IOException("Impossible create temporary directory in: " + workspace.getBaseDirectory().getPath());
+				}
+			}
+			try {
+				int imageSetIndex = manifest.addImageSet(outputReportFile, outputDirectoryForImages);
+				// New chunks of deduplication are collected in temporary directory while scanning
+				File newChunksDirectory = null;
+				if (isDeduplicationUsed == true) {
+					newChunksDirectory = new File(tempDirectory.getPath() + File.separator + CHUNKS_DIRECTORY_NAME);
+				}
+				BackupManifestScanner manifestScanner = new BackupManifestScanner(previousManifest, newChunksDirectory);
+				manifestScanner.scan(inputDataFile, manifest, imageSetIndex);
+				Map<String, File> changedFiles = manifestScanner.getChangedFiles();
+				Loggers.debug(this, TextMessage.BACKUP_MANIFEST_CHANGED_FILES, new Object[]{manifestScanner.getNumberFiles(), changedFiles.size(), manifest.getNumberImageSets()});
+				if (isDeduplicationUsed == true) {
+					Loggers.debug(this, TextMessage.BACKUP_MANIFEST_NEW_CHUNKS, new Object[]{manifest.getChunkStore().getNumberNewChunks(), 
+							manifest.getChunkStore().getNumberNewChunkBytes(), manifest.getChunkStore().getChunkDigests().size()});
+				}
+				if (	(isDeduplicationUsed == true) && (manifest.getChunkStore().getNumberNewChunks() > 0)	) {
+					isOperationSuccessful = this.encryptCompressHideData(newChunksDirectory, password, imageForSteganography, outputDirectoryForImages, outputReportFile);
+				} else if (	(isDeduplicationUsed == false) && (previousManifest == null)	) {
+					isOperationSuccessful = this.encryptCompressHideData(inputDataFile, password, imageForSteganography, outputDirectoryForImages, outputReportFile);
+				} else if (	(isDeduplicationUsed == true) || (changedFiles.isEmpty() == true)	) {
+					SteganographyRasterLSB steganographyRaster = new SteganographyRasterLSB(this.getProcessingOptions().getNumberBitsPerChannel(), this.getProcessingOptions().isAlphaChannelUsed());
+					isOperationSuccessful = this.makeAndSaveReport(new ArrayList<Map<File, Integer>>(), 
+							this.getReportProcessingProperties(steganographyRaster, this.getProcessingOptions().getPipelineOrder(), outputReportFile), outputReportFile);
+				} else {
+					for (Map.Entry<String, File> changedFile : changedFiles.entrySet()) {
+						FileUtils.copyFile(changedFile.getValue(), new File(tempDirectory.getPath() + File.separator + changedFile.getKey()));
+					}
+					File changedDataFile = new File(tempDirectory.getPath() + File.separator + inputDataFile.getName());
+					isOperationSuccessful = this.encryptCompressHideData(changedDataFile, password, imageForSteganography, outputDirectoryForImages, outputReportFile);
+				}
+			} finally {
+				if (tempDirectory != null) {
+					workspace.deleteTempDirectory(tempDirectory);
+				}
+			}
+			if (isOperationSuccessful == true) {
+				isOperationSuccessful = manifest.save(BackupManifest.getManifestFile(outputReportFile), password);
+			}
+		}
+		return isOperationSuccessful;
+	}
+	
+	/**
+	 * Directory with chunks of deduplication, which are putted into image set (file name is digest of chunk)
+	 */
+	private static final String CHUNKS_DIRECTORY_NAME = "chunks";
+	
+	/**
+	 * Put prepared data file (archive) into images, and save report
+	 * @param dataFile File, which will be putted into images
+	 * @param pipelineOrder Order of encryption and compression, which was used for making data file (it is saved in report)
+	 * @param imageForSteganography Image file (or directory with images)
+	 * @param outputDirectoryForImages Directory for received image file with data into them
+	 * @param outputReportFile XML file for restoring information in the future
+	 * @param journal Journal of operation: images are recorded into it, and images of interrupted operation are not made again
+	 * @return <code>true</code> if images and report are made successful
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private boolean hideDataFile(File dataFile, PipelineOrder pipelineOrder, File imageForSteganography, File outputDirectoryForImages, File outputReportFile, OperationJournal journal) throws IOException, InterruptedException {
+		boolean isOperationSuccessful = false;
+		InputStream dataInputStream = new FileIO().getFileInputStream(dataFile);
+		if (dataInputStream != null) {
+			try {
+				isOperationSuccessful = this.hideData(dataInputStream, dataFile.length(), pipelineOrder, imageForSteganography, outputDirectoryForImages, outputReportFile, journal);
+			} finally {
+				IOUtils.closeQuietly(dataInputStream);
+			}
+		}
+		return isOperationSuccessful;
+	}
+	
+	/**
+	 * Put prepared data (archive) into images, and save report
+	 * @param dataInputStream Data, which will be putted into images (stream is not closed)
+	 * @param numberDataBytes Size of data
+	 * @param pipelineOrder Order of encryption and compression, which was used for making data (it is saved in report)
+	 * @param imageForSteganography Image file (or directory with images)
+	 * @param outputDirectoryForImages Directory for received image file with data into them
+	 * @param outputReportFile XML file for restoring information in the future
+	 * @param journal Journal of operation (images are recorded into it, and data of images of interrupted operation
+	 * are skipped), or <code>null</code>
+	 * @return <code>true</code> if images and report are made successful
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private boolean hideData(InputStream dataInputStream, long numberDataBytes, PipelineOrder pipelineOrder, File imageForSteganography, File outputDirectoryForImages, File outputReportFile, OperationJournal journal) throws IOException, InterruptedException {
+		boolean isOperationSuccessful = false;
+		SteganographyRasterLSB steganographyRaster = new SteganographyRasterLSB(this.getProcessingOptions().getNumberBitsPerChannel(), this.getProcessingOptions().isAlphaChannelUsed());
+		SteganographyImageLSB steganographyImageLSB = new SteganographyImageLSB(this.getProcessingOptions().getNumberThreads(), steganographyRaster);
+		steganographyImageLSB.setPngCompressionLevel(this.getProcessingOptions().getPngCompressionLevel());
+		steganographyImageLSB.setCoverAssignmentOrder(this.getProcessingOptions().getCoverAssignmentOrder());
+		if (	(outputDirectoryForImages.exists() == false) || (outputDirectoryForImages.isDirectory() == false)	) {
+			outputDirectoryForImages.mkdirs();
+		}
+		// Size of images is chosen before any image is created
+		CapacityPlan capacityPlan = this.getCapacityPlan(numberDataBytes, imageForSteganography, steganographyImageLSB, steganographyRaster);
+		List<Map<File, Integer>> receivedImagesWithHiddenData = null;
+		if (	(capacityPlan != null) && (numberDataBytes > 0) && 
+				(steganographyImageLSB.setResizedImageSize(capacityPlan.getImageWidth(), capacityPlan.getImageHeight()) == true)	) {
+			// Data, which are already in images of interrupted operation, are skipped
+			List<Map<File, Integer>> journalImagesWithHiddenData = new ArrayList<Map<File, Integer>>();
+			long numberJournalDataBytes = 0;
+			if (journal != null) {
+				journalImagesWithHiddenData = journal.getImages();
+				numberJournalDataBytes = journal.getNumberImagesDataBytes();
+				steganographyImageLSB.setImageJournal(journal);
+				IOUtils.skipFully(dataInputStream, numberJournalDataBytes);
+			}
+			receivedImagesWithHiddenData = journalImagesWithHiddenData;
+			if (numberDataBytes > numberJournalDataBytes) {
+				List<Map<File, Integer>> newImagesWithHiddenData = steganographyImageLSB.putDataStreamIntoImages(dataInputStream, numberDataBytes - numberJournalDataBytes, 
+						imageForSteganography, outputDirectoryForImages);
+				receivedImagesWithHiddenData = null;
+				if (newImagesWithHiddenData != null) {
+					receivedImagesWithHiddenData = journalImagesWithHiddenData;
+					receivedImagesWithHiddenData.addAll(newImagesWithHiddenData);
+				}
+			}
+		}
+		if (	(receivedImagesWithHiddenData != null) && (receivedImagesWithHiddenData.isEmpty() == false)	) {
+			// All operations are done successful. Now need to save information in report file (for correct restoring information in the future)
+			isOperationSuccessful = makeAndSaveReport(receivedImagesWithHiddenData, this.getReportProcessingProperties(steganographyRaster, pipelineOrder, outputReportFile), outputReportFile);
+		} else {
+			Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_INTO_IMAGES_UNKNOWN_ERROR, new Object[]{"stream", imageForSteganography, outputDirectoryForImages});
+		}
+		return isOperationSuccessful;
+	}
+	
+	/**
+	 * Variant of encryptCompressHideFiles() with order "compress-encrypt": input data are compressed into zip archive
+	 * (not encrypted data are compressed well), next - archive is encrypted as one file and putted into images.
+	 * For in memory workspace (and not large input data) archive and encrypted archive are kept in memory,
+	 * otherwise - encrypted archive is written into temporary directory of workspace (see DataCrypt.cryptArchive()).
+	 * @param inputDataFile Input file (or directory) for processing
+	 * @param password Secret phrase for encryption
+	 * @param imageForSteganography Image file (or directory with images)
+	 * @param outputDirectoryForImages Directory for received image file with data into them
+	 * @param outputReportFile XML file for restoring information in the future
+	 * @return <code>true</code> if all operations are successful
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private boolean compressEncryptHideFiles(File inputDataFile, char[] password, File imageForSteganography, File outputDirectoryForImages, File outputReportFile) throws IOException, InterruptedException {
+		boolean isOperationSuccessful = false;
+		// Archive is encrypted as one large file, in GCM mode its segments are encrypted by many threads
+		IStreamCrypt streamCrypt = new DataCrypt(CipherAlgorithmName.AES, this.getProcessingOptions().getNumberThreads()).getIStreamCrypt();
+		CipherMode cipherMode = this.getProcessingOptions().getCipherMode();
+		IDataCompress dataCompress = this.getDataCompress();
+		if (this.isDataFitIntoMemory(FileUtils.sizeOf(inputDataFile)) == true) {
+			ByteArrayOutputStream archiveOutputStream = new ByteArrayOutputStream();
+			if (dataCompress.compress(inputDataFile, archiveOutputStream) == true) {
+				ByteArrayOutputStream encryptedArchiveOutputStream = new ByteArrayOutputStream();
+				boolean isEncryptSuccessful = streamCrypt.cryptStream(Cipher.ENCRYPT_MODE, new ByteArrayInputStream(archiveOutputStream.toByteArray()), encryptedArchiveOutputStream, 
+						password, cipherMode, CipherPadding.PKCS5Padding);
+				// Archive is not needed anymore
+				archiveOutputStream = null;
+				if (isEncryptSuccessful == true) {
+					isOperationSuccessful = this.hideData(new ByteArrayInputStream(encryptedArchiveOutputStream.toByteArray()), encryptedArchiveOutputStream.size(), 
+							PipelineOrder.COMPRESS_THEN_ENCRYPT, imageForSteganography, outputDirectoryForImages, outputReportFile, null);
+				} else {
+					Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE);
+				}
+			}
+		} else {
+			FileIO fileIO = new FileIO();
+			OperationJournal journal = this.getHideJournal(inputDataFile, imageForSteganography, outputDirectoryForImages, outputReportFile, 
+					PipelineOrder.COMPRESS_THEN_ENCRYPT);
+			File jobDirectory = journal.getJobDirectory();
+			try {
+				if (journal.isStageDone("encrypted") == false) {
+					// Archive is encrypted at the same time as it is written, without archive file
+					File encryptedArchiveFile = fileIO.createSpecificFile(jobDirectory, "encrypted", "file");
+					DataCrypt dataCrypt = new DataCrypt(CipherAlgorithmName.AES, this.getProcessingOptions().getNumberThreads());
+					dataCrypt.setArchiveCompress(dataCompress);
+					if (dataCrypt.cryptArchive(Cipher.ENCRYPT_MODE, inputDataFile, encryptedArchiveFile, password, cipherMode, CipherPadding.PKCS5Padding) == true) {
+						journal.addStage("encrypted", encryptedArchiveFile.getName());
+					} else {
+						Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE);
+					}
+				}
+				if (journal.isStageDone("encrypted") == true) {
+					File encryptedArchiveFile = new File(jobDirectory, journal.getStageValue("encrypted"));
+					isOperationSuccessful = this.hideDataFile(encryptedArchiveFile, PipelineOrder.COMPRESS_THEN_ENCRYPT, imageForSteganography, outputDirectoryForImages, outputReportFile, journal);
+				}
+			} finally {
+				this.finishOperationJournal(journal, isOperationSuccessful);
+			}
+		}
+		return isOperationSuccessful;
+	}
+	
+	/**
+	 * Journal of operation (see OperationJournal). If resuming is set in options, journal of interrupted operation
+	 * is continued, or new journal is started, if there is no journal. Journal of other operation (or with other settings,
+	 * or without its intermediate data) is not overwritten: operation is refused, and journal is kept.
+	 * Without resuming journal is kept only in memory, and intermediate data are in temporary directory of workspace
+	 * (it is deleted by finishOperationJournal(), or at exit of application), so nothing is kept after error.
+	 * Previous journal is discarded only after successful operation without resuming.
+	 * @param journalFile File of journal
+	 * @param operationName Name of operation ("hide" or "extract")
+	 * @param parameters Parameters, which define result of operation (journal of other operation is not resumed)
+	 * @param isJobDirectoryNeeded Create job directory in workspace for intermediate data
+	 * @return Journal of operation
+	 * @throws IOException If job directory or journal could not be created, or journal of other operation exists
+	 */
+	private OperationJournal getOperationJournal(File journalFile, String operationName, String[] parameters, boolean isJobDirectoryNeeded) throws IOException {
+		OperationJournal journal = new OperationJournal(journalFile);
+		Workspace workspace = this.getProcessingOptions().getWorkspace();
+		if (this.getProcessingOptions().isResumeUsed() == false) {
+			File tempDirectory = null;
+			if (isJobDirectoryNeeded == true) {
+				tempDirectory = workspace.createTempDirectory();
+				if (tempDirectory == null) {
+					throw new IOException("Impossible create temporary directory in: " + workspace.getBaseDirectory().getPath());
+				}
+			}
+			journal.startInMemory(operationName, parameters, tempDirectory);
+		} else if (journal.resume(operationName, parameters) == false) {
+			if (journalFile.exists() == true) {
+				Loggers.fatal(this, TextMessage.OPERATION_JOURNAL_NOT_RESUMED, new Object[]{journalFile.getPath()});
+				throw new IOException("Journal of other operation is kept: " + journalFile.getPath());
+			}
+			File jobDirectory = null;
+			if (isJobDirectoryNeeded == true) {
+				jobDirectory = workspace.createJobDirectory();
+				if (jobDirectory == null) {
+					throw new IOException("Impossible create job directory in: " + workspace.getBaseDirectory().getPath());
+				}
+			}
+			if (journal.start(operationName, parameters, jobDirectory) == false) {
+				workspace.deleteTempDirectory(jobDirectory);
+				throw new IOException("Impossible write journal of operation: " + journalFile.getPath());
+			}
+		}
+		return journal;
+	}
+	
+	/**
+	 * After successful operation journal and intermediate data are deleted, otherwise they are kept for resuming
+	 * (only if journal is written, see getOperationJournal()). Temporary directory of journal in memory is deleted in any case.
+	 * @param journal Journal of operation
+	 * @param isOperationSuccessful Result of operation
+	 */
+	private void finishOperationJournal(OperationJournal journal, boolean isOperationSuccessful) {
+		if (journal.isWritten() == false) {
+			this.getProcessingOptions().getWorkspace().deleteTempDirectory(journal.getJobDirectory());
+			if (isOperationSuccessful == true) {
+				journal.finish();
+			}
+		} else if (isOperationSuccessful == true) {
+			journal.finish();
+		} else {
+			Loggers.fatal(this, TextMessage.OPERATION_JOURNAL_KEPT, new Object[]{journal.getFile().getPath(), journal.getJobDirectory()});
+		}
+	}
+	
+	/**
+	 * Journal of hiding is placed near report (see getOperationJournal()). Journal is resumed only with the same settings,
+	 * which define images and data in them (density, size and compression of images, cover images, encryption and archive):
+	 * images of interrupted operation with other settings are not mixed with new images.
+	 * @param inputDataFile Input file (or directory) for processing
+	 * @param imageForSteganography Image file (or directory with images)
+	 * @param outputDirectoryForImages Directory for received image file with data into them
+	 * @param outputReportFile XML file for restoring information in the future
+	 * @param pipelineOrder Order of encryption and compression
+	 * @return Journal of hiding
+	 * @throws IOException If job directory or journal could not be created, or journal of other operation exists
+	 */
+	private OperationJournal getHideJournal(File inputDataFile, File imageForSteganography, File outputDirectoryForImages, File outputReportFile, 
+			PipelineOrder pipelineOrder) throws IOException {
+		ProcessingOptions processingOptions = this.getProcessingOptions();
+		String previousReportPath = "";
+		if (processingOptions.getPreviousReportFile() != null) {
+			previousReportPath = processingOptions.getPreviousReportFile().getAbsolutePath();
+		}
+		return this.getOperationJournal(OperationJournal.getJournalFile(outputReportFile), "hide", 
+				new String[]{inputDataFile.getName(), outputDirectoryForImages.getAbsolutePath(), imageForSteganography.getAbsolutePath(), 
+				pipelineOrder.getOrderName(), processingOptions.getCipherMode().getCipherMode(), 
+				processingOptions.getCompressCodec().getCodecName(), String.valueOf(processingOptions.getCompressionLevel()), 
+				String.valueOf(processingOptions.getNumberBitsPerChannel()), String.valueOf(processingOptions.isAlphaChannelUsed()), 
+				String.valueOf(processingOptions.getImageWidth()), String.valueOf(processingOptions.getImageHeight()), 
+				String.valueOf(processingOptions.getMaxImageFileBytes()), String.valueOf(processingOptions.getPngCompressionLevel()), 
+				processingOptions.getCoverAssignmentOrder().getOrderName(), String.valueOf(processingOptions.isIncrementalBackup()), 
+				String.valueOf(processingOptions.isDeduplicationUsed()), previousReportPath}, true);
+	}
+	
+	/**
+	 * Journal of extraction is placed near output directory (see getOperationJournal()).
+	 * Journal is resumed only for the same report.
+	 * @param inputReportXml XML file for restoring information
+	 * @param outputDirectoryForExtractedFiles Directory where will be placed extracted data
+	 * @param pipelineOrder Order of processing of data from report
+	 * @param isJobDirectoryNeeded Create job directory in workspace for intermediate data
+	 * @return Journal of extraction
+	 * @throws IOException If job directory or journal could not be created, or journal of other operation exists
+	 */
+	private OperationJournal getExtractJournal(File inputReportXml, File outputDirectoryForExtractedFiles, PipelineOrder pipelineOrder, 
+			boolean isJobDirectoryNeeded) throws IOException {
+		return this.getOperationJournal(OperationJournal.getJournalFile(outputDirectoryForExtractedFiles.getAbsoluteFile()), "extract", 
+				new String[]{inputReportXml.getAbsolutePath(), pipelineOrder.getOrderName()}, isJobDirectoryNeeded);
+	}
+	
+	/**
+	 * Intermediate data are kept in memory, if it is set for workspace, and data are not too large
+	 * @param numberDataBytes Size of data for processing
+	 * @return <code>true</code> if data could be processed in memory
+	 */
+	private boolean isDataFitIntoMemory(long numberDataBytes) {
+		Workspace workspace = this.getProcessingOptions().getWorkspace();
+		boolean isDataFitIntoMemory = workspace.isDataFitIntoMemory(numberDataBytes);
+		if (	(workspace.isInMemory() == true) && (isDataFitIntoMemory == false)	) {
+			Loggers.debug(this, TextMessage.MAIN_PROCESSOR_IN_MEMORY_NOT_POSSIBLE, new Object[]{numberDataBytes, Workspace.MAX_IN_MEMORY_BYTES, workspace.getBaseDirectory().getPath()});
+		}
+		return isDataFitIntoMemory;
+	}
+	
+	
+	/**
+	 * Streaming variant of encryptCompressHideFiles(): stages are chained in memory as
+	 * encryption -> archive stream -> chunks of data -> images, so only images touch disk
+	 * (there are no temporary directories with encrypted files and archive).
+	 * Archive is written by separate thread into pipe, and current thread puts it into images.
+	 * Result (images and report) is extracted by usual way.
+	 * @param inputDataFile Input file (or directory) for processing
+	 * @param password Secret phrase for encryption
+	 * @param imageForSteganography Image file (or directory with images)
+	 * @param outputDirectoryForImages Directory for received image file with data into them
+	 * @param outputReportFile XML file for restoring information in the future
+	 * @return <code>true</code> if all operations are successful
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private boolean encryptCompressHideFilesByStream(File inputDataFile, char[] password, File imageForSteganography, File outputDirectoryForImages, File outputReportFile) throws IOException, InterruptedException {
+		boolean isOperationSuccessful = false;
+		SteganographyRasterLSB steganographyRaster = new SteganographyRasterLSB(this.getProcessingOptions().getNumberBitsPerChannel(), this.getProcessingOptions().isAlphaChannelUsed());
+		SteganographyImageLSB steganographyImageLSB = new SteganographyImageLSB(this.getProcessingOptions().getNumberThreads(), steganographyRaster);
+		steganographyImageLSB.setPngCompressionLevel(this.getProcessingOptions().getPngCompressionLevel());
+		steganographyImageLSB.setCoverAssignmentOrder(this.getProcessingOptions().getCoverAssignmentOrder());
+		if (	(outputDirectoryForImages.exists() == false) || (outputDirectoryForImages.isDirectory() == false)	) {
+			outputDirectoryForImages.mkdirs();
+		}
+		/*
+		 * Size of archive is not known until it is written, so plan is made for size of input data
+		 * (encrypted data are not compressed, and archive is only a little larger than input data)
+		 */
+		CapacityPlan capacityPlan = this.getCapacityPlan(FileUtils.sizeOf(inputDataFile), imageForSteganography, steganographyImageLSB, steganographyRaster);
+		if (	(capacityPlan != null) && 
+				(steganographyImageLSB.setResizedImageSize(capacityPlan.getImageWidth(), capacityPlan.getImageHeight()) == true)	) {
+			PipedInputStream archiveInputStream = new PipedInputStream(ARCHIVE_STREAM_BUFFER_BYTES);
+			OutputStream archiveOutputStream = new BufferedOutputStream(new PipedOutputStream(archiveInputStream), ARCHIVE_STREAM_BUFFER_BYTES);
+			EncryptedArchiveStreamWriter archiveWriter = new EncryptedArchiveStreamWriter(inputDataFile, archiveOutputStream, password,
+					CipherAlgorithmName.AES, this.getProcessingOptions().getCipherMode(), CipherPadding.PKCS5Padding);
+			archiveWriter.setStageSettings(this.getProcessingOptions().getNumberEncryptThreads(), this.getProcessingOptions().getStageQueueCapacity());
+			archiveWriter.setCompressionLevel(this.getProcessingOptions().getCompressionLevel());
+			// Checksums of images for report are calculated as soon as images are written
+			ImageHashStage imageHashStage = new ImageHashStage(this.getProcessingOptions().getNumberHashThreads(), this.getProcessingOptions().getStageQueueCapacity());
+			steganographyImageLSB.setImageJournal(imageHashStage);
+			Thread archiveWriterThread = new Thread(archiveWriter, "archive-writer");
+			archiveWriterThread.start();
+			List<Map<File, Integer>> receivedImagesWithHiddenData = null;
+			try {
+				receivedImagesWithHiddenData = steganographyImageLSB.putDataStreamIntoImages(archiveInputStream, imageForSteganography, outputDirectoryForImages);
+			} finally {
+				// If putting into images was stopped by error, writer gets error on the next write, and stops too
+				IOUtils.closeQuietly(archiveInputStream);
+				archiveWriterThread.join();
+				if (receivedImagesWithHiddenData == null) {
+					imageHashStage.stop();
+				}
+			}
+			if (	(receivedImagesWithHiddenData != null) && (receivedImagesWithHiddenData.isEmpty() == false) && 
+					(archiveWriter.isWritingSuccessful() == true)	) {
+				isOperationSuccessful = makeAndSaveReport(receivedImagesWithHiddenData, this.getReportProcessingProperties(steganographyRaster, PipelineOrder.ENCRYPT_THEN_COMPRESS, outputReportFile), outputReportFile, 
+						imageHashStage.getImageHashes());
+			} else {
+				imageHashStage.stop();
+				Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_INTO_IMAGES_UNKNOWN_ERROR, new Object[]{inputDataFile, imageForSteganography, outputDirectoryForImages});
+			}
+		}
+		return isOperationSuccessful;
+	}
+	
+	/**
+	 * Size of buffer of pipe between archive writer and steganography (in streaming mode)
+	 */
+	private static final int ARCHIVE_STREAM_BUFFER_BYTES = 1024 * 1024;
+	
 	
 	/**
 	 * Receive original data files
@@ -126,6 +633,31 @@ public class MainProcessor {
 	 * <br/><code>false</code> otherwise
 	 */
 	public boolean decryptUncompressExtractFiles (File inputDirectoryWithImagesContainsData, File inputReportXml, File outputDirectoryForExtractedFiles, char[] password) {
+		boolean isOperationSuccessful = false;
+		Map<String, String> processingProperties = new ParserFileReportXml().getProcessingProperties(inputReportXml);
+		if (	(processingProperties.containsKey("manifest") == true) && (this.getPipelineOrderFromReport(processingProperties) != null)	) {
+			try {
+				isOperationSuccessful = this.decryptUncompressExtractFilesIncremental(inputReportXml, processingProperties, outputDirectoryForExtractedFiles, password);
+			} catch (Exception ex) {
+				Loggers.fatal(this, TextMessage.MAIN_PROCESSOR_OPERATION_DECRYPT_UNCOMPRESS_EXTRACT_FILES_UNKNOWN_ERROR, new Object[]{inputDirectoryWithImagesContainsData, inputReportXml, outputDirectoryForExtractedFiles}, ex);
+			}
+		} else {
+			isOperationSuccessful = this.decryptUncompressExtractImageSet(inputDirectoryWithImagesContainsData, inputReportXml, outputDirectoryForExtractedFiles, password, true);
+		}
+		return isOperationSuccessful;
+	}
+	
+	/**
+	 * Extract data from one image set (images and their report), see decryptUncompressExtractFiles()
+	 * @param inputDirectoryWithImagesContainsData Directory for image file with data into them 
+	 * @param inputReportXml XML file for restoring information
+	 * @param outputDirectoryForExtractedFiles Directory where will be placed extracted data
+	 * @param password Secret phrase for decryption
+	 * @param isJournalKept Keep journal of operation after error, so extraction could be resumed
+	 * (otherwise journal and its intermediate data are deleted in any case)
+	 * @return <code>true</code> if data extracted successful
+	 */
+	private boolean decryptUncompressExtractImageSet (File inputDirectoryWithImagesContainsData, File inputReportXml, File outputDirectoryForExtractedFiles, char[] password, boolean isJournalKept) {
 		boolean isOperationSuccessful = false;
 		
 			Loggers.debug(this, TextMessage.MAIN_PROCESSOR_OPERATION_DECRYPT_UNCOMPRESS_EXTRACT_FILES_BEGIN, new Object[]{inputDirectoryWithImagesContainsData.getPath(), inputReportXml.getPath(), outputDirectoryForExtractedFiles.getPath()});
@@ -149,6 +681,8 @@ public class MainProcessor {
 						(expectedMd5Checksum.equals(receivedMd5Checksum) == false) || 
 						(expectedAdler32Checksum.equals(receivedAdler32Checksum) == false)	) {
 					Loggers.fatal(this, TextMessage.HASH_CHECKSUM_FILE_NOT_EQUALS, new Object[]{expectedMd5Checksum + " | " + expectedAdler32Checksum, receivedMd5Checksum + " | " + receivedAdler32Checksum, expectedFileSize, receivedFileSize, currentImageFile.getPath()});
+				} else if (this.isImageSizeAsExpected(currentImageFile, fileAndProperties) == false) {
+					// Message is already logged
 				} else {
 					Map<File, Integer> imageWithHiddenData = new HashMap<File, Integer>();
 					imageWithHiddenData.put(currentImageFile, expectedNumberHiddenDataBytes);
@@ -157,51 +691,97 @@ public class MainProcessor {
 			}
 			try {
 			// Now we have completed list of maps with files and numbers of hidden data bytes
-			if(imagesWithHiddenData.size() > 0) {
+			Map<String, String> processingProperties = parserFileReportXml.getProcessingProperties(inputReportXml);
+			PipelineOrder pipelineOrder = this.getPipelineOrderFromReport(processingProperties);
+			CipherMode cipherMode = this.getCipherModeFromReport(processingProperties);
+			CompressCodec compressCodec = this.getCompressCodecFromReport(processingProperties);
+			if (	(pipelineOrder == null) || (cipherMode == null) || (compressCodec == null)	) {
+				// Message is already logged
+			} else if(	(imagesWithHiddenData.size() > 0) && (pipelineOrder == PipelineOrder.COMPRESS_THEN_ENCRYPT)	) {
+				if (this.getProcessingOptions().isStreamingUsed() == true) {
+					Loggers.debug(this, TextMessage.MAIN_PROCESSOR_STREAMING_NOT_SUPPORTED, new Object[]{pipelineOrder.getOrderName()});
+				}
+				SteganographyImageLSB steganographyImage = this.getSteganographyImageFromReport(processingProperties);
+				isOperationSuccessful = this.extractDecryptUncompressFiles(imagesWithHiddenData, steganographyImage, outputDirectoryForExtractedFiles, password, cipherMode, 
+						compressCodec, inputReportXml, isJournalKept);
+			} else if(	(imagesWithHiddenData.size() > 0) && 
+					((this.getProcessingOptions().isStreamingUsed() == true) || (this.getProcessingOptions().getWorkspace().isInMemory() == true)) &&
+					(this.isStreamingCodecSupported(compressCodec) == true)	) {
+				SteganographyImageLSB steganographyImage = this.getSteganographyImageFromReport(processingProperties);
+				OperationJournal journal = this.getExtractJournal(inputReportXml, outputDirectoryForExtractedFiles, pipelineOrder, false);
+				try {
+					isOperationSuccessful = this.decryptUncompressExtractFilesByStream(imagesWithHiddenData, steganographyImage, outputDirectoryForExtractedFiles, password, cipherMode, journal);
+				} finally {
+					this.finishOperationJournal(journal, (isOperationSuccessful == true) || (isJournalKept == false));
+				}
+			} else if(imagesWithHiddenData.size() > 0) {
+				// Intermediate data are in job directory of workspace, they are kept until the end of operation for resuming
+				OperationJournal journal = this.getExtractJournal(inputReportXml, outputDirectoryForExtractedFiles, pipelineOrder, true);
+				File jobDirectory = journal.getJobDirectory();
 				FileIO fileIO = new FileIO();
-				File tempDirectory = fileIO.createTempDirectory();
-				
-				SteganographyImageLSB steganographyImage = new SteganographyImageLSB();
-				File extractedArchiveDataFile = new File(tempDirectory + File.separator + "archive_" + UUID.randomUUID());
-				boolean isReceivingArchiveFromImagesSuccessful = steganographyImage.extractDataFileFromImages(imagesWithHiddenData, extractedArchiveDataFile);
-				if ((isReceivingArchiveFromImagesSuccessful == true) && (extractedArchiveDataFile.exists() && 
-						extractedArchiveDataFile.length() > 0)) {
-					// We have got a zip archive. Next step - uncompress it
-					IDataCompress compressZip = new CompressZip();
-					File directoryForUncompressedFiles = new File(tempDirectory + File.separator + "uncompressed_" + UUID.randomUUID());
-					boolean isUncompressionSuccessful = compressZip.uncompress(extractedArchiveDataFile, directoryForUncompressedFiles);
-					if (isUncompressionSuccessful == true) {
+				try {
+					if (journal.isStageDone("archive") == false) {
+						SteganographyImageLSB steganographyImage = this.getSteganographyImageFromReport(processingProperties);
+						File extractedArchiveDataFile = fileIO.createSpecificFile(jobDirectory, "archive", "file");
+						boolean isReceivingArchiveFromImagesSuccessful = steganographyImage.extractDataFileFromImages(imagesWithHiddenData, extractedArchiveDataFile);
+						if ((isReceivingArchiveFromImagesSuccessful == true) && (extractedArchiveDataFile.exists() && 
+								extractedArchiveDataFile.length() > 0)) {
+							journal.addStage("archive", extractedArchiveDataFile.getName());
+						} else {
+							Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_EXTRACT_FILE_FROM_IMAGES_UNKNOWN_ERROR, new Object[]{extractedArchiveDataFile});
+						}
+					}
+					if (	(journal.isStageDone("archive") == true) && (journal.isStageDone("uncompressed") == false)	) {
+						// We have got a zip archive. Next step - uncompress it
+						File extractedArchiveDataFile = new File(jobDirectory, journal.getStageValue("archive"));
+						IDataCompress dataCompress = new DataCompress(compressCodec).getIDataCompress();
+						File directoryForUncompressedFiles = fileIO.createSpecificFile(jobDirectory, "uncompressed", "directory");
+						boolean isUncompressionSuccessful = dataCompress.uncompress(extractedArchiveDataFile, directoryForUncompressedFiles);
+						if (isUncompressionSuccessful == true) {
+							journal.addStage("uncompressed", directoryForUncompressedFiles.getName());
+							FileUtils.deleteQuietly(extractedArchiveDataFile);
+						} else {
+							Loggers.fatal(this, TextMessage.ZIP_UNCOMPRESS_IMPOSSIBLE);
+						}
+					}
+					if (	(journal.isStageDone("uncompressed") == true) && (journal.isStageDone("decrypted") == false)	) {
+						// Need to decrypt it
+						File directoryForUncompressedFiles = new File(jobDirectory, journal.getStageValue("uncompressed"));
+						File directoryForDecryptedFiles = fileIO.createSpecificFile(jobDirectory, "decrypted", "directory");
+						IDataCrypt dataCrypt = new DataCrypt(CipherAlgorithmName.AES, this.getProcessingOptions().getNumberThreads());
+						boolean isDecryptSuccessful = dataCrypt.cryptFile(Cipher.DECRYPT_MODE, directoryForUncompressedFiles, directoryForDecryptedFiles, password, cipherMode, CipherPadding.PKCS5Padding);
+						if (isDecryptSuccessful == true) {
+							journal.addStage("decrypted", directoryForDecryptedFiles.getName());
+							FileUtils.deleteQuietly(directoryForUncompressedFiles);
+						}
+					}
+					if (journal.isStageDone("decrypted") == true) {
 						if (outputDirectoryForExtractedFiles.exists() == false || outputDirectoryForExtractedFiles.isDirectory() == false) {
 							outputDirectoryForExtractedFiles.mkdirs();
 						}
-						// Need to decrypt it
-						File directoryForDecryptedFiles = new File(tempDirectory + File.separator + "decrypted_" + UUID.randomUUID());
-						IDataCrypt dataCrypt = new DataCrypt(CipherAlgorithmName.AES);
-						boolean isDecryptSuccessful = dataCrypt.cryptFile(Cipher.DECRYPT_MODE, directoryForUncompressedFiles, directoryForDecryptedFiles, password, CipherMode.CBC, CipherPadding.PKCS5Padding);
-						if(isDecryptSuccessful == true) {
-							/*
-							 * When packed, we archived encrypted directory. 
-							 * So, original data are into encrypted directory, which is into uncompressed directory.
-							 */
-							for (File uncompressedDir : directoryForDecryptedFiles.listFiles()) {
-								for(File encryptedDir : uncompressedDir.listFiles()) {
-									for (File decryptedFile : encryptedDir.listFiles()) {
-										try {
-											FileUtils.moveToDirectory(decryptedFile, outputDirectoryForExtractedFiles, false);
-											isOperationSuccessful = true;
-										} catch (IOException ex) {
-											Loggers.fatal(this, TextMessage.FILE_MOVE_IMPOSSIBLE, new Object[]{decryptedFile, outputDirectoryForExtractedFiles}, ex);
-										}
+						File directoryForDecryptedFiles = new File(jobDirectory, journal.getStageValue("decrypted"));
+						/*
+						 * When packed, we archived encrypted directory. 
+						 * So, original data are into encrypted directory, which is into uncompressed directory.
+						 * Files, which were moved by interrupted operation, are not in decrypted directory anymore.
+						 */
+						boolean isAllFilesMoved = true;
+						for (File uncompressedDir : directoryForDecryptedFiles.listFiles()) {
+							for(File encryptedDir : uncompressedDir.listFiles()) {
+								for (File decryptedFile : encryptedDir.listFiles()) {
+									try {
+										FileUtils.moveToDirectory(decryptedFile, outputDirectoryForExtractedFiles, false);
+									} catch (IOException ex) {
+										isAllFilesMoved = false;
+										Loggers.fatal(this, TextMessage.FILE_MOVE_IMPOSSIBLE, new Object[]{decryptedFile, outputDirectoryForExtractedFiles}, ex);
 									}
 								}
 							}
 						}
-					} else {
-						Loggers.fatal(this, TextMessage.ZIP_UNCOMPRESS_IMPOSSIBLE);
+						isOperationSuccessful = isAllFilesMoved;
 					}
-						
-				} else {
-					Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_EXTRACT_FILE_FROM_IMAGES_UNKNOWN_ERROR, new Object[]{extractedArchiveDataFile});
+				} finally {
+					this.finishOperationJournal(journal, (isOperationSuccessful == true) || (isJournalKept == false));
 				}
 			} else {
 				Loggers.fatal(this, TextMessage.MAIN_PROCESSOR_OPERATION_DECRYPT_UNCOMPRESS_EXTRACT_FILES_ERROR_NO_DATA_FOR_PROCESSING);
@@ -213,13 +793,495 @@ public class MainProcessor {
 		return isOperationSuccessful;
 	}
 	
+	/**
+	 * Extract latest state of data of incremental backup: files are extracted from image sets, which are listed
+	 * in manifest (each image set is extracted into temporary directory of workspace), and moved into output directory.
+	 * Hash of each file is checked with manifest.
+	 * <p/>Files of deduplication are assembled from their chunks, when all image sets with these chunks are extracted.
+	 * @param inputReportXml Report of the latest backup
+	 * @param processingProperties Settings of processing from report (with name of manifest)
+	 * @param outputDirectoryForExtractedFiles Directory where will be placed extracted data
+	 * @param password Secret phrase for decryption
+	 * @return <code>true</code> if all files of manifest were extracted successful
+	 * @throws IOException
+	 */
+	private boolean decryptUncompressExtractFilesIncremental(File inputReportXml, Map<String, String> processingProperties, File outputDirectoryForExtractedFiles, char[] password) throws IOException {
+		boolean isOperationSuccessful = false;
+		BackupManifest manifest = new BackupManifest();
+		File manifestFile = new File(inputReportXml.getAbsoluteFile().getParentFile(), processingProperties.get("manifest"));
+		if (manifest.load(manifestFile, password) == true) {
+			Workspace workspace = this.getProcessingOptions().getWorkspace();
+			File tempDirectory = workspace.createTempDirectory();
+			try {
+				if (tempDirectory == null) {
+					throw new IOException("Impossible create temporary directory in: " + workspace.getBaseDirectory().getPath());
+				}
+				isOperationSuccessful = true;
+				String outputDirectoryPath = outputDirectoryForExtractedFiles.getCanonicalPath() + File.separator;
+				for (BackupManifestEntry entry : manifest.getEntries()) {
+					File outputFile = new File(outputDirectoryForExtractedFiles, entry.getPath());
+					// Path should not be placed out of output directory (e.g. with "../" in path)
+					if (outputFile.getCanonicalPath().startsWith(outputDirectoryPath) == false) {
+						isOperationSuccessful = false;
+						Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{entry.getPath()});
+					} else if (	(entry.isDirectory() == true) && (outputFile.isDirectory() == false) && (outputFile.mkdirs() == false)	) {
+						isOperationSuccessful = false;
+						Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{outputFile.getPath()});
+					}
+				}
+				// Image sets with chunks of files are kept until these files are assembled
+				Set<Integer> chunkImageSets = new HashSet<Integer>();
+				List<BackupManifestEntry> chunkedFileEntries = new ArrayList<BackupManifestEntry>();
+				for (BackupManifestEntry entry : manifest.getEntries()) {
+					if (entry.isChunked() == true) {
+						chunkedFileEntries.add(entry);
+						for (String chunkDigest : entry.getChunkDigests()) {
+							chunkImageSets.add(manifest.getChunkStore().getImageSetIndex(chunkDigest));
+						}
+					}
+				}
+				for (int i = 0; (i < manifest.getNumberImageSets()) && (isOperationSuccessful == true); i++) {
+					List<BackupManifestEntry> fileEntries = manifest.getFileEntries(i);
+					if (	(fileEntries.isEmpty() == false) || (chunkImageSets.contains(i) == true)	) {
+						File imageSetDirectory = this.getExtractedImageSetDirectory(tempDirectory, i);
+						isOperationSuccessful = this.decryptUncompressExtractImageSet(manifest.getImageDirectory(i), manifest.getReportFile(i), imageSetDirectory, password, false);
+						for (BackupManifestEntry entry : fileEntries) {
+							if (isOperationSuccessful == true) {
+								isOperationSuccessful = this.moveExtractedFile(new File(imageSetDirectory, entry.getPath()), entry, new File(outputDirectoryForExtractedFiles, entry.getPath()));
+							}
+						}
+						if (chunkImageSets.contains(i) == false) {
+							// Other files of image set are not needed (they were changed by next backups)
+							FileUtils.deleteQuietly(imageSetDirectory);
+						}
+					}
+				}
+				for (BackupManifestEntry entry : chunkedFileEntries) {
+					if (isOperationSuccessful == true) {
+						isOperationSuccessful = this.assembleChunkedFile(entry, manifest, tempDirectory, new File(outputDirectoryForExtractedFiles, entry.getPath()));
+					}
+				}
+			} finally {
+				workspace.deleteTempDirectory(tempDirectory);
+			}
+		}
+		return isOperationSuccessful;
+	}
 	
+	private File getExtractedImageSetDirectory(File tempDirectory, int imageSetIndex) {
+		return new File(tempDirectory.getPath() + File.separator + "image_set_" + imageSetIndex);
+	}
+	
+	/**
+	 * Assemble file of deduplication from its chunks (they are in directories of extracted image sets),
+	 * and check it with manifest
+	 * @param entry Expected file from manifest
+	 * @param manifest Manifest with index of chunks
+	 * @param tempDirectory Temporary directory with extracted image sets
+	 * @param outputFile Place of file in output directory (file is replaced, if it exists)
+	 * @return <code>true</code> if file is the same, as in manifest, and it is assembled successful
+	 * @throws IOException
+	 */
+	private boolean assembleChunkedFile(BackupManifestEntry entry, BackupManifest manifest, File tempDirectory, File outputFile) throws IOException {
+		File assembledFile = new File(tempDirectory.getPath() + File.separator + "assembled_file");
+		OutputStream assembledOutputStream = FileUtils.openOutputStream(assembledFile);
+		try {
+			for (String chunkDigest : entry.getChunkDigests()) {
+				File imageSetDirectory = this.getExtractedImageSetDirectory(tempDirectory, manifest.getChunkStore().getImageSetIndex(chunkDigest));
+				File chunkFile = new File(imageSetDirectory.getPath() + File.separator + CHUNKS_DIRECTORY_NAME + File.separator + chunkDigest);
+				FileUtils.copyFile(chunkFile, assembledOutputStream);
+			}
+			assembledOutputStream.close();
+		} finally {
+			IOUtils.closeQuietly(assembledOutputStream);
+		}
+		return this.moveExtractedFile(assembledFile, entry, outputFile);
+	}
+	
+	/**
+	 * Check file, which was extracted from image set, and move it into its place in output directory
+	 * @param extractedFile File in temporary directory
+	 * @param entry Expected file from manifest
+	 * @param outputFile Place of file in output directory (file is replaced, if it exists)
+	 * @return <code>true</code> if file is the same, as in manifest, and it is moved successful
+	 * @throws IOException
+	 */
+	private boolean moveExtractedFile(File extractedFile, BackupManifestEntry entry, File outputFile) throws IOException {
+		boolean isMovingSuccessful = false;
+		if (	(extractedFile.isFile() == true) && (extractedFile.length() == entry.getNumberBytes()) &&
+				(entry.getHash().equals(new HashFileCalculator(extractedFile).getHash(HashFileAlgorithmName.SHA256)) == true)	) {
+			if (outputFile.exists() == true) {
+				FileUtils.forceDelete(outputFile);
+			}
+			FileUtils.moveFile(extractedFile, outputFile);
+			outputFile.setLastModified(entry.getLastModified());
+			isMovingSuccessful = true;
+		} else {
+			Loggers.fatal(this, TextMessage.BACKUP_MANIFEST_FILE_NOT_EQUALS, new Object[]{entry.getPath(), extractedFile.getPath()});
+		}
+		return isMovingSuccessful;
+	}
+	
+	/**
+	 * Streaming extract: images -> archive stream -> decryption of each entry -> output directory,
+	 * so extracted data are written only once, into their final place (there are no temporary archive
+	 * and directories with uncompressed and decrypted files).
+	 * Current thread extracts archive from images into pipe, and separate thread reads and decrypts it.
+	 * @param imagesWithHiddenData Images (in right order) with numbers of hidden data bytes
+	 * @param steganographyImage Extractor of data (with the same density, as data were putted into images)
+	 * @param outputDirectoryForExtractedFiles Directory where will be placed extracted data
+	 * @param password Secret phrase for decryption
+	 * @param cipherMode Mode of cipher, which was used for encryption (from report)
+	 * @param journal Journal of operation: written files are recorded, files of interrupted operation are not written again
+	 * @return <code>true</code> if all data were extracted and decrypted successful
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private boolean decryptUncompressExtractFilesByStream(List<Map<File, Integer>> imagesWithHiddenData, SteganographyImageLSB steganographyImage, 
+			File outputDirectoryForExtractedFiles, char[] password, CipherMode cipherMode, OperationJournal journal) throws IOException, InterruptedException {
+		if (outputDirectoryForExtractedFiles.exists() == false || outputDirectoryForExtractedFiles.isDirectory() == false) {
+			outputDirectoryForExtractedFiles.mkdirs();
+		}
+		PipedInputStream archiveInputStream = new PipedInputStream(ARCHIVE_STREAM_BUFFER_BYTES);
+		OutputStream archiveOutputStream = new BufferedOutputStream(new PipedOutputStream(archiveInputStream), ARCHIVE_STREAM_BUFFER_BYTES);
+		EncryptedArchiveStreamReader archiveReader = new EncryptedArchiveStreamReader(archiveInputStream, outputDirectoryForExtractedFiles, password,
+				CipherAlgorithmName.AES, cipherMode, CipherPadding.PKCS5Padding);
+		archiveReader.setJournal(journal);
+		Thread archiveReaderThread = new Thread(archiveReader, "archive-reader");
+		archiveReaderThread.start();
+		boolean isReceivingArchiveFromImagesSuccessful = false;
+		try {
+			isReceivingArchiveFromImagesSuccessful = steganographyImage.extractDataStreamFromImages(imagesWithHiddenData, archiveOutputStream);
+		} finally {
+			// Reader gets end of archive; if reader was stopped by error, pipe is already closed and extracting was stopped too
+			IOUtils.closeQuietly(archiveOutputStream);
+			archiveReaderThread.join();
+		}
+		if (isReceivingArchiveFromImagesSuccessful == false) {
+			Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_EXTRACT_FILE_FROM_IMAGES_UNKNOWN_ERROR, new Object[]{"stream"});
+		}
+		return (isReceivingArchiveFromImagesSuccessful == true) && (archiveReader.isReadingSuccessful() == true);
+	}
 	
-	private boolean makeAndSaveReport(List<Map<File, Integer>> receivedImagesWithHiddenData, File outXmlFile) {
+	/**
+	 * Variant of decryptUncompressExtractFiles() for order "compress-encrypt": data from images are decrypted as one file
+	 * (it is archive of codec from report), and archive is uncompressed into output directory.
+	 * For in memory workspace (and not large data) encrypted archive and archive are kept in memory,
+	 * otherwise - encrypted archive is written into temporary directory of workspace, and it is uncompressed
+	 * at the same time as it is decrypted (see DataCrypt.cryptArchive()).
+	 * @param imagesWithHiddenData Images (in right order) with numbers of hidden data bytes
+	 * @param steganographyImage Extractor of data (with the same density, as data were putted into images)
+	 * @param outputDirectoryForExtractedFiles Directory where will be placed extracted data
+	 * @param password Secret phrase for decryption
+	 * @param cipherMode Mode of cipher, which was used for encryption (from report)
+	 * @param compressCodec Codec of archive (from report)
+	 * @param inputReportXml XML file for restoring information (for journal of operation)
+	 * @param isJournalKept Keep journal of operation after error, so extraction could be resumed
+	 * @return <code>true</code> if all data were extracted, decrypted and uncompressed successful
+	 * @throws IOException
+	 */
+	private boolean extractDecryptUncompressFiles(List<Map<File, Integer>> imagesWithHiddenData, SteganographyImageLSB steganographyImage, 
+			File outputDirectoryForExtractedFiles, char[] password, CipherMode cipherMode, CompressCodec compressCodec, File inputReportXml, boolean isJournalKept) throws IOException {
+		boolean isOperationSuccessful = false;
+		IStreamCrypt streamCrypt = new DataCrypt(CipherAlgorithmName.AES, this.getProcessingOptions().getNumberThreads()).getIStreamCrypt();
+		IDataCompress dataCompress = new DataCompress(compressCodec).getIDataCompress();
+		if (this.isDataFitIntoMemory(this.getNumberHiddenDataBytes(imagesWithHiddenData)) == true) {
+			ByteArrayOutputStream encryptedArchiveOutputStream = new ByteArrayOutputStream();
+			boolean isReceivingArchiveFromImagesSuccessful = steganographyImage.extractDataStreamFromImages(imagesWithHiddenData, encryptedArchiveOutputStream);
+			if (	(isReceivingArchiveFromImagesSuccessful == true) && (encryptedArchiveOutputStream.size() > 0)	) {
+				ByteArrayOutputStream archiveOutputStream = new ByteArrayOutputStream();
+				boolean isDecryptSuccessful = streamCrypt.cryptStream(Cipher.DECRYPT_MODE, new ByteArrayInputStream(encryptedArchiveOutputStream.toByteArray()), archiveOutputStream, 
+						password, cipherMode, CipherPadding.PKCS5Padding);
+				// Encrypted archive is not needed anymore
+				encryptedArchiveOutputStream = null;
+				if (isDecryptSuccessful == true) {
+					if (outputDirectoryForExtractedFiles.exists() == false || outputDirectoryForExtractedFiles.isDirectory() == false) {
+						outputDirectoryForExtractedFiles.mkdirs();
+					}
+					isOperationSuccessful = dataCompress.uncompress(new ByteArrayInputStream(archiveOutputStream.toByteArray()), outputDirectoryForExtractedFiles);
+				} else {
+					Loggers.fatal(this, TextMessage.CRYPT_DATA_IMPOSSIBLE);
+				}
+			} else {
+				Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_EXTRACT_FILE_FROM_IMAGES_UNKNOWN_ERROR, new Object[]{"memory"});
+			}
+		} else {
+			FileIO fileIO = new FileIO();
+			OperationJournal journal = this.getExtractJournal(inputReportXml, outputDirectoryForExtractedFiles, PipelineOrder.COMPRESS_THEN_ENCRYPT, true);
+			File jobDirectory = journal.getJobDirectory();
+			try {
+				if (journal.isStageDone("archive") == false) {
+					File encryptedArchiveFile = fileIO.createSpecificFile(jobDirectory, "encrypted", "file");
+					boolean isReceivingArchiveFromImagesSuccessful = steganographyImage.extractDataFileFromImages(imagesWithHiddenData, encryptedArchiveFile);
+					if (	(isReceivingArchiveFromImagesSuccessful == true) && (encryptedArchiveFile.length() > 0)	) {
+						journal.addStage("archive", encryptedArchiveFile.getName());
+					} else {
+						Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_EXTRACT_FILE_FROM_IMAGES_UNKNOWN_ERROR, new Object[]{encryptedArchiveFile});
+					}
+				}
+				if (	(outputDirectoryForExtractedFiles.isDirectory() == false) && (outputDirectoryForExtractedFiles.mkdirs() == false)	) {
+					Loggers.fatal(this, TextMessage.FILE_CREATE_IMPOSSIBLE, new Object[]{outputDirectoryForExtractedFiles.getPath()});
+				} else if (journal.isStageDone("decrypted") == true) {
+					// Journal of previous version: archive was decrypted into file
+					File archiveFile = new File(jobDirectory, journal.getStageValue("decrypted"));
+					isOperationSuccessful = dataCompress.uncompress(archiveFile, outputDirectoryForExtractedFiles);
+				} else if (journal.isStageDone("archive") == true) {
+					// Archive is uncompressed at the same time as it is decrypted, without archive file
+					File encryptedArchiveFile = new File(jobDirectory, journal.getStageValue("archive"));
+					DataCrypt dataCrypt = new DataCrypt(CipherAlgorithmName.AES, this.getProcessingOptions().getNumberThreads());
+					dataCrypt.setArchiveCompress(dataCompress);
+					isOperationSuccessful = dataCrypt.cryptArchive(Cipher.DECRYPT_MODE, encryptedArchiveFile, outputDirectoryForExtractedFiles, password, cipherMode, CipherPadding.PKCS5Padding);
+				}
+			} finally {
+				this.finishOperationJournal(journal, (isOperationSuccessful == true) || (isJournalKept == false));
+			}
+		}
+		return isOperationSuccessful;
+	}
+	
+	/**
+	 * @param imagesWithHiddenData Images with numbers of hidden data bytes
+	 * @return Total number of data bytes in all images
+	 */
+	private long getNumberHiddenDataBytes(List<Map<File, Integer>> imagesWithHiddenData) {
+		long numberHiddenDataBytes = 0;
+		for (Map<File, Integer> imageWithHiddenData : imagesWithHiddenData) {
+			for (Integer numberImageDataBytes : imageWithHiddenData.values()) {
+				numberHiddenDataBytes += numberImageDataBytes;
+			}
+		}
+		return numberHiddenDataBytes;
+	}
+	
+	/**
+	 * Order of encryption and compression, which was used for putting data into images.
+	 * Reports without version and order (made by first versions of application) have order "encrypt-compress".
+	 * @param processingProperties Settings of processing from report
+	 * @return Order of processing, or <code>null</code> if report is made by newer version of application, or order is unknown
+	 */
+	private PipelineOrder getPipelineOrderFromReport(Map<String, String> processingProperties) {
+		PipelineOrder pipelineOrder = PipelineOrder.ENCRYPT_THEN_COMPRESS;
+		if (	(processingProperties.containsKey("report_version") == true) && 
+				(Integer.valueOf(processingProperties.get("report_version")) > REPORT_VERSION)	) {
+			pipelineOrder = null;
+			Loggers.fatal(this, TextMessage.REPORT_XML_VERSION_UNSUPPORTED, new Object[]{processingProperties.get("report_version"), REPORT_VERSION});
+		} else if (processingProperties.containsKey("pipeline_order") == true) {
+			pipelineOrder = PipelineOrder.getPipelineOrder(processingProperties.get("pipeline_order"));
+			if (pipelineOrder == null) {
+				Loggers.fatal(this, TextMessage.REPORT_XML_PIPELINE_ORDER_UNKNOWN, new Object[]{processingProperties.get("pipeline_order")});
+			}
+		}
+		return pipelineOrder;
+	}
+	
+	/**
+	 * Data should be extracted with the same density, as they were putted into images
+	 * @param processingProperties Settings of processing from report
+	 * @return Extractor of data with properties from report
+	 */
+	private SteganographyImageLSB getSteganographyImageFromReport(Map<String, String> processingProperties) {
+		SteganographyRasterLSB steganographyRaster = this.getSteganographyRasterFromReport(processingProperties);
+		return new SteganographyImageLSB(this.getProcessingOptions().getNumberThreads(), steganographyRaster);
+	}
+	
+	
+	
+	/**
+	 * Check size of image, if it is saved in report (covers from pool could have different sizes)
+	 * @param imageFile Image with data
+	 * @param fileAndProperties Properties of image from report
+	 * @return <code>true</code> if report doesn't contain size of image, or image has the same size
+	 */
+	private boolean isImageSizeAsExpected(File imageFile, Map<String, String> fileAndProperties) {
+		boolean isImageSizeAsExpected = true;
+		if (	(fileAndProperties.containsKey("image_width") == true) && (fileAndProperties.containsKey("image_height") == true)	) {
+			int expectedImageWidth = Integer.valueOf(fileAndProperties.get("image_width"));
+			int expectedImageHeight = Integer.valueOf(fileAndProperties.get("image_height"));
+			Dimension receivedImageSize = null;
+			try {
+				receivedImageSize = SteganographyImageLSB.getImageSize(imageFile);
+			} catch (IOException ex) {
+				Loggers.fatal(this, TextMessage.REPORT_XML_IMAGE_SIZE_IMPOSSIBLE, new Object[]{imageFile.getPath()}, ex);
+			}
+			if (	(receivedImageSize == null) || (receivedImageSize.width != expectedImageWidth) || (receivedImageSize.height != expectedImageHeight)	) {
+				String receivedImageSizeText = "unknown";
+				if (receivedImageSize != null) {
+					receivedImageSizeText = receivedImageSize.width + " x " + receivedImageSize.height;
+				}
+				Loggers.fatal(this, TextMessage.MAIN_PROCESSOR_IMAGE_SIZE_NOT_EQUALS, new Object[]{expectedImageWidth, expectedImageHeight, receivedImageSizeText, imageFile.getPath()});
+				isImageSizeAsExpected = false;
+			}
+		}
+		return isImageSizeAsExpected;
+	}
+	
+	/**
+	 * Estimate number of images, size of image files and time of processing.
+	 * If max size of image file is set in options, here will be chosen size of images
+	 * (with minimal number of images), otherwise size of images is taken from options.
+	 * Planner is calibrated on the cover image (one image is encoded in memory).
+	 * For directory with images planner is calibrated on the first of them, and plan is only estimation:
+	 * covers keep their proportions, so they could be smaller than planned size of images.
+	 * @param numberDataBytes Size of data, which will be putted into images
+	 * @param imageForSteganography Original cover image (or directory with images)
+	 * @param steganographyImageLSB Object, which will put data into images
+	 * @param steganographyRaster Kernel with required density of data
+	 * @return Plan, or <code>null</code> if data can't be putted into images with required size
+	 * @throws IOException
+	 */
+	private CapacityPlan getCapacityPlan(long numberDataBytes, File imageForSteganography, SteganographyImageLSB steganographyImageLSB, SteganographyRasterLSB steganographyRaster) throws IOException, InterruptedException {
+		ProcessingOptions processingOptions = this.getProcessingOptions();
+		CapacityPlan capacityPlan = null;
+		CapacityPlanner capacityPlanner = new CapacityPlanner(steganographyRaster);
+		if (steganographyImageLSB.setResizedImageSize(processingOptions.getImageWidth(), processingOptions.getImageHeight()) == true) {
+			CoverImage coverImage = null;
+			if (imageForSteganography.isDirectory() == true) {
+				// Covers are kept in cache, so if size of images will not be changed by plan, they will not be resized again
+				List<CoverImage> coverImages = steganographyImageLSB.getResizedCoverImages(imageForSteganography);
+				if (coverImages.isEmpty() == false) {
+					coverImage = coverImages.get(0);
+				}
+			} else {
+				coverImage = steganographyImageLSB.getResizedCoverImage(imageForSteganography);
+			}
+			if (coverImage != null) {
+				capacityPlanner = CapacityPlanner.calibrate(coverImage, steganographyRaster, processingOptions.getPngCompressionLevel());
+			}
+			if (processingOptions.getMaxImageFileBytes() > 0) {
+				capacityPlan = capacityPlanner.makePlanWithinMaxImageFileSize(numberDataBytes, processingOptions.getMaxImageFileBytes(),
+						processingOptions.getImageWidth(), processingOptions.getImageHeight(), steganographyRaster, processingOptions.getNumberThreads());
+			} else {
+				capacityPlan = capacityPlanner.makePlan(numberDataBytes, processingOptions.getImageWidth(), processingOptions.getImageHeight(),
+						steganographyRaster, processingOptions.getNumberThreads());
+			}
+		}
+		if (capacityPlan != null) {
+			Loggers.debug(this, TextMessage.MAIN_PROCESSOR_CAPACITY_PLAN, new Object[]{capacityPlan.getNumberDataBytes(), capacityPlan.getImageWidth(), capacityPlan.getImageHeight(), 
+					capacityPlan.getNumberDataBytesPerImage(), capacityPlan.getNumberImages(), capacityPlan.getEstimatedTotalOutputBytes(), capacityPlan.getEstimatedTimeMillis()});
+		} else {
+			Loggers.fatal(this, TextMessage.MAIN_PROCESSOR_CAPACITY_PLAN_IMPOSSIBLE, new Object[]{numberDataBytes, processingOptions.getImageWidth(), processingOptions.getImageHeight(), processingOptions.getMaxImageFileBytes()});
+		}
+		return capacityPlan;
+	}
+	
+	/**
+	 * Version of format of report. Reports without version (made by first versions of application) have version 1,
+	 * version 2 contains order of encryption and compression, version 3 could refer to manifest of incremental backup,
+	 * version 4 contains mode of cipher, version 5 contains codec of compression.
+	 * Report with version over than this one can not be extracted.
+	 */
+	public static final int REPORT_VERSION = 5;
+	
+	/**
+	 * Settings, which are required for extracting data, and should be saved in report
+	 * @param steganographyRaster Kernel, which was used for putting data into images
+	 * @param pipelineOrder Order of encryption and compression of data
+	 * @param outputReportFile Report file (for incremental backup manifest is saved near it)
+	 * @return Names of settings (tags in report) and their values
+	 */
+	private Map<String, String> getReportProcessingProperties(SteganographyRasterLSB steganographyRaster, PipelineOrder pipelineOrder, File outputReportFile) {
+		Map<String, String> processingProperties = new LinkedHashMap<String, String>();
+		processingProperties.put("report_version", String.valueOf(REPORT_VERSION));
+		processingProperties.put("pipeline_order", pipelineOrder.getOrderName());
+		processingProperties.put("cipher_mode", this.getProcessingOptions().getCipherMode().getCipherMode());
+		processingProperties.put("compress_codec", this.getProcessingOptions().getCompressCodec().getCodecName());
+		processingProperties.put("bits_per_channel", String.valueOf(steganographyRaster.getNumberBitsPerChannel()));
+		processingProperties.put("alpha_channel", String.valueOf(steganographyRaster.isAlphaChannelUsed()));
+		if (this.getProcessingOptions().isIncrementalBackup() == true) {
+			processingProperties.put("manifest", BackupManifest.getManifestFile(outputReportFile).getName());
+			if (this.getProcessingOptions().getPreviousReportFile() != null) {
+				processingProperties.put("previous_report", this.getProcessingOptions().getPreviousReportFile().getName());
+			}
+		}
+		return processingProperties;
+	}
+	
+	/**
+	 * Mode of cipher, which is saved in report. Reports without it (made before version 4) were encrypted in CBC mode.
+	 * @param processingProperties Settings of processing from report
+	 * @return Mode of cipher, or <code>null</code> if mode in report is unknown
+	 */
+	private CipherMode getCipherModeFromReport(Map<String, String> processingProperties) {
+		CipherMode cipherMode = CipherMode.CBC;
+		if (processingProperties.containsKey("cipher_mode") == true) {
+			cipherMode = CipherMode.getCipherModeByName(processingProperties.get("cipher_mode"));
+			if (cipherMode == null) {
+				Loggers.fatal(this, TextMessage.REPORT_XML_CIPHER_MODE_UNKNOWN, new Object[]{processingProperties.get("cipher_mode")});
+			}
+		}
+		return cipherMode;
+	}
+	
+	/**
+	 * Codec of archive, which is saved in report. Reports without it (made before version 5) contain zip archive.
+	 * Level of compression is not needed for uncompressing, so it is not saved.
+	 * @param processingProperties Settings of processing from report
+	 * @return Codec of archive, or <code>null</code> if codec in report is unknown
+	 */
+	private CompressCodec getCompressCodecFromReport(Map<String, String> processingProperties) {
+		CompressCodec compressCodec = CompressCodec.ZIP;
+		if (processingProperties.containsKey("compress_codec") == true) {
+			compressCodec = CompressCodec.getCompressCodecByName(processingProperties.get("compress_codec"));
+			if (compressCodec == null) {
+				Loggers.fatal(this, TextMessage.REPORT_XML_COMPRESS_CODEC_UNKNOWN, new Object[]{processingProperties.get("compress_codec")});
+			}
+		}
+		return compressCodec;
+	}
+	
+	/**
+	 * Compression with codec and level from options of processing
+	 */
+	private IDataCompress getDataCompress() {
+		return new DataCompress(this.getProcessingOptions().getCompressCodec(), this.getProcessingOptions().getCompressionLevel()).getIDataCompress();
+	}
+	
+	/**
+	 * Archive of encrypted files is written (and read) by stream only as zip (see EncryptedArchiveStreamWriter),
+	 * for other codecs temporary files are used
+	 * @param compressCodec Codec of archive
+	 * @return <code>true</code> if archive of this codec could be processed by stream
+	 */
+	private boolean isStreamingCodecSupported(CompressCodec compressCodec) {
+		boolean isStreamingCodecSupported = (compressCodec == CompressCodec.ZIP);
+		if (	(isStreamingCodecSupported == false) && 
+				((this.getProcessingOptions().isStreamingUsed() == true) || (this.getProcessingOptions().getWorkspace().isInMemory() == true))	) {
+			Loggers.debug(this, TextMessage.MAIN_PROCESSOR_STREAMING_CODEC_NOT_SUPPORTED, new Object[]{compressCodec.getCodecName()});
+		}
+		return isStreamingCodecSupported;
+	}
+	
+	/**
+	 * Kernel with density of data, which is saved in report.
+	 * If report doesn't contain these settings (it was made by first version of application), will be used default density.
+	 * @param processingProperties Settings of processing from report
+	 * @return Kernel for extracting data from images
+	 */
+	private SteganographyRasterLSB getSteganographyRasterFromReport(Map<String, String> processingProperties) {
+		int numberBitsPerChannel = SteganographyRasterLSB.DEFAULT_BITS_PER_CHANNEL;
+		boolean isAlphaChannelUsed = false;
+		if (processingProperties.containsKey("bits_per_channel") == true) {
+			numberBitsPerChannel = Integer.valueOf(processingProperties.get("bits_per_channel"));
+		}
+		if (processingProperties.containsKey("alpha_channel") == true) {
+			isAlphaChannelUsed = Boolean.valueOf(processingProperties.get("alpha_channel"));
+		}
+		return new SteganographyRasterLSB(numberBitsPerChannel, isAlphaChannelUsed);
+	}
+	
+	private boolean makeAndSaveReport(List<Map<File, Integer>> receivedImagesWithHiddenData, Map<String, String> processingProperties, File outXmlFile) {
+		return this.makeAndSaveReport(receivedImagesWithHiddenData, processingProperties, outXmlFile, null);
+	}
+	
+	/**
+	 * @param imageHashes Checksums of images, calculated before (<code>null</code> - they are calculated by report)
+	 */
+	private boolean makeAndSaveReport(List<Map<File, Integer>> receivedImagesWithHiddenData, Map<String, String> processingProperties, File outXmlFile, 
+			Map<File, Map<HashFileAlgorithmName, String>> imageHashes) {
 		boolean isSavingReportSuccessful = false;
 		CreatorFileReportXml cfrx = new CreatorFileReportXml();
 		// It will be file with unique, randomly generated name
-		File receivedReportFile = cfrx.makeReport(receivedImagesWithHiddenData, outXmlFile.getParentFile());
+		File receivedReportFile = cfrx.makeReport(receivedImagesWithHiddenData, outXmlFile.getParentFile(), processingProperties, imageHashes);
 		// Now we need to put it by required file path
 		if (	(receivedReportFile.exists()) && (receivedReportFile.length() > 0)	) {
 			// If file already exists, we should replace old file by new file
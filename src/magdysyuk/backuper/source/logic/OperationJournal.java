@@ -0,0 +1,388 @@
+package magdysyuk.backuper.source.logic;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import magdysyuk.backuper.source.crypt.hash.HashFileAlgorithmName;
+import magdysyuk.backuper.source.crypt.hash.HashFileCalculator;
+import magdysyuk.backuper.source.filesystem.FileIO;
+import magdysyuk.backuper.source.logger.Loggers;
+import magdysyuk.backuper.source.logger.TextMessage;
+import magdysyuk.backuper.source.steganography.IImageJournal;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+
+/**
+ * Journal of long operation (hide or extract), so operation could be resumed after crash of application
+ * (e.g. with option "-resume") instead of starting from zero.
+ * <p/>Journal records progress by stages: finished stages (e.g. encrypted files, archive), which intermediate data
+ * are kept in job directory of workspace (see Workspace.createJobDirectory()), images with data (with their hashes),
+ * and written output files. Each record is appended and synchronized with disk at once.
+ * <p/>When resuming is not requested, journal is kept only in memory (see startInMemory()), and its intermediate data
+ * are in temporary directory of workspace, which is deleted at the end of operation (also after error).
+ * Journal of interrupted operation is not deleted at start of other operation: it is discarded only after
+ * successful operation without resuming (see finish()).
+ * <p/>Journal doesn't contain names of input files and nothing about password: parameters of operation are saved
+ * only as hash, which is used for checking, that resumed operation is the same. Stages, which are done already,
+ * keep data, encrypted by password of interrupted operation.
+ */
+public class OperationJournal implements IImageJournal {
+
+	private static final String JOURNAL_HEADER = "backuper_journal\t1";
+	private static final String JOURNAL_ENCODING = "UTF-8";
+
+	private File journalFile;
+	/**
+	 * Journal is written into file (otherwise it is kept only in memory, and operation could not be resumed)
+	 */
+	private boolean isWritten = true;
+	private String operationName = "";
+	private String parametersHash = "";
+	private File jobDirectory = null;
+	private Map<String, String> stages = new LinkedHashMap<String, String>();
+	private List<Map<File, Integer>> images = new ArrayList<Map<File, Integer>>();
+	private Map<File, String> imageHashes = new HashMap<File, String>();
+	private Map<String, Long> writtenFiles = new HashMap<String, Long>();
+	/**
+	 * Job directory and images of previous journal, they are deleted after successful operation without resuming
+	 */
+	private File previousJobDirectory = null;
+	private List<File> previousImageFiles = new ArrayList<File>();
+
+	/**
+	 * @param file Report (for hide) or output directory (for extract)
+	 * @return Journal file near it ("&lt;file name&gt;.journal")
+	 */
+	public static File getJournalFile(File file) {
+		return new File(file.getPath() + ".journal");
+	}
+
+	/**
+	 * @param journalFile File of journal (see getJournalFile())
+	 */
+	public OperationJournal(File journalFile) {
+		this.journalFile = journalFile;
+	}
+
+	public File getFile() {
+		return this.journalFile;
+	}
+
+	/**
+	 * @return <code>true</code> if journal is written into file (started by start() or resumed)
+	 */
+	public boolean isWritten() {
+		return this.isWritten;
+	}
+
+	/**
+	 * @return Directory with intermediate data of operation, or <code>null</code> if operation doesn't need it
+	 */
+	public File getJobDirectory() {
+		return this.jobDirectory;
+	}
+
+	/**
+	 * Read journal of interrupted operation. Images are checked by their hashes:
+	 * journal keeps images only up to the first missing or damaged one.
+	 * @param operationName Name of operation ("hide" or "extract")
+	 * @param parameters Parameters, which define result of operation (paths, order of processing)
+	 * @return <code>true</code> if journal of the same operation is read, and its job directory (if any) exists
+	 */
+	public synchronized boolean resume(String operationName, String[] parameters) {
+		boolean isResumePossible = (this.read() == true) && (this.operationName.equals(operationName) == true) &&
+				(this.parametersHash.equals(this.getParametersHash(parameters)) == true) &&
+				((this.jobDirectory == null) || (this.jobDirectory.isDirectory() == true));
+		if (isResumePossible == true) {
+			List<Map<File, Integer>> checkedImages = new ArrayList<Map<File, Integer>>();
+			for (int i = 0; i < this.images.size(); i++) {
+				Map<File, Integer> image = this.images.get(i);
+				File imageFile = image.keySet().iterator().next();
+				if (	(checkedImages.size() == i) && (imageFile.isFile() == true) &&
+						(this.imageHashes.get(imageFile).equals(new HashFileCalculator(imageFile).getHash(HashFileAlgorithmName.SHA256)) == true)	) {
+					checkedImages.add(image);
+				} else {
+					// Images after damaged one are not used, data will be putted into new images
+					FileUtils.deleteQuietly(imageFile);
+				}
+			}
+			if (checkedImages.size() < this.images.size()) {
+				this.images = checkedImages;
+				isResumePossible = this.rewrite();
+			}
+			Loggers.debug(this, TextMessage.OPERATION_JOURNAL_RESUMED, new Object[]{this.journalFile.getPath(), this.stages.keySet(), this.images.size(), this.writtenFiles.size()});
+		}
+		return isResumePossible;
+	}
+
+	/**
+	 * Start new journal (journal file should not exist, or should be resumed before, otherwise it is overwritten).
+	 * @param operationName Name of operation ("hide" or "extract")
+	 * @param parameters Parameters, which define result of operation (paths, order of processing)
+	 * @param jobDirectory Directory for intermediate data, or <code>null</code>
+	 * @return <code>true</code> if journal is started successful
+	 */
+	public synchronized boolean start(String operationName, String[] parameters, File jobDirectory) {
+		this.isWritten = true;
+		this.operationName = operationName;
+		this.parametersHash = this.getParametersHash(parameters);
+		this.jobDirectory = jobDirectory;
+		this.stages.clear();
+		this.images.clear();
+		this.imageHashes.clear();
+		this.writtenFiles.clear();
+		return this.rewrite();
+	}
+
+	/**
+	 * Start new journal, which is kept only in memory (operation could not be resumed after crash).
+	 * Previous journal (if any) is kept until the end of operation: it is discarded by finish().
+	 * @param operationName Name of operation ("hide" or "extract")
+	 * @param parameters Parameters, which define result of operation
+	 * @param jobDirectory Directory for intermediate data, or <code>null</code>
+	 */
+	public synchronized void startInMemory(String operationName, String[] parameters, File jobDirectory) {
+		this.previousJobDirectory = null;
+		this.previousImageFiles.clear();
+		if (this.read() == true) {
+			this.previousJobDirectory = this.jobDirectory;
+			for (Map<File, Integer> image : this.images) {
+				this.previousImageFiles.add(image.keySet().iterator().next());
+			}
+		}
+		this.isWritten = false;
+		this.operationName = operationName;
+		this.parametersHash = this.getParametersHash(parameters);
+		this.jobDirectory = jobDirectory;
+		this.stages.clear();
+		this.images.clear();
+		this.imageHashes.clear();
+		this.writtenFiles.clear();
+	}
+
+	/**
+	 * Operation is finished successful: journal and job directory are deleted (images and output files are kept).
+	 * For journal in memory, previous journal (if any) is discarded: its job directory and images
+	 * (except of images, which are written again by this operation) are deleted.
+	 */
+	public synchronized void finish() {
+		this.deleteJobDirectory();
+		if (this.isWritten == false) {
+			if (this.previousJobDirectory != null) {
+				FileUtils.deleteQuietly(this.previousJobDirectory);
+			}
+			List<File> imageFiles = new ArrayList<File>();
+			for (Map<File, Integer> image : this.images) {
+				imageFiles.add(image.keySet().iterator().next().getAbsoluteFile());
+			}
+			for (File previousImageFile : this.previousImageFiles) {
+				if (imageFiles.contains(previousImageFile.getAbsoluteFile()) == false) {
+					FileUtils.deleteQuietly(previousImageFile);
+				}
+			}
+		}
+		FileUtils.deleteQuietly(this.journalFile);
+	}
+
+	public synchronized boolean isStageDone(String stage) {
+		return this.stages.containsKey(stage);
+	}
+
+	/**
+	 * @return Value of finished stage (e.g. name of its file in job directory), or <code>null</code> if stage is not finished
+	 */
+	public synchronized String getStageValue(String stage) {
+		return this.stages.get(stage);
+	}
+
+	/**
+	 * @param stage Name of finished stage
+	 * @param value Value of stage (e.g. name of its file in job directory), without tabs and new lines
+	 * @return <code>true</code> if stage is recorded successful
+	 */
+	public synchronized boolean addStage(String stage, String value) {
+		this.stages.put(stage, value);
+		return this.appendLine("stage\t" + stage + "\t" + value);
+	}
+
+	/**
+	 * @return Checked images with data of interrupted operation, in order of data
+	 */
+	public synchronized List<Map<File, Integer>> getImages() {
+		return new ArrayList<Map<File, Integer>>(this.images);
+	}
+
+	/**
+	 * @return Number of data bytes in checked images (data, which are putted into images already)
+	 */
+	public synchronized long getNumberImagesDataBytes() {
+		long numberImagesDataBytes = 0;
+		for (Map<File, Integer> image : this.images) {
+			numberImagesDataBytes += image.values().iterator().next();
+		}
+		return numberImagesDataBytes;
+	}
+
+	@Override
+	public synchronized boolean addImage(File imageFile, int numberDataBytes) {
+		// Hash is needed only for checking of images at resuming
+		String imageHash = "";
+		if (this.isWritten == true) {
+			imageHash = new HashFileCalculator(imageFile).getHash(HashFileAlgorithmName.SHA256);
+		}
+		boolean isImageAdded = false;
+		if (imageHash != null) {
+			Map<File, Integer> image = new HashMap<File, Integer>();
+			image.put(imageFile, numberDataBytes);
+			this.images.add(image);
+			this.imageHashes.put(imageFile, imageHash);
+			isImageAdded = this.appendLine("image\t" + numberDataBytes + "\t" + imageHash + "\t" + imageFile.getAbsolutePath());
+		}
+		return isImageAdded;
+	}
+
+	/**
+	 * @param path Relative path of output file
+	 * @param outputFile Output file
+	 * @return <code>true</code> if file was written completely by interrupted operation (and its size is not changed)
+	 */
+	public synchronized boolean isFileWritten(String path, File outputFile) {
+		Long numberBytes = this.writtenFiles.get(path);
+		return (numberBytes != null) && (outputFile.isFile() == true) && (outputFile.length() == numberBytes.longValue());
+	}
+
+	/**
+	 * @param path Relative path of output file, which is written completely
+	 * @param outputFile Output file
+	 * @return <code>true</code> if file is recorded successful
+	 */
+	public synchronized boolean addWrittenFile(String path, File outputFile) {
+		this.writtenFiles.put(path, outputFile.length());
+		return this.appendLine("file\t" + outputFile.length() + "\t" + path);
+	}
+
+	/**
+	 * Read journal file (if it exists) into this journal
+	 * @return <code>true</code> if journal is read successful
+	 */
+	private boolean read() {
+		boolean isReadingSuccessful = false;
+		this.stages.clear();
+		this.images.clear();
+		this.imageHashes.clear();
+		this.writtenFiles.clear();
+		this.jobDirectory = null;
+		if (this.journalFile.isFile() == true) {
+			InputStream fileInputStream = new FileIO().getFileInputStream(this.journalFile);
+			try {
+				List<String> lines = IOUtils.readLines(new InputStreamReader(fileInputStream, JOURNAL_ENCODING));
+				isReadingSuccessful = (lines.isEmpty() == false) && (JOURNAL_HEADER.equals(lines.get(0)) == true);
+				for (int i = 1; (i < lines.size()) && (isReadingSuccessful == true); i++) {
+					String[] fields = lines.get(i).split("\t", 4);
+					if (	(fields[0].equals("operation") == true) && (fields.length == 3)	) {
+						this.operationName = fields[1];
+						this.parametersHash = fields[2];
+					} else if (	(fields[0].equals("job") == true) && (fields.length == 2)	) {
+						this.jobDirectory = new File(fields[1]);
+					} else if (	(fields[0].equals("stage") == true) && (fields.length == 3)	) {
+						this.stages.put(fields[1], fields[2]);
+					} else if (	(fields[0].equals("image") == true) && (fields.length == 4)	) {
+						File imageFile = new File(fields[3]);
+						Map<File, Integer> image = new HashMap<File, Integer>();
+						image.put(imageFile, Integer.valueOf(fields[1]));
+						this.images.add(image);
+						this.imageHashes.put(imageFile, fields[2]);
+					} else if (	(fields[0].equals("file") == true) && (fields.length == 3)	) {
+						this.writtenFiles.put(fields[2], Long.valueOf(fields[1]));
+					} else if (i < lines.size() - 1) {
+						// The last line could be not written completely at crash, other lines should be valid
+						isReadingSuccessful = false;
+					}
+				}
+			} catch (Exception ex) {
+				isReadingSuccessful = false;
+				Loggers.fatal(this, TextMessage.OPERATION_JOURNAL_READ_IMPOSSIBLE, new Object[]{this.journalFile.getPath()}, ex);
+			} finally {
+				IOUtils.closeQuietly(fileInputStream);
+			}
+		}
+		return isReadingSuccessful;
+	}
+
+	/**
+	 * Write journal file again (e.g. without damaged images)
+	 */
+	private boolean rewrite() {
+		// Directory of journal (e.g. of report) could be not created yet
+		File journalDirectory = this.journalFile.getAbsoluteFile().getParentFile();
+		if (	(journalDirectory != null) && (journalDirectory.isDirectory() == false)	) {
+			journalDirectory.mkdirs();
+		}
+		boolean isWritingSuccessful = (FileUtils.deleteQuietly(this.journalFile) == true) || (this.journalFile.exists() == false);
+		if (isWritingSuccessful == true) {
+			isWritingSuccessful = this.appendLine(JOURNAL_HEADER) && this.appendLine("operation\t" + this.operationName + "\t" + this.parametersHash);
+		}
+		if (	(isWritingSuccessful == true) && (this.jobDirectory != null)	) {
+			isWritingSuccessful = this.appendLine("job\t" + this.jobDirectory.getAbsolutePath());
+		}
+		for (Map.Entry<String, String> stage : this.stages.entrySet()) {
+			isWritingSuccessful = (isWritingSuccessful == true) && (this.appendLine("stage\t" + stage.getKey() + "\t" + stage.getValue()) == true);
+		}
+		for (Map<File, Integer> image : this.images) {
+			File imageFile = image.keySet().iterator().next();
+			isWritingSuccessful = (isWritingSuccessful == true) && 
+					(this.appendLine("image\t" + image.get(imageFile) + "\t" + this.imageHashes.get(imageFile) + "\t" + imageFile.getAbsolutePath()) == true);
+		}
+		for (Map.Entry<String, Long> writtenFile : this.writtenFiles.entrySet()) {
+			isWritingSuccessful = (isWritingSuccessful == true) && (this.appendLine("file\t" + writtenFile.getValue() + "\t" + writtenFile.getKey()) == true);
+		}
+		return isWritingSuccessful;
+	}
+
+	/**
+	 * Append line to journal file and synchronize it with disk, so record is not lost at crash
+	 * (journal in memory is not written)
+	 */
+	private boolean appendLine(String line) {
+		boolean isAppendingSuccessful = (this.isWritten == false);
+		if (this.isWritten == true) {
+			FileOutputStream fileOutputStream = null;
+			try {
+				fileOutputStream = new FileOutputStream(this.journalFile, true);
+				fileOutputStream.write((line + "\n").getBytes(JOURNAL_ENCODING));
+				fileOutputStream.flush();
+				fileOutputStream.getFD().sync();
+				fileOutputStream.close();
+				isAppendingSuccessful = true;
+			} catch (IOException ex) {
+				Loggers.fatal(this, TextMessage.OPERATION_JOURNAL_WRITE_IMPOSSIBLE, new Object[]{this.journalFile.getPath()}, ex);
+			} finally {
+				IOUtils.closeQuietly(fileOutputStream);
+			}
+		}
+		return isAppendingSuccessful;
+	}
+
+	private void deleteJobDirectory() {
+		if (this.jobDirectory != null) {
+			FileUtils.deleteQuietly(this.jobDirectory);
+		}
+	}
+
+	private String getParametersHash(String[] parameters) {
+		return DigestUtils.sha256Hex(StringUtils.join(parameters, "\t"));
+	}
+
+}
@@ -0,0 +1,44 @@
+package magdysyuk.backuper.source.logic;
+
+
+/**
+ * Order of stages of processing data before putting them into images
+ * (see MainProcessor.encryptCompressHideFiles()). Order is saved in report,
+ * so data are extracted by the same stages in reverse order.
+ */
+public enum PipelineOrder {
+	/**
+	 * Each file is encrypted separately, next - directory with encrypted files is compressed into zip archive
+	 * (encrypted data are not compressed, so archive is almost as large as input data)
+	 */
+	ENCRYPT_THEN_COMPRESS ("encrypt-compress"),
+	/**
+	 * Input file (or directory) is compressed into zip archive, next - whole archive is encrypted as one file
+	 * (text data take much less images)
+	 */
+	COMPRESS_THEN_ENCRYPT ("compress-encrypt");
+
+	private String orderName;
+	private PipelineOrder(String orderName) {
+		this.orderName = orderName;
+	}
+
+	public String getOrderName() {
+		return this.orderName;
+	}
+
+	/**
+	 * @param orderName Name of order (e.g. "compress-encrypt")
+	 * @return Order with this name, or <code>null</code> if there is no such order
+	 */
+	public static PipelineOrder getPipelineOrder(String orderName) {
+		PipelineOrder pipelineOrder = null;
+		for (PipelineOrder order : PipelineOrder.values()) {
+			if (order.getOrderName().equals(orderName) == true) {
+				pipelineOrder = order;
+			}
+		}
+		return pipelineOrder;
+	}
+
+}
@@ -0,0 +1,381 @@
+package magdysyuk.backuper.source.logic;
+
+import java.io.File;
+
+import magdysyuk.backuper.source.compress.CompressCodec;
+import magdysyuk.backuper.source.compress.DataCompress;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
+import magdysyuk.backuper.source.filesystem.Workspace;
+import magdysyuk.backuper.source.steganography.CoverAssignmentOrder;
+import magdysyuk.backuper.source.steganography.PngRowEncoder;
+import magdysyuk.backuper.source.steganography.SteganographyImageLSB;
+import magdysyuk.backuper.source.steganography.SteganographyRasterLSB;
+
+
+/**
+ * Settings of processing, which could be changed by user (through command line).
+ * All of them have default values, so MainProcessor works as before
+ * if nothing was changed.
+ */
+public class ProcessingOptions {
+
+	/**
+	 * How many threads will be used for processing images (putting data into images and extracting data),
+	 * and for en/de-crypt of files from directory tree.
+	 * 1 means processing in the current thread, image by image (file by file).
+	 */
+	private int numberThreads = 1;
+
+	public int getNumberThreads() {
+		return this.numberThreads;
+	}
+
+	/**
+	 * @param numberThreads Number of threads for processing images (values less than 1 are replaced by 1)
+	 */
+	public void setNumberThreads(int numberThreads) {
+		if (numberThreads < 1) {
+			numberThreads = 1;
+		}
+		this.numberThreads = numberThreads;
+	}
+
+	/**
+	 * How many low bits of each color in images will be replaced by data
+	 */
+	private int numberBitsPerChannel = SteganographyRasterLSB.DEFAULT_BITS_PER_CHANNEL;
+
+	public int getNumberBitsPerChannel() {
+		return this.numberBitsPerChannel;
+	}
+
+	/**
+	 * @param numberBitsPerChannel Number of low bits in each color, which will be used for data
+	 * (values out of range SteganographyRasterLSB.MIN_BITS_PER_CHANNEL ... MAX_BITS_PER_CHANNEL are replaced by nearest bound)
+	 */
+	public void setNumberBitsPerChannel(int numberBitsPerChannel) {
+		if (numberBitsPerChannel < SteganographyRasterLSB.MIN_BITS_PER_CHANNEL) {
+			numberBitsPerChannel = SteganographyRasterLSB.MIN_BITS_PER_CHANNEL;
+		} else if (numberBitsPerChannel > SteganographyRasterLSB.MAX_BITS_PER_CHANNEL) {
+			numberBitsPerChannel = SteganographyRasterLSB.MAX_BITS_PER_CHANNEL;
+		}
+		this.numberBitsPerChannel = numberBitsPerChannel;
+	}
+
+	/**
+	 * Will be data stored also in alpha channel of images (output images will be ARGB)
+	 */
+	private boolean isAlphaChannelUsed = false;
+
+	public boolean isAlphaChannelUsed() {
+		return this.isAlphaChannelUsed;
+	}
+
+	public void setAlphaChannelUsed(boolean isAlphaChannelUsed) {
+		this.isAlphaChannelUsed = isAlphaChannelUsed;
+	}
+
+	/**
+	 * Size of images with data (original image will be resized to this size)
+	 */
+	private int imageWidth = SteganographyImageLSB.DEFAULT_RESIZED_IMAGE_WIDTH;
+	private int imageHeight = SteganographyImageLSB.DEFAULT_RESIZED_IMAGE_HEIGHT;
+
+	public int getImageWidth() {
+		return this.imageWidth;
+	}
+
+	public int getImageHeight() {
+		return this.imageHeight;
+	}
+
+	/**
+	 * @param imageWidth Width of images with data (less than SteganographyImageLSB.MAX_IMAGE_SIDE)
+	 * @param imageHeight Height of images with data (less than SteganographyImageLSB.MAX_IMAGE_SIDE).
+	 * If max size of image file is set, only proportion of width and height is used.
+	 */
+	public void setImageSize(int imageWidth, int imageHeight) {
+		this.imageWidth = imageWidth;
+		this.imageHeight = imageHeight;
+	}
+
+	/**
+	 * Max size of one image file (in bytes). If it is set (more than 0), size of images
+	 * will be chosen by CapacityPlanner: minimal number of images, where each image file is not over than this limit.
+	 */
+	private long maxImageFileBytes = 0;
+
+	public long getMaxImageFileBytes() {
+		return this.maxImageFileBytes;
+	}
+
+	public void setMaxImageFileBytes(long maxImageFileBytes) {
+		this.maxImageFileBytes = maxImageFileBytes;
+	}
+
+	/**
+	 * Level of deflate compression of png files with data (from 0 to 9, or default level of ImageIO)
+	 */
+	private int pngCompressionLevel = PngRowEncoder.DEFAULT_COMPRESSION_LEVEL;
+
+	public int getPngCompressionLevel() {
+		return this.pngCompressionLevel;
+	}
+
+	/**
+	 * @param pngCompressionLevel Level of deflate compression of png files with data: from 0 (fastest) to 9 (smallest files).
+	 * Values out of this range mean default level of ImageIO png writer.
+	 */
+	public void setPngCompressionLevel(int pngCompressionLevel) {
+		if (	(pngCompressionLevel < PngRowEncoder.MIN_COMPRESSION_LEVEL) || (pngCompressionLevel > PngRowEncoder.MAX_COMPRESSION_LEVEL)	) {
+			pngCompressionLevel = PngRowEncoder.DEFAULT_COMPRESSION_LEVEL;
+		}
+		this.pngCompressionLevel = pngCompressionLevel;
+	}
+
+	/**
+	 * Hide and extract data in one pass: encryption, archive and images are chained by streams,
+	 * without temporary directories (see MainProcessor.encryptCompressHideFiles())
+	 */
+	private boolean isStreamingUsed = false;
+
+	public boolean isStreamingUsed() {
+		return this.isStreamingUsed;
+	}
+
+	public void setStreamingUsed(boolean isStreamingUsed) {
+		this.isStreamingUsed = isStreamingUsed;
+	}
+
+	/**
+	 * Settings of stages in streaming mode (see MainProcessor.encryptCompressHideFilesByStream()):
+	 * how many threads encrypt files, how many threads calculate checksums of images,
+	 * and how many items could wait between stages (more items - more memory, but stages wait less)
+	 */
+	private int numberEncryptThreads = 1;
+	private int numberHashThreads = 1;
+	private int stageQueueCapacity = 4;
+
+	public int getNumberEncryptThreads() {
+		return this.numberEncryptThreads;
+	}
+
+	/**
+	 * @param numberEncryptThreads Number of threads for encryption of files (values less than 1 are replaced by 1)
+	 */
+	public void setNumberEncryptThreads(int numberEncryptThreads) {
+		if (numberEncryptThreads < 1) {
+			numberEncryptThreads = 1;
+		}
+		this.numberEncryptThreads = numberEncryptThreads;
+	}
+
+	public int getNumberHashThreads() {
+		return this.numberHashThreads;
+	}
+
+	/**
+	 * @param numberHashThreads Number of threads for checksums of images (values less than 1 are replaced by 1)
+	 */
+	public void setNumberHashThreads(int numberHashThreads) {
+		if (numberHashThreads < 1) {
+			numberHashThreads = 1;
+		}
+		this.numberHashThreads = numberHashThreads;
+	}
+
+	public int getStageQueueCapacity() {
+		return this.stageQueueCapacity;
+	}
+
+	/**
+	 * @param stageQueueCapacity Max number of items in each stage (values less than 1 are replaced by 1)
+	 */
+	public void setStageQueueCapacity(int stageQueueCapacity) {
+		if (stageQueueCapacity < 1) {
+			stageQueueCapacity = 1;
+		}
+		this.stageQueueCapacity = stageQueueCapacity;
+	}
+
+	/**
+	 * Order of covers, when directory with images is used as cover (pool of covers)
+	 */
+	private CoverAssignmentOrder coverAssignmentOrder = CoverAssignmentOrder.ROUND_ROBIN;
+
+	public CoverAssignmentOrder getCoverAssignmentOrder() {
+		return this.coverAssignmentOrder;
+	}
+
+	/**
+	 * @param coverAssignmentOrder Order of covers from pool, <code>null</code> means default order (round-robin)
+	 */
+	public void setCoverAssignmentOrder(CoverAssignmentOrder coverAssignmentOrder) {
+		if (coverAssignmentOrder == null) {
+			coverAssignmentOrder = CoverAssignmentOrder.ROUND_ROBIN;
+		}
+		this.coverAssignmentOrder = coverAssignmentOrder;
+	}
+
+	/**
+	 * Order of encryption and compression of data (see PipelineOrder).
+	 * Streaming is used only for order "encrypt-compress", for other orders data are processed through temporary files.
+	 */
+	private PipelineOrder pipelineOrder = PipelineOrder.ENCRYPT_THEN_COMPRESS;
+
+	public PipelineOrder getPipelineOrder() {
+		return this.pipelineOrder;
+	}
+
+	/**
+	 * @param pipelineOrder Order of encryption and compression, <code>null</code> means default order (encrypt, next - compress)
+	 */
+	public void setPipelineOrder(PipelineOrder pipelineOrder) {
+		if (pipelineOrder == null) {
+			pipelineOrder = PipelineOrder.ENCRYPT_THEN_COMPRESS;
+		}
+		this.pipelineOrder = pipelineOrder;
+	}
+
+	/**
+	 * Mode of cipher for encryption of data (it is saved in report). In GCM mode data are encrypted by segments,
+	 * so large file (e.g. archive in order "compress-encrypt") is encrypted by many threads (see SegmentedCryptoTool).
+	 */
+	private CipherMode cipherMode = CipherMode.CBC;
+
+	public CipherMode getCipherMode() {
+		return this.cipherMode;
+	}
+
+	/**
+	 * @param cipherMode Mode of cipher (ECB is not accepted), <code>null</code> means default mode (CBC)
+	 */
+	public void setCipherMode(CipherMode cipherMode) {
+		if (	(cipherMode == null) || (cipherMode == CipherMode.ECB)	) {
+			cipherMode = CipherMode.CBC;
+		}
+		this.cipherMode = cipherMode;
+	}
+
+	/**
+	 * Format of archive with data (it is saved in report, so data are extracted by the same codec)
+	 */
+	private CompressCodec compressCodec = CompressCodec.ZIP;
+
+	public CompressCodec getCompressCodec() {
+		return this.compressCodec;
+	}
+
+	/**
+	 * @param compressCodec Format of archive, <code>null</code> means default codec (zip)
+	 */
+	public void setCompressCodec(CompressCodec compressCodec) {
+		if (compressCodec == null) {
+			compressCodec = CompressCodec.ZIP;
+		}
+		this.compressCodec = compressCodec;
+	}
+
+	/**
+	 * Level of compression of archive with data: speed of operation or number of images (see DataCompress)
+	 */
+	private int compressionLevel = DataCompress.DEFAULT_COMPRESSION_LEVEL;
+
+	public int getCompressionLevel() {
+		return this.compressionLevel;
+	}
+
+	/**
+	 * @param compressionLevel Level of compression: from 0 (fastest, for zip - without compression) to 9 (smallest archive).
+	 * Other values mean default level of codec.
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		if (	(compressionLevel < DataCompress.MIN_COMPRESSION_LEVEL) || (compressionLevel > DataCompress.MAX_COMPRESSION_LEVEL)	) {
+			compressionLevel = DataCompress.DEFAULT_COMPRESSION_LEVEL;
+		}
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * Place for intermediate data of processing (see Workspace).
+	 * By default temporary directories are created in home directory of user.
+	 */
+	private Workspace workspace = new Workspace();
+
+	public Workspace getWorkspace() {
+		return this.workspace;
+	}
+
+	/**
+	 * @param workspace Place for intermediate data, <code>null</code> means default workspace (home directory of user)
+	 */
+	public void setWorkspace(Workspace workspace) {
+		if (workspace == null) {
+			workspace = new Workspace();
+		}
+		this.workspace = workspace;
+	}
+
+	/**
+	 * Incremental backup: manifest of input data is saved near report, and only new and changed files
+	 * (after backup with previous report) are putted into images (see BackupManifest)
+	 */
+	private boolean isIncrementalBackup = false;
+
+	public boolean isIncrementalBackup() {
+		return this.isIncrementalBackup;
+	}
+
+	public void setIncrementalBackup(boolean isIncrementalBackup) {
+		this.isIncrementalBackup = isIncrementalBackup;
+	}
+
+	/**
+	 * Report of previous incremental backup (its manifest is near it), <code>null</code> means full backup
+	 */
+	private File previousReportFile = null;
+
+	public File getPreviousReportFile() {
+		return this.previousReportFile;
+	}
+
+	/**
+	 * @param previousReportFile Report of previous incremental backup (is used only for incremental backup)
+	 */
+	public void setPreviousReportFile(File previousReportFile) {
+		this.previousReportFile = previousReportFile;
+	}
+
+	/**
+	 * Deduplication for incremental backup: files are splitted into chunks by content, and only chunks,
+	 * which are not hidden in this or previous image sets, are putted into images (see ChunkStore)
+	 */
+	private boolean isDeduplicationUsed = false;
+
+	public boolean isDeduplicationUsed() {
+		return this.isDeduplicationUsed;
+	}
+
+	/**
+	 * @param isDeduplicationUsed Deduplication of chunks (is used only for incremental backup)
+	 */
+	public void setDeduplicationUsed(boolean isDeduplicationUsed) {
+		this.isDeduplicationUsed = isDeduplicationUsed;
+	}
+
+	/**
+	 * Resume interrupted operation from its journal (see OperationJournal): finished stages and written images
+	 * (or extracted files) are not made again. Without journal of the same operation it is started from zero.
+	 * Journal and intermediate data are kept after error only with this option, otherwise they are deleted in any case.
+	 */
+	private boolean isResumeUsed = false;
+
+	public boolean isResumeUsed() {
+		return this.isResumeUsed;
+	}
+
+	public void setResumeUsed(boolean isResumeUsed) {
+		this.isResumeUsed = isResumeUsed;
+	}
+
+}
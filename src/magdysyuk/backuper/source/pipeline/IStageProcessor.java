@@ -0,0 +1,17 @@
+package magdysyuk.backuper.source.pipeline;
+
+
+/**
+ * Processing of one item in stage of pipeline (see PipelineStage).
+ * It is called by worker threads of stage at the same time, so it should not keep state between items.
+ * @param <I> Type of input items
+ * @param <O> Type of results
+ */
+public interface IStageProcessor<I, O> {
+	/**
+	 * @param item Input item
+	 * @return Result of processing, it is passed to the next stage
+	 * @throws Exception If item could not be processed (next stage gets this error, when it takes the result)
+	 */
+	public O process(I item) throws Exception;
+}
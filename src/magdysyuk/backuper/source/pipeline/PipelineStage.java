@@ -0,0 +1,149 @@
+package magdysyuk.backuper.source.pipeline;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Stage of processing pipeline (e.g. encryption of files, hashing of images): items are putted into stage
+ * by one thread (previous stage), processed by worker threads of stage at the same time,
+ * and results are taken by one thread (next stage) in order of items.
+ * <p/>Stages are linked by bounded queues: number of items in stage (in progress, and results, which are not taken yet)
+ * is limited by capacity of queue. When next stage is slower, previous stage waits in put() (back-pressure),
+ * so stages work at the same time, and used memory is limited by capacities of queues.
+ * <p/>Owner of stage should call stop() at the end (also after error), so worker threads are stopped.
+ * @param <I> Type of input items
+ * @param <O> Type of results
+ */
+public class PipelineStage<I, O> {
+
+	private String stageName;
+	private IStageProcessor<I, O> stageProcessor;
+	private ExecutorService executorService;
+	private BlockingQueue<Future<O>> results;
+	/**
+	 * Marker in queue of results after the last item
+	 */
+	private Future<O> endOfItems;
+	private boolean isEndOfItemsTaken = false;
+	private volatile boolean isStopped = false;
+
+	/**
+	 * @param stageName Name of stage (for names of worker threads)
+	 * @param numberThreads Number of worker threads (values less than 1 are replaced by 1)
+	 * @param queueCapacity Max number of items in stage (values less than 1 are replaced by 1)
+	 * @param stageProcessor Processing of items
+	 */
+	public PipelineStage(String stageName, int numberThreads, int queueCapacity, IStageProcessor<I, O> stageProcessor) {
+		this.stageName = stageName;
+		this.stageProcessor = stageProcessor;
+		this.executorService = Executors.newFixedThreadPool(Math.max(numberThreads, 1), new ThreadFactory() {
+			private AtomicInteger numberThreads = new AtomicInteger(0);
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, PipelineStage.this.stageName + "-" + this.numberThreads.incrementAndGet());
+				// Worker threads don't keep application after its end
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.results = new LinkedBlockingQueue<Future<O>>(Math.max(queueCapacity, 1));
+		FutureTask<O> endOfItems = new FutureTask<O>(new Callable<O>() {
+			@Override
+			public O call() {
+				return null;
+			}
+		});
+		endOfItems.run();
+		this.endOfItems = endOfItems;
+	}
+
+	public String getStageName() {
+		return this.stageName;
+	}
+
+	/**
+	 * Put item into stage, it will be processed by one of worker threads.
+	 * Waits while stage is full (when results are not taken by next stage).
+	 * @param item Input item
+	 * @return <code>true</code> if item is putted, <code>false</code> if stage was stopped
+	 * @throws InterruptedException
+	 */
+	public boolean put(final I item) throws InterruptedException {
+		FutureTask<O> result = new FutureTask<O>(new Callable<O>() {
+			@Override
+			public O call() throws Exception {
+				return PipelineStage.this.stageProcessor.process(item);
+			}
+		});
+		boolean isItemPutted = false;
+		if (this.isStopped == false) {
+			this.results.put(result);
+			// Stage could be stopped while current thread waited for free place (or right before execution)
+			if (this.isStopped == false) {
+				try {
+					this.executorService.execute(result);
+					isItemPutted = true;
+				} catch (RejectedExecutionException ex) {
+					isItemPutted = false;
+				}
+			}
+			if (isItemPutted == false) {
+				// Item will not be processed, so its result should not be waited by next stage
+				this.results.remove(result);
+				result.cancel(false);
+			}
+		}
+		return isItemPutted;
+	}
+
+	/**
+	 * There will be no more items: next stage gets the end after result of the last item.
+	 * Waits while stage is full, as put().
+	 * @throws InterruptedException
+	 */
+	public void finish() throws InterruptedException {
+		if (this.isStopped == false) {
+			this.results.put(this.endOfItems);
+		}
+	}
+
+	/**
+	 * Take result of the next item (in order, as items were putted), waits until it is processed
+	 * @return Result of item, or <code>null</code> after the last item
+	 * @throws InterruptedException
+	 * @throws ExecutionException If item could not be processed (error of processor is its cause)
+	 */
+	public O take() throws InterruptedException, ExecutionException {
+		O result = null;
+		if (this.isEndOfItemsTaken == false) {
+			Future<O> nextResult = this.results.take();
+			if (nextResult == this.endOfItems) {
+				this.isEndOfItemsTaken = true;
+			} else {
+				result = nextResult.get();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Stop worker threads. Items in progress are interrupted, and waiting previous stage is released
+	 * (its put() returns <code>false</code>).
+	 */
+	public void stop() {
+		this.isStopped = true;
+		this.executorService.shutdownNow();
+		this.results.clear();
+	}
+
+}
@@ -0,0 +1,76 @@
+package magdysyuk.backuper.source.steganography;
+
+
+/**
+ * Estimation of result of putting data into images (received from CapacityPlanner
+ * before any image is created).
+ */
+public class CapacityPlan {
+
+	private long numberDataBytes;
+	private int imageWidth;
+	private int imageHeight;
+	private long numberDataBytesPerImage;
+	private long numberImages;
+	private long estimatedImageFileBytes;
+	private long estimatedTimeMillis;
+
+	CapacityPlan(long numberDataBytes, int imageWidth, int imageHeight, long numberDataBytesPerImage,
+			long numberImages, long estimatedImageFileBytes, long estimatedTimeMillis) {
+		this.numberDataBytes = numberDataBytes;
+		this.imageWidth = imageWidth;
+		this.imageHeight = imageHeight;
+		this.numberDataBytesPerImage = numberDataBytesPerImage;
+		this.numberImages = numberImages;
+		this.estimatedImageFileBytes = estimatedImageFileBytes;
+		this.estimatedTimeMillis = estimatedTimeMillis;
+	}
+
+	/**
+	 * @return Size of data (archive), which will be putted into images
+	 */
+	public long getNumberDataBytes() {
+		return this.numberDataBytes;
+	}
+
+	public int getImageWidth() {
+		return this.imageWidth;
+	}
+
+	public int getImageHeight() {
+		return this.imageHeight;
+	}
+
+	/**
+	 * @return Max number of data bytes in one image
+	 */
+	public long getNumberDataBytesPerImage() {
+		return this.numberDataBytesPerImage;
+	}
+
+	public long getNumberImages() {
+		return this.numberImages;
+	}
+
+	/**
+	 * @return Estimated size of one image file
+	 */
+	public long getEstimatedImageFileBytes() {
+		return this.estimatedImageFileBytes;
+	}
+
+	/**
+	 * @return Estimated size of all image files
+	 */
+	public long getEstimatedTotalOutputBytes() {
+		return this.estimatedImageFileBytes * this.numberImages;
+	}
+
+	/**
+	 * @return Estimated time of putting data into all images (in milliseconds)
+	 */
+	public long getEstimatedTimeMillis() {
+		return this.estimatedTimeMillis;
+	}
+
+}
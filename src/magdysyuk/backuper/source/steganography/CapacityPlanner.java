@@ -0,0 +1,213 @@
+package magdysyuk.backuper.source.steganography;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+
+/**
+ * Estimation of number of images, size of output files and time of processing
+ * for given size of data, size of images and density of data (before any work starts).
+ * <p/>Size and time are estimated through number of pixels:
+ * each pixel of image with data costs some bytes of png file and some time of processing.
+ * By default these values are pessimistic (size of png file without compression),
+ * for more precise values planner could be calibrated on the real cover image by calibrate().
+ */
+public class CapacityPlanner {
+
+	/**
+	 * Size of png file, which doesn't depend on number of pixels (signature, headers, end of file)
+	 */
+	private static final long PNG_FILE_OVERHEAD_BYTES = 1024;
+	private static final double DEFAULT_NANOS_PER_PIXEL = 100;
+
+	private double estimatedBytesPerPixel;
+	private double estimatedNanosPerPixel;
+
+	/**
+	 * Planner with pessimistic estimations: png file is not compressed at all
+	 * (1 byte for each color of pixel), and processing of 1 pixel takes DEFAULT_NANOS_PER_PIXEL nanoseconds.
+	 * @param steganographyRaster Kernel, which defines number of colors in pixel (3 or 4 with alpha channel)
+	 */
+	public CapacityPlanner(SteganographyRasterLSB steganographyRaster) {
+		int numberChannels = 3;
+		if (steganographyRaster.isAlphaChannelUsed() == true) {
+			numberChannels = 4;
+		}
+		this.estimatedBytesPerPixel = numberChannels;
+		this.estimatedNanosPerPixel = DEFAULT_NANOS_PER_PIXEL;
+	}
+
+	/**
+	 * @param estimatedBytesPerPixel How many bytes of png file are required for 1 pixel
+	 * @param estimatedNanosPerPixel How many nanoseconds are required for processing of 1 pixel
+	 * (putting data, encoding and saving of image) in one thread
+	 */
+	public CapacityPlanner(double estimatedBytesPerPixel, double estimatedNanosPerPixel) {
+		this.estimatedBytesPerPixel = estimatedBytesPerPixel;
+		this.estimatedNanosPerPixel = estimatedNanosPerPixel;
+	}
+
+	public double getEstimatedBytesPerPixel() {
+		return this.estimatedBytesPerPixel;
+	}
+
+	public double getEstimatedNanosPerPixel() {
+		return this.estimatedNanosPerPixel;
+	}
+
+	/**
+	 * Make planner with values, measured on the real cover image:
+	 * random data are putted into cover and image is encoded to png (without saving of files).
+	 * @param coverImage Cover, which will be used for data
+	 * @param steganographyRaster Kernel with required density of data
+	 * @return Calibrated planner
+	 * @throws IOException
+	 */
+	public static CapacityPlanner calibrate(CoverImage coverImage, SteganographyRasterLSB steganographyRaster) throws IOException {
+		return calibrate(coverImage, steganographyRaster, PngRowEncoder.DEFAULT_COMPRESSION_LEVEL);
+	}
+
+	/**
+	 * Make planner with values, measured on the real cover image (as calibrate(CoverImage, SteganographyRasterLSB)),
+	 * image is encoded to png with given level of compression.
+	 * @param coverImage Cover, which will be used for data
+	 * @param steganographyRaster Kernel with required density of data
+	 * @param pngCompressionLevel Level of compression of png files (see PngRowEncoder)
+	 * @return Calibrated planner
+	 * @throws IOException
+	 */
+	public static CapacityPlanner calibrate(CoverImage coverImage, SteganographyRasterLSB steganographyRaster, int pngCompressionLevel) throws IOException {
+		int width = coverImage.getWidth();
+		int height = coverImage.getHeight();
+		long numberPixels = ((long) width) * height;
+		byte[] randomData = new byte[(int) steganographyRaster.getMaxNumberDataBytes(width, height)];
+		new Random().nextBytes(randomData);
+		int[] coverPixels = coverImage.getPixels();
+		int[] outputRow = new int[width];
+
+		// First iteration is only for warming up (loading of classes, JIT)
+		long elapsedNanos = 0;
+		long encodedImageBytes = 0;
+		// Image is encoded in the same way as images with data, but encoded bytes are only counted
+		PngRowEncoder pngRowEncoder = new PngRowEncoder(pngCompressionLevel);
+		try {
+			for (int i = 0; i < 2; i++) {
+				CountingOutputStream encodedImage = new CountingOutputStream(new NullOutputStream());
+				long startTime = System.nanoTime();
+				pngRowEncoder.start(encodedImage, width, height, steganographyRaster.isAlphaChannelUsed());
+				for (int y = 0; y < height; y++) {
+					steganographyRaster.putDataIntoRow(coverPixels, y * width, outputRow, width, height, y, randomData, randomData.length);
+					pngRowEncoder.writeRow(outputRow);
+				}
+				pngRowEncoder.finish();
+				elapsedNanos = System.nanoTime() - startTime;
+				encodedImageBytes = encodedImage.getByteCount();
+			}
+		} finally {
+			pngRowEncoder.dispose();
+		}
+		return new CapacityPlanner((double) encodedImageBytes / numberPixels, (double) elapsedNanos / numberPixels);
+	}
+
+	/**
+	 * Estimate result of putting data into images of given size
+	 * @param numberDataBytes Size of data (archive)
+	 * @param imageWidth Width of images with data
+	 * @param imageHeight Height of images with data
+	 * @param steganographyRaster Kernel with required density of data
+	 * @param numberThreads How many images will be processed at the same time
+	 * @return Plan, or <code>null</code> if images of this size can't contain data
+	 */
+	public CapacityPlan makePlan(long numberDataBytes, int imageWidth, int imageHeight, SteganographyRasterLSB steganographyRaster, int numberThreads) {
+		CapacityPlan capacityPlan = null;
+		long numberDataBytesPerImage = steganographyRaster.getMaxNumberDataBytes(imageWidth, imageHeight);
+		if (	(numberDataBytes >= 0) && (numberDataBytesPerImage > 0) &&
+				(SteganographyImageLSB.isImageSizeAcceptable(imageWidth, imageHeight) == true)	) {
+			long numberImages = (numberDataBytes + numberDataBytesPerImage - 1) / numberDataBytesPerImage;
+			long numberPixels = ((long) imageWidth) * imageHeight;
+			long estimatedImageFileBytes = this.getEstimatedImageFileBytes(imageWidth, imageHeight);
+			if (numberThreads < 1) {
+				numberThreads = 1;
+			}
+			// Images are processed by groups (number of threads in each group)
+			long numberImageGroups = (numberImages + numberThreads - 1) / numberThreads;
+			long estimatedTimeMillis = (long) Math.ceil((numberImageGroups * numberPixels * this.getEstimatedNanosPerPixel()) / 1000000);
+			capacityPlan = new CapacityPlan(numberDataBytes, imageWidth, imageHeight, numberDataBytesPerImage,
+					numberImages, estimatedImageFileBytes, estimatedTimeMillis);
+		}
+		return capacityPlan;
+	}
+
+	/**
+	 * Choose size of images with minimal number of images, where size of each image file is not over than limit.
+	 * Proportions of images are kept (e.g. 4 x 3). If several sizes give the same number of images,
+	 * will be chosen the smallest of them (less output bytes and less time).
+	 * @param numberDataBytes Size of data (archive)
+	 * @param maxImageFileBytes Max size of one image file
+	 * @param proportionWidth Proportion of width (e.g. width of cover image)
+	 * @param proportionHeight Proportion of height (e.g. height of cover image)
+	 * @param steganographyRaster Kernel with required density of data
+	 * @param numberThreads How many images will be processed at the same time
+	 * @return Plan with chosen size of images, or <code>null</code> if even the smallest images are too large
+	 */
+	public CapacityPlan makePlanWithinMaxImageFileSize(long numberDataBytes, long maxImageFileBytes, int proportionWidth, int proportionHeight,
+			SteganographyRasterLSB steganographyRaster, int numberThreads) {
+		CapacityPlan capacityPlan = null;
+		if (	(proportionWidth > 0) && (proportionHeight > 0)	) {
+			// Largest width, for which image file is not over than limit (file size grows together with width)
+			int maxWidth = 0;
+			int lowWidth = 1;
+			int highWidth = SteganographyImageLSB.MAX_IMAGE_SIDE - 1;
+			while (lowWidth <= highWidth) {
+				int width = (lowWidth + highWidth) >>> 1;
+				int height = this.getProportionalHeight(width, proportionWidth, proportionHeight);
+				if (	(height < SteganographyImageLSB.MAX_IMAGE_SIDE) &&
+						((((long) width) * height) < SteganographyImageLSB.MAX_IMAGE_PIXELS) &&
+						(this.getEstimatedImageFileBytes(width, height) <= maxImageFileBytes)	) {
+					maxWidth = width;
+					lowWidth = width + 1;
+				} else {
+					highWidth = width - 1;
+				}
+			}
+			CapacityPlan largestPlan = null;
+			if (maxWidth > 0) {
+				largestPlan = this.makePlan(numberDataBytes, maxWidth, this.getProportionalHeight(maxWidth, proportionWidth, proportionHeight), steganographyRaster, numberThreads);
+			}
+			if (largestPlan != null) {
+				// Smallest width with the same number of images (number of images decreases when width grows)
+				capacityPlan = largestPlan;
+				lowWidth = 1;
+				highWidth = maxWidth - 1;
+				while (lowWidth <= highWidth) {
+					int width = (lowWidth + highWidth) >>> 1;
+					CapacityPlan plan = this.makePlan(numberDataBytes, width, this.getProportionalHeight(width, proportionWidth, proportionHeight), steganographyRaster, numberThreads);
+					if (	(plan != null) && (plan.getNumberImages() <= largestPlan.getNumberImages())	) {
+						capacityPlan = plan;
+						highWidth = width - 1;
+					} else {
+						lowWidth = width + 1;
+					}
+				}
+			}
+		}
+		return capacityPlan;
+	}
+
+	private long getEstimatedImageFileBytes(int imageWidth, int imageHeight) {
+		long numberPixels = ((long) imageWidth) * imageHeight;
+		return (long) Math.ceil(numberPixels * this.getEstimatedBytesPerPixel()) + PNG_FILE_OVERHEAD_BYTES;
+	}
+
+	private int getProportionalHeight(int width, int proportionWidth, int proportionHeight) {
+		long height = Math.round(((double) width * proportionHeight) / proportionWidth);
+		if (height < 1) {
+			height = 1;
+		}
+		return (int) Math.min(height, Integer.MAX_VALUE);
+	}
+
+}
@@ -0,0 +1,42 @@
+package magdysyuk.backuper.source.steganography;
+
+
+/**
+ * Order, in which covers from pool (directory with images) are assigned to chunks of data
+ * (see CoverImagePool)
+ */
+public enum CoverAssignmentOrder {
+	/**
+	 * Covers are used one after another (in order of names of files), after the last cover - again from the first
+	 */
+	ROUND_ROBIN ("round-robin"),
+	/**
+	 * Covers are used one after another from the largest to the smallest capacity,
+	 * and the last chunk of data is putted into the smallest cover, which can contain it
+	 */
+	BEST_FIT ("best-fit");
+
+	private String orderName;
+	private CoverAssignmentOrder(String orderName) {
+		this.orderName = orderName;
+	}
+
+	public String getOrderName() {
+		return this.orderName;
+	}
+
+	/**
+	 * @param orderName Name of order (e.g. "round-robin")
+	 * @return Order with this name, or <code>null</code> if there is no such order
+	 */
+	public static CoverAssignmentOrder getCoverAssignmentOrder(String orderName) {
+		CoverAssignmentOrder coverAssignmentOrder = null;
+		for (CoverAssignmentOrder order : CoverAssignmentOrder.values()) {
+			if (order.getOrderName().equals(orderName) == true) {
+				coverAssignmentOrder = order;
+			}
+		}
+		return coverAssignmentOrder;
+	}
+
+}
@@ -0,0 +1,50 @@
+package magdysyuk.backuper.source.steganography;
+
+import java.io.File;
+
+
+/**
+ * Decoded (and usually resized) image, which is used as container for data.
+ * Pixels are kept in memory in format 0x(AA)RRGGBB (row by row, alpha is ignored),
+ * so image file is decoded only once and after that pixels
+ * are just copied into rows of output image for each chunk of data.
+ * <p/>Array of pixels is not modified by steganography methods,
+ * thus one object can be shared between several output images.
+ */
+public class CoverImage {
+
+	private File sourceImageFile;
+	private int width;
+	private int height;
+	private int[] pixels;
+
+	/**
+	 * @param sourceImageFile Original image file (used for naming of output images and for logging)
+	 * @param width Width of image
+	 * @param height Height of image
+	 * @param pixels Pixels (width * height) in format 0x(AA)RRGGBB, row by row
+	 */
+	public CoverImage(File sourceImageFile, int width, int height, int[] pixels) {
+		this.sourceImageFile = sourceImageFile;
+		this.width = width;
+		this.height = height;
+		this.pixels = pixels;
+	}
+
+	public File getSourceImageFile() {
+		return this.sourceImageFile;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	public int[] getPixels() {
+		return this.pixels;
+	}
+
+}
@@ -0,0 +1,120 @@
+package magdysyuk.backuper.source.steganography;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Several covers (e.g. all images from directory), which are assigned to chunks of data one after another,
+ * so images with data are not copies of one image. Covers of different sizes contain different
+ * number of data bytes: each chunk of data is as large, as its cover can contain.
+ * <p/>Assignment depends only on list of covers, their sizes and size of data,
+ * so for the same covers and data result is always the same.
+ * Object is not thread-safe (covers should be taken by one thread, which reads data).
+ */
+public class CoverImagePool {
+
+	private List<CoverImage> coverImages;
+	private SteganographyRasterLSB steganographyRaster;
+	private CoverAssignmentOrder coverAssignmentOrder;
+	/**
+	 * How many chunks were already assigned to covers
+	 */
+	private long numberAssignedChunks = 0;
+
+	/**
+	 * @param coverImages Covers (in required order, e.g. by names of files).
+	 * Covers, which are too small for at least 1 data byte, are ignored.
+	 * @param steganographyRaster Kernel, which defines capacity of covers
+	 * @param coverAssignmentOrder Order of covers
+	 */
+	public CoverImagePool(List<CoverImage> coverImages, SteganographyRasterLSB steganographyRaster, CoverAssignmentOrder coverAssignmentOrder) {
+		this.steganographyRaster = steganographyRaster;
+		this.coverAssignmentOrder = coverAssignmentOrder;
+		this.coverImages = new ArrayList<CoverImage>();
+		for (CoverImage coverImage : coverImages) {
+			if (this.getMaxNumberDataBytes(coverImage) > 0) {
+				this.coverImages.add(coverImage);
+			}
+		}
+		if (coverAssignmentOrder == CoverAssignmentOrder.BEST_FIT) {
+			// Sorting is stable, so covers with the same capacity keep their order
+			Collections.sort(this.coverImages, new Comparator<CoverImage>() {
+				@Override
+				public int compare(CoverImage firstCoverImage, CoverImage secondCoverImage) {
+					return Long.valueOf(getMaxNumberDataBytes(secondCoverImage)).compareTo(Long.valueOf(getMaxNumberDataBytes(firstCoverImage)));
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return Covers, which are used by pool (in order of assignment)
+	 */
+	public List<CoverImage> getCoverImages() {
+		return Collections.unmodifiableList(this.coverImages);
+	}
+
+	/**
+	 * @param coverImage Cover
+	 * @return How many data bytes can be putted into cover
+	 */
+	public long getMaxNumberDataBytes(CoverImage coverImage) {
+		return this.steganographyRaster.getMaxNumberDataBytes(coverImage.getWidth(), coverImage.getHeight());
+	}
+
+	/**
+	 * @return Capacity of the largest cover (size of buffer, which is enough for any chunk), or 0 if pool is empty
+	 */
+	public long getMaxNumberDataBytes() {
+		long maxNumberDataBytes = 0;
+		for (CoverImage coverImage : this.coverImages) {
+			maxNumberDataBytes = Math.max(maxNumberDataBytes, this.getMaxNumberDataBytes(coverImage));
+		}
+		return maxNumberDataBytes;
+	}
+
+	/**
+	 * Choose cover for next chunk of data
+	 * @param numberRemainingDataBytes How many data bytes are not putted into images yet
+	 * @return Cover (next chunk should contain min(numberRemainingDataBytes, getMaxNumberDataBytes(cover)) bytes),
+	 * or <code>null</code> if pool is empty
+	 */
+	public CoverImage getNextCoverImage(long numberRemainingDataBytes) {
+		CoverImage coverImage = null;
+		int numberCoverImages = this.coverImages.size();
+		if (numberCoverImages > 0) {
+			coverImage = this.coverImages.get((int) (this.numberAssignedChunks % numberCoverImages));
+			if (numberRemainingDataBytes <= this.getMaxNumberDataBytes(coverImage)) {
+				// Rest of data is the last chunk
+				coverImage = this.getCoverImageForLastChunk(coverImage, numberRemainingDataBytes);
+			}
+			this.numberAssignedChunks += 1;
+		}
+		return coverImage;
+	}
+
+	/**
+	 * Choose cover for the last chunk of data. It is needed, when size of data is not known beforehand
+	 * (data are read from stream), and the last chunk is found only after reading.
+	 * @param coverImage Cover, which was chosen for this chunk by getNextCoverImage()
+	 * @param numberDataBytes Size of the last chunk (not over than capacity of chosen cover)
+	 * @return For best-fit order - the smallest cover, which can contain the last chunk, for other orders - the same cover
+	 */
+	public CoverImage getCoverImageForLastChunk(CoverImage coverImage, long numberDataBytes) {
+		CoverImage lastCoverImage = coverImage;
+		if (this.coverAssignmentOrder == CoverAssignmentOrder.BEST_FIT) {
+			// Covers are sorted from the largest
+			for (int i = this.coverImages.size() - 1; i >= 0; i--) {
+				if (numberDataBytes <= this.getMaxNumberDataBytes(this.coverImages.get(i))) {
+					lastCoverImage = this.coverImages.get(i);
+					break;
+				}
+			}
+		}
+		return lastCoverImage;
+	}
+
+}
@@ -0,0 +1,48 @@
+package magdysyuk.backuper.source.steganography;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+
+/**
+ * Extracting of one chunk of data from image (decoding of image file and gathering of data bits).
+ * Images are decoded by worker threads, and chunks are written into data file
+ * by one writer in the right order (see SteganographyImageLSB.extractDataFileFromImages()).
+ */
+class ExtractDataChunkTask implements Callable<byte[]> {
+
+	private SteganographyImageLSB steganographyImage;
+	private File imageWithHiddenData;
+	private int numberDataBytes;
+	private Future<byte[]> result;
+
+	/**
+	 * @param steganographyImage Object, which extracts data from image
+	 * @param imageWithHiddenData Image file, which contains data
+	 * @param numberDataBytes How many data bytes are hidden in image
+	 */
+	ExtractDataChunkTask(SteganographyImageLSB steganographyImage, File imageWithHiddenData, int numberDataBytes) {
+		this.steganographyImage = steganographyImage;
+		this.imageWithHiddenData = imageWithHiddenData;
+		this.numberDataBytes = numberDataBytes;
+	}
+
+	File getImageWithHiddenData() {
+		return this.imageWithHiddenData;
+	}
+
+	Future<byte[]> getResult() {
+		return this.result;
+	}
+
+	void setResult(Future<byte[]> result) {
+		this.result = result;
+	}
+
+	@Override
+	public byte[] call() throws Exception {
+		return this.steganographyImage.extractDataChunkFromImage(this.imageWithHiddenData, this.numberDataBytes);
+	}
+
+}
@@ -0,0 +1,17 @@
+package magdysyuk.backuper.source.steganography;
+
+import java.io.File;
+
+
+/**
+ * Receives images with data as soon as they are written, in order of data
+ * (e.g. journal of operation, which could be resumed after the last written image)
+ */
+public interface IImageJournal {
+	/**
+	 * @param imageFile Written image file
+	 * @param numberDataBytes Number of data bytes, putted into image
+	 * @return <code>true</code> if image is recorded successful, otherwise putting of data is stopped
+	 */
+	public boolean addImage(File imageFile, int numberDataBytes);
+}
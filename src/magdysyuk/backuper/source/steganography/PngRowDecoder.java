@@ -0,0 +1,309 @@
+package magdysyuk.backuper.source.steganography;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+
+/**
+ * Streaming png decoder: image is read row by row, so only current and previous rows
+ * are kept in memory, and reading can be stopped after any row (rest of file is not decoded).
+ * <p/>Supported only 8-bit truecolor (RGB) and truecolor with alpha (RGBA) images without interlacing
+ * (such images are written by PngRowEncoder and by ImageIO for TYPE_INT_RGB and TYPE_INT_ARGB images).
+ * For other images start() returns <code>false</code>, and they should be decoded by ImageIO.
+ * <p/>Decoder can be re-used for many images one after another, but it is not thread-safe.
+ */
+public class PngRowDecoder {
+
+	private static final byte[] PNG_SIGNATURE = new byte[] {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+	private static final int CHUNK_TYPE_IHDR = 0x49484452;
+	private static final int CHUNK_TYPE_IDAT = 0x49444154;
+	private static final int CHUNK_TYPE_IEND = 0x49454e44;
+	private static final int COLOR_TYPE_RGB = 2;
+	private static final int COLOR_TYPE_RGBA = 6;
+
+	private Inflater inflater = new Inflater();
+	private CRC32 crc = new CRC32();
+	private byte[] compressedData = new byte[64 * 1024];
+	private byte[] chunkTypeBytes = new byte[4];
+	private byte[] filterTypeBytes = new byte[1];
+
+	private DataInputStream inputStream;
+	private int width;
+	private int height;
+	private int numberBytesPerPixel;
+	private int numberRowBytes;
+	private int numberReadRows;
+	/**
+	 * How many bytes of current IDAT chunk are not read yet
+	 */
+	private int numberRemainingChunkBytes;
+	private byte[] currentRow = new byte[0];
+	private byte[] previousRow = new byte[0];
+
+	/**
+	 * Start reading of image: signature and chunks before image data are read from stream
+	 * @param inputStream Stream of png file (will not be closed by decoder, better if it is buffered)
+	 * @return <code>true</code> if image can be decoded by this decoder,
+	 * <code>false</code> if it is not png file or format of png is not supported
+	 * @throws IOException
+	 */
+	public boolean start(InputStream inputStream) throws IOException {
+		boolean isFormatSupported = false;
+		this.inputStream = new DataInputStream(inputStream);
+		this.inflater.reset();
+		this.numberReadRows = 0;
+		this.width = 0;
+		this.height = 0;
+
+		byte[] signature = new byte[PNG_SIGNATURE.length];
+		this.inputStream.readFully(signature);
+		if (Arrays.equals(PNG_SIGNATURE, signature) == true) {
+			boolean isHeaderSupported = false;
+			int chunkType = 0;
+			int chunkLength = 0;
+			// Header is the first chunk, image data begins from the first IDAT chunk
+			while (chunkType != CHUNK_TYPE_IDAT) {
+				chunkLength = this.inputStream.readInt();
+				chunkType = this.readChunkType();
+				if (	(chunkLength < 0) || (chunkType == CHUNK_TYPE_IEND)	) {
+					throw new IOException("Png file doesn't contain image data");
+				}
+				if (chunkType == CHUNK_TYPE_IHDR) {
+					byte[] header = new byte[chunkLength];
+					this.inputStream.readFully(header);
+					this.crc.update(header);
+					this.checkChunkCrc();
+					isHeaderSupported = this.setHeader(header);
+				} else if (chunkType != CHUNK_TYPE_IDAT) {
+					this.skipChunkData(chunkLength);
+					this.checkChunkCrc();
+				}
+			}
+			this.numberRemainingChunkBytes = chunkLength;
+			isFormatSupported = isHeaderSupported;
+		}
+		return isFormatSupported;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Read next row of image
+	 * @param rowPixels Array (not less than width) for pixels of row in format 0xAARRGGBB
+	 * (for RGB image alpha is 0xff)
+	 * @throws IOException If data of image are broken or image has no more rows
+	 */
+	public void readRow(int[] rowPixels) throws IOException {
+		if (this.numberReadRows >= this.height) {
+			throw new IllegalStateException("All " + this.height + " rows of image are already read");
+		}
+		byte[] currentRow = this.currentRow;
+		this.inflate(this.filterTypeBytes, 1);
+		this.inflate(currentRow, this.numberRowBytes);
+		this.unfilterRow(this.filterTypeBytes[0]);
+		int width = this.width;
+		if (this.numberBytesPerPixel == 4) {
+			for (int x = 0, i = 0; x < width; x++, i += 4) {
+				rowPixels[x] = ((currentRow[i + 3] & 0xff) << 24) | ((currentRow[i] & 0xff) << 16) | ((currentRow[i + 1] & 0xff) << 8) | (currentRow[i + 2] & 0xff);
+			}
+		} else {
+			for (int x = 0, i = 0; x < width; x++, i += 3) {
+				rowPixels[x] = 0xff000000 | ((currentRow[i] & 0xff) << 16) | ((currentRow[i + 1] & 0xff) << 8) | (currentRow[i + 2] & 0xff);
+			}
+		}
+		this.currentRow = this.previousRow;
+		this.previousRow = currentRow;
+		this.numberReadRows += 1;
+	}
+
+	/**
+	 * Release native resources of inflater (decoder can't be used after that)
+	 */
+	public void dispose() {
+		this.inflater.end();
+	}
+
+	/**
+	 * @param header Data of IHDR chunk
+	 * @return <code>true</code> if format of image is supported
+	 */
+	private boolean setHeader(byte[] header) {
+		boolean isHeaderSupported = false;
+		if (header.length == 13) {
+			int width = ((header[0] & 0xff) << 24) | ((header[1] & 0xff) << 16) | ((header[2] & 0xff) << 8) | (header[3] & 0xff);
+			int height = ((header[4] & 0xff) << 24) | ((header[5] & 0xff) << 16) | ((header[6] & 0xff) << 8) | (header[7] & 0xff);
+			int bitDepth = header[8];
+			int colorType = header[9];
+			int numberBytesPerPixel = 0;
+			if (colorType == COLOR_TYPE_RGB) {
+				numberBytesPerPixel = 3;
+			} else if (colorType == COLOR_TYPE_RGBA) {
+				numberBytesPerPixel = 4;
+			}
+			if (	(width > 0) && (height > 0) && (bitDepth == 8) && (numberBytesPerPixel > 0) &&
+					(header[10] == 0) && (header[11] == 0) && (header[12] == 0) &&
+					(((long) width) * numberBytesPerPixel < Integer.MAX_VALUE)	) {
+				this.width = width;
+				this.height = height;
+				this.numberBytesPerPixel = numberBytesPerPixel;
+				this.numberRowBytes = width * numberBytesPerPixel;
+				if (this.currentRow.length < this.numberRowBytes) {
+					this.currentRow = new byte[this.numberRowBytes];
+					this.previousRow = new byte[this.numberRowBytes];
+				}
+				Arrays.fill(this.previousRow, 0, this.numberRowBytes, (byte) 0);
+				isHeaderSupported = true;
+			}
+		}
+		return isHeaderSupported;
+	}
+
+	/**
+	 * Decompress required number of bytes, compressed data are read from IDAT chunks
+	 * @param buffer Buffer for decompressed data
+	 * @param length Number of bytes
+	 * @throws IOException
+	 */
+	private void inflate(byte[] buffer, int length) throws IOException {
+		int offset = 0;
+		try {
+			while (offset < length) {
+				int numberInflatedBytes = this.inflater.inflate(buffer, offset, length - offset);
+				offset += numberInflatedBytes;
+				if (numberInflatedBytes == 0) {
+					if (	(this.inflater.finished() == true) || (this.inflater.needsDictionary() == true)	) {
+						throw new IOException("Data of png image are shorter than image");
+					}
+					if (this.inflater.needsInput() == true) {
+						this.readCompressedData();
+					}
+				}
+			}
+		} catch (DataFormatException ex) {
+			throw new IOException("Data of png image are broken", ex);
+		}
+	}
+
+	/**
+	 * Give next part of IDAT chunks to inflater
+	 * @throws IOException
+	 */
+	private void readCompressedData() throws IOException {
+		// Image data could be split into several IDAT chunks (going one after another)
+		while (this.numberRemainingChunkBytes == 0) {
+			this.checkChunkCrc();
+			int chunkLength = this.inputStream.readInt();
+			int chunkType = this.readChunkType();
+			if (	(chunkType != CHUNK_TYPE_IDAT) || (chunkLength < 0)	) {
+				throw new IOException("Data of png image are shorter than image");
+			}
+			this.numberRemainingChunkBytes = chunkLength;
+		}
+		int numberReadBytes = Math.min(this.numberRemainingChunkBytes, this.compressedData.length);
+		this.inputStream.readFully(this.compressedData, 0, numberReadBytes);
+		this.crc.update(this.compressedData, 0, numberReadBytes);
+		this.numberRemainingChunkBytes -= numberReadBytes;
+		this.inflater.setInput(this.compressedData, 0, numberReadBytes);
+	}
+
+	private void unfilterRow(int filterType) throws IOException {
+		byte[] currentRow = this.currentRow;
+		byte[] previousRow = this.previousRow;
+		int numberRowBytes = this.numberRowBytes;
+		int numberBytesPerPixel = this.numberBytesPerPixel;
+		switch (filterType) {
+			case 0:
+				break;
+			case 1:
+				for (int i = numberBytesPerPixel; i < numberRowBytes; i++) {
+					currentRow[i] += currentRow[i - numberBytesPerPixel];
+				}
+				break;
+			case 2:
+				for (int i = 0; i < numberRowBytes; i++) {
+					currentRow[i] += previousRow[i];
+				}
+				break;
+			case 3:
+				for (int i = 0; i < numberRowBytes; i++) {
+					int left = 0;
+					if (i >= numberBytesPerPixel) {
+						left = currentRow[i - numberBytesPerPixel] & 0xff;
+					}
+					currentRow[i] += (byte) ((left + (previousRow[i] & 0xff)) >> 1);
+				}
+				break;
+			case 4:
+				for (int i = 0; i < numberRowBytes; i++) {
+					int left = 0;
+					int upperLeft = 0;
+					if (i >= numberBytesPerPixel) {
+						left = currentRow[i - numberBytesPerPixel] & 0xff;
+						upperLeft = previousRow[i - numberBytesPerPixel] & 0xff;
+					}
+					int up = previousRow[i] & 0xff;
+					int estimation = left + up - upperLeft;
+					int distanceLeft = Math.abs(estimation - left);
+					int distanceUp = Math.abs(estimation - up);
+					int distanceUpperLeft = Math.abs(estimation - upperLeft);
+					int predictor = upperLeft;
+					if (	(distanceLeft <= distanceUp) && (distanceLeft <= distanceUpperLeft)	) {
+						predictor = left;
+					} else if (distanceUp <= distanceUpperLeft) {
+						predictor = up;
+					}
+					currentRow[i] += (byte) predictor;
+				}
+				break;
+			default:
+				throw new IOException("Unknown type of png filter: " + filterType);
+		}
+	}
+
+	/**
+	 * Read type of chunk (and start calculating of its checksum)
+	 * @return Type of chunk as int
+	 * @throws IOException
+	 */
+	private int readChunkType() throws IOException {
+		this.inputStream.readFully(this.chunkTypeBytes);
+		this.crc.reset();
+		this.crc.update(this.chunkTypeBytes);
+		return ((this.chunkTypeBytes[0] & 0xff) << 24) | ((this.chunkTypeBytes[1] & 0xff) << 16) | ((this.chunkTypeBytes[2] & 0xff) << 8) | (this.chunkTypeBytes[3] & 0xff);
+	}
+
+	private void skipChunkData(int chunkLength) throws IOException {
+		int numberRemainingBytes = chunkLength;
+		while (numberRemainingBytes > 0) {
+			int numberReadBytes = Math.min(numberRemainingBytes, this.compressedData.length);
+			this.inputStream.readFully(this.compressedData, 0, numberReadBytes);
+			this.crc.update(this.compressedData, 0, numberReadBytes);
+			numberRemainingBytes -= numberReadBytes;
+		}
+	}
+
+	private void checkChunkCrc() throws IOException {
+		int expectedCrc;
+		try {
+			expectedCrc = this.inputStream.readInt();
+		} catch (EOFException ex) {
+			throw new IOException("Png file is truncated", ex);
+		}
+		if (expectedCrc != (int) this.crc.getValue()) {
+			throw new IOException("Wrong checksum of png chunk");
+		}
+	}
+
+}
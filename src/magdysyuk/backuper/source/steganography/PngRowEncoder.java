@@ -0,0 +1,303 @@
+package magdysyuk.backuper.source.steganography;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+
+/**
+ * Streaming png encoder: image is written row by row, so encoder keeps in memory only one row of pixels
+ * (and a few rows of filtered bytes), independently of height of image.
+ * Pixels of rows are given by caller: for images with data it keeps whole cover and data chunk
+ * (see SteganographyImageLSB.putDataChunkIntoImage()), only output image is not created.
+ * <p/>Images are saved as 8-bit truecolor (RGB) or truecolor with alpha (RGBA), without interlacing.
+ * For each row filter is chosen by usual heuristic (minimal sum of absolute values of filtered bytes),
+ * filtered rows are compressed by deflate and written as IDAT chunks.
+ * <p/>Encoder can be re-used for many images one after another (buffers and deflater are kept),
+ * but it is not thread-safe: each thread should have own encoder.
+ */
+public class PngRowEncoder {
+
+	/**
+	 * Default level of deflate compression (the same as in ImageIO png writer)
+	 */
+	public static final int DEFAULT_COMPRESSION_LEVEL = -1;
+	public static final int MIN_COMPRESSION_LEVEL = 0;
+	public static final int MAX_COMPRESSION_LEVEL = 9;
+
+	private static final byte[] PNG_SIGNATURE = new byte[] {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+	private static final byte[] CHUNK_TYPE_IHDR = new byte[] {'I', 'H', 'D', 'R'};
+	private static final byte[] CHUNK_TYPE_IDAT = new byte[] {'I', 'D', 'A', 'T'};
+	private static final byte[] CHUNK_TYPE_IEND = new byte[] {'I', 'E', 'N', 'D'};
+	private static final int COLOR_TYPE_RGB = 2;
+	private static final int COLOR_TYPE_RGBA = 6;
+	private static final int NUMBER_FILTER_TYPES = 5;
+	/**
+	 * Max size of data of one IDAT chunk
+	 */
+	private static final int IDAT_CHUNK_LENGTH = 64 * 1024;
+
+	private int compressionLevel;
+	private Deflater deflater;
+	private CRC32 crc = new CRC32();
+	private byte[] chunkHeader = new byte[8];
+	private byte[] crcBytes = new byte[4];
+	private byte[] imageHeader = new byte[13];
+	private byte[] chunkData = new byte[IDAT_CHUNK_LENGTH];
+	private int chunkDataLength = 0;
+
+	private OutputStream outputStream;
+	private int width;
+	private int height;
+	private int numberBytesPerPixel;
+	private int numberRowBytes;
+	private int numberWrittenRows;
+	private byte[] currentRow = new byte[0];
+	private byte[] previousRow = new byte[0];
+	/**
+	 * Row, filtered by each of filter types (first byte is type of filter)
+	 */
+	private byte[][] filteredRows = new byte[NUMBER_FILTER_TYPES][0];
+	/**
+	 * Sums of absolute values of filtered bytes of current row (for each of filter types)
+	 */
+	private long[] filterSums = new long[NUMBER_FILTER_TYPES];
+
+	/**
+	 * @param compressionLevel Level of deflate compression: from MIN_COMPRESSION_LEVEL (0 - without compression, fastest)
+	 * to MAX_COMPRESSION_LEVEL (9 - smallest files, slowest), or DEFAULT_COMPRESSION_LEVEL
+	 */
+	public PngRowEncoder(int compressionLevel) {
+		if (	(compressionLevel < MIN_COMPRESSION_LEVEL) || (compressionLevel > MAX_COMPRESSION_LEVEL)	) {
+			compressionLevel = Deflater.DEFAULT_COMPRESSION;
+		}
+		this.compressionLevel = compressionLevel;
+		this.deflater = new Deflater(compressionLevel);
+	}
+
+	/**
+	 * Start new image: png signature and header are written into stream
+	 * @param outputStream Stream for png file (will not be closed by encoder)
+	 * @param width Width of image
+	 * @param height Height of image
+	 * @param isAlphaChannelUsed If <code>true</code>, image will have alpha channel (RGBA)
+	 * @throws IOException
+	 */
+	public void start(OutputStream outputStream, int width, int height, boolean isAlphaChannelUsed) throws IOException {
+		if (	(width <= 0) || (height <= 0)	) {
+			throw new IllegalArgumentException("Width and height of image should be positive, received: " + width + "x" + height);
+		}
+		this.outputStream = outputStream;
+		this.width = width;
+		this.height = height;
+		this.numberWrittenRows = 0;
+		int colorType = COLOR_TYPE_RGB;
+		this.numberBytesPerPixel = 3;
+		if (isAlphaChannelUsed == true) {
+			colorType = COLOR_TYPE_RGBA;
+			this.numberBytesPerPixel = 4;
+		}
+		this.numberRowBytes = width * this.numberBytesPerPixel;
+		if (this.currentRow.length < this.numberRowBytes) {
+			this.currentRow = new byte[this.numberRowBytes];
+			this.previousRow = new byte[this.numberRowBytes];
+			for (int filterType = 0; filterType < NUMBER_FILTER_TYPES; filterType++) {
+				this.filteredRows[filterType] = new byte[this.numberRowBytes + 1];
+			}
+		}
+		// Row before the first row is zero for filters
+		for (int i = 0; i < this.numberRowBytes; i++) {
+			this.previousRow[i] = 0;
+		}
+		this.deflater.reset();
+		this.chunkDataLength = 0;
+
+		outputStream.write(PNG_SIGNATURE);
+		byte[] header = this.imageHeader;
+		this.putInt(header, 0, width);
+		this.putInt(header, 4, height);
+		// Bit depth, color type, compression method, filter method, interlace method
+		header[8] = 8;
+		header[9] = (byte) colorType;
+		header[10] = 0;
+		header[11] = 0;
+		header[12] = 0;
+		this.writeChunk(CHUNK_TYPE_IHDR, header, header.length);
+	}
+
+	/**
+	 * Write next row of image
+	 * @param rowPixels Pixels of row (not less than width) in format 0xAARRGGBB (alpha is written only for RGBA image)
+	 * @throws IOException
+	 */
+	public void writeRow(int[] rowPixels) throws IOException {
+		if (this.numberWrittenRows >= this.height) {
+			throw new IllegalStateException("All " + this.height + " rows of image are already written");
+		}
+		byte[] currentRow = this.currentRow;
+		int width = this.width;
+		if (this.numberBytesPerPixel == 4) {
+			for (int x = 0, i = 0; x < width; x++, i += 4) {
+				int pixelInt = rowPixels[x];
+				currentRow[i] = (byte) (pixelInt >> 16);
+				currentRow[i + 1] = (byte) (pixelInt >> 8);
+				currentRow[i + 2] = (byte) pixelInt;
+				currentRow[i + 3] = (byte) (pixelInt >> 24);
+			}
+		} else {
+			for (int x = 0, i = 0; x < width; x++, i += 3) {
+				int pixelInt = rowPixels[x];
+				currentRow[i] = (byte) (pixelInt >> 16);
+				currentRow[i + 1] = (byte) (pixelInt >> 8);
+				currentRow[i + 2] = (byte) pixelInt;
+			}
+		}
+		byte[] filteredRow = this.getFilteredRow();
+		this.deflater.setInput(filteredRow, 0, this.numberRowBytes + 1);
+		while (this.deflater.needsInput() == false) {
+			this.deflate();
+		}
+		// Current row becomes previous one
+		this.currentRow = this.previousRow;
+		this.previousRow = currentRow;
+		this.numberWrittenRows += 1;
+	}
+
+	/**
+	 * Finish image: rest of compressed data and end of png file are written into stream
+	 * (stream is flushed, but not closed)
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if (this.numberWrittenRows != this.height) {
+			throw new IllegalStateException("Only " + this.numberWrittenRows + " from " + this.height + " rows of image were written");
+		}
+		this.deflater.finish();
+		while (this.deflater.finished() == false) {
+			this.deflate();
+		}
+		if (this.chunkDataLength > 0) {
+			this.writeChunk(CHUNK_TYPE_IDAT, this.chunkData, this.chunkDataLength);
+			this.chunkDataLength = 0;
+		}
+		this.writeChunk(CHUNK_TYPE_IEND, this.chunkData, 0);
+		this.outputStream.flush();
+		this.outputStream = null;
+	}
+
+	/**
+	 * Release native resources of deflater (encoder can't be used after that)
+	 */
+	public void dispose() {
+		this.deflater.end();
+	}
+
+	/**
+	 * Filter current row by all filter types and choose the best of them.
+	 * Without compression filtering is useless, so filter None is always used.
+	 * @return Filtered row (the first byte is type of filter)
+	 */
+	private byte[] getFilteredRow() {
+		byte[] currentRow = this.currentRow;
+		byte[] previousRow = this.previousRow;
+		int numberRowBytes = this.numberRowBytes;
+		int numberBytesPerPixel = this.numberBytesPerPixel;
+		byte[] filteredNone = this.filteredRows[0];
+		filteredNone[0] = 0;
+		System.arraycopy(currentRow, 0, filteredNone, 1, numberRowBytes);
+		if (this.compressionLevel == Deflater.NO_COMPRESSION) {
+			return filteredNone;
+		}
+		byte[] filteredSub = this.filteredRows[1];
+		byte[] filteredUp = this.filteredRows[2];
+		byte[] filteredAverage = this.filteredRows[3];
+		byte[] filteredPaeth = this.filteredRows[4];
+		filteredSub[0] = 1;
+		filteredUp[0] = 2;
+		filteredAverage[0] = 3;
+		filteredPaeth[0] = 4;
+		long[] sums = this.filterSums;
+		Arrays.fill(sums, 0);
+		for (int i = 0; i < numberRowBytes; i++) {
+			int current = currentRow[i] & 0xff;
+			int left = 0;
+			int upperLeft = 0;
+			if (i >= numberBytesPerPixel) {
+				left = currentRow[i - numberBytesPerPixel] & 0xff;
+				upperLeft = previousRow[i - numberBytesPerPixel] & 0xff;
+			}
+			int up = previousRow[i] & 0xff;
+
+			byte none = (byte) current;
+			byte sub = (byte) (current - left);
+			byte upFiltered = (byte) (current - up);
+			byte average = (byte) (current - ((left + up) >> 1));
+			byte paeth = (byte) (current - this.getPaethPredictor(left, up, upperLeft));
+			filteredSub[i + 1] = sub;
+			filteredUp[i + 1] = upFiltered;
+			filteredAverage[i + 1] = average;
+			filteredPaeth[i + 1] = paeth;
+			sums[0] += Math.abs(none);
+			sums[1] += Math.abs(sub);
+			sums[2] += Math.abs(upFiltered);
+			sums[3] += Math.abs(average);
+			sums[4] += Math.abs(paeth);
+		}
+		int bestFilterType = 0;
+		for (int filterType = 1; filterType < NUMBER_FILTER_TYPES; filterType++) {
+			if (sums[filterType] < sums[bestFilterType]) {
+				bestFilterType = filterType;
+			}
+		}
+		return this.filteredRows[bestFilterType];
+	}
+
+	private int getPaethPredictor(int left, int up, int upperLeft) {
+		int estimation = left + up - upperLeft;
+		int distanceLeft = Math.abs(estimation - left);
+		int distanceUp = Math.abs(estimation - up);
+		int distanceUpperLeft = Math.abs(estimation - upperLeft);
+		int predictor = upperLeft;
+		if (	(distanceLeft <= distanceUp) && (distanceLeft <= distanceUpperLeft)	) {
+			predictor = left;
+		} else if (distanceUp <= distanceUpperLeft) {
+			predictor = up;
+		}
+		return predictor;
+	}
+
+	/**
+	 * Compress next part of data into buffer of IDAT chunk, full chunk is written into stream
+	 * @throws IOException
+	 */
+	private void deflate() throws IOException {
+		int numberCompressedBytes = this.deflater.deflate(this.chunkData, this.chunkDataLength, this.chunkData.length - this.chunkDataLength);
+		this.chunkDataLength += numberCompressedBytes;
+		if (this.chunkDataLength == this.chunkData.length) {
+			this.writeChunk(CHUNK_TYPE_IDAT, this.chunkData, this.chunkDataLength);
+			this.chunkDataLength = 0;
+		}
+	}
+
+	private void writeChunk(byte[] chunkType, byte[] data, int dataLength) throws IOException {
+		this.putInt(this.chunkHeader, 0, dataLength);
+		System.arraycopy(chunkType, 0, this.chunkHeader, 4, 4);
+		this.crc.reset();
+		this.crc.update(chunkType, 0, 4);
+		this.crc.update(data, 0, dataLength);
+		this.outputStream.write(this.chunkHeader, 0, 8);
+		this.outputStream.write(data, 0, dataLength);
+		this.putInt(this.crcBytes, 0, (int) this.crc.getValue());
+		this.outputStream.write(this.crcBytes, 0, 4);
+	}
+
+	private void putInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+
+}
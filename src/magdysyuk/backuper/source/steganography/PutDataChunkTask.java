@@ -0,0 +1,94 @@
+package magdysyuk.backuper.source.steganography;
+
+import java.io.File;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+
+/**
+ * Putting of one chunk of data file into image (embedding and saving of png file).
+ * Chunks are processed by worker threads, each task uses own workspace
+ * (buffer with data and png encoder) and returns it into pool of free workspaces
+ * right after image file was saved, so reader of data file could fill it by next chunk.
+ */
+class PutDataChunkTask implements Callable<Boolean> {
+
+	/**
+	 * Buffer for chunk of data and png encoder, which are re-used by tasks one after another
+	 */
+	static class Workspace {
+		private byte[] dataBuffer;
+		private PngRowEncoder pngRowEncoder;
+
+		Workspace(byte[] dataBuffer, PngRowEncoder pngRowEncoder) {
+			this.dataBuffer = dataBuffer;
+			this.pngRowEncoder = pngRowEncoder;
+		}
+
+		byte[] getDataBuffer() {
+			return this.dataBuffer;
+		}
+
+		PngRowEncoder getPngRowEncoder() {
+			return this.pngRowEncoder;
+		}
+	}
+
+	private SteganographyImageLSB steganographyImage;
+	private CoverImage coverImage;
+	private Workspace workspace;
+	private int numberDataBytes;
+	private File outputImageFile;
+	private BlockingQueue<Workspace> freeWorkspaces;
+	private Future<Boolean> result;
+
+	/**
+	 * @param steganographyImage Object, which puts data into image
+	 * @param coverImage Cover (shared between tasks, will not be modified)
+	 * @param workspace Buffer with data and png encoder, used only by this task while it works
+	 * @param numberDataBytes How many bytes from begin of data buffer should be putted into image
+	 * @param outputImageFile Image file with data
+	 * @param freeWorkspaces Workspace will be added into this queue when task is finished
+	 */
+	PutDataChunkTask(SteganographyImageLSB steganographyImage, CoverImage coverImage, Workspace workspace,
+			int numberDataBytes, File outputImageFile, BlockingQueue<Workspace> freeWorkspaces) {
+		this.steganographyImage = steganographyImage;
+		this.coverImage = coverImage;
+		this.workspace = workspace;
+		this.numberDataBytes = numberDataBytes;
+		this.outputImageFile = outputImageFile;
+		this.freeWorkspaces = freeWorkspaces;
+	}
+
+	CoverImage getCoverImage() {
+		return this.coverImage;
+	}
+
+	int getNumberDataBytes() {
+		return this.numberDataBytes;
+	}
+
+	File getOutputImageFile() {
+		return this.outputImageFile;
+	}
+
+	Future<Boolean> getResult() {
+		return this.result;
+	}
+
+	void setResult(Future<Boolean> result) {
+		this.result = result;
+	}
+
+	@Override
+	public Boolean call() throws Exception {
+		try {
+			return this.steganographyImage.putDataChunkIntoImage(this.coverImage, this.workspace.getDataBuffer(),
+					this.numberDataBytes, this.workspace.getPngRowEncoder(), this.outputImageFile);
+		} finally {
+			this.freeWorkspaces.add(this.workspace);
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+package magdysyuk.backuper.source.steganography;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+
+/**
+ * Decoding and resizing of one cover from pool (covers are resized by worker threads at the same time)
+ */
+class ResizeCoverImageTask implements Callable<CoverImage> {
+
+	private SteganographyImageLSB steganographyImage;
+	private File originalImageFile;
+	private Future<CoverImage> result;
+
+	/**
+	 * @param steganographyImage Object, which resizes covers (and keeps them in cache)
+	 * @param originalImageFile Original image file
+	 */
+	ResizeCoverImageTask(SteganographyImageLSB steganographyImage, File originalImageFile) {
+		this.steganographyImage = steganographyImage;
+		this.originalImageFile = originalImageFile;
+	}
+
+	File getOriginalImageFile() {
+		return this.originalImageFile;
+	}
+
+	Future<CoverImage> getResult() {
+		return this.result;
+	}
+
+	void setResult(Future<CoverImage> result) {
+		this.result = result;
+	}
+
+	@Override
+	public CoverImage call() throws Exception {
+		// Proportions of covers from pool are kept, so different covers have different capacity
+		return this.steganographyImage.getResizedCoverImage(this.originalImageFile, true);
+	}
+
+}
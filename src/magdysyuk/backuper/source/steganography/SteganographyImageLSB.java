@@ -1,29 +1,90 @@
 package magdysyuk.backuper.source.steganography;
 
+import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 import magdysyuk.backuper.source.filesystem.FileIO;
 import magdysyuk.backuper.source.logger.Loggers;
 import magdysyuk.backuper.source.logger.TextMessage;
 
-import org.apache.commons.codec.binary.BinaryCodec;
+import org.apache.commons.io.IOUtils;
 
 
 public class SteganographyImageLSB {
+	
+	/**
+	 * How many images could be processed at the same time
+	 */
+	private int numberThreads = 1;
+	private int getNumberThreads() {
+		return this.numberThreads;
+	}
+	
+	/**
+	 * Kernel, which puts data into pixels and extracts them (defines density of data in images)
+	 */
+	private SteganographyRasterLSB steganographyRaster;
+	private SteganographyRasterLSB getSteganographyRaster() {
+		return this.steganographyRaster;
+	}
+	
+	public SteganographyImageLSB() {
+		this(1);
+	}
+	
+	/**
+	 * @param numberThreads How many threads will put data into images (and save png files),
+	 * or decode images with data, at the same time.
+	 * Order of images in results (and order of data in extracted file) does not depend on number of threads.
+	 */
+	public SteganographyImageLSB(int numberThreads) {
+		this(numberThreads, new SteganographyRasterLSB());
+	}
+	
+	/**
+	 * @param numberThreads How many threads will process images at the same time
+	 * @param steganographyRaster Kernel with required density of data (bits per color, using of alpha channel).
+	 * Images should be extracted by kernel with the same density, as they were created.
+	 */
+	public SteganographyImageLSB(int numberThreads, SteganographyRasterLSB steganographyRaster) {
+		if (numberThreads > 1) {
+			this.numberThreads = numberThreads;
+		}
+		this.steganographyRaster = steganographyRaster;
+	}
+	
 	/**
 	 * Put content of data file in images files by LSB method.
 	 * @param dataFile File which we want to hide into images
@@ -31,88 +92,193 @@ public class SteganographyImageLSB {
 	 * this image just will be copied. So, if you want to hide secret.txt (5 Mb length)
 	 * into image waterfall.jpg (20 kb), you will get a lot of images with waterfall, 
 	 * which contains your secret file (each of images will contain a part of secret information).
+	 * <br/>It could be also directory with images (pool of covers): they are resized with keeping of proportions 
+	 * (to fit into size of resized image) and used one after another (see setCoverAssignmentOrder()),
+	 * each image contains so many data bytes, as its cover can contain.
 	 * @param directoryProcessedImageFiles Directory where will be saved images with data 
 	 * @return List of maps with image file and number data bytes, putted into image
 	 */
 	public List<Map<File, Integer>> putDataFileIntoImages (File dataFile, File inputImage, File directoryProcessedImageFiles) {
+		List<Map<File, Integer>> outputImagesWithData = null;
+		if (	(dataFile.exists() == true) && (dataFile.length() > 0) && (dataFile.canRead() == true)	) {
+			FileIO fileIO = new FileIO();
+			InputStream inputStream = fileIO.getFileInputStream(dataFile);
+			try {
+				outputImagesWithData = this.putDataIntoImages(inputStream, dataFile.length(), dataFile.getPath(), inputImage, directoryProcessedImageFiles);
+			} finally {
+				IOUtils.closeQuietly(inputStream);
+			}
+		} else {
+			Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_INTO_IMAGES_UNKNOWN_ERROR, new Object[]{dataFile, inputImage, directoryProcessedImageFiles});
+		}
+		return outputImagesWithData;
+	}
+	
+	/**
+	 * Put data from stream in images files by LSB method (as putDataFileIntoImages()).
+	 * Size of data is not known beforehand, so data are read chunk by chunk until end of stream
+	 * (only chunks in progress are kept in memory, and data don't need temporary file).
+	 * @param dataInputStream Stream with data, will be read to the end (but not closed)
+	 * @param inputImage Image file or directory with images (see putDataFileIntoImages())
+	 * @param directoryProcessedImageFiles Directory where will be saved images with data 
+	 * @return List of maps with image file and number data bytes, putted into image
+	 */
+	public List<Map<File, Integer>> putDataStreamIntoImages (InputStream dataInputStream, File inputImage, File directoryProcessedImageFiles) {
+		return this.putDataIntoImages(dataInputStream, -1, "stream", inputImage, directoryProcessedImageFiles);
+	}
+
+	/**
+	 * Put data from stream in images files, when size of data is known (e.g. data are in memory)
+	 * @param dataInputStream Stream with data, will be read to the end (but not closed)
+	 * @param numberDataBytes Size of data in stream
+	 * @param inputImage Image file or directory with images (see putDataFileIntoImages())
+	 * @param directoryProcessedImageFiles Directory where will be saved images with data
+	 * @return List of maps with image file and number data bytes, putted into image
+	 */
+	public List<Map<File, Integer>> putDataStreamIntoImages (InputStream dataInputStream, long numberDataBytes, File inputImage, File directoryProcessedImageFiles) {
+		return this.putDataIntoImages(dataInputStream, numberDataBytes, "stream", inputImage, directoryProcessedImageFiles);
+	}
+	
+	/**
+	 * @param inputStream Data
+	 * @param numberDataBytes Size of data, or -1 if it is not known (data are read from stream)
+	 * @param dataName Path of data file (for logging and names of images)
+	 * @param inputImage Image file or directory with images
+	 * @param directoryProcessedImageFiles Directory where will be saved images with data 
+	 * @return List of maps with image file and number data bytes, putted into image
+	 */
+	private List<Map<File, Integer>> putDataIntoImages (InputStream inputStream, long numberDataBytes, String dataName, File inputImage, File directoryProcessedImageFiles) {
 		List<Map<File, Integer>> outputImagesWithData = new ArrayList<Map<File, Integer>>();
 		try {
-			Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_START_PUT_FILE_INTO_IMAGES, new Object[]{dataFile.getPath(), inputImage.getPath(), directoryProcessedImageFiles.getPath()});
+			Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_START_PUT_FILE_INTO_IMAGES, new Object[]{dataName, inputImage.getPath(), directoryProcessedImageFiles.getPath()});
 			
 			boolean isPuttingDataSuccessful = false;
 			
-			if (	(inputImage.exists() == true) && (inputImage.length() > 0) &&
-					(dataFile.exists() == true) && (dataFile.length() > 0) &&
-					(inputImage.canRead() == true) && (dataFile.canRead() == true)	) {
+			if (	(inputImage.exists() == true) && ((inputImage.isDirectory() == true) || (inputImage.length() > 0)) &&
+					(numberDataBytes != 0) && (inputImage.canRead() == true)	) {
 				
 				if (	(directoryProcessedImageFiles.exists() == false) || (directoryProcessedImageFiles.isDirectory() == false)	) {
 					directoryProcessedImageFiles.mkdirs();
 				}
 				
-				boolean isResizedImageFileAlreadyExists = true;
-				File resizedImageFile = null;
-				// Avoid of already existed files - we just add unique UUID to filename while name will be not unique
-				while (isResizedImageFileAlreadyExists == true) {
-					resizedImageFile = new File(inputImage.getPath() + "_resized_" + UUID.randomUUID() + ".png");
-					isResizedImageFileAlreadyExists = resizedImageFile.exists();
-				}
+				// Covers are decoded and resized only once, in memory (without temporary files near original images)
+				CoverImagePool coverImagePool = this.getCoverImagePool(inputImage);
 				
-				boolean isImageResizedSuccessful = this.resizeImage(inputImage, resizedImageFile);
-				
-				if (isImageResizedSuccessful == true) {
+				if (coverImagePool.getCoverImages().isEmpty() == false) {
 					/*
 					 * We should know size of byte[] array, which we should read
 					 * from data file, and this byte[] array should be fit into image.
 					 * 
 					 * Length of buffer is calculated based on knowledge of used LSB method.
-					 * 2 bits in each of 3 colors in pixels -> 6 bits in 1 pixel.
+					 * By default 2 bits in each of 3 colors in pixels -> 6 bits in 1 pixel
+					 * (density could be changed, see SteganographyRasterLSB).
 					 * numberPixels = numberBits / 6 => numberBytes = (6 / 8) * numberPixels (digit 8 is number bits in byte)
 					 * 
-					 * If multiple is over than Integer.MAX_VALUE, we will have wrong results, 
-					 * but I don't assume this use case - image should be too large,
-					 * and don't forget, we will use resized, small images.
+					 * Number of pixels is limited by MAX_IMAGE_PIXELS, so length of buffer
+					 * is always less than Integer.MAX_VALUE.
+					 * For pool of covers buffer is enough for the largest of them.
 					 */
-					int dataBufferLength = ((this.getResizedImageWidth() * this.getResizedImageHeight() * 3) / 4) - 1;
+					int dataBufferLength = (int) coverImagePool.getMaxNumberDataBytes();
 					// For small files which could be putted in 1 image
-					if (dataFile.length() < dataBufferLength) {
-						dataBufferLength = (int) dataFile.length();
+					if (	(numberDataBytes > 0) && (numberDataBytes < dataBufferLength)	) {
+						dataBufferLength = (int) numberDataBytes;
+					}
+					
+					/*
+					 * Reader (current thread) reads chunks of data file one by one, and workers
+					 * put them into images and save png files. Each chunk in progress has own buffer
+					 * and png encoder (workspace), so number of workspaces limits used memory:
+					 * reader waits while all of them are busy.
+					 * Results are gathered in order of chunks, so order of images in list
+					 * (and in report) is the same as order of data in file.
+					 * For 1 thread chunks are processed in current thread, without pool.
+					 */
+					int numberThreads = this.getNumberThreads();
+					int numberWorkspaces = 1;
+					if (numberThreads > 1) {
+						numberWorkspaces = numberThreads * 2;
+					}
+					BlockingQueue<PutDataChunkTask.Workspace> freeWorkspaces = new ArrayBlockingQueue<PutDataChunkTask.Workspace>(numberWorkspaces);
+					for (int i = 0; i < numberWorkspaces; i++) {
+						// Images are encoded row by row, so only data buffer is allocated by size of image
+						freeWorkspaces.add(new PutDataChunkTask.Workspace(new byte[dataBufferLength], new PngRowEncoder(this.getPngCompressionLevel())));
+					}
+					ExecutorService executorService = null;
+					if (numberThreads > 1) {
+						executorService = Executors.newFixedThreadPool(numberThreads);
 					}
+					Deque<PutDataChunkTask> tasksInProgress = new ArrayDeque<PutDataChunkTask>();
 					
-					FileIO fileIO = new FileIO();
-					InputStream inputStream = fileIO.getFileInputStream(dataFile);
-					byte[] buffer = new byte[dataBufferLength];
 					int numberReadedBytes = 0;
+					// For stream size of data is not known, until the last chunk is read
+					long numberRemainingDataBytes = Long.MAX_VALUE;
+					String dataLengthName = "stream";
+					if (numberDataBytes > 0) {
+						numberRemainingDataBytes = numberDataBytes;
+						dataLengthName = String.valueOf(numberDataBytes);
+					}
 					
 					boolean isDataFilePuttedSuccessful = true;
 					
-					while ((numberReadedBytes = inputStream.read(buffer)) != -1) {
-						// Removing useless empty bytes from data array (when was read less bytes than we could store in all pixels of image)
-						buffer = Arrays.copyOfRange(buffer, 0, numberReadedBytes);
-						
-						File outputImageFileWithData = null;
-						// UUID's could exists before, so we repeat that until find non used (for unique filename)
-						boolean isOutputImageFileWithDataAlreadyExists = true;
-						while(isOutputImageFileWithDataAlreadyExists == true) {
-							outputImageFileWithData = new File(directoryProcessedImageFiles.getPath() + File.separator + resizedImageFile.getName() + "_data_container_" + UUID.randomUUID() + "_" + dataFile.length() + "_" + inputImage.length() + ".png");
-							isOutputImageFileWithDataAlreadyExists = outputImageFileWithData.exists();
+					try {
+						while (isDataFilePuttedSuccessful == true) {
+							PutDataChunkTask.Workspace workspace = freeWorkspaces.take();
+							// Size of chunk depends on capacity of cover, so buffer is filled exactly up to it
+							CoverImage coverImage = coverImagePool.getNextCoverImage(numberRemainingDataBytes);
+							int numberChunkBytes = (int) Math.min(dataBufferLength, coverImagePool.getMaxNumberDataBytes(coverImage));
+							numberReadedBytes = IOUtils.read(inputStream, workspace.getDataBuffer(), 0, numberChunkBytes);
+							if (numberReadedBytes <= 0) {
+								freeWorkspaces.add(workspace);
+								break;
+							}
+							numberRemainingDataBytes -= numberReadedBytes;
+							if (numberReadedBytes < numberChunkBytes) {
+								// End of data is reached, so this is the last chunk
+								coverImage = coverImagePool.getCoverImageForLastChunk(coverImage, numberReadedBytes);
+							}
+							
+							File coverImageFile = coverImage.getSourceImageFile();
+							File outputImageFileWithData = null;
+							// UUID's could exists before, so we repeat that until find non used (for unique filename)
+							boolean isOutputImageFileWithDataAlreadyExists = true;
+							while(isOutputImageFileWithDataAlreadyExists == true) {
+								outputImageFileWithData = new File(directoryProcessedImageFiles.getPath() + File.separator + coverImageFile.getName() + "_data_container_" + UUID.randomUUID() + "_" + dataLengthName + "_" + coverImageFile.length() + ".png");
+								isOutputImageFileWithDataAlreadyExists = outputImageFileWithData.exists();
+							}
+							
+							// Only first numberReadedBytes of buffer are used (when was read less bytes than we could store in all pixels of image)
+							PutDataChunkTask task = new PutDataChunkTask(this, coverImage, workspace, numberReadedBytes, outputImageFileWithData, freeWorkspaces);
+							if (executorService != null) {
+								task.setResult(executorService.submit(task));
+							} else {
+								FutureTask<Boolean> result = new FutureTask<Boolean>(task);
+								result.run();
+								task.setResult(result);
+							}
+							tasksInProgress.addLast(task);
+							
+							// Wait for the oldest chunk only when there are no free workspaces, otherwise just take finished chunks
+							while (	(isDataFilePuttedSuccessful == true) && (tasksInProgress.isEmpty() == false) &&
+									((freeWorkspaces.isEmpty() == true) || (tasksInProgress.peekFirst().getResult().isDone() == true))	) {
+								isDataFilePuttedSuccessful = this.addPuttedDataChunk(tasksInProgress.pollFirst(), dataName, numberDataBytes, outputImagesWithData);
+							}
 						}
-						
-						boolean isDataChunkPuttedSuccessful = this.putDataChunkIntoImage(resizedImageFile, buffer, outputImageFileWithData);
-						if (isDataChunkPuttedSuccessful == false) {
-							isDataFilePuttedSuccessful = false;
-							Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_DATA_CHUNK_INTO_IMAGES_IMPOSSIBLE, new Object[]{inputImage.getPath(), inputImage.length(), resizedImageFile.getPath(), resizedImageFile.length(), dataFile.getPath(), dataFile.length(), dataBufferLength, numberReadedBytes});
-							break;
-						} else {
-							Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_DATA_CHUNK_INTO_IMAGES_SUCCESSFUL, new Object[]{inputImage.getPath(), inputImage.length(), resizedImageFile.getPath(), resizedImageFile.length(), dataFile.getPath(), dataFile.length(), dataBufferLength, numberReadedBytes, outputImageFileWithData, outputImageFileWithData.length()});
-							// We should know, which length of data contains in file - needed in the future for extract data
-							Map<File, Integer> currentImageMap = new HashMap<File, Integer>();
-							currentImageMap.put(outputImageFileWithData, numberReadedBytes);
-							outputImagesWithData.add(currentImageMap);
+						// Rest of chunks
+						while (tasksInProgress.isEmpty() == false) {
+							boolean isDataChunkPuttedSuccessful = this.addPuttedDataChunk(tasksInProgress.pollFirst(), dataName, numberDataBytes, outputImagesWithData);
+							isDataFilePuttedSuccessful = isDataFilePuttedSuccessful && isDataChunkPuttedSuccessful;
+						}
+					} finally {
+						if (executorService != null) {
+							executorService.shutdownNow();
+						}
+						// All tasks are finished, so all workspaces are free
+						for (PutDataChunkTask.Workspace workspace : freeWorkspaces) {
+							workspace.getPngRowEncoder().dispose();
 						}
 					}
 					isPuttingDataSuccessful = isDataFilePuttedSuccessful;
 				}
-				resizedImageFile.delete();
 			}
 			
 			int numberImagesWithData = 0;
@@ -125,11 +291,48 @@ public class SteganographyImageLSB {
 			
 			Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_END_PUT_FILE_INTO_IMAGES, new Object[]{numberImagesWithData});
 		} catch (Exception ex) {
-			Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_INTO_IMAGES_UNKNOWN_ERROR, new Object[]{dataFile, inputImage, directoryProcessedImageFiles}, ex);
+			Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_INTO_IMAGES_UNKNOWN_ERROR, new Object[]{dataName, inputImage, directoryProcessedImageFiles}, ex);
 		}
 		return outputImagesWithData;
 	}
 	
+	/**
+	 * Wait until chunk of data will be putted into image, and add image into list of results
+	 * @param task Task, which puts chunk of data into image
+	 * @param dataName Path of data file (for logging)
+	 * @param numberDataBytes Size of data, or -1 if it is not known (for logging)
+	 * @param outputImagesWithData List, where will be added map with image file and number data bytes, putted into image
+	 * @return <code>true</code> if chunk was putted into image successful, <code>false</code> otherwise
+	 * @throws InterruptedException
+	 */
+	private boolean addPuttedDataChunk(PutDataChunkTask task, String dataName, long numberDataBytes, List<Map<File, Integer>> outputImagesWithData) throws InterruptedException {
+		boolean isDataChunkPuttedSuccessful = false;
+		CoverImage coverImage = task.getCoverImage();
+		File inputImage = coverImage.getSourceImageFile();
+		long dataBufferLength = this.getSteganographyRaster().getMaxNumberDataBytes(coverImage.getWidth(), coverImage.getHeight());
+		File outputImageFileWithData = task.getOutputImageFile();
+		int numberPuttedBytes = task.getNumberDataBytes();
+		try {
+			isDataChunkPuttedSuccessful = task.getResult().get();
+		} catch (ExecutionException ex) {
+			Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_INTO_IMAGES_UNKNOWN_ERROR, new Object[]{dataName, inputImage, outputImageFileWithData.getParentFile()}, ex.getCause());
+		}
+		if (	(isDataChunkPuttedSuccessful == true) && (this.getImageJournal() != null)	) {
+			// Images are received in order of data, so journal contains only images without gaps
+			isDataChunkPuttedSuccessful = this.getImageJournal().addImage(outputImageFileWithData, numberPuttedBytes);
+		}
+		if (isDataChunkPuttedSuccessful == false) {
+			Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_DATA_CHUNK_INTO_IMAGES_IMPOSSIBLE, new Object[]{inputImage.getPath(), inputImage.length(), coverImage.getWidth(), coverImage.getHeight(), dataName, numberDataBytes, dataBufferLength, numberPuttedBytes});
+		} else {
+			Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_PUT_FILE_DATA_CHUNK_INTO_IMAGES_SUCCESSFUL, new Object[]{inputImage.getPath(), inputImage.length(), coverImage.getWidth(), coverImage.getHeight(), dataName, numberDataBytes, dataBufferLength, numberPuttedBytes, outputImageFileWithData, outputImageFileWithData.length()});
+			// We should know, which length of data contains in file - needed in the future for extract data
+			Map<File, Integer> currentImageMap = new HashMap<File, Integer>();
+			currentImageMap.put(outputImageFileWithData, numberPuttedBytes);
+			outputImagesWithData.add(currentImageMap);
+		}
+		return isDataChunkPuttedSuccessful;
+	}
+	
 	/**
 	 * Extract hidden data from images
 	 * @param imagesWithHiddenData List of maps which contains image file and number stored in this image data bytes
@@ -146,43 +349,17 @@ public class SteganographyImageLSB {
 				extractedDataFile.delete();
 			}
 			
-			int numberImagesWithHiddenData = imagesWithHiddenData.size();
 			long numberExtractedBytes = 0;
+			long numberExpectExtractBytes = this.getNumberHiddenDataBytes(imagesWithHiddenData);
 			
-			// How many bytes we really should to get
-			long numberExpectExtractBytes = 0;
-			for (int i = 0; i < numberImagesWithHiddenData; i++) {
-				Map<File, Integer> imagesWithHiddenDataMap = imagesWithHiddenData.get(i);
-				for (Entry<File, Integer> imagesWithHiddenDataEntry : imagesWithHiddenDataMap.entrySet()) {
-					long numberHiddenBytes = imagesWithHiddenDataEntry.getValue();
-					numberExpectExtractBytes += numberHiddenBytes;
-				}
-			}
-			Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_EXTRACT_FILE_FROM_IMAGES_TOTAL_BYTES_EXPECT, new Object[]{numberExpectExtractBytes, numberImagesWithHiddenData});
-	
 			if (extractedDataFile.exists() == false) {
 				FileIO fileIO = new FileIO();
 				OutputStream outputStream = fileIO.getFileOutputStream(extractedDataFile, true);
-				
-				for (int i = 0; i < numberImagesWithHiddenData; i++) {
-					
-					// We assume that images in list are in the right order.
-					Map<File, Integer> imagesWithHiddenDataMap = imagesWithHiddenData.get(i);
-					for (Entry<File, Integer> imagesWithHiddenDataEntry : imagesWithHiddenDataMap.entrySet()) {
-						File imageWithHiddenData = imagesWithHiddenDataEntry.getKey();
-						int numberHiddenBytesInImage = imagesWithHiddenDataEntry.getValue();
-						
-						if (imageWithHiddenData.exists()) {
-							byte[] extractedData = this.extractDataChunkFromImage(imageWithHiddenData, numberHiddenBytesInImage);
-							outputStream.write(extractedData);
-							outputStream.flush();
-							numberExtractedBytes += extractedData.length;
-						} else {
-							Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_IMAGE_DOES_NOT_EXISTS, new Object[]{imageWithHiddenData.getPath()});
-						}
-					}
+				try {
+					numberExtractedBytes = this.extractDataIntoStream(imagesWithHiddenData, outputStream, extractedDataFile.getPath());
+				} finally {
+					outputStream.close();
 				}
-				outputStream.close();
 			}
 			
 			if (	(numberExtractedBytes == extractedDataFile.length()) &&
@@ -197,63 +374,471 @@ public class SteganographyImageLSB {
 		return isFileExtractedSuccessful;
 	}
 	
+	/**
+	 * Extract hidden data from images into stream (without temporary file),
+	 * e.g. for reading of archive on the fly
+	 * @param imagesWithHiddenData List of maps which contains image file and number stored in this image data bytes
+	 * @param outputStream Stream for data (it is flushed, but not closed)
+	 * @return <code>true</code> if all data were extracted and written into stream
+	 */
+	public boolean extractDataStreamFromImages(List<Map<File, Integer>> imagesWithHiddenData, OutputStream outputStream) {
+		boolean isStreamExtractedSuccessful = false;
+		long numberExtractedBytes = 0;
+		try {
+			Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_START_EXTRACT_FILE_FROM_IMAGES, new Object[]{imagesWithHiddenData.size(), "stream"});
+			long numberExpectExtractBytes = this.getNumberHiddenDataBytes(imagesWithHiddenData);
+			numberExtractedBytes = this.extractDataIntoStream(imagesWithHiddenData, outputStream, "stream");
+			outputStream.flush();
+			if (numberExtractedBytes == numberExpectExtractBytes) {
+				isStreamExtractedSuccessful = true;
+			}
+		} catch (Exception ex) {
+			Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_EXTRACT_FILE_FROM_IMAGES_UNKNOWN_ERROR, new Object[]{"stream"}, ex);
+		}
+		Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_END_EXTRACT_FILE_FROM_IMAGES, new Object[]{numberExtractedBytes, "stream", numberExtractedBytes, isStreamExtractedSuccessful});
+		return isStreamExtractedSuccessful;
+	}
+	
+	/**
+	 * @param imagesWithHiddenData List of maps which contains image file and number stored in this image data bytes
+	 * @return How many bytes we really should to get
+	 */
+	private long getNumberHiddenDataBytes(List<Map<File, Integer>> imagesWithHiddenData) {
+		long numberExpectExtractBytes = 0;
+		for (Map<File, Integer> imagesWithHiddenDataMap : imagesWithHiddenData) {
+			for (Entry<File, Integer> imagesWithHiddenDataEntry : imagesWithHiddenDataMap.entrySet()) {
+				long numberHiddenBytes = imagesWithHiddenDataEntry.getValue();
+				numberExpectExtractBytes += numberHiddenBytes;
+			}
+		}
+		Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_EXTRACT_FILE_FROM_IMAGES_TOTAL_BYTES_EXPECT, new Object[]{numberExpectExtractBytes, imagesWithHiddenData.size()});
+		return numberExpectExtractBytes;
+	}
+	
+	/**
+	 * Extract data from images one by one and write them into stream (in order of list)
+	 * @param imagesWithHiddenData List of maps which contains image file and number stored in this image data bytes
+	 * @param outputStream Stream for data
+	 * @param dataName Output data file path (for logging)
+	 * @return Number of extracted bytes (extracting is stopped after the first broken image)
+	 * @throws Exception
+	 */
+	private long extractDataIntoStream(List<Map<File, Integer>> imagesWithHiddenData, OutputStream outputStream, String dataName) throws Exception {
+		int numberImagesWithHiddenData = imagesWithHiddenData.size();
+		long numberExtractedBytes = 0;
+		/*
+		 * Images are decoded by workers, but not more than limited number of images
+		 * are read ahead (decoded chunks wait in memory for writer).
+		 * Current thread is the only writer, it writes chunks in the order of list.
+		 * For 1 thread images are decoded in current thread, without pool.
+		 */
+		int numberThreads = this.getNumberThreads();
+		int maxNumberImagesInProgress = 1;
+		ExecutorService executorService = null;
+		if (numberThreads > 1) {
+			maxNumberImagesInProgress = numberThreads * 2;
+			executorService = Executors.newFixedThreadPool(numberThreads);
+		}
+		Deque<ExtractDataChunkTask> tasksInProgress = new ArrayDeque<ExtractDataChunkTask>();
+		boolean isAllChunksExtracted = true;
+		
+		try {
+			for (int i = 0; (i < numberImagesWithHiddenData) && (isAllChunksExtracted == true); i++) {
+				
+				// We assume that images in list are in the right order.
+				Map<File, Integer> imagesWithHiddenDataMap = imagesWithHiddenData.get(i);
+				for (Entry<File, Integer> imagesWithHiddenDataEntry : imagesWithHiddenDataMap.entrySet()) {
+					File imageWithHiddenData = imagesWithHiddenDataEntry.getKey();
+					int numberHiddenBytesInImage = imagesWithHiddenDataEntry.getValue();
+					
+					if (imageWithHiddenData.exists()) {
+						ExtractDataChunkTask task = new ExtractDataChunkTask(this, imageWithHiddenData, numberHiddenBytesInImage);
+						if (executorService != null) {
+							task.setResult(executorService.submit(task));
+						} else {
+							FutureTask<byte[]> result = new FutureTask<byte[]>(task);
+							result.run();
+							task.setResult(result);
+						}
+						tasksInProgress.addLast(task);
+					} else {
+						Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_IMAGE_DOES_NOT_EXISTS, new Object[]{imageWithHiddenData.getPath()});
+					}
+				}
+				
+				// Writer waits for the oldest image only when read-ahead limit is reached
+				while (	(isAllChunksExtracted == true) && (tasksInProgress.isEmpty() == false) &&
+						((tasksInProgress.size() >= maxNumberImagesInProgress) || (tasksInProgress.peekFirst().getResult().isDone() == true))	) {
+					byte[] extractedData = this.getExtractedDataChunk(tasksInProgress.pollFirst(), dataName);
+					if (extractedData == null) {
+						isAllChunksExtracted = false;
+					} else {
+						outputStream.write(extractedData);
+						numberExtractedBytes += extractedData.length;
+					}
+				}
+			}
+			// Rest of images
+			while (	(isAllChunksExtracted == true) && (tasksInProgress.isEmpty() == false)	) {
+				byte[] extractedData = this.getExtractedDataChunk(tasksInProgress.pollFirst(), dataName);
+				if (extractedData == null) {
+					isAllChunksExtracted = false;
+				} else {
+					outputStream.write(extractedData);
+					numberExtractedBytes += extractedData.length;
+				}
+			}
+		} finally {
+			if (executorService != null) {
+				executorService.shutdownNow();
+			}
+		}
+		return numberExtractedBytes;
+	}
+	
+	/**
+	 * Wait until image will be decoded and data chunk will be extracted
+	 * @param task Task, which extracts data from image
+	 * @param dataName Output data file path (for logging)
+	 * @return Extracted data, or <code>null</code> if it was impossible
+	 * @throws InterruptedException
+	 */
+	private byte[] getExtractedDataChunk(ExtractDataChunkTask task, String dataName) throws InterruptedException {
+		byte[] extractedData = null;
+		try {
+			extractedData = task.getResult().get();
+		} catch (ExecutionException ex) {
+			Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_EXTRACT_FILE_FROM_IMAGES_UNKNOWN_ERROR, new Object[]{dataName}, ex.getCause());
+		}
+		return extractedData;
+	}
+	
+	/**
+	 * Get hidden data from image.
+	 * Data bits are gathered from pixels straight into byte array,
+	 * without converting of colors to binary strings.
+	 * <p/>Png images with data are decoded row by row (see PngRowDecoder), 
+	 * so pixels of whole image are not kept in memory (only data chunk), and decoding stops right after the last row with data.
+	 * Images in other formats are decoded by ImageIO.
+	 * @param imageWithHiddenData Image file, which contains data
+	 * @param numberDataBytes How many data bytes are hidden in image
+	 * @return Extracted data, or <code>null</code> if image does not contain so many data bytes
+	 * @throws IOException
+	 */
 	public byte[] extractDataChunkFromImage(File imageWithHiddenData, int numberDataBytes) throws IOException {
 		byte[] extractedData = null;
 		if (numberDataBytes > 0) {
-			BufferedImage inputImage = ImageIO.read(imageWithHiddenData);
-			int inputImageWidth = inputImage.getWidth();
-			int inputImageHeight = inputImage.getHeight();
-			int numberRequiredDataBits = numberDataBytes * 8;
-			int numberExtractedDataBits = 0;
-			StringBuffer dataBinaryStrBuffer = new StringBuffer(numberRequiredDataBits);
+			SteganographyRasterLSB steganographyRaster = this.getSteganographyRaster();
+			byte[] dataBuffer = new byte[numberDataBytes];
+			boolean isImageDecoded = false;
+			boolean isDataExtracted = false;
+			int inputImageWidth = 0;
+			int inputImageHeight = 0;
 			
-			/*
-			 * Getting from each of colors in each of pixels last 2 bits,
-			 * make binary string from them and convert result to byte[]
-			 */
-			allPixelsProcessed : for (int x = 0; x < inputImageWidth; x++) {
-				for (int y = 0; y < inputImageHeight; y++) {
-					int pixelInt = inputImage.getRGB(x, y);
-					int redInt = (pixelInt >> 16) & 0xff;
-					int greenInt = (pixelInt >> 8) & 0xff;
-					int blueInt = (pixelInt) & 0xff;
-					String formatBinStr = "%08d";
-					
-					// Again, as in putting info into image, here is a little copypaste for each of color
-					String redBinStr = String.format(formatBinStr, Integer.valueOf(Integer.toBinaryString(redInt)));
-					String greenBinStr = String.format(formatBinStr, Integer.valueOf(Integer.toBinaryString(greenInt)));
-					String blueBinStr = String.format(formatBinStr, Integer.valueOf(Integer.toBinaryString(blueInt)));
-					if (numberExtractedDataBits < numberRequiredDataBits) {
-						dataBinaryStrBuffer.append(redBinStr.substring(6, 8));
-						numberExtractedDataBits += 2;
-					}
-					if (numberExtractedDataBits < numberRequiredDataBits) {
-						dataBinaryStrBuffer.append(greenBinStr.substring(6, 8));
-						numberExtractedDataBits += 2;
-					}
-					if (numberExtractedDataBits < numberRequiredDataBits) {
-						dataBinaryStrBuffer.append(blueBinStr.substring(6, 8));
-						numberExtractedDataBits += 2;
-					}
-
-					if (numberExtractedDataBits == numberRequiredDataBits) {
-						break allPixelsProcessed;
+			PngRowDecoder pngRowDecoder = new PngRowDecoder();
+			InputStream inputStream = new BufferedInputStream(new FileInputStream(imageWithHiddenData), 64 * 1024);
+			try {
+				if (pngRowDecoder.start(inputStream) == true) {
+					isImageDecoded = true;
+					inputImageWidth = pngRowDecoder.getWidth();
+					inputImageHeight = pngRowDecoder.getHeight();
+					if (steganographyRaster.getNumberRequiredPixels(numberDataBytes) <= (((long) inputImageWidth) * inputImageHeight)) {
+						int[] rowPixels = new int[inputImageWidth];
+						int numberRequiredRows = steganographyRaster.getNumberRequiredRows(numberDataBytes, inputImageHeight);
+						for (int y = 0; y < numberRequiredRows; y++) {
+							pngRowDecoder.readRow(rowPixels);
+							steganographyRaster.extractDataFromRow(rowPixels, inputImageWidth, inputImageHeight, y, dataBuffer, numberDataBytes);
+						}
+						isDataExtracted = true;
 					}
 				}
+			} finally {
+				inputStream.close();
+				pngRowDecoder.dispose();
+			}
+			
+			if (isImageDecoded == false) {
+				BufferedImage inputImage = ImageIO.read(imageWithHiddenData);
+				inputImageWidth = inputImage.getWidth();
+				inputImageHeight = inputImage.getHeight();
+				int[] inputPixels = steganographyRaster.getPixels(inputImage);
+				isDataExtracted = steganographyRaster.extractDataFromPixels(inputPixels, inputImageWidth, inputImageHeight, dataBuffer, numberDataBytes);
+			}
+			
+			if (isDataExtracted == true) {
+				extractedData = dataBuffer;
+			} else {
+				Loggers.fatal(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_EXTRACT_DATA_CHUNK_IMPOSSIBLE, new Object[]{imageWithHiddenData.getPath(), inputImageWidth, inputImageHeight, numberDataBytes});
 			}
-			BinaryCodec binaryCoded = new BinaryCodec();
-			extractedData = binaryCoded.toByteArray(dataBinaryStrBuffer.toString());
 		}
 		return extractedData;
 	}
 	
 	
+	/**
+	 * Level of deflate compression of png files with data
+	 * (see PngRowEncoder)
+	 */
+	private int pngCompressionLevel = PngRowEncoder.DEFAULT_COMPRESSION_LEVEL;
+	private int getPngCompressionLevel() {
+		return this.pngCompressionLevel;
+	}
+	
+	/**
+	 * @param pngCompressionLevel Level of deflate compression of png files with data:
+	 * from PngRowEncoder.MIN_COMPRESSION_LEVEL (0 - fastest, large files) 
+	 * to PngRowEncoder.MAX_COMPRESSION_LEVEL (9 - slowest, small files), 
+	 * or PngRowEncoder.DEFAULT_COMPRESSION_LEVEL
+	 */
+	public void setPngCompressionLevel(int pngCompressionLevel) {
+		this.pngCompressionLevel = pngCompressionLevel;
+	}
+	
+	/**
+	 * Journal, which receives each image with data as soon as it is written (<code>null</code> - without journal)
+	 */
+	private IImageJournal imageJournal = null;
+	private IImageJournal getImageJournal() {
+		return this.imageJournal;
+	}
+	
+	/**
+	 * @param imageJournal Journal, which receives written images in order of data (e.g. for resuming of operation
+	 * after the last written image), or <code>null</code>
+	 */
+	public void setImageJournal(IImageJournal imageJournal) {
+		this.imageJournal = imageJournal;
+	}
+	
+	public static final int DEFAULT_RESIZED_IMAGE_WIDTH = 640;
+	public static final int DEFAULT_RESIZED_IMAGE_HEIGHT = 480;
+	/**
+	 * Width and height of images should be less than this value (see putDataChunkIntoImage())
+	 */
+	public static final int MAX_IMAGE_SIDE = 65536;
+	/**
+	 * Number of pixels in image should be less than this value: data of one image
+	 * (up to 16 bits in each pixel) should fit into byte[] array
+	 */
+	public static final long MAX_IMAGE_PIXELS = 1L << 30;
+	
+	private int resizedImageWidth = DEFAULT_RESIZED_IMAGE_WIDTH;
 	private int getResizedImageWidth() {
-		return 640;
+		return this.resizedImageWidth;
 	}
 	
+	private int resizedImageHeight = DEFAULT_RESIZED_IMAGE_HEIGHT;
 	private int getResizedImageHeight() {
-		return 480;
+		return this.resizedImageHeight;
+	}
+	
+	/**
+	 * Set size of images with data (original image will be resized to this size).
+	 * Larger images contain more data, so less images will be created.
+	 * Resized cover is kept in memory (4 bytes for each pixel), and each chunk in progress
+	 * has data buffer for the whole image (up to 2 bytes for each pixel).
+	 * @param width Width of images (from 1 to MAX_IMAGE_SIDE - 1)
+	 * @param height Height of images (from 1 to MAX_IMAGE_SIDE - 1)
+	 * @return <code>true</code> if size is acceptable (see isImageSizeAcceptable()) and was set, <code>false</code> otherwise (size is not changed)
+	 */
+	public boolean setResizedImageSize(int width, int height) {
+		boolean isSizeAcceptable = false;
+		if (isImageSizeAcceptable(width, height) == true) {
+			this.resizedImageWidth = width;
+			this.resizedImageHeight = height;
+			isSizeAcceptable = true;
+		}
+		return isSizeAcceptable;
+	}
+	
+	/**
+	 * Check limits of size of images with data
+	 * @param width Width of image
+	 * @param height Height of image
+	 * @return <code>true</code> if width and height are less than MAX_IMAGE_SIDE,
+	 * number of pixels is less than MAX_IMAGE_PIXELS, and image has at least 3 pixels
+	 */
+	public static boolean isImageSizeAcceptable(int width, int height) {
+		long numberPixels = ((long) width) * height;
+		return (	(width > 0) && (height > 0) && (numberPixels > 2) && (numberPixels < MAX_IMAGE_PIXELS) &&
+					(width < MAX_IMAGE_SIDE) && (height < MAX_IMAGE_SIDE)	);
+	}
+	
+	/**
+	 * Read size of image from its header (image is not decoded)
+	 * @param imageFile Image file
+	 * @return Width and height of image, or <code>null</code> if it is not image (or format is unknown)
+	 * @throws IOException
+	 */
+	public static Dimension getImageSize(File imageFile) throws IOException {
+		Dimension imageSize = null;
+		ImageInputStream imageInputStream = ImageIO.createImageInputStream(imageFile);
+		if (imageInputStream != null) {
+			try {
+				Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(imageInputStream);
+				if (imageReaders.hasNext() == true) {
+					ImageReader imageReader = imageReaders.next();
+					try {
+						imageReader.setInput(imageInputStream, true, true);
+						imageSize = new Dimension(imageReader.getWidth(0), imageReader.getHeight(0));
+					} finally {
+						imageReader.dispose();
+					}
+				}
+			} finally {
+				imageInputStream.close();
+			}
+		}
+		return imageSize;
+	}
+	
+	/**
+	 * Resized covers, which were already decoded by this object.
+	 * Key is path, length and time of last modification of original image file, and size of resized image
+	 * (if original image was changed, it will be decoded again).
+	 */
+	private Map<String, CoverImage> resizedCoverImagesCache = new ConcurrentHashMap<String, CoverImage>();
+	private Map<String, CoverImage> getResizedCoverImagesCache() {
+		return this.resizedCoverImagesCache;
+	}
+	
+	/**
+	 * Get resized cover from memory. Original image file is decoded and resized
+	 * only at first call, next calls for same (not modified) file return same object.
+	 * @param originalImageFile Original image file
+	 * @return Resized cover image, or <code>null</code> if image can't be decoded or resized
+	 * @throws IOException
+	 */
+	public CoverImage getResizedCoverImage(File originalImageFile) throws IOException {
+		return this.getResizedCoverImage(originalImageFile, false);
+	}
+	
+	/**
+	 * Get resized cover from memory (as getResizedCoverImage(File)).
+	 * Could be called by several threads at the same time.
+	 * @param originalImageFile Original image file
+	 * @param isProportionKept If <code>false</code>, image is resized exactly to size of resized image,
+	 * otherwise proportions of original image are kept: image is reduced to fit into size of resized image 
+	 * (small images are not enlarged)
+	 * @return Resized cover image, or <code>null</code> if image can't be decoded or resized
+	 * @throws IOException
+	 */
+	public CoverImage getResizedCoverImage(File originalImageFile, boolean isProportionKept) throws IOException {
+		String cacheKey = originalImageFile.getAbsolutePath() + File.pathSeparator + originalImageFile.length() + File.pathSeparator + originalImageFile.lastModified() +
+				File.pathSeparator + this.getResizedImageWidth() + "x" + this.getResizedImageHeight() + File.pathSeparator + isProportionKept;
+		CoverImage coverImage = this.getResizedCoverImagesCache().get(cacheKey);
+		if (coverImage == null) {
+			BufferedImage resizedImage = this.getResizedImage(originalImageFile, isProportionKept);
+			if (resizedImage != null) {
+				int[] resizedPixels = ((DataBufferInt) resizedImage.getRaster().getDataBuffer()).getData();
+				coverImage = new CoverImage(originalImageFile, resizedImage.getWidth(), resizedImage.getHeight(), resizedPixels);
+				this.getResizedCoverImagesCache().put(cacheKey, coverImage);
+			}
+		}
+		return coverImage;
+	}
+	
+	/**
+	 * Order of covers from pool (when directory with images is used as cover)
+	 */
+	private CoverAssignmentOrder coverAssignmentOrder = CoverAssignmentOrder.ROUND_ROBIN;
+	private CoverAssignmentOrder getCoverAssignmentOrder() {
+		return this.coverAssignmentOrder;
+	}
+	
+	public void setCoverAssignmentOrder(CoverAssignmentOrder coverAssignmentOrder) {
+		this.coverAssignmentOrder = coverAssignmentOrder;
+	}
+	
+	/**
+	 * Get resized covers for all images from directory (pool of covers).
+	 * Images are decoded and resized by several threads (see constructor) at the same time,
+	 * proportions of images are kept (see getResizedCoverImage(File, boolean)).
+	 * Files, which are not images, are skipped.
+	 * @param directoryWithImages Directory with original images (subdirectories are not used)
+	 * @return Covers in order of names of files
+	 * @throws InterruptedException
+	 */
+	public List<CoverImage> getResizedCoverImages(File directoryWithImages) throws InterruptedException {
+		List<CoverImage> coverImages = new ArrayList<CoverImage>();
+		File[] filesInDirectory = directoryWithImages.listFiles();
+		if (filesInDirectory != null) {
+			Arrays.sort(filesInDirectory, new Comparator<File>() {
+				@Override
+				public int compare(File firstFile, File secondFile) {
+					return firstFile.getName().compareTo(secondFile.getName());
+				}
+			});
+			int numberThreads = this.getNumberThreads();
+			ExecutorService executorService = null;
+			if (numberThreads > 1) {
+				executorService = Executors.newFixedThreadPool(numberThreads);
+			}
+			List<ResizeCoverImageTask> tasks = new ArrayList<ResizeCoverImageTask>();
+			try {
+				for (File fileInDirectory : filesInDirectory) {
+					if (	(fileInDirectory.isFile() == true) && (fileInDirectory.canRead() == true)	) {
+						ResizeCoverImageTask task = new ResizeCoverImageTask(this, fileInDirectory);
+						if (executorService != null) {
+							task.setResult(executorService.submit(task));
+						} else {
+							FutureTask<CoverImage> result = new FutureTask<CoverImage>(task);
+							result.run();
+							task.setResult(result);
+						}
+						tasks.add(task);
+					}
+				}
+				for (ResizeCoverImageTask task : tasks) {
+					CoverImage coverImage = null;
+					try {
+						coverImage = task.getResult().get();
+					} catch (ExecutionException ex) {
+						Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_COVER_IMAGE_SKIPPED, new Object[]{task.getOriginalImageFile().getPath()});
+					}
+					if (coverImage != null) {
+						coverImages.add(coverImage);
+					} else {
+						Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_COVER_IMAGE_SKIPPED, new Object[]{task.getOriginalImageFile().getPath()});
+					}
+				}
+			} finally {
+				if (executorService != null) {
+					executorService.shutdownNow();
+				}
+			}
+		}
+		return coverImages;
+	}
+	
+	/**
+	 * Covers for data: one resized image, or all images from directory
+	 * @param inputImage Image file or directory with images
+	 * @return Pool of covers (could be empty, if there are no images)
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private CoverImagePool getCoverImagePool(File inputImage) throws IOException, InterruptedException {
+		List<CoverImage> coverImages = new ArrayList<CoverImage>();
+		if (inputImage.isDirectory() == true) {
+			coverImages.addAll(this.getResizedCoverImages(inputImage));
+		} else {
+			CoverImage coverImage = this.getResizedCoverImage(inputImage);
+			if (coverImage != null) {
+				coverImages.add(coverImage);
+			}
+		}
+		CoverImagePool coverImagePool = new CoverImagePool(coverImages, this.getSteganographyRaster(), this.getCoverAssignmentOrder());
+		if (inputImage.isDirectory() == true) {
+			for (CoverImage coverImage : coverImages) {
+				if (coverImagePool.getCoverImages().contains(coverImage) == false) {
+					Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_COVER_IMAGE_SKIPPED, new Object[]{coverImage.getSourceImageFile().getPath()});
+				}
+			}
+			Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_COVER_IMAGE_POOL, new Object[]{inputImage.getPath(), coverImagePool.getCoverImages().size(), 
+					this.getCoverAssignmentOrder().getOrderName(), coverImagePool.getMaxNumberDataBytes()});
+		}
+		return coverImagePool;
 	}
 	
 	/**
@@ -262,8 +847,7 @@ public class SteganographyImageLSB {
 	 * (they are often resize large images).
 	 * New width and height can be retrieved from methods 
 	 * getResizedImageWidth(), getResizedImageHeight(), 
-	 * and at the moment 
-	 * of writing this comment they are equals 640x480.
+	 * by default they are equals 640x480 (could be changed by setResizedImageSize()).
 	 * @param originalImageFile
 	 * @param resizedImageFile
 	 * @return <code>true</code> if image was resized and saved successful, <code>false</code> otherwise
@@ -273,47 +857,164 @@ public class SteganographyImageLSB {
 		boolean isResizingSuccessful = false;
 		
 		if (resizedImageFile.exists() == false) {
+			BufferedImage resizedImage = this.getResizedImage(originalImageFile, false);
+			if (resizedImage != null) {
+				int width = resizedImage.getWidth();
+				int height = resizedImage.getHeight();
+				int[] resizedPixels = ((DataBufferInt) resizedImage.getRaster().getDataBuffer()).getData();
+				int[] row = new int[width];
+				PngRowEncoder pngRowEncoder = new PngRowEncoder(this.getPngCompressionLevel());
+				OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(resizedImageFile), 64 * 1024);
+				try {
+					pngRowEncoder.start(outputStream, width, height, false);
+					for (int y = 0; y < height; y++) {
+						System.arraycopy(resizedPixels, y * width, row, 0, width);
+						pngRowEncoder.writeRow(row);
+					}
+					pngRowEncoder.finish();
+				} finally {
+					outputStream.close();
+					pngRowEncoder.dispose();
+				}
+				if ((resizedImageFile.exists() == true) && (resizedImageFile.length() > 0)) {
+					isResizingSuccessful = true;
+				}
+			}
+		}
+		return isResizingSuccessful;
+	}
+	
+	/**
+	 * Decode and resize original image in memory
+	 * @param originalImageFile
+	 * @param isProportionKept Keep proportions of original image (see getResizedCoverImage(File, boolean))
+	 * @return Resized image (TYPE_INT_RGB), or <code>null</code> if image can't be decoded or resized
+	 * @throws IOException
+	 */
+	private BufferedImage getResizedImage(File originalImageFile, boolean isProportionKept) throws IOException {
+		BufferedImage resizedImage = null;
+		int resizedImageWidth = this.getResizedImageWidth();
+		int resizedImageHeight = this.getResizedImageHeight();
 		
-			int resizedImageWidth = this.getResizedImageWidth();
-			int resizedImageHeight = this.getResizedImageHeight();
-			
-			BufferedImage originalImage = ImageIO.read(originalImageFile);
-			BufferedImage resizedImage = new BufferedImage(resizedImageWidth, 
+		BufferedImage originalImage = ImageIO.read(originalImageFile);
+		if (originalImage != null) {
+			if (isProportionKept == true) {
+				double scale = Math.min(1.0, Math.min((double) resizedImageWidth / originalImage.getWidth(), (double) resizedImageHeight / originalImage.getHeight()));
+				resizedImageWidth = Math.max(1, (int) Math.round(originalImage.getWidth() * scale));
+				resizedImageHeight = Math.max(1, (int) Math.round(originalImage.getHeight() * scale));
+			}
+			BufferedImage processedImage = new BufferedImage(resizedImageWidth, 
 					resizedImageHeight, BufferedImage.TYPE_INT_RGB);
-			Graphics2D graphics2dResizedImage = resizedImage.createGraphics();
+			Graphics2D graphics2dResizedImage = processedImage.createGraphics();
 			boolean isProcessingSuccessful = graphics2dResizedImage.drawImage(originalImage, 0, 0, resizedImageWidth,
 					resizedImageHeight, null);
 			graphics2dResizedImage.dispose();
-			if (isProcessingSuccessful) {
-				ImageIO.write(resizedImage, "png", resizedImageFile);
-			}
-			
-			if ((resizedImage.getWidth() == resizedImageWidth) &&
-				(resizedImage.getHeight() == resizedImageHeight) &&
-				(resizedImageFile.exists() == true) && (resizedImageFile.length() > 0)) {
-				isResizingSuccessful = true;
+			if (	(isProcessingSuccessful == true) &&
+					(processedImage.getWidth() == resizedImageWidth) &&
+					(processedImage.getHeight() == resizedImageHeight)	) {
+				resizedImage = processedImage;
 			}
 		}
-		return isResizingSuccessful;
+		return resizedImage;
 	}
 	
+	/**
+	 * Put data into image file (without resizing).
+	 * Image is decoded for each call, so for many chunks of data better use
+	 * getResizedCoverImage() and putDataChunkIntoImage(CoverImage, ...).
+	 * @param inputImageFile Image, which will be used as container
+	 * @param rawData Data
+	 * @param outputImageFile Image file with data
+	 * @return <code>true</code> if data were putted into image and image was saved successful, <code>false</code> otherwise
+	 * @throws IOException
+	 */
 	public boolean putDataChunkIntoImage(File inputImageFile, byte[] rawData, File outputImageFile) throws IOException {
-		
-		boolean isDataPuttedIntoImageSuccessful = false;
-		
 		BufferedImage inputImage = ImageIO.read(inputImageFile);
-		int inputImageWidth = inputImage.getWidth();
-		int inputImageHeight = inputImage.getHeight();
+		SteganographyRasterLSB steganographyRaster = this.getSteganographyRaster();
+		CoverImage coverImage = new CoverImage(inputImageFile, inputImage.getWidth(), inputImage.getHeight(), steganographyRaster.getPixels(inputImage));
+		int numberDataBytes = 0;
+		if (rawData != null) {
+			numberDataBytes = rawData.length;
+		}
+		PngRowEncoder pngRowEncoder = new PngRowEncoder(this.getPngCompressionLevel());
+		try {
+			return this.putDataChunkIntoImage(coverImage, rawData, numberDataBytes, pngRowEncoder, outputImageFile);
+		} finally {
+			pngRowEncoder.dispose();
+		}
+	}
+	
+	/**
+	 * Put data into cover, which is already decoded, and save image row by row by streaming png encoder.
+	 * Output image is not created: each row of cover is copied together with data into row buffer,
+	 * which is filtered and compressed right away, so except of cover and data only a few rows are kept in memory.
+	 * Cover and data chunk are not streamed: used memory is proportional to size of image, not to its width.
+	 * Bits of data are placed column by column, so each row takes bits from the whole data chunk,
+	 * and cover is decoded and resized only once for all chunks (see getResizedCoverImage()).
+	 * @param coverImage Cover (will not be modified)
+	 * @param rawData Data
+	 * @param numberDataBytes How many bytes from begin of rawData should be used
+	 * @param pngRowEncoder Encoder (should not be used by other threads at the same time)
+	 * @param outputImageFile Image file with data
+	 * @return <code>true</code> if data were putted into image and image was saved successful, <code>false</code> otherwise
+	 * @throws IOException
+	 */
+	public boolean putDataChunkIntoImage(CoverImage coverImage, byte[] rawData, int numberDataBytes, PngRowEncoder pngRowEncoder, File outputImageFile) throws IOException {
+		boolean isDataPuttedIntoImageSuccessful = false;
+		if (this.isDataChunkFitIntoImage(coverImage, rawData, numberDataBytes, outputImageFile) == true) {
+			SteganographyRasterLSB steganographyRaster = this.getSteganographyRaster();
+			int width = coverImage.getWidth();
+			int height = coverImage.getHeight();
+			int[] coverPixels = coverImage.getPixels();
+			int[] outputRow = new int[width];
+			
+			/*
+			 * Noise of data in low bits is compressed by deflate very bad, 
+			 * so level of compression (see setPngCompressionLevel()) mostly 
+			 * changes time of saving, and only a little - size of file.
+			 */
+			OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(outputImageFile), 64 * 1024);
+			try {
+				pngRowEncoder.start(outputStream, width, height, steganographyRaster.isAlphaChannelUsed());
+				for (int y = 0; y < height; y++) {
+					steganographyRaster.putDataIntoRow(coverPixels, y * width, outputRow, width, height, y, rawData, numberDataBytes);
+					pngRowEncoder.writeRow(outputRow);
+				}
+				pngRowEncoder.finish();
+			} finally {
+				outputStream.close();
+			}
+			
+			if ((outputImageFile.exists() == true) && (outputImageFile.length() > 0)) {
+				isDataPuttedIntoImageSuccessful = true;
+			}
+		}
+		return isDataPuttedIntoImageSuccessful;
+	}
+	
+	/**
+	 * Check that data could be putted into cover
+	 * @param coverImage Cover
+	 * @param rawData Data
+	 * @param numberDataBytes How many bytes from begin of rawData should be used
+	 * @param outputImageFile Image file with data (for logging)
+	 * @return <code>true</code> if cover has enough pixels for data and is not too large
+	 */
+	private boolean isDataChunkFitIntoImage(CoverImage coverImage, byte[] rawData, int numberDataBytes, File outputImageFile) {
+		boolean isDataChunkFitIntoImage = false;
+		int inputImageWidth = coverImage.getWidth();
+		int inputImageHeight = coverImage.getHeight();
 		
 		/* 
 		 * Will be used LSB (Least Significant Bit) method: 
 		 * last 2 bits of each color 
 		 * in original image 
 		 * will be replaced by 2 bits of data
+		 * (it is default density, number of bits and colors could be changed - see SteganographyRasterLSB,
+		 * numbers in example below are for default density).
 		 * 
-		 * Look at the size of input data,
-		 * because there is a converting binary data to String like "01001010...",
-		 * work with large raw data is specific (just don't work with it in this case).
+		 * For example: in color 10101000 (168 in decimal), need to put 2 bits: 10.
+		 * In output we have color 10101010 (170 in decimal).
 		 * 
 		 * Also we check that have enough pixels*colors information for using LSB.
 		 * 
@@ -326,11 +1027,12 @@ public class SteganographyImageLSB {
 		 * For image 640 x 460 we have max allowed size of data:
 		 * numberDataBits = numberRequiredPixels * 6 = 640 x 480 x 6 = 1843200 bits = 230400 bytes = 225 kbytes
 		 * 
-		 * Max limits (15000) on image Height and Width exists for prevent of using super-large images
-		 * (don't sure in avoid of out of memory error while work through ImageIO, 
-		 * also will be useful for prevent going out of limits Integer.MAX_VALUE in calculating data chunk sizes).
-		 * It shouldn't be a problem, because we should work with little or resized images
-		 * (for avoid of resizing image in future by 3rd party web services).
+		 * Max limits on image Height, Width and number of pixels (see isImageSizeAcceptable())
+		 * exist for prevent going out of limits Integer.MAX_VALUE in calculating data chunk sizes.
+		 * Images with data are encoded and decoded row by row, so their size is limited only by memory for cover
+		 * and data chunk, which are kept in memory whole
+		 * (it shouldn't be a problem, because we usually work with little or resized images,
+		 * for avoid of resizing image in future by 3rd party web services).
 		 * 
 		 * Min limits on Height and Width are exists for enough space for 
 		 * putting at least 1 byte. 
@@ -338,105 +1040,18 @@ public class SteganographyImageLSB {
 		 * -> 2 pixels
 		 */
 		long rawDataBinaryLength = 0;
-		if (rawData != null) {
-			rawDataBinaryLength = Long.valueOf(rawData.length) * 8;
+		if (	(rawData != null) && (numberDataBytes > 0) && (numberDataBytes <= rawData.length)	) {
+			rawDataBinaryLength = Long.valueOf(numberDataBytes) * 8;
 		}
-		long numberRequiredPixels = Math.round(Math.ceil((double)rawDataBinaryLength / 6));
-		if (	(rawDataBinaryLength > 0) && (rawDataBinaryLength < Integer.MAX_VALUE) &&
-				((inputImageWidth * inputImageHeight) > 2 ) &&
-				(inputImageWidth < 15000) && (inputImageHeight < 15000) &&
-				(numberRequiredPixels < (inputImageWidth * inputImageHeight)) ) {
-			
-			String dataBinaryStr = BinaryCodec.toAsciiString(rawData);
-			
-			Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_START_PUT_DATA_CHUNK_INTO_IMAGES, new Object[]{inputImageFile.getPath(), outputImageFile.getPath(), rawData.length, dataBinaryStr.length(), dataBinaryStr.substring(0, 8)});
-			
-			int numberUsedDataBits = 0;
-			BufferedImage outputImage = new BufferedImage(inputImageWidth, inputImageHeight, BufferedImage.TYPE_INT_RGB);
-			
-			for (int x = 0; x < inputImageWidth; x++) {
-				for (int y = 0; y < inputImageHeight; y++) {
-					int pixelInt = inputImage.getRGB(x, y);
-					int redInt = (pixelInt >> 16) & 0xff;
-					int greenInt = (pixelInt >> 8) & 0xff;
-					int blueInt = (pixelInt) & 0xff;
-					String formatBinStr = "%08d";
-					
-					/*
-					 * Formatter required for making all values as binary strings same 
-					 * (8 chars) length, otherwise little values will have unknown length
-					 * (e.g.: Integer.toBinaryString(5) => 101 => length 3).
-					 * For correct work formatter we need to convert
-					 * received binary string to integer, 
-					 * and this integer format to a string (str -> int -> str).
-					 * "%08s" doesn't works.
-					 * One of alternate solution - using 
-					 * <a href="http://commons.apache.org/lang/apidocs/org/apache/commons/lang3/StringUtils.html#leftPad(java.lang.String,%20int,%20char)">Apache Commons Lang</a>
-					 */
-					String redBinStr = String.format(formatBinStr, Integer.valueOf(Integer.toBinaryString(redInt)));
-					String greenBinStr = String.format(formatBinStr, Integer.valueOf(Integer.toBinaryString(greenInt)));
-					String blueBinStr = String.format(formatBinStr, Integer.valueOf(Integer.toBinaryString(blueInt)));
-					
-					/*
-					 * LSB: replace last 2 bits in each color entity of current pixel.
-					 * For example: in color 10101000 (168 in decimal), need to put 2 bits: 10.
-					 * In output we have color 10101010 (170 in decimal).
-					 * 
-					 * Below is a little copy-paste for each of color.
-					 */
-					String modifiedRedBinaryStr = redBinStr;
-					if (numberUsedDataBits < rawDataBinaryLength) {
-						modifiedRedBinaryStr = redBinStr.substring(0, 6) + dataBinaryStr.substring(numberUsedDataBits, numberUsedDataBits + 2);
-						numberUsedDataBits += 2;
-					}
-					String modifiedGreenBinaryStr = greenBinStr;
-					if (numberUsedDataBits < rawDataBinaryLength) {
-						modifiedGreenBinaryStr = greenBinStr.substring(0, 6) + dataBinaryStr.substring(numberUsedDataBits, numberUsedDataBits + 2);
-						numberUsedDataBits += 2;
-					}
-					String modifiedBlueBinaryStr = blueBinStr;
-					if (numberUsedDataBits < rawDataBinaryLength) {
-						modifiedBlueBinaryStr = blueBinStr.substring(0, 6) + dataBinaryStr.substring(numberUsedDataBits, numberUsedDataBits + 2);
-						numberUsedDataBits += 2;
-					}
-					
-					if (numberUsedDataBits <= rawDataBinaryLength) {
-						int modifiedPixelInt = Integer.parseInt((modifiedRedBinaryStr + modifiedGreenBinaryStr + modifiedBlueBinaryStr), 2);
-						outputImage.setRGB(x, y, modifiedPixelInt);
-					} else {
-						outputImage.setRGB(x, y, inputImage.getRGB(x, y));
-					}
-					
-				}
-			}
-			
-			/*
-			 * Resulted file, saved through 
-			 * ImageIO.write(outputImage, "png", outputImageFile);
-			 * is too large like almost non-compressed bmp.
-			 * 
-			 * Example of image compression for jpeg (not png) file is here:
-			 * http://www.exampledepot.com/egs/javax.imageio/JpegWrite.html
-			 * (used ImageWriteParam and ImageWriter)
-			 * 
-			 * also look at
-			 * http://www.java.net/node/689678
-			 * http://www.coderanch.com/t/416163/GUI/java/compression-not-supported-PNG/
-			 * http://www.coderanch.com/t/526224/java/java/Image-Compression
-			 * http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=4829970
-			 * 
-			 * Be careful, because under "compression" people often 
-			 * means lossy compression, but we need lossless compression.
-			 * 
-			 * In my case it (image size) shouldn't be critical.
-			 */
-			ImageIO.write(outputImage, "png", outputImageFile);
-			
-			if ((outputImageFile.exists() == true) && (outputImageFile.length() > 0)) {
-				isDataPuttedIntoImageSuccessful = true;
-			}
+		SteganographyRasterLSB steganographyRaster = this.getSteganographyRaster();
+		long numberRequiredPixels = steganographyRaster.getNumberRequiredPixels(rawDataBinaryLength / 8);
+		if (	(rawDataBinaryLength > 0) &&
+				(isImageSizeAcceptable(inputImageWidth, inputImageHeight) == true) &&
+				(numberRequiredPixels <= (((long) inputImageWidth) * inputImageHeight))	) {
+			Loggers.debug(this, TextMessage.STEGANOGRAPHY_IMAGE_LSB_START_PUT_DATA_CHUNK_INTO_IMAGES, new Object[]{coverImage.getSourceImageFile().getPath(), outputImageFile.getPath(), numberDataBytes, rawDataBinaryLength, numberRequiredPixels});
+			isDataChunkFitIntoImage = true;
 		}
-		return isDataPuttedIntoImageSuccessful;
+		return isDataChunkFitIntoImage;
 	}
 	
 	
@@ -0,0 +1,414 @@
+package magdysyuk.backuper.source.steganography;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+
+
+/**
+ * LSB kernel, which works directly with pixels of image raster
+ * (int[] array behind DataBufferInt, pixels in format 0xAARRGGBB, as in BufferedImage.TYPE_INT_ARGB
+ * or TYPE_INT_RGB).
+ * <p/>Data bytes are not converted to binary strings like "0101..." -
+ * groups of bits are shifted from bytes straight into colors of pixels,
+ * and nothing is allocated per pixel.
+ * <p/>Density of data is configurable: from 1 to 4 low bits in each color,
+ * and alpha channel could be used as 4th color. By default (2 bits, without alpha)
+ * layout of bits is same as it was in the first version of application
+ * (where binary string was received through BinaryCodec.toAsciiString()),
+ * thus images are bit-identical and old backups can be extracted:
+ * <br/>- pixels are processed column by column (for each x - all y from top to bottom);
+ * <br/>- in each pixel colors are used in order red, green, blue (and alpha, if it is used);
+ * <br/>- BinaryCodec puts last byte of array at the begin of binary string,
+ * so bytes are taken from last to first, and bits in each byte - from high to low.
+ * <br/>Data bits are processed as one stream, so when number of bits in color is not a divisor of 8 (3 bits),
+ * groups of bits can cross bounds of bytes. Last group is padded by zero bits.
+ */
+public class SteganographyRasterLSB {
+
+	public static final int DEFAULT_BITS_PER_CHANNEL = 2;
+	public static final int MIN_BITS_PER_CHANNEL = 1;
+	public static final int MAX_BITS_PER_CHANNEL = 4;
+
+	private static final int PIXEL_RGB_MASK = 0x00ffffff;
+	private static final int PIXEL_ALPHA_MASK = 0xff000000;
+
+	/**
+	 * Number of bits of data, which will be stored in each of colors
+	 */
+	private int bitsPerChannel;
+	private int getBitsPerChannel() {
+		return this.bitsPerChannel;
+	}
+
+	/**
+	 * Shifts of colors in pixel (in order of using them)
+	 */
+	private int[] channelShifts;
+	private int[] getChannelShifts() {
+		return this.channelShifts;
+	}
+
+	private boolean isAlphaChannelUsed;
+
+	/**
+	 * Kernel with default density: 2 bits in each of red, green, blue colors
+	 */
+	public SteganographyRasterLSB() {
+		this(DEFAULT_BITS_PER_CHANNEL, false);
+	}
+
+	/**
+	 * @param bitsPerChannel Number of low bits in each color, which will be replaced by data
+	 * (from MIN_BITS_PER_CHANNEL to MAX_BITS_PER_CHANNEL)
+	 * @param isAlphaChannelUsed If <code>true</code>, data will be stored also in alpha channel
+	 * (output images should have alpha channel, e.g. TYPE_INT_ARGB)
+	 */
+	public SteganographyRasterLSB(int bitsPerChannel, boolean isAlphaChannelUsed) {
+		if (	(bitsPerChannel < MIN_BITS_PER_CHANNEL) || (bitsPerChannel > MAX_BITS_PER_CHANNEL)	) {
+			throw new IllegalArgumentException("Number of bits per channel should be from " + MIN_BITS_PER_CHANNEL + " to " + MAX_BITS_PER_CHANNEL + ", received: " + bitsPerChannel);
+		}
+		this.bitsPerChannel = bitsPerChannel;
+		this.isAlphaChannelUsed = isAlphaChannelUsed;
+		if (isAlphaChannelUsed == true) {
+			this.channelShifts = new int[] {16, 8, 0, 24};
+		} else {
+			this.channelShifts = new int[] {16, 8, 0};
+		}
+	}
+
+	public int getNumberBitsPerChannel() {
+		return this.getBitsPerChannel();
+	}
+
+	public boolean isAlphaChannelUsed() {
+		return this.isAlphaChannelUsed;
+	}
+
+	/**
+	 * @return How many data bits are stored in one pixel
+	 */
+	public int getNumberBitsPerPixel() {
+		return this.getBitsPerChannel() * this.getChannelShifts().length;
+	}
+
+	/**
+	 * Put data bytes into pixels by LSB method.
+	 * @param coverPixels Pixels of original image (row by row, as in DataBufferInt or as received from getRGB()).
+	 * Alpha channel (if exists) will be ignored: output pixels are opaque. This array will not be modified.
+	 * @param outputPixels Array (not less than width * height) for pixels of image with data.
+	 * Could be data array of TYPE_INT_RGB (or TYPE_INT_ARGB, if alpha channel is used) raster.
+	 * @param width Width of image
+	 * @param height Height of image
+	 * @param rawData Data for putting into image
+	 * @param numberDataBytes How many bytes from begin of rawData should be used
+	 */
+	public void putDataIntoPixels(int[] coverPixels, int[] outputPixels, int width, int height, byte[] rawData, int numberDataBytes) {
+		int numberPixels = width * height;
+		// Pixels without data are just copied from cover
+		if (this.isAlphaChannelUsed() == true) {
+			for (int i = 0; i < numberPixels; i++) {
+				outputPixels[i] = coverPixels[i] | PIXEL_ALPHA_MASK;
+			}
+		} else {
+			for (int i = 0; i < numberPixels; i++) {
+				outputPixels[i] = coverPixels[i] & PIXEL_RGB_MASK;
+			}
+		}
+
+		int bitsPerChannel = this.getBitsPerChannel();
+		int channelDataMask = (1 << bitsPerChannel) - 1;
+		int[] channelShifts = this.getChannelShifts();
+		long numberDataGroups = ((numberDataBytes * 8L) + bitsPerChannel - 1) / bitsPerChannel;
+		if (numberDataGroups <= 0) {
+			return;
+		}
+		long numberUsedDataGroups = 0;
+		int dataByteIndex = numberDataBytes - 1;
+		// Bits, which were taken from data bytes, but were not putted into pixels yet
+		int dataBits = 0;
+		int numberDataBits = 0;
+
+		allDataPutted : for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int pixelIndex = (y * width) + x;
+				int pixelInt = outputPixels[pixelIndex];
+				for (int channelShift : channelShifts) {
+					if (numberDataBits < bitsPerChannel) {
+						if (dataByteIndex >= 0) {
+							dataBits = (dataBits << 8) | (rawData[dataByteIndex] & 0xff);
+							numberDataBits += 8;
+							dataByteIndex -= 1;
+						} else {
+							// Last group is not full, rest of it is filled by zero bits
+							dataBits = dataBits << (bitsPerChannel - numberDataBits);
+							numberDataBits = bitsPerChannel;
+						}
+					}
+					numberDataBits -= bitsPerChannel;
+					int channelDataBits = (dataBits >> numberDataBits) & channelDataMask;
+					dataBits &= (1 << numberDataBits) - 1;
+					pixelInt = (pixelInt & ~(channelDataMask << channelShift)) | (channelDataBits << channelShift);
+					numberUsedDataGroups += 1;
+					if (numberUsedDataGroups == numberDataGroups) {
+						outputPixels[pixelIndex] = pixelInt;
+						break allDataPutted;
+					}
+				}
+				outputPixels[pixelIndex] = pixelInt;
+			}
+		}
+	}
+
+	/**
+	 * Get data bytes from pixels, which were processed by LSB method.
+	 * Groups of bits are gathered straight into output array,
+	 * processing stops right after last required byte.
+	 * @param pixels Pixels of image with hidden data (row by row). This array will not be modified.
+	 * @param width Width of image
+	 * @param height Height of image
+	 * @param extractedData Array (not less than numberDataBytes) for extracted data
+	 * @param numberDataBytes How many data bytes are hidden in image
+	 * @return <code>true</code> if image has enough pixels and all data bytes were extracted, <code>false</code> otherwise
+	 */
+	public boolean extractDataFromPixels(int[] pixels, int width, int height, byte[] extractedData, int numberDataBytes) {
+		if ((numberDataBytes <= 0) || (this.getNumberRequiredPixels(numberDataBytes) > ((long) width * height))) {
+			return false;
+		}
+		int bitsPerChannel = this.getBitsPerChannel();
+		int channelDataMask = (1 << bitsPerChannel) - 1;
+		int[] channelShifts = this.getChannelShifts();
+		int dataByteIndex = numberDataBytes - 1;
+		// Bits, which were taken from pixels, but were not putted into data bytes yet
+		int dataBits = 0;
+		int numberDataBits = 0;
+
+		allDataExtracted : for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int pixelInt = pixels[(y * width) + x];
+				for (int channelShift : channelShifts) {
+					dataBits = (dataBits << bitsPerChannel) | ((pixelInt >> channelShift) & channelDataMask);
+					numberDataBits += bitsPerChannel;
+					if (numberDataBits >= 8) {
+						numberDataBits -= 8;
+						extractedData[dataByteIndex] = (byte) (dataBits >> numberDataBits);
+						dataBits &= (1 << numberDataBits) - 1;
+						dataByteIndex -= 1;
+						if (dataByteIndex < 0) {
+							break allDataExtracted;
+						}
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Put data bytes into one row of pixels (for images, which are encoded row by row, see PngRowEncoder).
+	 * Layout of bits is the same as in putDataIntoPixels(): for all rows of image result is
+	 * bit-identical, but only one row of output pixels is required in memory.
+	 * Pixels are still processed column by column, so data bits of each pixel are taken by their position
+	 * in the whole image (data of one row are spread through all data array).
+	 * @param coverPixels Pixels of original image (row by row). This array will not be modified.
+	 * @param coverRowOffset Index of the first pixel of row in coverPixels
+	 * @param outputRow Array (not less than width) for pixels of row with data
+	 * @param width Width of image
+	 * @param height Height of image
+	 * @param y Index of row (from 0 to height - 1)
+	 * @param rawData Data for putting into image
+	 * @param numberDataBytes How many bytes from begin of rawData should be used
+	 */
+	public void putDataIntoRow(int[] coverPixels, int coverRowOffset, int[] outputRow, int width, int height, int y, byte[] rawData, int numberDataBytes) {
+		if (this.isAlphaChannelUsed() == true) {
+			for (int x = 0; x < width; x++) {
+				outputRow[x] = coverPixels[coverRowOffset + x] | PIXEL_ALPHA_MASK;
+			}
+		} else {
+			for (int x = 0; x < width; x++) {
+				outputRow[x] = coverPixels[coverRowOffset + x] & PIXEL_RGB_MASK;
+			}
+		}
+
+		int bitsPerChannel = this.getBitsPerChannel();
+		int channelDataMask = (1 << bitsPerChannel) - 1;
+		int[] channelShifts = this.getChannelShifts();
+		int numberChannels = channelShifts.length;
+		long numberDataGroups = ((numberDataBytes * 8L) + bitsPerChannel - 1) / bitsPerChannel;
+		long numberDataPixels = (numberDataGroups + numberChannels - 1) / numberChannels;
+		// Index of pixel in order of processing (column by column)
+		long pixelIndex = y;
+		for (int x = 0; (x < width) && (pixelIndex < numberDataPixels); x++, pixelIndex += height) {
+			long firstDataGroup = pixelIndex * numberChannels;
+			int numberPixelDataGroups = (int) Math.min(numberChannels, numberDataGroups - firstDataGroup);
+			int numberPixelDataBits = numberPixelDataGroups * bitsPerChannel;
+			int pixelDataBits = this.readDataBits(rawData, numberDataBytes, firstDataGroup * bitsPerChannel, numberPixelDataBits);
+			int pixelInt = outputRow[x];
+			for (int channel = 0; channel < numberPixelDataGroups; channel++) {
+				int channelShift = channelShifts[channel];
+				numberPixelDataBits -= bitsPerChannel;
+				int channelDataBits = (pixelDataBits >> numberPixelDataBits) & channelDataMask;
+				pixelInt = (pixelInt & ~(channelDataMask << channelShift)) | (channelDataBits << channelShift);
+			}
+			outputRow[x] = pixelInt;
+		}
+	}
+
+	/**
+	 * Get data bytes from one row of pixels (for images, which are decoded row by row, see PngRowDecoder).
+	 * Layout of bits is the same as in extractDataFromPixels(), bits of row are added
+	 * into their positions of data array, so array should be filled by zeros before the first row.
+	 * Rows could be processed in any order, but only rows from 0 to getNumberRequiredRows() - 1 contain data.
+	 * @param rowPixels Pixels of row with hidden data. This array will not be modified.
+	 * @param width Width of image
+	 * @param height Height of image
+	 * @param y Index of row (from 0 to height - 1)
+	 * @param extractedData Array (not less than numberDataBytes, filled by zeros) for extracted data
+	 * @param numberDataBytes How many data bytes are hidden in image
+	 */
+	public void extractDataFromRow(int[] rowPixels, int width, int height, int y, byte[] extractedData, int numberDataBytes) {
+		int bitsPerChannel = this.getBitsPerChannel();
+		int channelDataMask = (1 << bitsPerChannel) - 1;
+		int[] channelShifts = this.getChannelShifts();
+		int numberChannels = channelShifts.length;
+		long numberDataGroups = ((numberDataBytes * 8L) + bitsPerChannel - 1) / bitsPerChannel;
+		long numberDataPixels = (numberDataGroups + numberChannels - 1) / numberChannels;
+		long pixelIndex = y;
+		for (int x = 0; (x < width) && (pixelIndex < numberDataPixels); x++, pixelIndex += height) {
+			long firstDataGroup = pixelIndex * numberChannels;
+			int numberPixelDataGroups = (int) Math.min(numberChannels, numberDataGroups - firstDataGroup);
+			int pixelInt = rowPixels[x];
+			int pixelDataBits = 0;
+			for (int channel = 0; channel < numberPixelDataGroups; channel++) {
+				pixelDataBits = (pixelDataBits << bitsPerChannel) | ((pixelInt >> channelShifts[channel]) & channelDataMask);
+			}
+			this.writeDataBits(extractedData, numberDataBytes, firstDataGroup * bitsPerChannel, pixelDataBits, numberPixelDataGroups * bitsPerChannel);
+		}
+	}
+
+	/**
+	 * How many rows (from the top of image) contain data.
+	 * Pixels are used column by column, so if data need at least one full column, all rows are required.
+	 * @param numberDataBytes Length of data
+	 * @param height Height of image
+	 * @return Number of rows
+	 */
+	public int getNumberRequiredRows(long numberDataBytes, int height) {
+		return (int) Math.min(height, this.getNumberRequiredPixels(numberDataBytes));
+	}
+
+	/**
+	 * Read bits from data, as they are placed in stream of data bits
+	 * (bytes from last to first, bits in each byte from high to low). Bits after the end of data are zero.
+	 * @param rawData Data
+	 * @param numberDataBytes How many bytes from begin of rawData are used
+	 * @param streamBitIndex Position of the first bit in stream
+	 * @param numberBits How many bits should be read (not more than 24)
+	 * @return Bits (the first bit is the highest)
+	 */
+	private int readDataBits(byte[] rawData, int numberDataBytes, long streamBitIndex, int numberBits) {
+		int dataBits = 0;
+		while (numberBits > 0) {
+			long dataByteIndex = numberDataBytes - 1 - (streamBitIndex >> 3);
+			int numberAvailableBits = 8 - (int) (streamBitIndex & 7);
+			int numberTakenBits = Math.min(numberAvailableBits, numberBits);
+			int dataByte = 0;
+			if (dataByteIndex >= 0) {
+				dataByte = rawData[(int) dataByteIndex] & 0xff;
+			}
+			dataBits = (dataBits << numberTakenBits) | ((dataByte >> (numberAvailableBits - numberTakenBits)) & ((1 << numberTakenBits) - 1));
+			streamBitIndex += numberTakenBits;
+			numberBits -= numberTakenBits;
+		}
+		return dataBits;
+	}
+
+	/**
+	 * Add bits into data on their positions in stream of data bits (reverse of readDataBits()).
+	 * Bits after the end of data (padding of last group) are ignored.
+	 * @param extractedData Data
+	 * @param numberDataBytes How many bytes from begin of extractedData are used
+	 * @param streamBitIndex Position of the first bit in stream
+	 * @param dataBits Bits (the first bit is the highest)
+	 * @param numberBits Number of bits (not more than 24)
+	 */
+	private void writeDataBits(byte[] extractedData, int numberDataBytes, long streamBitIndex, int dataBits, int numberBits) {
+		while (numberBits > 0) {
+			long dataByteIndex = numberDataBytes - 1 - (streamBitIndex >> 3);
+			if (dataByteIndex < 0) {
+				break;
+			}
+			int numberAvailableBits = 8 - (int) (streamBitIndex & 7);
+			int numberTakenBits = Math.min(numberAvailableBits, numberBits);
+			numberBits -= numberTakenBits;
+			int takenBits = (dataBits >> numberBits) & ((1 << numberTakenBits) - 1);
+			extractedData[(int) dataByteIndex] |= (byte) (takenBits << (numberAvailableBits - numberTakenBits));
+			streamBitIndex += numberTakenBits;
+		}
+	}
+
+	/**
+	 * Get pixels of image as int[] array (row by row, colors in format 0x(AA)RRGGBB).
+	 * For images with int raster (TYPE_INT_RGB, TYPE_INT_ARGB) will be returned
+	 * data array of raster itself (without copying), so don't modify it.
+	 * Images with 3 or 4 bytes per pixel (usual for decoded png and jpeg files) are converted
+	 * without color model, for other types will be used getRGB().
+	 * @param image Image
+	 * @return Array of pixels
+	 */
+	public int[] getPixels(BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int numberPixels = width * height;
+		int[] pixels = null;
+		DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+		int imageType = image.getType();
+		if (	((imageType == BufferedImage.TYPE_INT_RGB) || (imageType == BufferedImage.TYPE_INT_ARGB)) &&
+				(dataBuffer instanceof DataBufferInt) && (dataBuffer.getNumBanks() == 1) &&
+				(((DataBufferInt) dataBuffer).getData().length == numberPixels)	) {
+			pixels = ((DataBufferInt) dataBuffer).getData();
+		} else if (	(imageType == BufferedImage.TYPE_3BYTE_BGR) && (dataBuffer instanceof DataBufferByte) &&
+				(dataBuffer.getNumBanks() == 1) && (((DataBufferByte) dataBuffer).getData().length == (numberPixels * 3))	) {
+			byte[] bgrBytes = ((DataBufferByte) dataBuffer).getData();
+			pixels = new int[numberPixels];
+			for (int i = 0, j = 0; i < numberPixels; i++, j += 3) {
+				pixels[i] = ((bgrBytes[j + 2] & 0xff) << 16) | ((bgrBytes[j + 1] & 0xff) << 8) | (bgrBytes[j] & 0xff);
+			}
+		} else if (	(imageType == BufferedImage.TYPE_4BYTE_ABGR) && (dataBuffer instanceof DataBufferByte) &&
+				(dataBuffer.getNumBanks() == 1) && (((DataBufferByte) dataBuffer).getData().length == (numberPixels * 4))	) {
+			byte[] abgrBytes = ((DataBufferByte) dataBuffer).getData();
+			pixels = new int[numberPixels];
+			for (int i = 0, j = 0; i < numberPixels; i++, j += 4) {
+				pixels[i] = ((abgrBytes[j] & 0xff) << 24) | ((abgrBytes[j + 3] & 0xff) << 16) | ((abgrBytes[j + 2] & 0xff) << 8) | (abgrBytes[j + 1] & 0xff);
+			}
+		} else {
+			pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		}
+		return pixels;
+	}
+
+	/**
+	 * How many pixels are required for storing data
+	 * @param numberDataBytes Length of data
+	 * @return Number of pixels
+	 */
+	public long getNumberRequiredPixels(long numberDataBytes) {
+		long numberDataBits = numberDataBytes * 8;
+		long numberBitsPerPixel = this.getNumberBitsPerPixel();
+		return (numberDataBits + numberBitsPerPixel - 1) / numberBitsPerPixel;
+	}
+
+	/**
+	 * How many data bytes can be putted into image.
+	 * For default density (2 bits in 3 colors) it is (width * height * 3) / 4 - 1,
+	 * as it was in the first version of application.
+	 * @param width Width of image
+	 * @param height Height of image
+	 * @return Max number of data bytes
+	 */
+	public long getMaxNumberDataBytes(int width, int height) {
+		return ((((long) width) * height * this.getNumberBitsPerPixel()) / 8) - 1;
+	}
+
+}
@@ -3,6 +3,7 @@ package magdysyuk.backuper.source.xml.parser;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -17,6 +18,7 @@ import magdysyuk.backuper.source.logger.Loggers;
 import magdysyuk.backuper.source.logger.TextMessage;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 
@@ -25,7 +27,8 @@ public class ParserFileReportXml {
 	 * That's all is received from report xml file.
 	 * Maps contains information about file (e.g. checksums)
 	 * @param reportXml XML report file
-	 * @return List of maps with parsed information about file: filename, filesize, number hidden files, checksums
+	 * @return List of maps with parsed information about file: filename, filesize, number hidden files, checksums,
+	 * and size of image (image_width, image_height), if it is saved in report
 	 */
 	public List<Map<String, String>> getExpectedListImageFilesWithProperties(File reportXml) {
 		List<Map<String, String>> listExpectedImageFilesAndProperties = new ArrayList<Map<String,String>>();
@@ -78,6 +81,16 @@ public class ParserFileReportXml {
 				String adler32Checksum = (String) xpathExpression.evaluate(document, XPathConstants.STRING);
 				fileEntityInfo.put("adler32_checksum", adler32Checksum);
 				
+				// Size of image is saved only in reports with settings of processing
+				xpathExpression = xpath.compile("/root/file_entity["+ (i+1) +"]/image_width");
+				String imageWidth = (String) xpathExpression.evaluate(document, XPathConstants.STRING);
+				xpathExpression = xpath.compile("/root/file_entity["+ (i+1) +"]/image_height");
+				String imageHeight = (String) xpathExpression.evaluate(document, XPathConstants.STRING);
+				if (	(imageWidth.isEmpty() == false) && (imageHeight.isEmpty() == false)	) {
+					fileEntityInfo.put("image_width", imageWidth);
+					fileEntityInfo.put("image_height", imageHeight);
+				}
+				
 				listExpectedImageFilesAndProperties.add(fileEntityInfo);
 			}
 					
@@ -87,4 +100,34 @@ public class ParserFileReportXml {
 		
 		return listExpectedImageFilesAndProperties;
 	}
+	
+	/**
+	 * Settings of processing, saved in report (section "processing").
+	 * Reports of first version don't contain this section, then map will be empty
+	 * (and default settings should be used).
+	 * @param reportXml XML report file
+	 * @return Map with names of settings (names of tags) and their values
+	 */
+	public Map<String, String> getProcessingProperties(File reportXml) {
+		Map<String, String> processingProperties = new LinkedHashMap<String, String>();
+		try {
+			DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
+			domFactory.setNamespaceAware(true);
+			DocumentBuilder builder = domFactory.newDocumentBuilder();
+			Document document = builder.parse(reportXml);
+			XPathFactory xpathFactory = XPathFactory.newInstance();
+			
+			XPath xpath = xpathFactory.newXPath();
+			XPathExpression xpathExpression = xpath.compile("/root/processing/*");
+			NodeList nodes = (NodeList) xpathExpression.evaluate(document, XPathConstants.NODESET);
+			
+			for (int i = 0; i < nodes.getLength(); i++) {
+				Node node = nodes.item(i);
+				processingProperties.put(node.getNodeName(), node.getTextContent());
+			}
+		} catch (Exception ex) {
+			Loggers.fatal(this, TextMessage.PARSER_XML_UNKNOWN_ERROR, new Object[]{reportXml}, ex);
+		}
+		return processingProperties;
+	}
 }
@@ -1,6 +1,8 @@
 package magdysyuk.backuper.source.xml.report;
 
+import java.awt.Dimension;
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -8,6 +10,9 @@ import java.util.Map.Entry;
 
 import magdysyuk.backuper.source.crypt.hash.HashFileAlgorithmName;
 import magdysyuk.backuper.source.crypt.hash.HashFileCalculator;
+import magdysyuk.backuper.source.logger.Loggers;
+import magdysyuk.backuper.source.logger.TextMessage;
+import magdysyuk.backuper.source.steganography.SteganographyImageLSB;
 
 
 public class CreatorFileReportXml {
@@ -19,6 +24,36 @@ public class CreatorFileReportXml {
 	 * @return Report file with randomly generated unique name
 	 */
 	public File makeReport(List<Map<File, Integer>> imagesWithHiddenData, File directoryForOutputReportFile) {
+		return this.makeReport(imagesWithHiddenData, directoryForOutputReportFile, null);
+	}
+	
+	/**
+	 * Make a xml report (as makeReport(List, File)), which also contains settings of processing
+	 * (they are needed for extracting data, e.g. density of data in images), and size (width and height)
+	 * of each image (covers from pool could have different sizes)
+	 * @param imagesWithHiddenData List of maps, each map have only 1 record - file and number hidden bytes in that file
+	 * @param directoryForOutputReportFile
+	 * @param processingProperties Names of settings and their values, will be saved in section "processing"
+	 * (in order of map iteration). If map is <code>null</code> or empty, this section will not be created.
+	 * @return Report file with randomly generated unique name
+	 */
+	public File makeReport(List<Map<File, Integer>> imagesWithHiddenData, File directoryForOutputReportFile, Map<String, String> processingProperties) {
+		return this.makeReport(imagesWithHiddenData, directoryForOutputReportFile, processingProperties, null);
+	}
+	
+	/**
+	 * Make a xml report (as makeReport(List, File, Map)) with checksums of images, which were calculated before
+	 * (e.g. by stage of hashing, as soon as each image was written), so images are not read again
+	 * @param imagesWithHiddenData List of maps, each map have only 1 record - file and number hidden bytes in that file
+	 * @param directoryForOutputReportFile
+	 * @param processingProperties Names of settings and their values, will be saved in section "processing"
+	 * @param imageHashes Checksums of images (see isReportHashAlgorithm()). If map is <code>null</code>, or it doesn't contain
+	 * checksum of image, checksum is calculated here.
+	 * @return Report file with randomly generated unique name
+	 */
+	public File makeReport(List<Map<File, Integer>> imagesWithHiddenData, File directoryForOutputReportFile, Map<String, String> processingProperties, 
+			Map<File, Map<HashFileAlgorithmName, String>> imageHashes) {
+		this.imageHashes = imageHashes;
 		if (directoryForOutputReportFile.exists() && directoryForOutputReportFile.isDirectory()) {
 			// do nothing, all is ok
 		} else {
@@ -38,9 +73,16 @@ public class CreatorFileReportXml {
 		
 		this.startDocument();
 		
+		// Report of first version (without settings of processing) doesn't contain sizes of images
+		boolean isImageSizeSaved = false;
+		if (	(processingProperties != null) && (processingProperties.isEmpty() == false)	) {
+			this.saveProcessingInfo(processingProperties);
+			isImageSizeSaved = true;
+		}
+		
 		for (Map<File, Integer> imageWithDataMap : imagesWithHiddenData) {
 			for (Entry<File, Integer> imageWithDataEntry : imageWithDataMap.entrySet()) {
-				this.saveFileEntityInfo(imageWithDataEntry.getKey(), imageWithDataEntry.getValue());
+				this.saveFileEntityInfo(imageWithDataEntry.getKey(), imageWithDataEntry.getValue(), isImageSizeSaved);
 			}
 		}
 		
@@ -49,6 +91,17 @@ public class CreatorFileReportXml {
 		return this.getOutputReportFile();
 	}
 	
+	/**
+	 * Will use only some, not all hashes (calculating all checksums is very long)
+	 * @param hashFileAlgorithmName Algorithm of checksum
+	 * @return <code>true</code> if checksums of images by this algorithm are saved into report
+	 */
+	public static boolean isReportHashAlgorithm(HashFileAlgorithmName hashFileAlgorithmName) {
+		return (hashFileAlgorithmName == HashFileAlgorithmName.Adler32) || (hashFileAlgorithmName == HashFileAlgorithmName.MD5);
+	}
+	
+	private Map<File, Map<HashFileAlgorithmName, String>> imageHashes;
+	
 	private File outputReportFile;
 	private File getOutputReportFile() {
 		return this.outputReportFile;
@@ -69,13 +122,22 @@ public class CreatorFileReportXml {
 		reportWriterXml.endTagElement("application");
 	}
 	
+	private void saveProcessingInfo(Map<String, String> processingProperties) {
+		ReportWriterXml reportWriterXml = this.getReportWriterXml();
+		reportWriterXml.startTagElement("processing");
+		for (Entry<String, String> processingProperty : processingProperties.entrySet()) {
+			reportWriterXml.putTaggedValue(processingProperty.getKey(), processingProperty.getValue());
+		}
+		reportWriterXml.endTagElement("processing");
+	}
+	
 	private void endDocument() {
 		this.getReportWriterXml().endTagElement("root");
 		this.getReportWriterXml().endDocument();
 	}
 	
 	
-	private void saveFileEntityInfo(File inputFile, int numberHiddenDataBytes) {
+	private void saveFileEntityInfo(File inputFile, int numberHiddenDataBytes, boolean isImageSizeSaved) {
 		ReportWriterXml reportWriterXml = this.getReportWriterXml();
 		reportWriterXml.startTagElement("file_entity");
 		
@@ -83,14 +145,36 @@ public class CreatorFileReportXml {
 		
 		reportWriterXml.putTaggedValue("filesize_bytes", String.valueOf(inputFile.length()));
 		reportWriterXml.putTaggedValue("number_hidden_data_bytes", String.valueOf(numberHiddenDataBytes));
+		if (isImageSizeSaved == true) {
+			Dimension imageSize = null;
+			try {
+				imageSize = SteganographyImageLSB.getImageSize(inputFile);
+			} catch (IOException ex) {
+				Loggers.fatal(this, TextMessage.REPORT_XML_IMAGE_SIZE_IMPOSSIBLE, new Object[]{inputFile.getPath()}, ex);
+			}
+			if (imageSize != null) {
+				reportWriterXml.putTaggedValue("image_width", String.valueOf(imageSize.width));
+				reportWriterXml.putTaggedValue("image_height", String.valueOf(imageSize.height));
+			}
+		}
 		reportWriterXml.startTagElement("hash_cheksum");
 		HashFileCalculator hashFileCalculator = new HashFileCalculator(inputFile);
+		Map<HashFileAlgorithmName, String> calculatedHashes = null;
+		if (this.imageHashes != null) {
+			calculatedHashes = this.imageHashes.get(inputFile);
+		}
 		for (HashFileAlgorithmName hashFileAlgorithmName : HashFileAlgorithmName.values()) {
-			// Will use only some, not all hashes (calculating all checksums is very long)
-			if (	(hashFileAlgorithmName == HashFileAlgorithmName.Adler32) || (hashFileAlgorithmName == HashFileAlgorithmName.MD5) ) {
+			if (isReportHashAlgorithm(hashFileAlgorithmName) == true) {
+				String hash = null;
+				if (calculatedHashes != null) {
+					hash = calculatedHashes.get(hashFileAlgorithmName);
+				}
+				if (hash == null) {
+					hash = hashFileCalculator.getHash(hashFileAlgorithmName);
+				}
 				reportWriterXml.startTagElement("hash_cheksum_entity");
 				reportWriterXml.putTaggedValue("algorithm_name", hashFileAlgorithmName.getAlgorithmName());
-				reportWriterXml.putTaggedValue("cheksum", hashFileCalculator.getHash(hashFileAlgorithmName));
+				reportWriterXml.putTaggedValue("cheksum", hash);
 				reportWriterXml.endTagElement("hash_cheksum_entity");
 			}
 		}
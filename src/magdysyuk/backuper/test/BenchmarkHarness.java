@@ -0,0 +1,48 @@
+package magdysyuk.backuper.test;
+
+
+/**
+ * Simple harness for benchmarks (JMH is not in the list of used libraries):
+ * some warmup iterations (for JIT), and after that measured iterations.
+ * Benchmarks are run as usual java applications (method main), from the root directory of project.
+ */
+public class BenchmarkHarness {
+
+	private final int warmupIterations;
+	private final int measuredIterations;
+
+	public BenchmarkHarness(int warmupIterations, int measuredIterations) {
+		this.warmupIterations = warmupIterations;
+		this.measuredIterations = measuredIterations;
+	}
+
+	public int getMeasuredIterations() {
+		return this.measuredIterations;
+	}
+
+	public interface Iteration {
+		void run() throws Exception;
+	}
+
+	/**
+	 * @return Average time of one measured iteration (in nanoseconds)
+	 */
+	public long measure(Iteration iteration) throws Exception {
+		for (int i = 0; i < this.warmupIterations; i++) {
+			iteration.run();
+		}
+		long startTime = System.nanoTime();
+		for (int i = 0; i < this.measuredIterations; i++) {
+			iteration.run();
+		}
+		return (System.nanoTime() - startTime) / this.measuredIterations;
+	}
+
+	/**
+	 * @return Time in milliseconds
+	 */
+	public double getMilliseconds(long nanos) {
+		return nanos / 1000000.0;
+	}
+
+}
@@ -0,0 +1,124 @@
+package magdysyuk.backuper.test.compress;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import magdysyuk.backuper.source.compress.CompressCodec;
+import magdysyuk.backuper.source.compress.DataCompress;
+import magdysyuk.backuper.source.compress.IDataCompress;
+import magdysyuk.backuper.source.filesystem.DirectoryUtils;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+
+public class CompressTarTest {
+
+	private File dirForCompress = new File("unittests_files\\compress\\expected\\files_for_compression");
+	private File getOriginalDirectoryForCompress() {
+		return this.dirForCompress;
+	}
+
+	private File fileDirCompressed = new File("unittests_files\\compress\\obtained\\files_after_compression.tar");
+	private File getFileDirCompressed() {
+		return this.fileDirCompressed;
+	}
+
+	private File fileForCompress = new File("unittests_files\\compress\\expected\\single_file_for_compression.exe");
+	private File getOriginalFileForCompress() {
+		return this.fileForCompress;
+	}
+
+	private File directoryForUncompressed = new File("unittests_files\\compress\\obtained\\files_after_uncompression");
+	private File getDirectoryForUncompressed() {
+		return this.directoryForUncompressed;
+	}
+
+
+	@Test
+	public void testTarCompressUncompressDirectory() {
+		try {
+			DirectoryUtils directoryUtils = new DirectoryUtils();
+			for (CompressCodec compressCodec : new CompressCodec[]{CompressCodec.TAR, CompressCodec.TAR_BZIP2}) {
+				for (int compressionLevel : new int[]{1, DataCompress.DEFAULT_COMPRESSION_LEVEL}) {
+					IDataCompress compressTar = new DataCompress(compressCodec, compressionLevel).getIDataCompress();
+					boolean isCompressedSuccessful = compressTar.compress(this.getOriginalDirectoryForCompress(), this.getFileDirCompressed());
+					boolean isUncompressedSuccessful = compressTar.uncompress(this.getFileDirCompressed(), this.getDirectoryForUncompressed());
+					File uncompressedFile = new File(this.getDirectoryForUncompressed().getPath() + File.separator + this.getOriginalDirectoryForCompress().getName());
+					assertTrue(compressCodec.getCodecName() + ", level " + compressionLevel, isCompressedSuccessful && isUncompressedSuccessful &&
+							directoryUtils.isDirectoriesEquals(this.getOriginalDirectoryForCompress(), uncompressedFile));
+					assertTrue(this.getFileDirCompressed().delete());
+					FileUtils.deleteDirectory(this.getDirectoryForUncompressed());
+				}
+			}
+		} catch (Exception ex){
+			fail("ERROR file compress-uncompress: " + ex.getMessage());
+		}
+	}
+
+	@Test
+	public void testTarCompressUncompressStream() {
+		try {
+			for (CompressCodec compressCodec : new CompressCodec[]{CompressCodec.TAR, CompressCodec.TAR_BZIP2}) {
+				IDataCompress compressTar = new DataCompress(compressCodec).getIDataCompress();
+				ByteArrayOutputStream archiveOutputStream = new ByteArrayOutputStream();
+				boolean isCompressedSuccessful = compressTar.compress(this.getOriginalFileForCompress(), archiveOutputStream);
+				boolean isUncompressedSuccessful = compressTar.uncompress(new ByteArrayInputStream(archiveOutputStream.toByteArray()), this.getDirectoryForUncompressed());
+				File uncompressedFile = new File(this.getDirectoryForUncompressed().getPath() + File.separator + this.getOriginalFileForCompress().getName());
+				assertTrue(compressCodec.getCodecName(), isCompressedSuccessful && isUncompressedSuccessful &&
+						FileUtils.contentEquals(this.getOriginalFileForCompress(), uncompressedFile));
+				FileUtils.deleteDirectory(this.getDirectoryForUncompressed());
+			}
+		} catch (Exception ex){
+			fail("ERROR file compress-uncompress: " + ex.getMessage());
+		}
+	}
+
+	@Test
+	public void testTarUncompressWrongCodec() {
+		try {
+			// Archive without bzip2 can not be uncompressed by codec with bzip2
+			ByteArrayOutputStream archiveOutputStream = new ByteArrayOutputStream();
+			assertTrue(new DataCompress(CompressCodec.TAR).getIDataCompress().compress(this.getOriginalFileForCompress(), archiveOutputStream));
+			IDataCompress compressTarBzip2 = new DataCompress(CompressCodec.TAR_BZIP2).getIDataCompress();
+			assertFalse(compressTarBzip2.uncompress(new ByteArrayInputStream(archiveOutputStream.toByteArray()), this.getDirectoryForUncompressed()));
+			FileUtils.deleteDirectory(this.getDirectoryForUncompressed());
+		} catch (Exception ex){
+			fail("ERROR file compress-uncompress: " + ex.getMessage());
+		}
+	}
+
+	@Test
+	public void testTarUncompressEntryOutsideDirectory() {
+		try {
+			// Entry "../file" is not written near destination directory
+			ByteArrayOutputStream archiveOutputStream = new ByteArrayOutputStream();
+			TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(archiveOutputStream);
+			byte[] entryData = "Outside".getBytes("UTF-8");
+			TarArchiveEntry tarEntry = new TarArchiveEntry(".." + File.separator + "outside_of_uncompression.txt");
+			tarEntry.setSize(entryData.length);
+			tarOutputStream.putArchiveEntry(tarEntry);
+			tarOutputStream.write(entryData);
+			tarOutputStream.closeArchiveEntry();
+			tarOutputStream.close();
+			IDataCompress compressTar = new DataCompress(CompressCodec.TAR).getIDataCompress();
+			assertFalse(compressTar.uncompress(new ByteArrayInputStream(archiveOutputStream.toByteArray()), this.getDirectoryForUncompressed()));
+			assertFalse(new File(this.getDirectoryForUncompressed().getParent() + File.separator + "outside_of_uncompression.txt").exists());
+			
+			// Directory for uncompressed data could not be created
+			FileUtils.deleteDirectory(this.getDirectoryForUncompressed());
+			FileUtils.writeStringToFile(this.getDirectoryForUncompressed(), "Not a directory", "UTF-8");
+			archiveOutputStream = new ByteArrayOutputStream();
+			assertTrue(compressTar.compress(this.getOriginalDirectoryForCompress(), archiveOutputStream));
+			assertFalse(compressTar.uncompress(new ByteArrayInputStream(archiveOutputStream.toByteArray()), this.getDirectoryForUncompressed()));
+			assertTrue(this.getDirectoryForUncompressed().delete());
+		} catch (Exception ex){
+			fail("ERROR file compress-uncompress: " + ex.getMessage());
+		}
+	}
+}
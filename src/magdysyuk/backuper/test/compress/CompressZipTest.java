@@ -2,8 +2,13 @@ package magdysyuk.backuper.test.compress;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.Random;
 
+import magdysyuk.backuper.source.compress.CompressCodec;
+import magdysyuk.backuper.source.compress.DataCompress;
 import magdysyuk.backuper.source.compress.IDataCompress;
 import magdysyuk.backuper.source.compress.zip.CompressZip;
 import magdysyuk.backuper.source.filesystem.DirectoryUtils;
@@ -72,4 +77,63 @@ public class CompressZipTest {
 			fail("ERROR file compress-uncompress: " + ex.getMessage());
 		}
 	}
+	
+	@Test
+	public void testZipCompressionLevels() {
+		try {
+			DirectoryUtils directoryUtils = new DirectoryUtils();
+			long storedArchiveSize = 0;
+			long bestArchiveSize = 0;
+			for (int compressionLevel : new int[]{DataCompress.MIN_COMPRESSION_LEVEL, 1, DataCompress.MAX_COMPRESSION_LEVEL}) {
+				IDataCompress compressZip = new DataCompress(CompressCodec.ZIP, compressionLevel).getIDataCompress();
+				boolean isCompressedSuccessful = compressZip.compress(this.getOriginalDirectoryForCompress(), this.getFileDirCompressed());
+				boolean isUncompressedSuccessful = compressZip.uncompress(this.getFileDirCompressed(), this.getDirectoryForUncompressed());
+				File uncompressedFile = new File(this.getDirectoryForUncompressed().getPath() + File.separator + this.getOriginalDirectoryForCompress().getName());
+				assertTrue("Level " + compressionLevel, isCompressedSuccessful && isUncompressedSuccessful && 
+						directoryUtils.isDirectoriesEquals(this.getOriginalDirectoryForCompress(), uncompressedFile));
+				if (compressionLevel == DataCompress.MIN_COMPRESSION_LEVEL) {
+					storedArchiveSize = this.getFileDirCompressed().length();
+				} else if (compressionLevel == DataCompress.MAX_COMPRESSION_LEVEL) {
+					bestArchiveSize = this.getFileDirCompressed().length();
+				}
+				assertTrue(this.getFileDirCompressed().delete());
+				FileUtils.deleteDirectory(this.getDirectoryForUncompressed());
+			}
+			// Stored files are not smaller than original files
+			assertTrue(storedArchiveSize >= FileUtils.sizeOfDirectory(this.getOriginalDirectoryForCompress()));
+			assertTrue(bestArchiveSize < storedArchiveSize);
+		} catch (Exception ex){
+			fail("ERROR file compress-uncompress: " + ex.getMessage());
+		}
+	}
+	
+	@Test
+	public void testZipStoredIntoStream() {
+		try {
+			IDataCompress compressZip = new DataCompress(CompressCodec.ZIP, DataCompress.MIN_COMPRESSION_LEVEL).getIDataCompress();
+			DirectoryUtils directoryUtils = new DirectoryUtils();
+			// Small files are stored
+			ByteArrayOutputStream archiveOutputStream = new ByteArrayOutputStream();
+			assertTrue(compressZip.compress(this.getOriginalDirectoryForCompress(), archiveOutputStream));
+			assertTrue(compressZip.uncompress(new ByteArrayInputStream(archiveOutputStream.toByteArray()), this.getDirectoryForUncompressed()));
+			File uncompressedFile = new File(this.getDirectoryForUncompressed().getPath() + File.separator + this.getOriginalDirectoryForCompress().getName());
+			assertTrue(directoryUtils.isDirectoriesEquals(this.getOriginalDirectoryForCompress(), uncompressedFile));
+			FileUtils.deleteDirectory(this.getDirectoryForUncompressed());
+			
+			// Large file is not read into memory, but it is not compressed too
+			File largeFile = new File(this.getFileCompressed().getParentFile(), "large_file_for_compression.bin");
+			byte[] largeFileData = new byte[5 * 1024 * 1024];
+			new Random(7).nextBytes(largeFileData);
+			FileUtils.writeByteArrayToFile(largeFile, largeFileData);
+			archiveOutputStream = new ByteArrayOutputStream();
+			assertTrue(compressZip.compress(largeFile, archiveOutputStream));
+			assertTrue(archiveOutputStream.size() >= largeFileData.length);
+			assertTrue(compressZip.uncompress(new ByteArrayInputStream(archiveOutputStream.toByteArray()), this.getDirectoryForUncompressed()));
+			assertTrue(FileUtils.contentEquals(largeFile, new File(this.getDirectoryForUncompressed(), largeFile.getName())));
+			assertTrue(largeFile.delete());
+			FileUtils.deleteDirectory(this.getDirectoryForUncompressed());
+		} catch (Exception ex){
+			fail("ERROR file compress-uncompress: " + ex.getMessage());
+		}
+	}
 }
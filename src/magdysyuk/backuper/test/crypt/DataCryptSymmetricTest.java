@@ -2,16 +2,28 @@ package magdysyuk.backuper.test.crypt;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
 
 import javax.crypto.Cipher;
 
+import magdysyuk.backuper.source.compress.CompressCodec;
+import magdysyuk.backuper.source.compress.DataCompress;
+import magdysyuk.backuper.source.crypt.CryptFileResult;
 import magdysyuk.backuper.source.crypt.DataCrypt;
 import magdysyuk.backuper.source.crypt.IDataCrypt;
+import magdysyuk.backuper.source.crypt.IRandomAccessCrypt;
+import magdysyuk.backuper.source.crypt.IStreamCrypt;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherAlgorithmName;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherKeyMaterial;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
 import magdysyuk.backuper.source.crypt.algorithms.commons.CipherPadding;
+import magdysyuk.backuper.source.crypt.algorithms.commons.SegmentIndex;
+import magdysyuk.backuper.source.crypt.algorithms.commons.SegmentedCryptoTool;
 import magdysyuk.backuper.source.filesystem.DirectoryUtils;
 
 import org.apache.commons.io.FileUtils;
@@ -55,6 +67,13 @@ public class DataCryptSymmetricTest {
 	}
 	
 	
+	/**
+	 * GCM mode (by segments) is implemented only for AES
+	 */
+	private boolean isModeSupported(CipherAlgorithmName cipherAlgorithm, CipherMode cipherMode) {
+		return (cipherMode != CipherMode.GCM) || (cipherAlgorithm == CipherAlgorithmName.AES);
+	}
+	
 	@Test
 	public void testCryptOnlyOneFile() throws IOException {
 		boolean isEncryptSuccessful = false;
@@ -68,6 +87,9 @@ public class DataCryptSymmetricTest {
 		
 		for (CipherAlgorithmName cipherAlgorithm : CipherAlgorithmName.values()) {
 			for (CipherMode cipherMode : CipherMode.values()) {
+				if (this.isModeSupported(cipherAlgorithm, cipherMode) == false) {
+					continue;
+				}
 				for (CipherPadding cipherPadding : CipherPadding.values()) {
 					IDataCrypt dataCrypt = new DataCrypt(cipherAlgorithm);
 					isEncryptSuccessful = dataCrypt.cryptFile(Cipher.ENCRYPT_MODE, fileForEncrypt, 
@@ -96,6 +118,9 @@ public class DataCryptSymmetricTest {
 			for (CipherAlgorithmName cipherAlgorithm : CipherAlgorithmName.values()) {
 				for (char[] password : this.getPasswords()) {
 					for (CipherMode cipherMode : CipherMode.values()) {
+						if (this.isModeSupported(cipherAlgorithm, cipherMode) == false) {
+							continue;
+						}
 						for (CipherPadding cipherPadding : CipherPadding.values()) {
 							try {
 								cryptEnDeResult = false;
@@ -169,6 +194,9 @@ public class DataCryptSymmetricTest {
 			for (CipherAlgorithmName cipherAlgorithm : CipherAlgorithmName.values()) {
 				for (char[] password : this.getPasswords()) {
 					for (CipherMode cipherMode : CipherMode.values()) {
+						if (this.isModeSupported(cipherAlgorithm, cipherMode) == false) {
+							continue;
+						}
 						for (CipherPadding cipherPadding : CipherPadding.values()) {
 							try {
 								cryptEnDeResult = false;
@@ -193,5 +221,239 @@ public class DataCryptSymmetricTest {
 			}
 		}
 	}
+	
+	@Test
+	public void testCryptDirectoryByThreads() throws IOException {
+		DirectoryUtils directoryUtils = new DirectoryUtils();
+		File dirForEncrypt = this.getDirectoriesForCrypt()[0];
+		File encryptedDir = new File(this.getDirectoryForEncrypted().getPath() + File.separator + dirForEncrypt.getName());
+		File decryptedDir = new File(this.getDirectoryForDecrypted().getPath() + File.separator + dirForEncrypt.getName());
+		char[] password = "testpassword".toCharArray();
+		int numberFiles = FileUtils.listFiles(dirForEncrypt, null, true).size();
+		
+		DataCrypt dataCrypt = new DataCrypt(CipherAlgorithmName.AES, 4);
+		CryptFileResult encryptResult = dataCrypt.cryptFiles(Cipher.ENCRYPT_MODE, dirForEncrypt, this.getDirectoryForEncrypted(), password, CipherMode.CBC, CipherPadding.PKCS5Padding);
+		assertTrue(encryptResult.isSuccessful());
+		assertEquals(numberFiles, encryptResult.getNumberCryptedFiles());
+		assertTrue(encryptResult.getFailedFiles().isEmpty());
+		CryptFileResult decryptResult = dataCrypt.cryptFiles(Cipher.DECRYPT_MODE, encryptedDir, this.getDirectoryForDecrypted(), password, CipherMode.CBC, CipherPadding.PKCS5Padding);
+		assertTrue(decryptResult.isSuccessful());
+		assertEquals(encryptResult.getNumberCreatedDirectories(), decryptResult.getNumberCreatedDirectories());
+		assertTrue(directoryUtils.isDirectoriesEquals(dirForEncrypt, decryptedDir));
+		FileUtils.deleteDirectory(this.getDirectoryForDecrypted());
+		
+		// Place of one output file is occupied by directory: only this file is failed, other files are processed
+		File occupiedFile = new File(decryptedDir.getPath() + File.separator + "jdk7partialsources\\com\\sun\\javadoc\\Doc.java");
+		occupiedFile.mkdirs();
+		decryptResult = dataCrypt.cryptFiles(Cipher.DECRYPT_MODE, encryptedDir, this.getDirectoryForDecrypted(), password, CipherMode.CBC, CipherPadding.PKCS5Padding);
+		assertFalse(decryptResult.isSuccessful());
+		assertEquals(1, decryptResult.getFailedFiles().size());
+		assertEquals("Doc.java", decryptResult.getFailedFiles().keySet().iterator().next().getName());
+		assertEquals(numberFiles - 1, decryptResult.getNumberCryptedFiles());
+		assertFalse(dataCrypt.cryptFile(Cipher.DECRYPT_MODE, encryptedDir, this.getDirectoryForDecrypted(), password, CipherMode.CBC, CipherPadding.PKCS5Padding));
+		FileUtils.deleteDirectory(this.getDirectoryForEncrypted());
+		FileUtils.deleteDirectory(this.getDirectoryForDecrypted());
+		
+		// In GCM mode files of tree are processed by threads, and single file - by segments
+		assertTrue(dataCrypt.cryptFile(Cipher.ENCRYPT_MODE, dirForEncrypt, this.getDirectoryForEncrypted(), password, CipherMode.GCM, CipherPadding.PKCS5Padding));
+		assertTrue(dataCrypt.cryptFile(Cipher.DECRYPT_MODE, encryptedDir, this.getDirectoryForDecrypted(), password, CipherMode.GCM, CipherPadding.PKCS5Padding));
+		assertTrue(directoryUtils.isDirectoriesEquals(dirForEncrypt, decryptedDir));
+		FileUtils.deleteDirectory(this.getDirectoryForEncrypted());
+		FileUtils.deleteDirectory(this.getDirectoryForDecrypted());
+		File fileForEncrypt = this.getFilesForCrypt()[2];
+		File encryptedFile = new File(this.getDirectoryForEncrypted().getPath() + File.separator + fileForEncrypt.getName());
+		assertTrue(dataCrypt.cryptFile(Cipher.ENCRYPT_MODE, fileForEncrypt, this.getDirectoryForEncrypted(), password, CipherMode.GCM, CipherPadding.PKCS5Padding));
+		assertTrue(dataCrypt.cryptFile(Cipher.DECRYPT_MODE, encryptedFile, this.getDirectoryForDecrypted(), password, CipherMode.GCM, CipherPadding.PKCS5Padding));
+		assertTrue(FileUtils.contentEquals(fileForEncrypt, new File(this.getDirectoryForDecrypted().getPath() + File.separator + fileForEncrypt.getName())));
+		FileUtils.deleteDirectory(this.getDirectoryForEncrypted());
+		FileUtils.deleteDirectory(this.getDirectoryForDecrypted());
+	}
+
+	@Test
+	public void testCryptArchive() throws IOException {
+		DirectoryUtils directoryUtils = new DirectoryUtils();
+		File dirForEncrypt = this.getDirectoriesForCrypt()[0];
+		File encryptedArchive = new File(this.getDirectoryForEncrypted().getPath() + File.separator + dirForEncrypt.getName() + ".encrypted");
+		File decryptedDir = new File(this.getDirectoryForDecrypted().getPath() + File.separator + dirForEncrypt.getName());
+		char[] password = "testpassword".toCharArray();
+		for (CipherMode cipherMode : new CipherMode[]{CipherMode.CBC, CipherMode.GCM}) {
+			DataCrypt dataCrypt = new DataCrypt(CipherAlgorithmName.AES, 2);
+			// Tree is encrypted into one file, and is restored with the same directories (also empty)
+			assertTrue(dataCrypt.cryptArchive(Cipher.ENCRYPT_MODE, dirForEncrypt, encryptedArchive, password, cipherMode, CipherPadding.PKCS5Padding));
+			assertTrue(encryptedArchive.isFile());
+			assertTrue(dataCrypt.cryptArchive(Cipher.DECRYPT_MODE, encryptedArchive, this.getDirectoryForDecrypted(), password, cipherMode, CipherPadding.PKCS5Padding));
+			assertTrue("cipher mode: " + cipherMode, directoryUtils.isDirectoriesEquals(dirForEncrypt, decryptedDir));
+			FileUtils.deleteDirectory(this.getDirectoryForDecrypted());
+			// Other password
+			assertFalse(dataCrypt.cryptArchive(Cipher.DECRYPT_MODE, encryptedArchive, this.getDirectoryForDecrypted(), "otherpassword".toCharArray(), cipherMode, CipherPadding.PKCS5Padding));
+			FileUtils.deleteDirectory(this.getDirectoryForDecrypted());
+			// Damaged archive (only GCM authenticates data)
+			if (cipherMode == CipherMode.GCM) {
+				byte[] damaged = FileUtils.readFileToByteArray(encryptedArchive);
+				damaged[damaged.length / 2] ^= 1;
+				FileUtils.writeByteArrayToFile(encryptedArchive, damaged);
+				assertFalse(dataCrypt.cryptArchive(Cipher.DECRYPT_MODE, encryptedArchive, this.getDirectoryForDecrypted(), password, cipherMode, CipherPadding.PKCS5Padding));
+				FileUtils.deleteDirectory(this.getDirectoryForDecrypted());
+			}
+			FileUtils.deleteQuietly(encryptedArchive);
+		}
+		// Tree in tar archive with bzip2
+		DataCrypt dataCryptWithTar = new DataCrypt(CipherAlgorithmName.AES);
+		dataCryptWithTar.setArchiveCompress(new DataCompress(CompressCodec.TAR_BZIP2, 1).getIDataCompress());
+		assertTrue(dataCryptWithTar.cryptArchive(Cipher.ENCRYPT_MODE, dirForEncrypt, encryptedArchive, password, CipherMode.CBC, CipherPadding.PKCS5Padding));
+		assertTrue(dataCryptWithTar.cryptArchive(Cipher.DECRYPT_MODE, encryptedArchive, this.getDirectoryForDecrypted(), password, CipherMode.CBC, CipherPadding.PKCS5Padding));
+		assertTrue(directoryUtils.isDirectoriesEquals(dirForEncrypt, decryptedDir));
+		FileUtils.deleteDirectory(this.getDirectoryForDecrypted());
+		FileUtils.deleteQuietly(encryptedArchive);
+		// Single file
+		File fileForEncrypt = this.getFilesForCrypt()[2];
+		DataCrypt dataCrypt = new DataCrypt(CipherAlgorithmName.DESede);
+		assertTrue(dataCrypt.cryptArchive(Cipher.ENCRYPT_MODE, fileForEncrypt, encryptedArchive, password, CipherMode.CBC, CipherPadding.PKCS5Padding));
+		assertTrue(dataCrypt.cryptArchive(Cipher.DECRYPT_MODE, encryptedArchive, this.getDirectoryForDecrypted(), password, CipherMode.CBC, CipherPadding.PKCS5Padding));
+		assertTrue(FileUtils.contentEquals(fileForEncrypt, new File(this.getDirectoryForDecrypted().getPath() + File.separator + fileForEncrypt.getName())));
+		// Input data don't exist
+		assertFalse(dataCrypt.cryptArchive(Cipher.ENCRYPT_MODE, new File(dirForEncrypt.getPath() + "_missing"), encryptedArchive, password, CipherMode.CBC, CipherPadding.PKCS5Padding));
+		FileUtils.deleteDirectory(this.getDirectoryForEncrypted());
+		FileUtils.deleteDirectory(this.getDirectoryForDecrypted());
+	}
+
+	/**
+	 * Key derived once is used for several streams (cipher of thread is reused),
+	 * result should be the same, as with deriving key from password for each stream
+	 */
+	@Test
+	public void testCryptStreamWithKeyMaterial() {
+		byte[] data = new byte[10000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i * 31);
+		}
+		char[] password = "testpassword".toCharArray();
+		for (CipherAlgorithmName cipherAlgorithm : CipherAlgorithmName.values()) {
+			for (CipherMode cipherMode : CipherMode.values()) {
+				if (this.isModeSupported(cipherAlgorithm, cipherMode) == false) {
+					continue;
+				}
+				for (CipherPadding cipherPadding : CipherPadding.values()) {
+					IStreamCrypt streamCrypt = new DataCrypt(cipherAlgorithm).getIStreamCrypt();
+					CipherKeyMaterial cipherKeyMaterial = streamCrypt.getCipherKeyMaterial(password);
+					assertNotNull(cipherKeyMaterial);
+					ByteArrayOutputStream encryptedByPassword = new ByteArrayOutputStream();
+					assertTrue(streamCrypt.cryptStream(Cipher.ENCRYPT_MODE, new ByteArrayInputStream(data), encryptedByPassword, password, cipherMode, cipherPadding));
+					for (int i = 0; i < 2; i++) {
+						String parameters = "algorithm: " + cipherAlgorithm + ", cipher mode: " + cipherMode + ", cipher padding: " + cipherPadding + ", pass: " + i;
+						ByteArrayOutputStream encryptedByKey = new ByteArrayOutputStream();
+						assertTrue(parameters, streamCrypt.cryptStream(Cipher.ENCRYPT_MODE, new ByteArrayInputStream(data), encryptedByKey, cipherKeyMaterial, cipherMode, cipherPadding));
+						if (cipherMode != CipherMode.GCM) {
+							assertTrue(parameters, Arrays.equals(encryptedByPassword.toByteArray(), encryptedByKey.toByteArray()));
+						}
+						ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+						assertTrue(parameters, streamCrypt.cryptStream(Cipher.DECRYPT_MODE, new ByteArrayInputStream(encryptedByKey.toByteArray()), decrypted, cipherKeyMaterial, cipherMode, cipherPadding));
+						assertTrue(parameters, Arrays.equals(data, decrypted.toByteArray()));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Data of many segments are en/de-crypted by threads, result is the same as by one thread;
+	 * changed, truncated or reordered segments are not decrypted
+	 */
+	@Test
+	public void testCryptBySegments() {
+		int segmentBytes = 1000;
+		char[] password = "testpassword".toCharArray();
+		CipherKeyMaterial cipherKeyMaterial = new DataCrypt(CipherAlgorithmName.AES).getIStreamCrypt().getCipherKeyMaterial(password);
+		int[] dataLengths = new int[]{0, 1, segmentBytes, segmentBytes + 1, segmentBytes * 20, segmentBytes * 20 + 333};
+		for (int dataLength : dataLengths) {
+			byte[] data = new byte[dataLength];
+			new Random(dataLength).nextBytes(data);
+			for (int numberThreads : new int[]{1, 4}) {
+				String parameters = "length of data: " + dataLength + ", threads: " + numberThreads;
+				ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+				assertTrue(parameters, new SegmentedCryptoTool(numberThreads, segmentBytes).crypt(Cipher.ENCRYPT_MODE, new ByteArrayInputStream(data), encrypted, cipherKeyMaterial));
+				// Header (21 bytes), each segment has its size (4 bytes) and tag (16 bytes), the end of segments (4 bytes),
+				// index (4 bytes and 12 bytes for each segment), footer (12 bytes)
+				int numberSegments = Math.max((dataLength + segmentBytes - 1) / segmentBytes, 1);
+				assertEquals(parameters, 21 + dataLength + numberSegments * 20 + 4 + 4 + numberSegments * 12 + 12, encrypted.size());
+				for (int numberDecryptThreads : new int[]{1, 3}) {
+					ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+					assertTrue(parameters, new SegmentedCryptoTool(numberDecryptThreads).crypt(Cipher.DECRYPT_MODE, new ByteArrayInputStream(encrypted.toByteArray()), decrypted, cipherKeyMaterial));
+					assertArrayEquals(parameters, data, decrypted.toByteArray());
+				}
+			}
+		}
+		byte[] data = new byte[segmentBytes * 5 + 10];
+		new Random(1).nextBytes(data);
+		ByteArrayOutputStream encryptedStream = new ByteArrayOutputStream();
+		assertTrue(new SegmentedCryptoTool(2, segmentBytes).crypt(Cipher.ENCRYPT_MODE, new ByteArrayInputStream(data), encryptedStream, cipherKeyMaterial));
+		byte[] encrypted = encryptedStream.toByteArray();
+		int headerBytes = 21;
+		int encryptedSegmentBytes = 4 + segmentBytes + 16;
+		// Changed byte in the middle of data
+		byte[] changed = Arrays.copyOf(encrypted, encrypted.length);
+		changed[headerBytes + encryptedSegmentBytes * 2 + 5] ^= 1;
+		assertFalse(new SegmentedCryptoTool(2).crypt(Cipher.DECRYPT_MODE, new ByteArrayInputStream(changed), new ByteArrayOutputStream(), cipherKeyMaterial));
+		// The last segment is removed
+		byte[] truncated = Arrays.copyOf(encrypted, headerBytes + encryptedSegmentBytes * 5);
+		assertFalse(new SegmentedCryptoTool(2).crypt(Cipher.DECRYPT_MODE, new ByteArrayInputStream(truncated), new ByteArrayOutputStream(), cipherKeyMaterial));
+		// Two segments are swapped
+		byte[] reordered = Arrays.copyOf(encrypted, encrypted.length);
+		System.arraycopy(encrypted, headerBytes, reordered, headerBytes + encryptedSegmentBytes, encryptedSegmentBytes);
+		System.arraycopy(encrypted, headerBytes + encryptedSegmentBytes, reordered, headerBytes, encryptedSegmentBytes);
+		assertFalse(new SegmentedCryptoTool(2).crypt(Cipher.DECRYPT_MODE, new ByteArrayInputStream(reordered), new ByteArrayOutputStream(), cipherKeyMaterial));
+		// Other password
+		CipherKeyMaterial otherKeyMaterial = new DataCrypt(CipherAlgorithmName.AES).getIStreamCrypt().getCipherKeyMaterial("otherpassword".toCharArray());
+		assertFalse(new SegmentedCryptoTool(2).crypt(Cipher.DECRYPT_MODE, new ByteArrayInputStream(encrypted), new ByteArrayOutputStream(), otherKeyMaterial));
+		// Data encrypted in CBC mode
+		ByteArrayOutputStream encryptedByCbc = new ByteArrayOutputStream();
+		assertTrue(new DataCrypt(CipherAlgorithmName.AES).getIStreamCrypt().cryptStream(Cipher.ENCRYPT_MODE, new ByteArrayInputStream(data), encryptedByCbc, cipherKeyMaterial, CipherMode.CBC, CipherPadding.PKCS5Padding));
+		assertFalse(new SegmentedCryptoTool(2).crypt(Cipher.DECRYPT_MODE, new ByteArrayInputStream(encryptedByCbc.toByteArray()), new ByteArrayOutputStream(), cipherKeyMaterial));
+	}
+
+	@Test
+	public void testDecryptRange() throws IOException {
+		int segmentBytes = 1000;
+		char[] password = "testpassword".toCharArray();
+		DataCrypt dataCrypt = new DataCrypt(CipherAlgorithmName.AES, 2);
+		CipherKeyMaterial cipherKeyMaterial = dataCrypt.getIStreamCrypt().getCipherKeyMaterial(password);
+		IRandomAccessCrypt randomAccessCrypt = dataCrypt.getIRandomAccessCrypt();
+		assertNotNull(randomAccessCrypt);
+		assertNull(new DataCrypt(CipherAlgorithmName.DESede).getIRandomAccessCrypt());
+		File encryptedFile = new File("unittests_files\\crypt\\obtained\\range_encrypted.bin");
+		FileUtils.deleteQuietly(encryptedFile);
+		try {
+			byte[] data = new byte[segmentBytes * 7 + 123];
+			new Random(7).nextBytes(data);
+			assertTrue(new SegmentedCryptoTool(2, segmentBytes).crypt(Cipher.ENCRYPT_MODE, new ByteArrayInputStream(data), FileUtils.openOutputStream(encryptedFile), cipherKeyMaterial));
+			SegmentIndex segmentIndex = new SegmentedCryptoTool(1).getSegmentIndex(encryptedFile);
+			assertNotNull(segmentIndex);
+			assertEquals(8, segmentIndex.getNumberSegments());
+			assertEquals(data.length, segmentIndex.getPlainLength());
+			assertEquals(3, segmentIndex.getSegmentNumber(segmentBytes * 3));
+			assertEquals(-1, segmentIndex.getSegmentNumber(data.length));
+			// Ranges inside one segment, across segments, at the end of data, and shortened at the end
+			long[][] ranges = new long[][]{{0, 10}, {segmentBytes - 5, 10}, {segmentBytes * 2 + 17, segmentBytes * 3}, {data.length - 123, 123}, {data.length - 5, 100}, {0, data.length}, {data.length, 0}};
+			for (long[] range : ranges) {
+				int rangeStart = (int) range[0];
+				int rangeEnd = (int) Math.min(range[0] + range[1], data.length);
+				byte[] decryptedRange = randomAccessCrypt.decryptRange(encryptedFile, range[0], (int) range[1], cipherKeyMaterial);
+				assertArrayEquals("range: " + range[0] + ", " + range[1], Arrays.copyOfRange(data, rangeStart, rangeEnd), decryptedRange);
+			}
+			// Range out of data
+			assertNull(randomAccessCrypt.decryptRange(encryptedFile, data.length + 1, 10, cipherKeyMaterial));
+			// Other password
+			CipherKeyMaterial otherKeyMaterial = dataCrypt.getIStreamCrypt().getCipherKeyMaterial("otherpassword".toCharArray());
+			assertNull(randomAccessCrypt.decryptRange(encryptedFile, segmentBytes * 3, 10, otherKeyMaterial));
+			// Changed byte in the segment of range, other segments are still decrypted
+			byte[] changed = FileUtils.readFileToByteArray(encryptedFile);
+			changed[(int) segmentIndex.getEncryptedOffset(4) + 4 + 7] ^= 1;
+			FileUtils.writeByteArrayToFile(encryptedFile, changed);
+			assertNull(randomAccessCrypt.decryptRange(encryptedFile, segmentBytes * 4, 10, cipherKeyMaterial));
+			assertArrayEquals(Arrays.copyOfRange(data, segmentBytes * 5, segmentBytes * 5 + 10), randomAccessCrypt.decryptRange(encryptedFile, segmentBytes * 5, 10, cipherKeyMaterial));
+		} finally {
+			FileUtils.deleteQuietly(encryptedFile);
+		}
+	}
 
 }
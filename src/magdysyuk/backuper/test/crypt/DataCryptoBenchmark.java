@@ -0,0 +1,105 @@
+package magdysyuk.backuper.test.crypt;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+
+import magdysyuk.backuper.source.crypt.DataCrypt;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherAlgorithmName;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherKeyMaterial;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherPadding;
+import magdysyuk.backuper.source.crypt.algorithms.commons.DataCryptoTool;
+import magdysyuk.backuper.source.filesystem.FileIO;
+import magdysyuk.backuper.test.BenchmarkHarness;
+
+import org.apache.commons.io.FileUtils;
+
+
+/**
+ * Throughput of AES/CBC encryption of one big file (file to file, including reading and writing):
+ * DataCryptoTool.cryptByCipherStream() - CipherOutputStream over buffered streams of file, flushed after each block of data;
+ * DataCryptoTool.crypt() - FileChannel of file, Cipher.update() between reusable direct buffers, gathering writes.
+ * Both ways should give encrypted files of the same size. Result is printed in milliseconds and megabytes per second.
+ */
+public class DataCryptoBenchmark {
+
+	private static final int FILE_BYTES = 64 * 1024 * 1024;
+
+	private final BenchmarkHarness benchmarkHarness = new BenchmarkHarness(3, 10);
+
+	private File getInputFile() {
+		return new File("unittests_files\\crypt\\obtained\\benchmark_input.bin");
+	}
+
+	private File getOutputFile() {
+		return new File("unittests_files\\crypt\\obtained\\benchmark_encrypted.bin");
+	}
+
+	public static void main(String[] args) throws Exception {
+		new DataCryptoBenchmark().runEncryptFileBenchmark();
+	}
+
+	private void runEncryptFileBenchmark() throws Exception {
+		byte[] rawData = new byte[FILE_BYTES];
+		new Random(2012).nextBytes(rawData);
+		FileUtils.writeByteArrayToFile(this.getInputFile(), rawData);
+		final CipherKeyMaterial cipherKeyMaterial = new DataCrypt(CipherAlgorithmName.AES).getIStreamCrypt().getCipherKeyMaterial("benchmark".toCharArray());
+		final FileIO fileIO = new FileIO();
+		final DataCryptoTool dataCryptoTool = new DataCryptoTool();
+
+		long cipherStreamNanos = this.measure(new CryptAction() {
+			@Override
+			public boolean crypt(File inputFile, File outputFile) throws Exception {
+				Cipher cipher = dataCryptoTool.getCipher(Cipher.ENCRYPT_MODE, cipherKeyMaterial, CipherMode.CBC, CipherPadding.PKCS5Padding);
+				return dataCryptoTool.cryptByCipherStream(fileIO.getFileInputStream(inputFile), fileIO.getFileOutputStream(outputFile), cipher);
+			}
+		});
+		long expectedLength = this.getOutputFile().length();
+		long channelNanos = this.measure(new CryptAction() {
+			@Override
+			public boolean crypt(File inputFile, File outputFile) throws Exception {
+				Cipher cipher = dataCryptoTool.getCipher(Cipher.ENCRYPT_MODE, cipherKeyMaterial, CipherMode.CBC, CipherPadding.PKCS5Padding);
+				return dataCryptoTool.crypt(fileIO.getFileChannelInputStream(inputFile), fileIO.getFileChannelOutputStream(outputFile), cipher);
+			}
+		});
+		if (this.getOutputFile().length() != expectedLength) {
+			throw new IllegalStateException("Encrypted files have different sizes");
+		}
+
+		System.out.println("Encrypt file of " + FILE_BYTES + " bytes (AES/CBC), average time of " + this.benchmarkHarness.getMeasuredIterations() + " iterations:");
+		System.out.println("	cipher stream: " + this.benchmarkHarness.getMilliseconds(cipherStreamNanos) + " ms, " + this.getMegabytesPerSecond(cipherStreamNanos) + " MB/s");
+		System.out.println("	channels:      " + this.benchmarkHarness.getMilliseconds(channelNanos) + " ms, " + this.getMegabytesPerSecond(channelNanos) + " MB/s");
+
+		this.getInputFile().delete();
+		this.getOutputFile().delete();
+	}
+
+	private interface CryptAction {
+		boolean crypt(File inputFile, File outputFile) throws Exception;
+	}
+
+	private double getMegabytesPerSecond(long nanos) {
+		return (FILE_BYTES / (1024.0 * 1024.0)) / (nanos / 1000000000.0);
+	}
+
+	/**
+	 * @return Average time of one iteration (in nanoseconds), output file is deleted before each iteration
+	 */
+	private long measure(final CryptAction cryptAction) throws Exception {
+		final File inputFile = this.getInputFile();
+		final File outputFile = this.getOutputFile();
+		return this.benchmarkHarness.measure(new BenchmarkHarness.Iteration() {
+			@Override
+			public void run() throws Exception {
+				outputFile.delete();
+				if (cryptAction.crypt(inputFile, outputFile) == false) {
+					throw new IOException("Impossible encrypt file: " + inputFile.getPath());
+				}
+			}
+		});
+	}
+
+}
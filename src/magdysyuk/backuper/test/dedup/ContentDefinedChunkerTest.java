@@ -0,0 +1,69 @@
+package magdysyuk.backuper.test.dedup;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import magdysyuk.backuper.source.dedup.ContentDefinedChunker;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.junit.Test;
+
+
+public class ContentDefinedChunkerTest {
+
+	private static final int MIN_CHUNK_BYTES = 1024;
+	private static final int AVERAGE_CHUNK_BYTES = 4 * 1024;
+	private static final int MAX_CHUNK_BYTES = 16 * 1024;
+
+	private List<String> getChunkDigests(byte[] data, ByteArrayOutputStream concatenatedChunks) throws IOException {
+		List<String> chunkDigests = new ArrayList<String>();
+		ContentDefinedChunker chunker = new ContentDefinedChunker(new ByteArrayInputStream(data), MIN_CHUNK_BYTES, AVERAGE_CHUNK_BYTES, MAX_CHUNK_BYTES);
+		byte[] chunkBuffer = new byte[chunker.getMaxChunkBytes()];
+		int chunkLength = 0;
+		while ((chunkLength = chunker.readChunk(chunkBuffer)) > 0) {
+			assertTrue(chunkLength <= MAX_CHUNK_BYTES);
+			byte[] chunk = Arrays.copyOf(chunkBuffer, chunkLength);
+			concatenatedChunks.write(chunk);
+			chunkDigests.add(DigestUtils.sha256Hex(chunk));
+		}
+		return chunkDigests;
+	}
+
+	@Test
+	public void testReadChunk() throws IOException {
+		byte[] data = new byte[1024 * 1024];
+		new Random(1).nextBytes(data);
+		ByteArrayOutputStream concatenatedChunks = new ByteArrayOutputStream();
+		List<String> chunkDigests = this.getChunkDigests(data, concatenatedChunks);
+		// Chunks are the whole data, and their sizes depend on content (not all chunks are maximal)
+		assertArrayEquals(data, concatenatedChunks.toByteArray());
+		assertTrue(chunkDigests.size() > data.length / MAX_CHUNK_BYTES);
+		// The same data give the same chunks
+		assertEquals(chunkDigests, this.getChunkDigests(data, new ByteArrayOutputStream()));
+		// Empty data don't have chunks
+		assertTrue(this.getChunkDigests(new byte[0], new ByteArrayOutputStream()).isEmpty());
+	}
+
+	@Test
+	public void testChunksOfChangedData() throws IOException {
+		byte[] data = new byte[1024 * 1024];
+		new Random(2).nextBytes(data);
+		List<String> chunkDigests = this.getChunkDigests(data, new ByteArrayOutputStream());
+		// Some bytes are inserted near beginning: only neighbouring chunks are changed, other chunks are shifted
+		byte[] insertedBytes = "Inserted bytes".getBytes();
+		byte[] changedData = ArrayUtils.addAll(ArrayUtils.subarray(data, 0, 5000), ArrayUtils.addAll(insertedBytes, ArrayUtils.subarray(data, 5000, data.length)));
+		List<String> changedChunkDigests = this.getChunkDigests(changedData, new ByteArrayOutputStream());
+		List<String> newChunkDigests = new ArrayList<String>(changedChunkDigests);
+		newChunkDigests.removeAll(chunkDigests);
+		assertTrue(newChunkDigests.size() <= 2);
+	}
+
+}
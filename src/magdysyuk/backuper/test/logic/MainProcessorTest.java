@@ -4,12 +4,24 @@ import static org.junit.Assert.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
+import magdysyuk.backuper.source.compress.CompressCodec;
+import magdysyuk.backuper.source.crypt.algorithms.commons.CipherMode;
 import magdysyuk.backuper.source.filesystem.DirectoryUtils;
+import magdysyuk.backuper.source.filesystem.Workspace;
+import magdysyuk.backuper.source.logic.BackupManifest;
+import magdysyuk.backuper.source.logic.BackupManifestEntry;
 import magdysyuk.backuper.source.logic.MainProcessor;
+import magdysyuk.backuper.source.logic.OperationJournal;
+import magdysyuk.backuper.source.logic.PipelineOrder;
+import magdysyuk.backuper.source.logic.ProcessingOptions;
+import magdysyuk.backuper.source.xml.parser.ParserFileReportXml;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.ArrayUtils;
+import org.junit.Before;
 import org.junit.Test;
 
 
@@ -45,21 +57,31 @@ public class MainProcessorTest {
 		return new File("unittests_files\\main_processing\\obtained\\decrypted_files");
 	}
 	
+	/**
+	 * Results of previous test are removed
+	 */
+	@Before
+	public void deleteObtainedFiles() {
+		FileUtils.deleteQuietly(this.getOutputReportFile());
+		FileUtils.deleteQuietly(this.getDirectoryForDecryptedFiles());
+		FileUtils.deleteQuietly(this.getOutputDirectoryForImages());
+		FileUtils.deleteQuietly(this.getWorkspaceDirectory());
+		FileUtils.deleteQuietly(this.getIncrementalDirectory());
+	}
+	
+	/**
+	 * Because directory with received data is into directory for decrypted files,
+	 * we are going to 1 level deeper for comparing content of original and received directories
+	 */
+	private void assertRestoredDirectoriesEqual() {
+		DirectoryUtils directoryUtils = new DirectoryUtils();
+		for (File receivedDataDir : this.getDirectoryForDecryptedFiles().listFiles()) {
+			assertTrue(directoryUtils.isDirectoriesEquals(this.getOriginalDataDirectory(), receivedDataDir));
+		}
+	}
+	
 	@Test
 	public void testEncryptCompressHideExtractUncompressDecryptFiles() throws IOException {
-		
-		if (this.getOutputReportFile().exists()) {
-			this.getOutputReportFile().delete();
-		}
-		if (this.getDirectoryForDecryptedFiles().exists()) {
-			FileUtils.deleteDirectory(this.getDirectoryForDecryptedFiles());
-		}
-		if (this.getOutputDirectoryForImages().exists()) {
-			FileUtils.deleteDirectory(this.getOutputDirectoryForImages());
-		}
-		
-		DirectoryUtils directoryUtils = new DirectoryUtils();
-		
 		MainProcessor mainProcessor = new MainProcessor();
 		boolean isEncryptPackHideOperationFinishedSuccessful = false;
 		boolean isDecryptUnpackExtractOperationFinishedSuccessful = false;
@@ -74,13 +96,7 @@ public class MainProcessorTest {
 					isDecryptUnpackExtractOperationFinishedSuccessful = mainProcessor.decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password);
 					assertTrue(isDecryptUnpackExtractOperationFinishedSuccessful);
 					
-					/*
-					 * Because directory with received data is into directory for decryped files, 
-					 * we are going to 1 level deeper for comparing content of original and received directories
-					 */
-					for (File receivedDataDir : this.getDirectoryForDecryptedFiles().listFiles()) {
-						assertTrue(directoryUtils.isDirectoriesEquals(this.getOriginalDataDirectory(), receivedDataDir));
-					}
+					this.assertRestoredDirectoriesEqual();
 				}
 			}
 		}
@@ -90,4 +106,440 @@ public class MainProcessorTest {
 	}
 	
 
+	@Test
+	public void testHideWithProcessingOptionsExtractByReport() throws IOException {
+		ProcessingOptions processingOptions = new ProcessingOptions();
+		processingOptions.setNumberThreads(3);
+		processingOptions.setNumberBitsPerChannel(3);
+		processingOptions.setAlphaChannelUsed(true);
+		processingOptions.setImageSize(320, 240);
+		MainProcessor mainProcessorWithOptions = new MainProcessor(processingOptions);
+		char[] password = "password".toCharArray();
+		assertTrue(mainProcessorWithOptions.encryptCompressHideFiles(this.getOriginalDataDirectory(), password, this.getOriginalImageFiles()[0], this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+		
+		// Density of data is taken from report, so processor with default options can extract data
+		MainProcessor mainProcessor = new MainProcessor();
+		assertTrue(mainProcessor.decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+		this.assertRestoredDirectoriesEqual();
+	}
+
+	@Test
+	public void testStreamingHideExtractByReport() throws IOException {
+		ProcessingOptions processingOptions = new ProcessingOptions();
+		processingOptions.setNumberThreads(3);
+		processingOptions.setImageSize(320, 240);
+		processingOptions.setStreamingUsed(true);
+		MainProcessor mainProcessorWithStreaming = new MainProcessor(processingOptions);
+		char[] password = "password".toCharArray();
+		assertTrue(mainProcessorWithStreaming.encryptCompressHideFiles(this.getOriginalDataDirectory(), password, this.getOriginalImageFiles()[0], this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+		
+		// Images, created by stream, are extracted by usual way
+		MainProcessor mainProcessor = new MainProcessor();
+		assertTrue(mainProcessor.decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+		this.assertRestoredDirectoriesEqual();
+	}
+	
+	@Test
+	public void testStreamingHideWithStageThreads() throws IOException {
+		// Files are encrypted and images are hashed by a few threads, with small queues between stages
+		ProcessingOptions processingOptions = new ProcessingOptions();
+		processingOptions.setNumberThreads(2);
+		processingOptions.setNumberEncryptThreads(3);
+		processingOptions.setNumberHashThreads(2);
+		processingOptions.setStageQueueCapacity(1);
+		processingOptions.setImageSize(320, 240);
+		processingOptions.setStreamingUsed(true);
+		MainProcessor mainProcessorWithStreaming = new MainProcessor(processingOptions);
+		char[] password = "password".toCharArray();
+		assertTrue(mainProcessorWithStreaming.encryptCompressHideFiles(this.getOriginalDataDirectory(), password, this.getOriginalImageFiles()[0], this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+		
+		// Checksums of images in report are checked by extracting
+		MainProcessor mainProcessor = new MainProcessor();
+		assertTrue(mainProcessor.decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+		this.assertRestoredDirectoriesEqual();
+	}
+	
+	@Test
+	public void testStreamingExtractByReport() throws IOException {
+		ProcessingOptions processingOptions = new ProcessingOptions();
+		processingOptions.setImageSize(320, 240);
+		MainProcessor mainProcessor = new MainProcessor(processingOptions);
+		char[] password = "password".toCharArray();
+		assertTrue(mainProcessor.encryptCompressHideFiles(this.getOriginalDataDirectory(), password, this.getOriginalImageFiles()[0], this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+		
+		// Images, created by usual way, are extracted by stream
+		ProcessingOptions processingOptionsWithStreaming = new ProcessingOptions();
+		processingOptionsWithStreaming.setNumberThreads(3);
+		processingOptionsWithStreaming.setStreamingUsed(true);
+		MainProcessor mainProcessorWithStreaming = new MainProcessor(processingOptionsWithStreaming);
+		assertTrue(mainProcessorWithStreaming.decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+		assertEquals(1, this.getDirectoryForDecryptedFiles().listFiles().length);
+		this.assertRestoredDirectoriesEqual();
+	}
+	
+	@Test
+	public void testGcmHideExtractByReport() throws IOException {
+		// Archive is encrypted as one large file by segments, segments are encrypted by a few threads
+		ProcessingOptions processingOptions = new ProcessingOptions();
+		processingOptions.setNumberThreads(3);
+		processingOptions.setImageSize(320, 240);
+		processingOptions.setPipelineOrder(PipelineOrder.COMPRESS_THEN_ENCRYPT);
+		processingOptions.setCipherMode(CipherMode.GCM);
+		MainProcessor mainProcessorWithGcm = new MainProcessor(processingOptions);
+		char[] password = "password".toCharArray();
+		assertTrue(mainProcessorWithGcm.encryptCompressHideFiles(this.getOriginalDataDirectory(), password, this.getOriginalImageFiles()[0], this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+		Map<String, String> processingProperties = new ParserFileReportXml().getProcessingProperties(this.getOutputReportFile());
+		assertEquals(CipherMode.GCM.getCipherMode(), processingProperties.get("cipher_mode"));
+		
+		// Mode is taken from report
+		MainProcessor mainProcessor = new MainProcessor();
+		assertTrue(mainProcessor.decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+		this.assertRestoredDirectoriesEqual();
+		
+		// Order "encrypt-compress" in streaming mode, extracted by usual way
+		FileUtils.deleteDirectory(this.getDirectoryForDecryptedFiles());
+		FileUtils.deleteDirectory(this.getOutputDirectoryForImages());
+		processingOptions.setPipelineOrder(PipelineOrder.ENCRYPT_THEN_COMPRESS);
+		processingOptions.setStreamingUsed(true);
+		assertTrue(mainProcessorWithGcm.encryptCompressHideFiles(this.getOriginalDataDirectory(), password, this.getOriginalImageFiles()[0], this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+		assertTrue(mainProcessor.decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+		this.assertRestoredDirectoriesEqual();
+	}
+	
+	@Test
+	public void testCompressCodecHideExtractByReport() throws IOException {
+		// Whole data are compressed into tar archive by bzip2 with the smallest block (level 1)
+		ProcessingOptions processingOptions = new ProcessingOptions();
+		processingOptions.setImageSize(320, 240);
+		processingOptions.setPipelineOrder(PipelineOrder.COMPRESS_THEN_ENCRYPT);
+		processingOptions.setCompressCodec(CompressCodec.TAR_BZIP2);
+		processingOptions.setCompressionLevel(1);
+		MainProcessor mainProcessorWithCodec = new MainProcessor(processingOptions);
+		char[] password = "password".toCharArray();
+		assertTrue(mainProcessorWithCodec.encryptCompressHideFiles(this.getOriginalDataDirectory(), password, this.getOriginalImageFiles()[0], this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+		Map<String, String> processingProperties = new ParserFileReportXml().getProcessingProperties(this.getOutputReportFile());
+		assertEquals(CompressCodec.TAR_BZIP2.getCodecName(), processingProperties.get("compress_codec"));
+		
+		// Codec is taken from report
+		MainProcessor mainProcessor = new MainProcessor();
+		assertTrue(mainProcessor.decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+		assertEquals(1, this.getDirectoryForDecryptedFiles().listFiles().length);
+		this.assertRestoredDirectoriesEqual();
+		
+		// Order "encrypt-compress" with tar: streaming is not supported, temporary files are used for hiding and extracting
+		FileUtils.deleteDirectory(this.getDirectoryForDecryptedFiles());
+		FileUtils.deleteDirectory(this.getOutputDirectoryForImages());
+		processingOptions.setPipelineOrder(PipelineOrder.ENCRYPT_THEN_COMPRESS);
+		processingOptions.setCompressCodec(CompressCodec.TAR);
+		processingOptions.setStreamingUsed(true);
+		assertTrue(mainProcessorWithCodec.encryptCompressHideFiles(this.getOriginalDataDirectory(), password, this.getOriginalImageFiles()[0], this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+		processingProperties = new ParserFileReportXml().getProcessingProperties(this.getOutputReportFile());
+		assertEquals(CompressCodec.TAR.getCodecName(), processingProperties.get("compress_codec"));
+		assertTrue(mainProcessorWithCodec.decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+		assertEquals(1, this.getDirectoryForDecryptedFiles().listFiles().length);
+		this.assertRestoredDirectoriesEqual();
+	}
+	
+	@Test
+	public void testCompressEncryptHideExtractByReport() throws IOException {
+		ProcessingOptions processingOptions = new ProcessingOptions();
+		processingOptions.setImageSize(320, 240);
+		processingOptions.setPipelineOrder(PipelineOrder.COMPRESS_THEN_ENCRYPT);
+		MainProcessor mainProcessorWithCompressFirst = new MainProcessor(processingOptions);
+		char[] password = "password".toCharArray();
+		assertTrue(mainProcessorWithCompressFirst.encryptCompressHideFiles(this.getOriginalDataDirectory(), password, this.getOriginalImageFiles()[0], this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+		Map<String, String> processingProperties = new ParserFileReportXml().getProcessingProperties(this.getOutputReportFile());
+		assertEquals(String.valueOf(MainProcessor.REPORT_VERSION), processingProperties.get("report_version"));
+		assertEquals(PipelineOrder.COMPRESS_THEN_ENCRYPT.getOrderName(), processingProperties.get("pipeline_order"));
+		
+		// Order is taken from report
+		MainProcessor mainProcessor = new MainProcessor();
+		assertTrue(mainProcessor.decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+		assertEquals(1, this.getDirectoryForDecryptedFiles().listFiles().length);
+		this.assertRestoredDirectoriesEqual();
+		
+		// Report made by newer version is not extracted
+		String reportContent = FileUtils.readFileToString(this.getOutputReportFile(), "UTF-8");
+		FileUtils.writeStringToFile(this.getOutputReportFile(), reportContent.replace("<report_version>" + MainProcessor.REPORT_VERSION + "<", "<report_version>" + (MainProcessor.REPORT_VERSION + 1) + "<"), "UTF-8");
+		FileUtils.deleteDirectory(this.getDirectoryForDecryptedFiles());
+		assertFalse(mainProcessor.decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+		assertFalse(this.getDirectoryForDecryptedFiles().exists());
+	}
+
+	private File getWorkspaceDirectory() {
+		return new File("unittests_files\\main_processing\\obtained\\workspace");
+	}
+	
+	@Test
+	public void testHideExtractWithWorkspace() throws IOException {
+		char[] password = "password".toCharArray();
+		for (PipelineOrder pipelineOrder : PipelineOrder.values()) {
+			for (boolean isInMemory : new boolean[]{false, true}) {
+				FileUtils.deleteQuietly(this.getOutputReportFile());
+				FileUtils.deleteQuietly(this.getDirectoryForDecryptedFiles());
+				FileUtils.deleteQuietly(this.getOutputDirectoryForImages());
+				FileUtils.deleteQuietly(this.getWorkspaceDirectory());
+				
+				ProcessingOptions processingOptions = new ProcessingOptions();
+				processingOptions.setImageSize(320, 240);
+				processingOptions.setPipelineOrder(pipelineOrder);
+				processingOptions.setWorkspace(new Workspace(this.getWorkspaceDirectory(), isInMemory));
+				MainProcessor mainProcessor = new MainProcessor(processingOptions);
+				assertTrue(mainProcessor.encryptCompressHideFiles(this.getOriginalDataDirectory(), password, this.getOriginalImageFiles()[0], this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+				assertTrue(mainProcessor.decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+				assertEquals(1, this.getDirectoryForDecryptedFiles().listFiles().length);
+				this.assertRestoredDirectoriesEqual();
+				if (isInMemory == true) {
+					// Small data don't need temporary files
+					assertFalse(this.getWorkspaceDirectory().exists());
+				} else {
+					// Temporary directories were created in workspace, and they are removed
+					assertTrue(this.getWorkspaceDirectory().isDirectory());
+					assertEquals(0, this.getWorkspaceDirectory().listFiles().length);
+				}
+			}
+		}
+		FileUtils.deleteQuietly(this.getWorkspaceDirectory());
+	}
+
+	private File getIncrementalDirectory() {
+		return new File("unittests_files\\main_processing\\obtained\\incremental");
+	}
+	
+	@Test
+	public void testIncrementalHideExtract() throws IOException {
+		char[] password = "password".toCharArray();
+		DirectoryUtils directoryUtils = new DirectoryUtils();
+		// Data are changed between backups, so copy of original data is used
+		File dataDir = new File(this.getIncrementalDirectory().getPath() + File.separator + "input" + File.separator + this.getOriginalDataDirectory().getName());
+		FileUtils.copyDirectory(this.getOriginalDataDirectory(), dataDir);
+		File[] reportFiles = new File[4];
+		File[] imageDirectories = new File[4];
+		for (int i = 0; i < reportFiles.length; i++) {
+			reportFiles[i] = new File(this.getIncrementalDirectory().getPath() + File.separator + "report_" + i + ".xml");
+			imageDirectories[i] = new File(this.getIncrementalDirectory().getPath() + File.separator + "images_" + i);
+		}
+		
+		// Full backup
+		ProcessingOptions processingOptions = new ProcessingOptions();
+		processingOptions.setImageSize(320, 240);
+		processingOptions.setIncrementalBackup(true);
+		assertTrue(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, this.getOriginalImageFiles()[0], imageDirectories[0], reportFiles[0]));
+		assertTrue(BackupManifest.getManifestFile(reportFiles[0]).exists());
+		
+		// One file is changed, one is added, and one is removed
+		File changedFile = new File(dataDir.getPath() + File.separator + "Hello world!.txt");
+		FileUtils.writeStringToFile(changedFile, "Changed content", "UTF-8");
+		FileUtils.writeStringToFile(new File(dataDir.getPath() + File.separator + "new_dir" + File.separator + "new_file.txt"), "New file", "UTF-8");
+		File removedFile = new File(dataDir.getPath() + File.separator + "random_small_files" + File.separator + "AutoGen2.Bin");
+		assertTrue(removedFile.delete());
+		new File(dataDir.getPath() + File.separator + "empty_dir").mkdirs();
+		processingOptions.setPreviousReportFile(reportFiles[0]);
+		assertTrue(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, this.getOriginalImageFiles()[0], imageDirectories[1], reportFiles[1]));
+		// Only changed files are putted into images
+		assertTrue(imageDirectories[1].listFiles().length < imageDirectories[0].listFiles().length);
+		Map<String, String> processingProperties = new ParserFileReportXml().getProcessingProperties(reportFiles[1]);
+		assertEquals(reportFiles[0].getName(), processingProperties.get("previous_report"));
+		assertEquals(BackupManifest.getManifestFile(reportFiles[1]).getName(), processingProperties.get("manifest"));
+		
+		// Nothing is changed: images are not needed
+		processingOptions.setPreviousReportFile(reportFiles[1]);
+		assertTrue(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, this.getOriginalImageFiles()[0], imageDirectories[2], reportFiles[2]));
+		assertFalse(	(imageDirectories[2].exists() == true) && (imageDirectories[2].listFiles().length > 0)	);
+		
+		// Latest state is extracted from all image sets
+		MainProcessor mainProcessor = new MainProcessor();
+		assertTrue(mainProcessor.decryptUncompressExtractFiles(imageDirectories[2], reportFiles[2], this.getDirectoryForDecryptedFiles(), password));
+		assertTrue(directoryUtils.isDirectoriesEquals(dataDir, new File(this.getDirectoryForDecryptedFiles().getPath() + File.separator + dataDir.getName())));
+		FileUtils.deleteDirectory(this.getDirectoryForDecryptedFiles());
+		// Previous state is still available
+		assertTrue(mainProcessor.decryptUncompressExtractFiles(imageDirectories[0], reportFiles[0], this.getDirectoryForDecryptedFiles(), password));
+		assertTrue(directoryUtils.isDirectoriesEquals(this.getOriginalDataDirectory(), new File(this.getDirectoryForDecryptedFiles().getPath() + File.separator + dataDir.getName())));
+		FileUtils.deleteDirectory(this.getDirectoryForDecryptedFiles());
+		
+		// Wrong password for manifest, and report of previous backup can not be replaced
+		assertFalse(mainProcessor.decryptUncompressExtractFiles(imageDirectories[2], reportFiles[2], this.getDirectoryForDecryptedFiles(), "wrong".toCharArray()));
+		processingOptions.setPreviousReportFile(reportFiles[2]);
+		assertFalse(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, this.getOriginalImageFiles()[0], imageDirectories[3], reportFiles[0]));
+		
+		FileUtils.deleteQuietly(this.getIncrementalDirectory());
+		FileUtils.deleteQuietly(this.getDirectoryForDecryptedFiles());
+	}
+
+	@Test
+	public void testDeduplicationHideExtract() throws IOException {
+		char[] password = "password".toCharArray();
+		DirectoryUtils directoryUtils = new DirectoryUtils();
+		File dataDir = new File(this.getIncrementalDirectory().getPath() + File.separator + "input" + File.separator + this.getOriginalDataDirectory().getName());
+		FileUtils.copyDirectory(this.getOriginalDataDirectory(), dataDir);
+		// Duplicate of large file
+		File largeFile = new File(dataDir.getPath() + File.separator + "average_files" + File.separator + "AutoGen_1.Bin");
+		FileUtils.copyFile(largeFile, new File(dataDir.getPath() + File.separator + "copy_of_AutoGen_1.Bin"));
+		File firstStateDir = new File(this.getIncrementalDirectory().getPath() + File.separator + "first_state" + File.separator + dataDir.getName());
+		FileUtils.copyDirectory(dataDir, firstStateDir);
+		File[] reportFiles = new File[3];
+		File[] imageDirectories = new File[3];
+		for (int i = 0; i < reportFiles.length; i++) {
+			reportFiles[i] = new File(this.getIncrementalDirectory().getPath() + File.separator + "report_" + i + ".xml");
+			imageDirectories[i] = new File(this.getIncrementalDirectory().getPath() + File.separator + "images_" + i);
+		}
+		
+		ProcessingOptions processingOptions = new ProcessingOptions();
+		processingOptions.setImageSize(320, 240);
+		processingOptions.setIncrementalBackup(true);
+		processingOptions.setDeduplicationUsed(true);
+		assertTrue(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, this.getOriginalImageFiles()[0], imageDirectories[0], reportFiles[0]));
+		// Duplicate refers to the same chunks
+		BackupManifest manifest = new BackupManifest();
+		assertTrue(manifest.load(BackupManifest.getManifestFile(reportFiles[0]), password));
+		BackupManifestEntry largeFileEntry = manifest.getEntry(dataDir.getName() + "/average_files/AutoGen_1.Bin");
+		assertTrue(largeFileEntry.isChunked());
+		assertTrue(largeFileEntry.getChunkDigests().size() > 1);
+		assertEquals(largeFileEntry.getChunkDigests(), manifest.getEntry(dataDir.getName() + "/copy_of_AutoGen_1.Bin").getChunkDigests());
+		
+		// Some bytes are inserted into the middle of large file: only few new chunks are putted into images
+		byte[] largeFileBytes = FileUtils.readFileToByteArray(largeFile);
+		byte[] insertedBytes = "Inserted bytes".getBytes("UTF-8");
+		FileUtils.writeByteArrayToFile(largeFile, ArrayUtils.addAll(ArrayUtils.subarray(largeFileBytes, 0, largeFileBytes.length / 2), 
+				ArrayUtils.addAll(insertedBytes, ArrayUtils.subarray(largeFileBytes, largeFileBytes.length / 2, largeFileBytes.length))));
+		processingOptions.setPreviousReportFile(reportFiles[0]);
+		assertTrue(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, this.getOriginalImageFiles()[0], imageDirectories[1], reportFiles[1]));
+		manifest = new BackupManifest();
+		assertTrue(manifest.load(BackupManifest.getManifestFile(reportFiles[1]), password));
+		List<String> changedChunkDigests = manifest.getEntry(dataDir.getName() + "/average_files/AutoGen_1.Bin").getChunkDigests();
+		int numberNewChunks = 0;
+		for (String chunkDigest : changedChunkDigests) {
+			if (manifest.getChunkStore().getImageSetIndex(chunkDigest) == 1) {
+				numberNewChunks += 1;
+			}
+		}
+		assertTrue(	(numberNewChunks > 0) && (numberNewChunks <= 2)	);
+		assertTrue(imageDirectories[1].listFiles().length * 10 < imageDirectories[0].listFiles().length);
+		
+		// Nothing is changed: images are not needed
+		processingOptions.setPreviousReportFile(reportFiles[1]);
+		assertTrue(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, this.getOriginalImageFiles()[0], imageDirectories[2], reportFiles[2]));
+		assertFalse(	(imageDirectories[2].exists() == true) && (imageDirectories[2].listFiles().length > 0)	);
+		
+		// Files are assembled from chunks of all image sets
+		MainProcessor mainProcessor = new MainProcessor();
+		assertTrue(mainProcessor.decryptUncompressExtractFiles(imageDirectories[2], reportFiles[2], this.getDirectoryForDecryptedFiles(), password));
+		assertTrue(directoryUtils.isDirectoriesEquals(dataDir, new File(this.getDirectoryForDecryptedFiles().getPath() + File.separator + dataDir.getName())));
+		FileUtils.deleteDirectory(this.getDirectoryForDecryptedFiles());
+		assertTrue(mainProcessor.decryptUncompressExtractFiles(imageDirectories[0], reportFiles[0], this.getDirectoryForDecryptedFiles(), password));
+		assertTrue(directoryUtils.isDirectoriesEquals(firstStateDir, new File(this.getDirectoryForDecryptedFiles().getPath() + File.separator + dataDir.getName())));
+		
+		FileUtils.deleteQuietly(this.getIncrementalDirectory());
+		FileUtils.deleteQuietly(this.getDirectoryForDecryptedFiles());
+	}
+
+	@Test
+	public void testResumeHideExtract() throws IOException {
+		File resumeDirectory = new File("unittests_files\\main_processing\\obtained\\resume");
+		char[] password = "password".toCharArray();
+		DirectoryUtils directoryUtils = new DirectoryUtils();
+		File dataDir = new File(resumeDirectory.getPath() + File.separator + "input" + File.separator + this.getOriginalDataDirectory().getName());
+		File missingImageFile = new File(resumeDirectory.getPath() + File.separator + "missing_image.jpg");
+		File hideJournalFile = OperationJournal.getJournalFile(this.getOutputReportFile());
+		File extractJournalFile = OperationJournal.getJournalFile(this.getDirectoryForDecryptedFiles().getAbsoluteFile());
+		for (PipelineOrder pipelineOrder : PipelineOrder.values()) {
+			FileUtils.deleteQuietly(resumeDirectory);
+			FileUtils.deleteQuietly(this.getOutputReportFile());
+			FileUtils.deleteQuietly(this.getDirectoryForDecryptedFiles());
+			FileUtils.deleteQuietly(this.getOutputDirectoryForImages());
+			FileUtils.deleteQuietly(this.getWorkspaceDirectory());
+			FileUtils.copyDirectory(this.getOriginalDataDirectory(), dataDir);
+			
+			ProcessingOptions processingOptions = new ProcessingOptions();
+			processingOptions.setImageSize(320, 240);
+			processingOptions.setPipelineOrder(pipelineOrder);
+			processingOptions.setWorkspace(new Workspace(this.getWorkspaceDirectory()));
+			// Cover image is missing: data are encrypted and compressed, but images are not made.
+			// Without resuming journal and intermediate data are not kept
+			assertFalse(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, missingImageFile, this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+			assertFalse(hideJournalFile.exists());
+			assertEquals(0, this.getWorkspaceDirectory().listFiles().length);
+			// With resuming journal is kept
+			processingOptions.setResumeUsed(true);
+			assertFalse(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, missingImageFile, this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+			assertTrue(hideJournalFile.isFile());
+			assertEquals(1, this.getWorkspaceDirectory().listFiles().length);
+			File jobDirectory = this.getWorkspaceDirectory().listFiles()[0];
+			
+			assertFalse(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, missingImageFile, this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+			assertTrue(jobDirectory.isDirectory());
+			
+			// Resumed operation uses intermediate data of journal: changes of input data after interruption are not hidden
+			FileUtils.writeStringToFile(new File(dataDir.getPath() + File.separator + "Hello world!.txt"), "Changed content", "UTF-8");
+			FileUtils.copyFile(this.getOriginalImageFiles()[0], missingImageFile);
+			processingOptions.setResumeUsed(true);
+			assertTrue(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, missingImageFile, this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+			assertFalse(hideJournalFile.exists());
+			assertEquals(0, this.getWorkspaceDirectory().listFiles().length);
+			
+			// Output directory is occupied by file: data are extracted from images and decrypted, but could not be written.
+			// Without resuming decrypted data are not kept in workspace
+			processingOptions.setResumeUsed(false);
+			FileUtils.writeStringToFile(this.getDirectoryForDecryptedFiles(), "Not a directory", "UTF-8");
+			assertFalse(new MainProcessor(processingOptions).decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+			assertFalse(extractJournalFile.exists());
+			assertEquals(0, this.getWorkspaceDirectory().listFiles().length);
+			processingOptions.setResumeUsed(true);
+			assertFalse(new MainProcessor(processingOptions).decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+			assertTrue(extractJournalFile.isFile());
+			assertEquals(1, this.getWorkspaceDirectory().listFiles().length);
+			assertTrue(this.getDirectoryForDecryptedFiles().delete());
+			assertTrue(new MainProcessor(processingOptions).decryptUncompressExtractFiles(this.getOutputDirectoryForImages(), this.getOutputReportFile(), this.getDirectoryForDecryptedFiles(), password));
+			assertTrue(directoryUtils.isDirectoriesEquals(this.getOriginalDataDirectory(), new File(this.getDirectoryForDecryptedFiles().getPath() + File.separator + dataDir.getName())));
+			assertFalse(extractJournalFile.exists());
+			assertEquals(0, this.getWorkspaceDirectory().listFiles().length);
+		}
+		FileUtils.deleteQuietly(resumeDirectory);
+		FileUtils.deleteQuietly(this.getWorkspaceDirectory());
+	}
+
+	@Test
+	public void testResumeRefusedWithOtherSettings() throws IOException {
+		File resumeDirectory = new File("unittests_files\\main_processing\\obtained\\resume");
+		char[] password = "password".toCharArray();
+		File dataDir = new File(resumeDirectory.getPath() + File.separator + "input" + File.separator + this.getOriginalDataDirectory().getName());
+		File missingImageFile = new File(resumeDirectory.getPath() + File.separator + "missing_image.jpg");
+		File hideJournalFile = OperationJournal.getJournalFile(this.getOutputReportFile());
+		FileUtils.deleteQuietly(resumeDirectory);
+		FileUtils.copyDirectory(this.getOriginalDataDirectory(), dataDir);
+		
+		ProcessingOptions processingOptions = new ProcessingOptions();
+		processingOptions.setImageSize(320, 240);
+		processingOptions.setWorkspace(new Workspace(this.getWorkspaceDirectory()));
+		processingOptions.setResumeUsed(true);
+		assertFalse(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, missingImageFile, this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+		assertTrue(hideJournalFile.isFile());
+		File jobDirectory = this.getWorkspaceDirectory().listFiles()[0];
+		
+		// Journal with other settings of images is not overwritten: operation is refused, interrupted job is kept
+		processingOptions.setNumberBitsPerChannel(processingOptions.getNumberBitsPerChannel() + 1);
+		FileUtils.copyFile(this.getOriginalImageFiles()[0], missingImageFile);
+		assertFalse(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, missingImageFile, this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+		assertFalse(this.getOutputReportFile().exists());
+		assertTrue(hideJournalFile.isFile());
+		assertTrue(jobDirectory.isDirectory());
+		assertEquals(1, this.getWorkspaceDirectory().listFiles().length);
+		
+		// Without resuming journal is discarded only after successful operation
+		processingOptions.setResumeUsed(false);
+		FileUtils.deleteQuietly(missingImageFile);
+		assertFalse(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, missingImageFile, this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+		assertTrue(hideJournalFile.isFile());
+		assertTrue(jobDirectory.isDirectory());
+		FileUtils.copyFile(this.getOriginalImageFiles()[0], missingImageFile);
+		assertTrue(new MainProcessor(processingOptions).encryptCompressHideFiles(dataDir, password, missingImageFile, this.getOutputDirectoryForImages(), this.getOutputReportFile()));
+		assertFalse(hideJournalFile.exists());
+		assertEquals(0, this.getWorkspaceDirectory().listFiles().length);
+		
+		FileUtils.deleteQuietly(resumeDirectory);
+		FileUtils.deleteQuietly(this.getOutputReportFile());
+		FileUtils.deleteQuietly(this.getOutputDirectoryForImages());
+		FileUtils.deleteQuietly(this.getWorkspaceDirectory());
+	}
+
 }
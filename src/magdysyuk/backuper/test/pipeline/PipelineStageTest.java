@@ -0,0 +1,166 @@
+package magdysyuk.backuper.test.pipeline;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import magdysyuk.backuper.source.pipeline.IStageProcessor;
+import magdysyuk.backuper.source.pipeline.PipelineStage;
+
+import org.junit.Test;
+
+
+public class PipelineStageTest {
+
+	@Test
+	public void testResultsInOrderOfItems() throws InterruptedException, ExecutionException {
+		final Random random = new Random(1);
+		PipelineStage<Integer, Integer> stage = new PipelineStage<Integer, Integer>("square", 4, 8, new IStageProcessor<Integer, Integer>() {
+			@Override
+			public Integer process(Integer item) throws InterruptedException {
+				int delay = 0;
+				synchronized (random) {
+					delay = random.nextInt(5);
+				}
+				// Items are finished not in order of putting
+				Thread.sleep(delay);
+				return item * item;
+			}
+		});
+		try {
+			int numberItems = 100;
+			int numberTakenResults = 0;
+			for (int i = 0; i < numberItems; i++) {
+				assertTrue(stage.put(i));
+				// Results are taken, when stage is full (as next stage does)
+				if (i >= 7) {
+					assertEquals(Integer.valueOf(numberTakenResults * numberTakenResults), stage.take());
+					numberTakenResults++;
+				}
+			}
+			stage.finish();
+			Integer result = null;
+			while ((result = stage.take()) != null) {
+				assertEquals(Integer.valueOf(numberTakenResults * numberTakenResults), result);
+				numberTakenResults++;
+			}
+			assertEquals(numberItems, numberTakenResults);
+			// After the end only null is returned
+			assertNull(stage.take());
+		} finally {
+			stage.stop();
+		}
+	}
+
+	@Test
+	public void testBackPressure() throws InterruptedException, ExecutionException {
+		final int queueCapacity = 3;
+		final AtomicInteger numberProcessedItems = new AtomicInteger(0);
+		final PipelineStage<Integer, Integer> stage = new PipelineStage<Integer, Integer>("count", 2, queueCapacity, new IStageProcessor<Integer, Integer>() {
+			@Override
+			public Integer process(Integer item) {
+				numberProcessedItems.incrementAndGet();
+				return item;
+			}
+		});
+		final AtomicInteger numberPuttedItems = new AtomicInteger(0);
+		Thread previousStage = new Thread() {
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < 10; i++) {
+						if (stage.put(i) == true) {
+							numberPuttedItems.incrementAndGet();
+						}
+					}
+					stage.finish();
+				} catch (InterruptedException ex) {
+					// test is failed by number of items
+				}
+			}
+		};
+		try {
+			previousStage.start();
+			Thread.sleep(300);
+			// Results are not taken, so previous stage waits, when stage is full
+			assertEquals(queueCapacity, numberPuttedItems.get());
+			assertEquals(queueCapacity, numberProcessedItems.get());
+			for (int i = 0; i < 10; i++) {
+				assertEquals(Integer.valueOf(i), stage.take());
+			}
+			assertNull(stage.take());
+			previousStage.join();
+			assertEquals(10, numberPuttedItems.get());
+		} finally {
+			stage.stop();
+		}
+	}
+
+	@Test
+	public void testErrorOfProcessing() throws InterruptedException, ExecutionException {
+		final PipelineStage<Integer, Integer> stage = new PipelineStage<Integer, Integer>("error", 2, 2, new IStageProcessor<Integer, Integer>() {
+			@Override
+			public Integer process(Integer item) throws IOException {
+				if (item == 1) {
+					throw new IOException("Error of item " + item);
+				}
+				return item;
+			}
+		});
+		try {
+			assertTrue(stage.put(0));
+			assertTrue(stage.put(1));
+			assertEquals(Integer.valueOf(0), stage.take());
+			try {
+				stage.take();
+				fail("Error of processing should be received by next stage");
+			} catch (ExecutionException ex) {
+				assertTrue(ex.getCause() instanceof IOException);
+			}
+		} finally {
+			stage.stop();
+		}
+		// Stopped stage doesn't receive items
+		assertFalse(stage.put(2));
+	}
+
+	@Test
+	public void testStopWhilePutting() throws InterruptedException {
+		for (int attempt = 0; attempt < 50; attempt++) {
+			final PipelineStage<Integer, Integer> stage = new PipelineStage<Integer, Integer>("stop", 2, 100000, new IStageProcessor<Integer, Integer>() {
+				@Override
+				public Integer process(Integer item) {
+					return item;
+				}
+			});
+			final AtomicInteger numberErrors = new AtomicInteger(0);
+			final AtomicInteger numberRejectedItems = new AtomicInteger(0);
+			Thread previousStage = new Thread() {
+				@Override
+				public void run() {
+					try {
+						// Results are not taken: when stage is full, put() waits until stage is stopped
+						int item = 0;
+						while (stage.put(item) == true) {
+							item += 1;
+						}
+						numberRejectedItems.incrementAndGet();
+					} catch (Exception ex) {
+						numberErrors.incrementAndGet();
+					}
+				}
+			};
+			previousStage.start();
+			Thread.sleep(1);
+			// Stop at any moment of put(): item is rejected, but there is no error
+			stage.stop();
+			previousStage.join();
+			assertEquals(0, numberErrors.get());
+			assertEquals(1, numberRejectedItems.get());
+		}
+	}
+
+}
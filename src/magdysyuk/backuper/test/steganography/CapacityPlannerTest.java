@@ -0,0 +1,81 @@
+package magdysyuk.backuper.test.steganography;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import magdysyuk.backuper.source.steganography.CapacityPlan;
+import magdysyuk.backuper.source.steganography.CapacityPlanner;
+import magdysyuk.backuper.source.steganography.CoverImage;
+import magdysyuk.backuper.source.steganography.SteganographyImageLSB;
+import magdysyuk.backuper.source.steganography.SteganographyRasterLSB;
+
+import org.junit.Test;
+
+
+public class CapacityPlannerTest {
+
+	private File getOriginalImageFile() {
+		return new File("unittests_files\\steganography\\expected\\images_for_steganography\\image_01.jpg");
+	}
+
+	@Test
+	public void testMakePlan() {
+		SteganographyRasterLSB steganographyRaster = new SteganographyRasterLSB();
+		CapacityPlanner capacityPlanner = new CapacityPlanner(3, 100);
+		// 640 x 480 image contains 230399 bytes
+		CapacityPlan capacityPlan = capacityPlanner.makePlan(230399L * 10 + 1, 640, 480, steganographyRaster, 4);
+		assertEquals(230399, capacityPlan.getNumberDataBytesPerImage());
+		assertEquals(11, capacityPlan.getNumberImages());
+		assertEquals((640 * 480 * 3) + 1024, capacityPlan.getEstimatedImageFileBytes());
+		assertEquals(capacityPlan.getEstimatedImageFileBytes() * 11, capacityPlan.getEstimatedTotalOutputBytes());
+		// 11 images by 4 threads - 3 groups of images
+		assertEquals((long) Math.ceil(3 * 640 * 480 * 100 / 1000000.0), capacityPlan.getEstimatedTimeMillis());
+
+		// More bits - less images
+		CapacityPlan densePlan = capacityPlanner.makePlan(230399L * 10 + 1, 640, 480, new SteganographyRasterLSB(4, true), 4);
+		assertTrue(densePlan.getNumberImages() < capacityPlan.getNumberImages());
+
+		assertNull(capacityPlanner.makePlan(1000, SteganographyImageLSB.MAX_IMAGE_SIDE, 480, steganographyRaster, 1));
+	}
+
+	@Test
+	public void testMakePlanWithinMaxImageFileSize() {
+		SteganographyRasterLSB steganographyRaster = new SteganographyRasterLSB();
+		CapacityPlanner capacityPlanner = new CapacityPlanner(3, 100);
+		long numberDataBytes = 50L * 1024 * 1024;
+		long maxImageFileBytes = 5L * 1024 * 1024;
+		CapacityPlan capacityPlan = capacityPlanner.makePlanWithinMaxImageFileSize(numberDataBytes, maxImageFileBytes, 4, 3, steganographyRaster, 1);
+		assertNotNull(capacityPlan);
+		assertTrue(capacityPlan.getEstimatedImageFileBytes() <= maxImageFileBytes);
+		assertEquals(capacityPlan.getImageWidth() * 3, capacityPlan.getImageHeight() * 4, 4);
+		// Default size gives much more images
+		CapacityPlan defaultPlan = capacityPlanner.makePlan(numberDataBytes, 640, 480, steganographyRaster, 1);
+		assertTrue(capacityPlan.getNumberImages() < defaultPlan.getNumberImages());
+		// Slightly larger image should be over limit, or should not decrease number of images
+		CapacityPlan largerPlan = capacityPlanner.makePlan(numberDataBytes, capacityPlan.getImageWidth() + 4, capacityPlan.getImageHeight() + 3, steganographyRaster, 1);
+		assertTrue(	(largerPlan.getEstimatedImageFileBytes() > maxImageFileBytes) || 
+					(largerPlan.getNumberImages() == capacityPlan.getNumberImages())	);
+
+		// Small data are putted into one small image
+		CapacityPlan smallDataPlan = capacityPlanner.makePlanWithinMaxImageFileSize(100, maxImageFileBytes, 4, 3, steganographyRaster, 1);
+		assertEquals(1, smallDataPlan.getNumberImages());
+		assertTrue(smallDataPlan.getImageWidth() < 640);
+
+		// Limit is less than smallest image file
+		assertNull(capacityPlanner.makePlanWithinMaxImageFileSize(numberDataBytes, 10, 4, 3, steganographyRaster, 1));
+	}
+
+	@Test
+	public void testCalibrate() throws IOException {
+		SteganographyRasterLSB steganographyRaster = new SteganographyRasterLSB();
+		SteganographyImageLSB steganographyImage = new SteganographyImageLSB();
+		CoverImage coverImage = steganographyImage.getResizedCoverImage(this.getOriginalImageFile());
+		CapacityPlanner capacityPlanner = CapacityPlanner.calibrate(coverImage, steganographyRaster);
+		assertTrue(capacityPlanner.getEstimatedBytesPerPixel() > 0);
+		assertTrue(capacityPlanner.getEstimatedBytesPerPixel() < 4);
+		assertTrue(capacityPlanner.getEstimatedNanosPerPixel() > 0);
+	}
+
+}
@@ -0,0 +1,76 @@
+package magdysyuk.backuper.test.steganography;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import magdysyuk.backuper.source.steganography.CoverAssignmentOrder;
+import magdysyuk.backuper.source.steganography.CoverImage;
+import magdysyuk.backuper.source.steganography.CoverImagePool;
+import magdysyuk.backuper.source.steganography.SteganographyRasterLSB;
+
+import org.junit.Test;
+
+
+public class CoverImagePoolTest {
+
+	private CoverImage getCoverImage(String name, int width, int height) {
+		return new CoverImage(new File(name), width, height, new int[width * height]);
+	}
+
+	/**
+	 * Covers with capacity (2 bits per channel, RGB): 74, 149, 11 and 0 bytes
+	 */
+	private List<CoverImage> getCoverImages() {
+		return Arrays.asList(this.getCoverImage("a.png", 10, 10), this.getCoverImage("b.png", 20, 10),
+				this.getCoverImage("c.png", 4, 4), this.getCoverImage("d.png", 1, 1));
+	}
+
+	@Test
+	public void testRoundRobin() {
+		List<CoverImage> coverImages = this.getCoverImages();
+		CoverImagePool coverImagePool = new CoverImagePool(coverImages, new SteganographyRasterLSB(), CoverAssignmentOrder.ROUND_ROBIN);
+		// Too small cover is not used
+		assertEquals(3, coverImagePool.getCoverImages().size());
+		assertEquals(149, coverImagePool.getMaxNumberDataBytes());
+		assertEquals(74, coverImagePool.getMaxNumberDataBytes(coverImages.get(0)));
+		assertSame(coverImages.get(0), coverImagePool.getNextCoverImage(1000));
+		assertSame(coverImages.get(1), coverImagePool.getNextCoverImage(926));
+		assertSame(coverImages.get(2), coverImagePool.getNextCoverImage(777));
+		assertSame(coverImages.get(0), coverImagePool.getNextCoverImage(766));
+		// Small rest of data doesn't change order
+		assertSame(coverImages.get(1), coverImagePool.getNextCoverImage(5));
+		assertSame(coverImages.get(1), coverImagePool.getCoverImageForLastChunk(coverImages.get(1), 5));
+	}
+
+	@Test
+	public void testBestFit() {
+		List<CoverImage> coverImages = this.getCoverImages();
+		CoverImagePool coverImagePool = new CoverImagePool(coverImages, new SteganographyRasterLSB(), CoverAssignmentOrder.BEST_FIT);
+		// From the largest to the smallest
+		assertEquals(Arrays.asList(coverImages.get(1), coverImages.get(0), coverImages.get(2)), coverImagePool.getCoverImages());
+		assertSame(coverImages.get(1), coverImagePool.getNextCoverImage(1000));
+		assertSame(coverImages.get(0), coverImagePool.getNextCoverImage(851));
+		assertSame(coverImages.get(2), coverImagePool.getNextCoverImage(777));
+		// The last chunk is putted into the smallest cover, which can contain it
+		assertSame(coverImages.get(0), coverImagePool.getNextCoverImage(60));
+		assertSame(coverImages.get(2), coverImagePool.getNextCoverImage(10));
+		// Size of the last chunk is known only after reading (data from stream)
+		assertSame(coverImages.get(2), coverImagePool.getNextCoverImage(Long.MAX_VALUE));
+		assertSame(coverImages.get(1), coverImagePool.getNextCoverImage(Long.MAX_VALUE));
+		assertSame(coverImages.get(0), coverImagePool.getCoverImageForLastChunk(coverImages.get(1), 70));
+	}
+
+	@Test
+	public void testEmptyPool() {
+		CoverImagePool coverImagePool = new CoverImagePool(Arrays.asList(this.getCoverImage("d.png", 1, 1)), new SteganographyRasterLSB(), CoverAssignmentOrder.ROUND_ROBIN);
+		assertTrue(coverImagePool.getCoverImages().isEmpty());
+		assertEquals(0, coverImagePool.getMaxNumberDataBytes());
+		assertNull(coverImagePool.getNextCoverImage(100));
+		assertNull(CoverAssignmentOrder.getCoverAssignmentOrder("unknown"));
+		assertSame(CoverAssignmentOrder.BEST_FIT, CoverAssignmentOrder.getCoverAssignmentOrder("best-fit"));
+	}
+
+}
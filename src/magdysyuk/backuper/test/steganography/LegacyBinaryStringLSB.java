@@ -0,0 +1,75 @@
+package magdysyuk.backuper.test.steganography;
+
+import org.apache.commons.codec.binary.BinaryCodec;
+
+
+/**
+ * LSB method as it was made in the first version of application (through binary strings).
+ * Used as reference implementation: images should be bit-identical with new implementation,
+ * also it is a baseline for benchmarks.
+ */
+class LegacyBinaryStringLSB {
+
+	int[] putDataIntoPixels(int[] coverPixels, int width, int height, byte[] rawData) {
+		int[] outputPixels = new int[width * height];
+		String dataBinaryStr = BinaryCodec.toAsciiString(rawData);
+		long rawDataBinaryLength = dataBinaryStr.length();
+		int numberUsedDataBits = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int pixelInt = coverPixels[(y * width) + x];
+				String formatBinStr = "%08d";
+				String redBinStr = String.format(formatBinStr, Integer.valueOf(Integer.toBinaryString((pixelInt >> 16) & 0xff)));
+				String greenBinStr = String.format(formatBinStr, Integer.valueOf(Integer.toBinaryString((pixelInt >> 8) & 0xff)));
+				String blueBinStr = String.format(formatBinStr, Integer.valueOf(Integer.toBinaryString((pixelInt) & 0xff)));
+				if (numberUsedDataBits < rawDataBinaryLength) {
+					redBinStr = redBinStr.substring(0, 6) + dataBinaryStr.substring(numberUsedDataBits, numberUsedDataBits + 2);
+					numberUsedDataBits += 2;
+				}
+				if (numberUsedDataBits < rawDataBinaryLength) {
+					greenBinStr = greenBinStr.substring(0, 6) + dataBinaryStr.substring(numberUsedDataBits, numberUsedDataBits + 2);
+					numberUsedDataBits += 2;
+				}
+				if (numberUsedDataBits < rawDataBinaryLength) {
+					blueBinStr = blueBinStr.substring(0, 6) + dataBinaryStr.substring(numberUsedDataBits, numberUsedDataBits + 2);
+					numberUsedDataBits += 2;
+				}
+				outputPixels[(y * width) + x] = Integer.parseInt((redBinStr + greenBinStr + blueBinStr), 2);
+			}
+		}
+		return outputPixels;
+	}
+
+	byte[] extractDataFromPixels(int[] pixels, int width, int height, int numberDataBytes) {
+		int numberRequiredDataBits = numberDataBytes * 8;
+		int numberExtractedDataBits = 0;
+		StringBuffer dataBinaryStrBuffer = new StringBuffer(numberRequiredDataBits);
+		allPixelsProcessed : for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int pixelInt = pixels[(y * width) + x];
+				String formatBinStr = "%08d";
+				String redBinStr = String.format(formatBinStr, Integer.valueOf(Integer.toBinaryString((pixelInt >> 16) & 0xff)));
+				String greenBinStr = String.format(formatBinStr, Integer.valueOf(Integer.toBinaryString((pixelInt >> 8) & 0xff)));
+				String blueBinStr = String.format(formatBinStr, Integer.valueOf(Integer.toBinaryString((pixelInt) & 0xff)));
+				if (numberExtractedDataBits < numberRequiredDataBits) {
+					dataBinaryStrBuffer.append(redBinStr.substring(6, 8));
+					numberExtractedDataBits += 2;
+				}
+				if (numberExtractedDataBits < numberRequiredDataBits) {
+					dataBinaryStrBuffer.append(greenBinStr.substring(6, 8));
+					numberExtractedDataBits += 2;
+				}
+				if (numberExtractedDataBits < numberRequiredDataBits) {
+					dataBinaryStrBuffer.append(blueBinStr.substring(6, 8));
+					numberExtractedDataBits += 2;
+				}
+				if (numberExtractedDataBits == numberRequiredDataBits) {
+					break allPixelsProcessed;
+				}
+			}
+		}
+		BinaryCodec binaryCoded = new BinaryCodec();
+		return binaryCoded.toByteArray(dataBinaryStrBuffer.toString());
+	}
+
+}
@@ -0,0 +1,167 @@
+package magdysyuk.backuper.test.steganography;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import magdysyuk.backuper.source.steganography.PngRowDecoder;
+import magdysyuk.backuper.source.steganography.PngRowEncoder;
+
+import org.junit.Test;
+
+
+public class PngRowCodecTest {
+
+	private File getOriginalImageFile() {
+		return new File("unittests_files\\steganography\\expected\\images_for_steganography\\image_01.jpg");
+	}
+
+	/**
+	 * Pixels with smooth gradient and noise in low bits (as in images with data)
+	 */
+	private int[] getPixels(int width, int height, boolean isAlphaChannelUsed, Random randomGenerator) {
+		int[] pixels = new int[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int alpha = 0xff;
+				if (isAlphaChannelUsed == true) {
+					alpha = 0xf0 | randomGenerator.nextInt(16);
+				}
+				int red = ((x * 255) / width) ^ randomGenerator.nextInt(4);
+				int green = ((y * 255) / height) ^ randomGenerator.nextInt(4);
+				int blue = randomGenerator.nextInt(256);
+				pixels[(y * width) + x] = (alpha << 24) | (red << 16) | (green << 8) | blue;
+			}
+		}
+		return pixels;
+	}
+
+	private byte[] encode(PngRowEncoder pngRowEncoder, int[] pixels, int width, int height, boolean isAlphaChannelUsed) throws IOException {
+		ByteArrayOutputStream encodedImage = new ByteArrayOutputStream();
+		int[] rowPixels = new int[width];
+		pngRowEncoder.start(encodedImage, width, height, isAlphaChannelUsed);
+		for (int y = 0; y < height; y++) {
+			System.arraycopy(pixels, y * width, rowPixels, 0, width);
+			pngRowEncoder.writeRow(rowPixels);
+		}
+		pngRowEncoder.finish();
+		return encodedImage.toByteArray();
+	}
+
+	@Test
+	public void testEncodedImageIsReadByImageIO() throws IOException {
+		Random randomGenerator = new Random(777);
+		int[][] imageSizes = new int[][] {{1, 1}, {7, 3}, {300, 250}};
+		int[] compressionLevels = new int[] {PngRowEncoder.MIN_COMPRESSION_LEVEL, 1, PngRowEncoder.MAX_COMPRESSION_LEVEL, PngRowEncoder.DEFAULT_COMPRESSION_LEVEL};
+		for (int compressionLevel : compressionLevels) {
+			// The same encoder is used for all images
+			PngRowEncoder pngRowEncoder = new PngRowEncoder(compressionLevel);
+			try {
+				for (int[] imageSize : imageSizes) {
+					for (boolean isAlphaChannelUsed : new boolean[] {false, true}) {
+						int width = imageSize[0];
+						int height = imageSize[1];
+						String message = "Image " + width + "x" + height + ", alpha: " + isAlphaChannelUsed + ", compression level: " + compressionLevel;
+						int[] pixels = this.getPixels(width, height, isAlphaChannelUsed, randomGenerator);
+						byte[] encodedImage = this.encode(pngRowEncoder, pixels, width, height, isAlphaChannelUsed);
+						BufferedImage decodedImage = ImageIO.read(new ByteArrayInputStream(encodedImage));
+						assertNotNull(message, decodedImage);
+						assertEquals(message, width, decodedImage.getWidth());
+						assertEquals(message, height, decodedImage.getHeight());
+						assertArrayEquals(message, pixels, decodedImage.getRGB(0, 0, width, height, null, 0, width));
+					}
+				}
+			} finally {
+				pngRowEncoder.dispose();
+			}
+		}
+	}
+
+	@Test
+	public void testDecodeImageOfImageIO() throws IOException {
+		Random randomGenerator = new Random(888);
+		PngRowDecoder pngRowDecoder = new PngRowDecoder();
+		try {
+			for (boolean isAlphaChannelUsed : new boolean[] {false, true}) {
+				int width = 300;
+				int height = 250;
+				int[] pixels = this.getPixels(width, height, isAlphaChannelUsed, randomGenerator);
+				int imageType = BufferedImage.TYPE_INT_RGB;
+				if (isAlphaChannelUsed == true) {
+					imageType = BufferedImage.TYPE_INT_ARGB;
+				}
+				BufferedImage image = new BufferedImage(width, height, imageType);
+				image.setRGB(0, 0, width, height, pixels, 0, width);
+				ByteArrayOutputStream encodedImage = new ByteArrayOutputStream();
+				assertTrue(ImageIO.write(image, "png", encodedImage));
+
+				assertTrue(pngRowDecoder.start(new ByteArrayInputStream(encodedImage.toByteArray())));
+				assertEquals(width, pngRowDecoder.getWidth());
+				assertEquals(height, pngRowDecoder.getHeight());
+				int[] rowPixels = new int[width];
+				for (int y = 0; y < height; y++) {
+					pngRowDecoder.readRow(rowPixels);
+					for (int x = 0; x < width; x++) {
+						assertEquals("Alpha: " + isAlphaChannelUsed + ", x: " + x + ", y: " + y, pixels[(y * width) + x], rowPixels[x]);
+					}
+				}
+			}
+		} finally {
+			pngRowDecoder.dispose();
+		}
+	}
+
+	@Test
+	public void testDecodeFirstRowsAndUnsupportedImage() throws IOException {
+		Random randomGenerator = new Random(999);
+		int width = 200;
+		int height = 400;
+		int[] pixels = this.getPixels(width, height, false, randomGenerator);
+		PngRowEncoder pngRowEncoder = new PngRowEncoder(PngRowEncoder.MIN_COMPRESSION_LEVEL);
+		PngRowDecoder pngRowDecoder = new PngRowDecoder();
+		try {
+			byte[] encodedImage = this.encode(pngRowEncoder, pixels, width, height, false);
+			// Reading could be stopped after any row
+			assertTrue(pngRowDecoder.start(new ByteArrayInputStream(encodedImage)));
+			int[] rowPixels = new int[width];
+			for (int y = 0; y < 3; y++) {
+				pngRowDecoder.readRow(rowPixels);
+				for (int x = 0; x < width; x++) {
+					assertEquals(pixels[(y * width) + x], rowPixels[x]);
+				}
+			}
+			// Decoder is re-used for other image
+			InputStream inputStream = new FileInputStream(this.getOriginalImageFile());
+			try {
+				assertFalse(pngRowDecoder.start(inputStream));
+			} finally {
+				inputStream.close();
+			}
+			// Broken data
+			encodedImage[encodedImage.length / 2] ^= 0x55;
+			assertTrue(pngRowDecoder.start(new ByteArrayInputStream(encodedImage)));
+			boolean isErrorFound = false;
+			try {
+				for (int y = 0; y < height; y++) {
+					pngRowDecoder.readRow(rowPixels);
+				}
+			} catch (IOException ex) {
+				isErrorFound = true;
+			}
+			assertTrue(isErrorFound);
+		} finally {
+			pngRowEncoder.dispose();
+			pngRowDecoder.dispose();
+		}
+	}
+
+}
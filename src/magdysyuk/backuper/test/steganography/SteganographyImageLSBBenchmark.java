@@ -0,0 +1,66 @@
+package magdysyuk.backuper.test.steganography;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import magdysyuk.backuper.source.steganography.SteganographyRasterLSB;
+import magdysyuk.backuper.test.BenchmarkHarness;
+
+
+/**
+ * Comparison of LSB extraction kernels: through binary strings (as in the first version, LegacyBinaryStringLSB)
+ * and through raster kernel (SteganographyRasterLSB).
+ * <p/>Pixels with data are prepared once, before measuring, so decoding of image is not measured:
+ * both kernels get the same int[] array of pixels (as it is behind DataBufferInt of image).
+ * Extracted data are compared with original data once, before measuring.
+ */
+public class SteganographyImageLSBBenchmark {
+
+	private final BenchmarkHarness benchmarkHarness = new BenchmarkHarness(5, 20);
+
+	public static void main(String[] args) throws Exception {
+		new SteganographyImageLSBBenchmark().runExtractDataBenchmark();
+	}
+
+	private void runExtractDataBenchmark() throws Exception {
+		final int width = 640;
+		final int height = 480;
+		Random randomGenerator = new Random(2012);
+		int[] coverPixels = new int[width * height];
+		for (int i = 0; i < coverPixels.length; i++) {
+			coverPixels[i] = randomGenerator.nextInt();
+		}
+		byte[] rawData = new byte[((width * height * 3) / 4) - 1];
+		randomGenerator.nextBytes(rawData);
+		final int numberDataBytes = rawData.length;
+		final SteganographyRasterLSB rasterLSB = new SteganographyRasterLSB();
+		final int[] pixels = new int[width * height];
+		rasterLSB.putDataIntoPixels(coverPixels, pixels, width, height, rawData, numberDataBytes);
+		final LegacyBinaryStringLSB legacyLSB = new LegacyBinaryStringLSB();
+
+		final byte[] rasterExtractedData = new byte[numberDataBytes];
+		if ((Arrays.equals(rawData, legacyLSB.extractDataFromPixels(pixels, width, height, numberDataBytes)) == false)
+				|| (rasterLSB.extractDataFromPixels(pixels, width, height, rasterExtractedData, numberDataBytes) == false)
+				|| (Arrays.equals(rawData, rasterExtractedData) == false)) {
+			throw new IllegalStateException("Extracted data are not equals original data");
+		}
+
+		long binaryStringNanos = this.benchmarkHarness.measure(new BenchmarkHarness.Iteration() {
+			@Override
+			public void run() {
+				legacyLSB.extractDataFromPixels(pixels, width, height, numberDataBytes);
+			}
+		});
+		long rasterNanos = this.benchmarkHarness.measure(new BenchmarkHarness.Iteration() {
+			@Override
+			public void run() {
+				rasterLSB.extractDataFromPixels(pixels, width, height, new byte[numberDataBytes], numberDataBytes);
+			}
+		});
+
+		System.out.println("Extract " + numberDataBytes + " bytes from pixels of image " + width + "x" + height + ", average time of " + this.benchmarkHarness.getMeasuredIterations() + " iterations:");
+		System.out.println("	binary strings: " + this.benchmarkHarness.getMilliseconds(binaryStringNanos) + " ms");
+		System.out.println("	raster kernel:  " + this.benchmarkHarness.getMilliseconds(rasterNanos) + " ms");
+	}
+
+}
@@ -2,9 +2,12 @@ package magdysyuk.backuper.test.steganography;
 
 import static org.junit.Assert.*;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import java.util.Arrays;
 import java.util.List;
@@ -14,7 +17,11 @@ import java.util.Random;
 
 import javax.imageio.ImageIO;
 
+import magdysyuk.backuper.source.steganography.CoverAssignmentOrder;
+import magdysyuk.backuper.source.steganography.CoverImage;
+import magdysyuk.backuper.source.steganography.PngRowEncoder;
 import magdysyuk.backuper.source.steganography.SteganographyImageLSB;
+import magdysyuk.backuper.source.steganography.SteganographyRasterLSB;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
@@ -68,10 +75,111 @@ public class SteganographyImageLSBTest {
 					originalImageFile.getName() + "_resized.png");
 			assertTrue(steganographyImage.resizeImage(originalImageFile, resizedImageFile));
 			assertTrue(resizedImageFile.exists());
+			BufferedImage resizedImage = ImageIO.read(resizedImageFile);
+			assertEquals(640, resizedImage.getWidth());
+			assertEquals(480, resizedImage.getHeight());
 			assertTrue(resizedImageFile.delete());
 		}
 	}
 	
+	@Test
+	public void testGetResizedCoverImage() throws IOException {
+		SteganographyImageLSB steganographyImage = new SteganographyImageLSB();
+		for (File originalImageFile : this.getOriginalImageFiles()) {
+			CoverImage coverImage = steganographyImage.getResizedCoverImage(originalImageFile);
+			assertNotNull(coverImage);
+			assertEquals(640, coverImage.getWidth());
+			assertEquals(480, coverImage.getHeight());
+			assertEquals(640 * 480, coverImage.getPixels().length);
+			// Image should be decoded only once
+			assertSame(coverImage, steganographyImage.getResizedCoverImage(originalImageFile));
+			
+			// The same encoder is used for several chunks
+			PngRowEncoder pngRowEncoder = new PngRowEncoder(PngRowEncoder.DEFAULT_COMPRESSION_LEVEL);
+			byte[][] dataChunks = new byte[][] {"first chunk of data".getBytes(), "second".getBytes()};
+			try {
+				for (int i = 0; i < dataChunks.length; i++) {
+					File imageFileWithData = new File (this.getDirectoryForOutProcessedFiles().getPath() + File.separator + 
+							originalImageFile.getName() + "_cover_image_with_data_" + i + ".png");
+					assertTrue(steganographyImage.putDataChunkIntoImage(coverImage, dataChunks[i], dataChunks[i].length, pngRowEncoder, imageFileWithData));
+					assertTrue(Arrays.equals(dataChunks[i], steganographyImage.extractDataChunkFromImage(imageFileWithData, dataChunks[i].length)));
+					assertTrue(imageFileWithData.delete());
+				}
+			} finally {
+				pngRowEncoder.dispose();
+			}
+			// No temporary files near original image
+			for (File fileNearOriginalImage : originalImageFile.getParentFile().listFiles()) {
+				assertFalse(fileNearOriginalImage.getName().contains("_resized_"));
+			}
+		}
+	}
+	
+	@Test
+	public void testPutDataChunkIntoLargeImageByRows() throws IOException {
+		SteganographyImageLSB steganographyImage = new SteganographyImageLSB();
+		// Width is over than old limit (15000) for images, which were processed as whole BufferedImage
+		int width = 20000;
+		int height = 3;
+		assertTrue(SteganographyImageLSB.isImageSizeAcceptable(width, height));
+		assertFalse(SteganographyImageLSB.isImageSizeAcceptable(SteganographyImageLSB.MAX_IMAGE_SIDE - 1, SteganographyImageLSB.MAX_IMAGE_SIDE - 1));
+		Random randomGenerator = new Random(4444);
+		int[] coverPixels = new int[width * height];
+		for (int i = 0; i < coverPixels.length; i++) {
+			coverPixels[i] = randomGenerator.nextInt();
+		}
+		CoverImage coverImage = new CoverImage(this.getOriginalImageFiles()[0], width, height, coverPixels);
+		PngRowEncoder pngRowEncoder = new PngRowEncoder(1);
+		try {
+			for (int dataLength : new int[] {1, 1000, ((width * height * 3) / 4) - 1}) {
+				byte[] rawData = new byte[dataLength];
+				randomGenerator.nextBytes(rawData);
+				File imageFileWithData = new File (this.getDirectoryForOutProcessedFiles().getPath() + File.separator + "large_image_with_data.png");
+				assertTrue(steganographyImage.putDataChunkIntoImage(coverImage, rawData, dataLength, pngRowEncoder, imageFileWithData));
+				BufferedImage imageWithData = ImageIO.read(imageFileWithData);
+				assertEquals(width, imageWithData.getWidth());
+				assertEquals(height, imageWithData.getHeight());
+				assertTrue(Arrays.equals(rawData, steganographyImage.extractDataChunkFromImage(imageFileWithData, dataLength)));
+				assertTrue(imageFileWithData.delete());
+			}
+		} finally {
+			pngRowEncoder.dispose();
+		}
+	}
+	
+	@Test
+	public void testPutDataChunkWithCompressionLevels() throws IOException {
+		SteganographyImageLSB steganographyImage = new SteganographyImageLSB();
+		CoverImage coverImage = steganographyImage.getResizedCoverImage(this.getOriginalImageFiles()[0]);
+		assertNotNull(coverImage);
+		SteganographyRasterLSB steganographyRaster = new SteganographyRasterLSB();
+		byte[] data = new byte[(int) steganographyRaster.getMaxNumberDataBytes(coverImage.getWidth(), coverImage.getHeight())];
+		new Random(5).nextBytes(data);
+		
+		int[] levels = new int[]{PngRowEncoder.MIN_COMPRESSION_LEVEL, PngRowEncoder.MAX_COMPRESSION_LEVEL, PngRowEncoder.DEFAULT_COMPRESSION_LEVEL};
+		long[] fileLengths = new long[levels.length];
+		for (int i = 0; i < levels.length; i++) {
+			File imageFileWithData = new File (this.getDirectoryForOutProcessedFiles().getPath() + File.separator + "png_compression_level_" + i + ".png");
+			PngRowEncoder pngRowEncoder = new PngRowEncoder(levels[i]);
+			try {
+				assertTrue(steganographyImage.putDataChunkIntoImage(coverImage, data, data.length, pngRowEncoder, imageFileWithData));
+				fileLengths[i] = imageFileWithData.length();
+				// The same encoder could be used again, result should be the same
+				assertTrue(steganographyImage.putDataChunkIntoImage(coverImage, data, data.length, pngRowEncoder, imageFileWithData));
+				assertEquals(fileLengths[i], imageFileWithData.length());
+			} finally {
+				pngRowEncoder.dispose();
+			}
+			BufferedImage imageWithData = ImageIO.read(imageFileWithData);
+			assertEquals(coverImage.getWidth(), imageWithData.getWidth());
+			assertEquals(coverImage.getHeight(), imageWithData.getHeight());
+			assertTrue(Arrays.equals(data, steganographyImage.extractDataChunkFromImage(imageFileWithData, data.length)));
+			assertTrue(imageFileWithData.delete());
+		}
+		// Without compression file is larger
+		assertTrue(fileLengths[0] > fileLengths[1]);
+	}
+	
 	@Test
 	public void testPutDataStrChunkIntoImage() throws IOException {
 		SteganographyImageLSB steganographyImage = new SteganographyImageLSB();
@@ -164,6 +272,42 @@ public class SteganographyImageLSBTest {
 		assertTrue(numberImageFilesWithData > 0);
 	}
 	
+	@Test
+	public void testPutDataFileIntoImagesByThreads() throws IOException {
+		SteganographyImageLSB steganographyImageOneThread = new SteganographyImageLSB();
+		SteganographyImageLSB steganographyImageThreads = new SteganographyImageLSB(4);
+		File originalImageFile = this.getOriginalImageFiles()[0];
+		for (File originalDataFile : this.getOriginalDataFiles()) {
+			List<Map<File, Integer>> imagesOneThread = steganographyImageOneThread.putDataFileIntoImages(originalDataFile, originalImageFile, this.getDirectoryForOutProcessedFiles());
+			List<Map<File, Integer>> imagesThreads = steganographyImageThreads.putDataFileIntoImages(originalDataFile, originalImageFile, this.getDirectoryForOutProcessedFiles());
+			assertNotNull(imagesOneThread);
+			assertNotNull(imagesThreads);
+			assertEquals(imagesOneThread.size(), imagesThreads.size());
+			// Images should be in the same order, with the same chunks of data
+			for (int i = 0; i < imagesThreads.size(); i++) {
+				assertEquals(imagesOneThread.get(i).values().iterator().next(), imagesThreads.get(i).values().iterator().next());
+				File imageOneThread = imagesOneThread.get(i).keySet().iterator().next();
+				File imageThreads = imagesThreads.get(i).keySet().iterator().next();
+				assertTrue(FileUtils.contentEquals(imageOneThread, imageThreads));
+			}
+			File extractedDataFile = new File (this.getDirectoryForOutProcessedFiles().getPath() + File.separator + "extracted_from_images_by_threads_data_file_" + originalDataFile.getName());
+			assertTrue(steganographyImageThreads.extractDataFileFromImages(imagesThreads, extractedDataFile));
+			assertTrue(FileUtils.contentEquals(originalDataFile, extractedDataFile));
+			assertTrue(extractedDataFile.delete());
+			// Images, created by one thread, are extracted by several threads
+			assertTrue(steganographyImageThreads.extractDataFileFromImages(imagesOneThread, extractedDataFile));
+			assertTrue(FileUtils.contentEquals(originalDataFile, extractedDataFile));
+			assertTrue(extractedDataFile.delete());
+			for (List<Map<File, Integer>> images : Arrays.asList(imagesOneThread, imagesThreads)) {
+				for (Map<File, Integer> imageWithData : images) {
+					for (File imageFile : imageWithData.keySet()) {
+						assertTrue(imageFile.delete());
+					}
+				}
+			}
+		}
+	}
+	
 	@Test
 	public void testPutAndExtractDataChunkFromImage() throws IOException {
 		SteganographyImageLSB steganographyImage = new SteganographyImageLSB();
@@ -183,6 +327,94 @@ public class SteganographyImageLSBTest {
 		}
 	}
 	
+	@Test
+	public void testPutAndExtractDataFileWithPoolOfCovers() throws IOException, InterruptedException {
+		File directoryWithCovers = this.getOriginalImageFiles()[0].getParentFile();
+		File originalDataFile = this.getOriginalDataFiles()[2];
+		for (CoverAssignmentOrder coverAssignmentOrder : CoverAssignmentOrder.values()) {
+			SteganographyImageLSB steganographyImage = new SteganographyImageLSB(4);
+			// Small images, so data are putted into many of them
+			assertTrue(steganographyImage.setResizedImageSize(64, 48));
+			steganographyImage.setCoverAssignmentOrder(coverAssignmentOrder);
+			List<CoverImage> coverImages = steganographyImage.getResizedCoverImages(directoryWithCovers);
+			assertEquals(this.getOriginalImageFiles().length, coverImages.size());
+			for (CoverImage coverImage : coverImages) {
+				// Proportions are kept, so covers are not larger than required size
+				assertTrue(coverImage.getWidth() <= 64);
+				assertTrue(coverImage.getHeight() <= 48);
+			}
+			
+			List<Map<File, Integer>> imagesWithHiddenData = steganographyImage.putDataFileIntoImages(originalDataFile, directoryWithCovers, this.getDirectoryForOutProcessedFiles());
+			assertNotNull(imagesWithHiddenData);
+			assertTrue(imagesWithHiddenData.size() > coverImages.size());
+			long numberHiddenDataBytes = 0;
+			for (Map<File, Integer> imageWithHiddenData : imagesWithHiddenData) {
+				for (Entry<File, Integer> imageWithDataEntry : imageWithHiddenData.entrySet()) {
+					numberHiddenDataBytes += imageWithDataEntry.getValue();
+					// Each image has size of one of covers
+					Dimension imageSize = SteganographyImageLSB.getImageSize(imageWithDataEntry.getKey());
+					boolean isCoverFound = false;
+					for (CoverImage coverImage : coverImages) {
+						if (	(coverImage.getWidth() == imageSize.width) && (coverImage.getHeight() == imageSize.height) && 
+								(imageWithDataEntry.getKey().getName().startsWith(coverImage.getSourceImageFile().getName()) == true)	) {
+							isCoverFound = true;
+						}
+					}
+					assertTrue(isCoverFound);
+				}
+			}
+			assertEquals(originalDataFile.length(), numberHiddenDataBytes);
+			
+			File extractedDataFile = new File (this.getDirectoryForOutProcessedFiles().getPath() + File.separator + "extracted_from_pool_data_file_" + originalDataFile.getName());
+			assertTrue(steganographyImage.extractDataFileFromImages(imagesWithHiddenData, extractedDataFile));
+			assertTrue(FileUtils.contentEquals(originalDataFile, extractedDataFile));
+			assertTrue(extractedDataFile.delete());
+			for (Map<File, Integer> imageWithHiddenData : imagesWithHiddenData) {
+				for (File imageFile : imageWithHiddenData.keySet()) {
+					assertTrue(imageFile.delete());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testPutAndExtractDataStream() throws IOException {
+		File directoryWithCovers = this.getOriginalImageFiles()[0].getParentFile();
+		File originalDataFile = this.getOriginalDataFiles()[2];
+		SteganographyImageLSB steganographyImage = new SteganographyImageLSB(4);
+		assertTrue(steganographyImage.setResizedImageSize(64, 48));
+		steganographyImage.setCoverAssignmentOrder(CoverAssignmentOrder.BEST_FIT);
+		List<Map<File, Integer>> imagesFromFile = steganographyImage.putDataFileIntoImages(originalDataFile, directoryWithCovers, this.getDirectoryForOutProcessedFiles());
+		InputStream dataInputStream = new FileInputStream(originalDataFile);
+		List<Map<File, Integer>> imagesFromStream = null;
+		try {
+			imagesFromStream = steganographyImage.putDataStreamIntoImages(dataInputStream, directoryWithCovers, this.getDirectoryForOutProcessedFiles());
+		} finally {
+			dataInputStream.close();
+		}
+		assertNotNull(imagesFromFile);
+		assertNotNull(imagesFromStream);
+		// Size of data is not known for stream, but chunks (also the last one) are the same
+		assertEquals(imagesFromFile.size(), imagesFromStream.size());
+		for (int i = 0; i < imagesFromStream.size(); i++) {
+			assertEquals(imagesFromFile.get(i).values().iterator().next(), imagesFromStream.get(i).values().iterator().next());
+			File imageFromFile = imagesFromFile.get(i).keySet().iterator().next();
+			File imageFromStream = imagesFromStream.get(i).keySet().iterator().next();
+			assertTrue(FileUtils.contentEquals(imageFromFile, imageFromStream));
+		}
+		File extractedDataFile = new File (this.getDirectoryForOutProcessedFiles().getPath() + File.separator + "extracted_from_stream_data_file_" + originalDataFile.getName());
+		assertTrue(steganographyImage.extractDataFileFromImages(imagesFromStream, extractedDataFile));
+		assertTrue(FileUtils.contentEquals(originalDataFile, extractedDataFile));
+		assertTrue(extractedDataFile.delete());
+		for (List<Map<File, Integer>> images : Arrays.asList(imagesFromFile, imagesFromStream)) {
+			for (Map<File, Integer> imageWithData : images) {
+				for (File imageFile : imageWithData.keySet()) {
+					assertTrue(imageFile.delete());
+				}
+			}
+		}
+	}
+	
 	@Test
 	public void testPutAndExtractDataFileFromImages() throws IOException {
 		SteganographyImageLSB steganographyImage = new SteganographyImageLSB();
@@ -0,0 +1,186 @@
+package magdysyuk.backuper.test.steganography;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import magdysyuk.backuper.source.steganography.SteganographyRasterLSB;
+
+import org.junit.Test;
+
+
+public class SteganographyRasterLSBTest {
+
+	private int[][] imageSizes = new int[][] {
+		{2, 2},
+		{7, 3},
+		{640, 480},
+		{97, 131}
+	};
+	private int[][] getImageSizes() {
+		return this.imageSizes;
+	}
+
+	@Test
+	public void testPutDataIntoPixelsIsSameAsBinaryString() {
+		SteganographyRasterLSB steganographyRaster = new SteganographyRasterLSB();
+		LegacyBinaryStringLSB legacyLSB = new LegacyBinaryStringLSB();
+		Random randomGenerator = new Random(12345);
+		for (int[] imageSize : this.getImageSizes()) {
+			int width = imageSize[0];
+			int height = imageSize[1];
+			int[] coverPixels = new int[width * height];
+			for (int i = 0; i < coverPixels.length; i++) {
+				// Alpha channel should be ignored
+				coverPixels[i] = 0xff000000 | randomGenerator.nextInt(0x01000000);
+			}
+			int maxDataLength = ((width * height * 3) / 4) - 1;
+			for (int dataLength : new int[] {1, 2, 3, 5, maxDataLength / 2, maxDataLength}) {
+				if (dataLength <= 0 || dataLength > maxDataLength) {
+					continue;
+				}
+				byte[] rawData = new byte[dataLength];
+				randomGenerator.nextBytes(rawData);
+				int[] expectedPixels = legacyLSB.putDataIntoPixels(coverPixels, width, height, rawData);
+				int[] obtainedPixels = new int[width * height];
+				steganographyRaster.putDataIntoPixels(coverPixels, obtainedPixels, width, height, rawData, dataLength);
+				assertArrayEquals("Image " + width + "x" + height + ", data length: " + dataLength, expectedPixels, obtainedPixels);
+			}
+		}
+	}
+
+	@Test
+	public void testExtractDataFromPixelsIsSameAsBinaryString() {
+		SteganographyRasterLSB steganographyRaster = new SteganographyRasterLSB();
+		LegacyBinaryStringLSB legacyLSB = new LegacyBinaryStringLSB();
+		Random randomGenerator = new Random(54321);
+		for (int[] imageSize : this.getImageSizes()) {
+			int width = imageSize[0];
+			int height = imageSize[1];
+			int[] pixels = new int[width * height];
+			for (int i = 0; i < pixels.length; i++) {
+				pixels[i] = randomGenerator.nextInt();
+			}
+			int maxDataLength = ((width * height * 3) / 4) - 1;
+			for (int dataLength : new int[] {1, 2, 3, 5, maxDataLength / 2, maxDataLength}) {
+				if (dataLength <= 0 || dataLength > maxDataLength) {
+					continue;
+				}
+				byte[] expectedData = legacyLSB.extractDataFromPixels(pixels, width, height, dataLength);
+				byte[] obtainedData = new byte[dataLength];
+				assertTrue(steganographyRaster.extractDataFromPixels(pixels, width, height, obtainedData, dataLength));
+				assertArrayEquals("Image " + width + "x" + height + ", data length: " + dataLength, expectedData, obtainedData);
+			}
+		}
+	}
+	
+	@Test
+	public void testPutAndExtractDataFromPixels() {
+		SteganographyRasterLSB steganographyRaster = new SteganographyRasterLSB();
+		Random randomGenerator = new Random(11111);
+		int width = 640;
+		int height = 480;
+		int[] coverPixels = new int[width * height];
+		int[] outputPixels = new int[width * height];
+		byte[] rawData = new byte[((width * height * 3) / 4) - 1];
+		randomGenerator.nextBytes(rawData);
+		steganographyRaster.putDataIntoPixels(coverPixels, outputPixels, width, height, rawData, rawData.length);
+		byte[] extractedData = new byte[rawData.length];
+		assertTrue(steganographyRaster.extractDataFromPixels(outputPixels, width, height, extractedData, rawData.length));
+		assertArrayEquals(rawData, extractedData);
+		// Image is too small for so many data bytes
+		assertFalse(steganographyRaster.extractDataFromPixels(outputPixels, 10, 10, extractedData, rawData.length));
+	}
+	
+	@Test
+	public void testGetNumberRequiredPixels() {
+		SteganographyRasterLSB steganographyRaster = new SteganographyRasterLSB();
+		assertEquals(2, steganographyRaster.getNumberRequiredPixels(1));
+		assertEquals(4, steganographyRaster.getNumberRequiredPixels(3));
+		assertEquals(307200, steganographyRaster.getNumberRequiredPixels(230400));
+	}
+
+	@Test
+	public void testPutAndExtractDataFromPixelsWithDensity() {
+		Random randomGenerator = new Random(22222);
+		int width = 97;
+		int height = 131;
+		int[] coverPixels = new int[width * height];
+		for (int i = 0; i < coverPixels.length; i++) {
+			coverPixels[i] = randomGenerator.nextInt();
+		}
+		int[] outputPixels = new int[width * height];
+		for (int bitsPerChannel = SteganographyRasterLSB.MIN_BITS_PER_CHANNEL; bitsPerChannel <= SteganographyRasterLSB.MAX_BITS_PER_CHANNEL; bitsPerChannel++) {
+			for (boolean isAlphaChannelUsed : new boolean[] {false, true}) {
+				SteganographyRasterLSB steganographyRaster = new SteganographyRasterLSB(bitsPerChannel, isAlphaChannelUsed);
+				int maxDataLength = (int) steganographyRaster.getMaxNumberDataBytes(width, height);
+				assertEquals(((width * height * bitsPerChannel * (isAlphaChannelUsed ? 4 : 3)) / 8) - 1, maxDataLength);
+				for (int dataLength : new int[] {1, 2, 3, 7, maxDataLength}) {
+					byte[] rawData = new byte[dataLength];
+					randomGenerator.nextBytes(rawData);
+					steganographyRaster.putDataIntoPixels(coverPixels, outputPixels, width, height, rawData, dataLength);
+					for (int i = 0; i < outputPixels.length; i++) {
+						int changedBitsMask = (1 << bitsPerChannel) - 1;
+						int unchangedBitsMask = ~((changedBitsMask << 16) | (changedBitsMask << 8) | changedBitsMask) & 0x00ffffff;
+						assertEquals(coverPixels[i] & unchangedBitsMask, outputPixels[i] & unchangedBitsMask);
+					}
+					byte[] extractedData = new byte[dataLength];
+					assertTrue(steganographyRaster.extractDataFromPixels(outputPixels, width, height, extractedData, dataLength));
+					assertArrayEquals("Bits per channel: " + bitsPerChannel + ", alpha: " + isAlphaChannelUsed + ", data length: " + dataLength, rawData, extractedData);
+				}
+			}
+		}
+		// Default density is the same as in the first version of application
+		SteganographyRasterLSB defaultRaster = new SteganographyRasterLSB();
+		assertEquals(2, defaultRaster.getNumberBitsPerChannel());
+		assertFalse(defaultRaster.isAlphaChannelUsed());
+		assertEquals(((640 * 480 * 3) / 4) - 1, defaultRaster.getMaxNumberDataBytes(640, 480));
+	}
+
+	@Test
+	public void testPutAndExtractDataByRowsIsSameAsByPixels() {
+		Random randomGenerator = new Random(33333);
+		for (int[] imageSize : this.getImageSizes()) {
+			int width = imageSize[0];
+			int height = imageSize[1];
+			int[] coverPixels = new int[width * height];
+			for (int i = 0; i < coverPixels.length; i++) {
+				coverPixels[i] = randomGenerator.nextInt();
+			}
+			for (int bitsPerChannel = SteganographyRasterLSB.MIN_BITS_PER_CHANNEL; bitsPerChannel <= SteganographyRasterLSB.MAX_BITS_PER_CHANNEL; bitsPerChannel++) {
+				for (boolean isAlphaChannelUsed : new boolean[] {false, true}) {
+					SteganographyRasterLSB steganographyRaster = new SteganographyRasterLSB(bitsPerChannel, isAlphaChannelUsed);
+					int maxDataLength = (int) steganographyRaster.getMaxNumberDataBytes(width, height);
+					for (int dataLength : new int[] {1, 2, 3, 7, maxDataLength / 3, maxDataLength}) {
+						if (dataLength <= 0 || dataLength > maxDataLength) {
+							continue;
+						}
+						String message = "Image " + width + "x" + height + ", bits per channel: " + bitsPerChannel + ", alpha: " + isAlphaChannelUsed + ", data length: " + dataLength;
+						byte[] rawData = new byte[dataLength];
+						randomGenerator.nextBytes(rawData);
+						int[] expectedPixels = new int[width * height];
+						steganographyRaster.putDataIntoPixels(coverPixels, expectedPixels, width, height, rawData, dataLength);
+						int[] outputRow = new int[width];
+						byte[] extractedData = new byte[dataLength];
+						int numberRequiredRows = steganographyRaster.getNumberRequiredRows(dataLength, height);
+						for (int y = 0; y < height; y++) {
+							steganographyRaster.putDataIntoRow(coverPixels, y * width, outputRow, width, height, y, rawData, dataLength);
+							for (int x = 0; x < width; x++) {
+								assertEquals(message, expectedPixels[(y * width) + x], outputRow[x]);
+							}
+							if (y < numberRequiredRows) {
+								steganographyRaster.extractDataFromRow(outputRow, width, height, y, extractedData, dataLength);
+							}
+						}
+						assertArrayEquals(message, rawData, extractedData);
+					}
+				}
+			}
+		}
+		// Data fits into part of the first column - only part of rows is required
+		SteganographyRasterLSB defaultRaster = new SteganographyRasterLSB();
+		assertEquals(2, defaultRaster.getNumberRequiredRows(1, 480));
+		assertEquals(480, defaultRaster.getNumberRequiredRows(1000, 480));
+	}
+
+}